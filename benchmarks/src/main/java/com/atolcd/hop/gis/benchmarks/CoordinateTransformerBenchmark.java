@@ -0,0 +1,109 @@
+package com.atolcd.hop.gis.benchmarks;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.utils.CoordinateTransformer;
+import java.util.concurrent.TimeUnit;
+import org.cts.CRSFactory;
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.CoordinateOperationFactory;
+import org.cts.registry.EPSGRegistry;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transformation of a multipolygon from WGS 84 to Lambert 93 : per-Coordinate rebuilding of the
+ * previous implementation against the coordinate sequence filter of {@link CoordinateTransformer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateTransformerBenchmark {
+
+  // Nombre de sommets de chaque polygone et nombre de polygones
+  @Param({"10", "1000", "100000"})
+  public int vertices;
+
+  @Param({"1", "10"})
+  public int parts;
+
+  private Geometry geometry;
+  private CoordinateOperation transformation;
+
+  @Setup
+  public void setup() throws Exception {
+
+    CRSFactory cRSFactory = new CRSFactory();
+    cRSFactory.getRegistryManager().addRegistry(new EPSGRegistry());
+    this.transformation =
+        CoordinateOperationFactory.createCoordinateOperations(
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:4326"),
+                (GeodeticCRS) cRSFactory.getCRS("EPSG:2154"))
+            .get(0);
+
+    // Cercles répartis autour du centre de la France, géométrie des lecteurs de fichiers
+    GeometryFactory geometryFactory = new GeometryFactory();
+    Polygon[] polygons = new Polygon[this.parts];
+    for (int i = 0; i < this.parts; i++) {
+
+      double centerX = 2.0 + 0.1 * i;
+      double centerY = 46.0 + 0.1 * i;
+      Coordinate[] coordinates = new Coordinate[this.vertices + 1];
+      for (int j = 0; j < this.vertices; j++) {
+        double angle = 2 * Math.PI * j / this.vertices;
+        coordinates[j] =
+            new Coordinate(centerX + 0.05 * Math.cos(angle), centerY + 0.05 * Math.sin(angle));
+      }
+      coordinates[this.vertices] = coordinates[0];
+      polygons[i] = geometryFactory.createPolygon(coordinates);
+    }
+    this.geometry = geometryFactory.createMultiPolygon(polygons);
+  }
+
+  @Benchmark
+  public Geometry legacyTransform() throws Exception {
+    return LegacyCoordinateTransformer.transform(this.geometry, this.transformation);
+  }
+
+  @Benchmark
+  public Geometry transform() throws Exception {
+    return CoordinateTransformer.transform(this.geometry, this.transformation);
+  }
+}
@@ -0,0 +1,125 @@
+package com.atolcd.hop.gis.benchmarks;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.spatialite.io.GeometryBlobDecoder;
+import org.sqlite.spatialite.io.GeometryBlobEncoder;
+import org.sqlite.spatialite.io.GeometryBlobReader;
+import org.sqlite.spatialite.io.GeometryBlobWriter;
+
+/**
+ * Decoding and encoding of the same SpatiaLite geometry blobs with the stream based {@link
+ * GeometryBlobReader} and {@link GeometryBlobWriter} and with the {@link java.nio.ByteBuffer}
+ * based {@link GeometryBlobDecoder} and {@link GeometryBlobEncoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBlobCodecBenchmark {
+
+  // Nombre de sommets de chaque polygone et présence du Z
+  @Param({"10", "1000", "100000"})
+  public int vertices;
+
+  @Param({"false", "true"})
+  public boolean hasZ;
+
+  private Geometry geometry;
+  private byte[] blob;
+
+  private GeometryBlobReader geometryBlobReader;
+  private GeometryBlobWriter geometryBlobWriter;
+  private GeometryBlobDecoder geometryBlobDecoder;
+  private GeometryBlobEncoder geometryBlobEncoder;
+
+  @Setup
+  public void setup() throws Exception {
+
+    this.geometryBlobReader = new GeometryBlobReader();
+    this.geometryBlobWriter = new GeometryBlobWriter();
+    this.geometryBlobDecoder = new GeometryBlobDecoder();
+    this.geometryBlobEncoder = new GeometryBlobEncoder();
+
+    // Multipolygone de 10 cercles en Lambert 93, géométrie des lecteurs de fichiers
+    GeometryFactory geometryFactory = new GeometryFactory();
+    Polygon[] polygons = new Polygon[10];
+    for (int i = 0; i < polygons.length; i++) {
+
+      double centerX = 650000.0 + 1000.0 * i;
+      double centerY = 6600000.0 + 1000.0 * i;
+      Coordinate[] coordinates = new Coordinate[this.vertices + 1];
+      for (int j = 0; j < this.vertices; j++) {
+        double angle = 2 * Math.PI * j / this.vertices;
+        double x = centerX + 500.0 * Math.cos(angle);
+        double y = centerY + 500.0 * Math.sin(angle);
+        coordinates[j] = this.hasZ ? new Coordinate(x, y, 100.0 + j % 50) : new Coordinate(x, y);
+      }
+      coordinates[this.vertices] = coordinates[0];
+      polygons[i] = geometryFactory.createPolygon(coordinates);
+    }
+    this.geometry = geometryFactory.createMultiPolygon(polygons);
+    this.geometry.setSRID(2154);
+
+    // Blob de référence, identique pour les deux implémentations
+    this.blob = this.geometryBlobWriter.write(this.geometry);
+  }
+
+  @Benchmark
+  public Geometry readerDecode() throws Exception {
+    return this.geometryBlobReader.read(this.blob);
+  }
+
+  @Benchmark
+  public Geometry decoderDecode() throws Exception {
+    return this.geometryBlobDecoder.decode(this.blob);
+  }
+
+  @Benchmark
+  public byte[] writerEncode() throws Exception {
+    return this.geometryBlobWriter.write(this.geometry);
+  }
+
+  @Benchmark
+  public byte[] encoderEncode() {
+    return this.geometryBlobEncoder.encode(this.geometry);
+  }
+}
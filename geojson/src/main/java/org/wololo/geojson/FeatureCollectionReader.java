@@ -0,0 +1,225 @@
+package org.wololo.geojson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming reader of a GeoJSON FeatureCollection.
+ *
+ * <p>The features are parsed one at a time from the "features" array, so that the memory used does
+ * not depend on the size of the document. The "crs" member is known once read : it is available
+ * from the start when it precedes the "features" array, {@link #readCrs(File)} finds it wherever it
+ * is.
+ */
+public class FeatureCollectionReader implements Closeable {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private JsonParser parser;
+  private Crs crs;
+  private Set<String> propertyNames;
+  private boolean inFeatures;
+
+  public FeatureCollectionReader(File geoJson) throws IOException {
+
+    this.parser = mapper.createParser(geoJson);
+    this.crs = null;
+    this.propertyNames = null;
+    this.inFeatures = false;
+
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      close();
+      throw new IOException("Invalid GeoJSON document " + geoJson);
+    }
+
+    try {
+      readMembers();
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Restricts the properties read, the other ones are skipped without being decoded.
+   *
+   * @param propertyNames the names of the properties to read, null to read all the properties
+   */
+  public void setPropertyNames(Collection<String> propertyNames) {
+
+    if (propertyNames == null) {
+      this.propertyNames = null;
+    } else {
+      this.propertyNames = new HashSet<String>(propertyNames);
+    }
+  }
+
+  public Crs getCrs() {
+    return crs;
+  }
+
+  /**
+   * Reads the "crs" member of a FeatureCollection, wherever it is in the document. The "features"
+   * array is skipped token by token, without decoding the features.
+   *
+   * @param geoJson the GeoJSON document
+   * @return the crs or null if the collection has none
+   */
+  public static Crs readCrs(File geoJson) throws IOException {
+
+    FeatureCollectionReader reader = new FeatureCollectionReader(geoJson);
+    try {
+
+      while (reader.inFeatures) {
+        reader.parser.skipChildren();
+        reader.inFeatures = false;
+        reader.readMembers();
+      }
+      return reader.crs;
+
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the next feature of the collection.
+   *
+   * @return the next feature or null at end of collection
+   */
+  public Feature next() throws IOException {
+
+    if (!inFeatures) {
+      return null;
+    }
+
+    JsonToken token = parser.nextToken();
+    if (token == JsonToken.END_ARRAY) {
+      inFeatures = false;
+      readMembers();
+      return null;
+    }
+
+    if (token != JsonToken.START_OBJECT) {
+      throw new IOException("Invalid feature at " + parser.currentLocation());
+    }
+
+    return readFeature(parser, propertyNames);
+  }
+
+  public void close() throws IOException {
+    if (parser != null) {
+      parser.close();
+      parser = null;
+    }
+  }
+
+  // Membres de la collection jusqu'au tableau "features" ou jusqu'à la fin du document
+  private void readMembers() throws IOException {
+
+    JsonToken token = parser.nextToken();
+    while (token == JsonToken.FIELD_NAME) {
+
+      String name = parser.currentName();
+      token = parser.nextToken();
+
+      if (name.equals("type")) {
+        String type = parser.getValueAsString();
+        if (!"FeatureCollection".equals(type)) {
+          throw new IOException("Only FeatureCollection is supported : " + type);
+        }
+
+      } else if (name.equals("crs") && token == JsonToken.START_OBJECT) {
+        crs = readCrs(mapper.readTree(parser));
+
+      } else if (name.equals("features") && token == JsonToken.START_ARRAY) {
+        inFeatures = true;
+        return;
+
+      } else {
+        parser.skipChildren();
+      }
+
+      token = parser.nextToken();
+    }
+  }
+
+  /**
+   * Reads a feature object, the parser being on its START_OBJECT token.
+   *
+   * @param propertyNames the names of the properties to read, null to read all the properties
+   */
+  static Feature readFeature(JsonParser parser, Set<String> propertyNames) throws IOException {
+
+    Geometry geometry = null;
+    Map<String, Object> properties = new LinkedHashMap<String, Object>();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+      String name = parser.currentName();
+      JsonToken token = parser.nextToken();
+
+      if (name.equals("geometry") && token == JsonToken.START_OBJECT) {
+        geometry = readGeometry(mapper.readTree(parser));
+
+      } else if (name.equals("properties") && token == JsonToken.START_OBJECT) {
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+          String propertyName = parser.currentName();
+          parser.nextToken();
+
+          if (propertyNames == null || propertyNames.contains(propertyName)) {
+            properties.put(propertyName, parser.readValueAs(Object.class));
+          } else {
+            parser.skipChildren();
+          }
+        }
+
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    return new Feature(geometry, properties);
+  }
+
+  private static Geometry readGeometry(JsonNode node) throws IOException {
+
+    JsonNode typeNode = node.get("type");
+    if (typeNode == null) {
+      throw new IOException("Missing geometry type");
+    }
+
+    try {
+      return (Geometry)
+          mapper.treeToValue(node, Class.forName("org.wololo.geojson." + typeNode.asText()));
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unsupported geometry type " + typeNode.asText(), e);
+    }
+  }
+
+  private static Crs readCrs(JsonNode node) throws IOException {
+
+    JavaType javaType =
+        mapper.getTypeFactory().constructMapType(Map.class, String.class, Object.class);
+    Map<String, Object> properties = null;
+    if (node.get("properties") != null) {
+      properties = mapper.readValue(node.get("properties").traverse(), javaType);
+    }
+
+    JsonNode typeNode = node.get("type");
+    return new Crs(typeNode != null ? typeNode.asText() : null, properties);
+  }
+}
@@ -0,0 +1,218 @@
+package org.wololo.geojson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streaming reader of a GeoJSON text sequence (RFC 8142) or of newline-delimited GeoJSON : one
+ * feature per line, optionally preceded by a record separator.
+ *
+ * <p>A reader can be restricted to a byte range of the file, so that a file can be split between
+ * several readers : a reader returns the features of the lines starting in its range, the line
+ * overlapping its start belonging to the previous range.
+ */
+public class FeatureSequenceReader implements Closeable {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final int RECORD_SEPARATOR = 0x1E;
+
+  private RandomAccessFile file;
+  private InputStream input;
+  private byte[] buffer;
+  private int bufferPosition;
+  private int bufferLength;
+  private Set<String> propertyNames;
+  private long position;
+  private long end;
+  private byte[] line;
+  private int lineLength;
+
+  public FeatureSequenceReader(File geoJsonSeq) throws IOException {
+    this(geoJsonSeq, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param geoJsonSeq the file to read
+   * @param start the start of the byte range
+   * @param end the end (excluded) of the byte range
+   */
+  public FeatureSequenceReader(File geoJsonSeq, long start, long end) throws IOException {
+
+    this.file = new RandomAccessFile(geoJsonSeq, "r");
+    this.propertyNames = null;
+    this.line = new byte[8192];
+    this.buffer = new byte[65536];
+    this.bufferPosition = 0;
+    this.bufferLength = 0;
+    this.end = end;
+
+    try {
+
+      // Début de la première ligne commençant dans l'intervalle
+      this.position = Math.max(0, start - 1);
+      FileChannel channel = this.file.getChannel();
+      channel.position(this.position);
+      this.input = Channels.newInputStream(channel);
+
+      if (start > 0) {
+        skipLine();
+      }
+
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Restricts the properties read, the other ones are skipped without being decoded.
+   *
+   * @param propertyNames the names of the properties to read, null to read all the properties
+   */
+  public void setPropertyNames(Collection<String> propertyNames) {
+
+    if (propertyNames == null) {
+      this.propertyNames = null;
+    } else {
+      this.propertyNames = new HashSet<String>(propertyNames);
+    }
+  }
+
+  /**
+   * Reads the next feature of the sequence.
+   *
+   * @return the next feature or null at end of sequence or of byte range
+   */
+  public Feature next() throws IOException {
+
+    while (position < end) {
+
+      long lineStart = position;
+      if (!readLine()) {
+        return null;
+      }
+
+      // Séparateurs d'enregistrement et blancs de début de ligne
+      int offset = 0;
+      while (offset < lineLength
+          && (line[offset] == RECORD_SEPARATOR || Character.isWhitespace(line[offset]))) {
+        offset++;
+      }
+
+      if (offset == lineLength) {
+        continue;
+      }
+
+      JsonParser parser = mapper.createParser(line, offset, lineLength - offset);
+      try {
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new IOException("Invalid feature at byte " + lineStart);
+        }
+        return FeatureCollectionReader.readFeature(parser, propertyNames);
+
+      } finally {
+        parser.close();
+      }
+    }
+
+    return null;
+  }
+
+  public void close() throws IOException {
+    try {
+      if (file != null) {
+        file.close();
+      }
+    } finally {
+      file = null;
+      input = null;
+    }
+  }
+
+  // Ligne suivante dans le tampon de ligne, false en fin de fichier
+  private boolean readLine() throws IOException {
+
+    lineLength = 0;
+    boolean found = false;
+
+    while (fillBuffer()) {
+
+      found = true;
+      int newLine = indexOfNewLine();
+      int length = (newLine >= 0 ? newLine : bufferLength) - bufferPosition;
+
+      if (lineLength + length > line.length) {
+        line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+      }
+      System.arraycopy(buffer, bufferPosition, line, lineLength, length);
+      lineLength += length;
+
+      if (newLine >= 0) {
+        position += length + 1;
+        bufferPosition = newLine + 1;
+        return true;
+      }
+
+      position += length;
+      bufferPosition = bufferLength;
+    }
+
+    return found;
+  }
+
+  private void skipLine() throws IOException {
+
+    while (fillBuffer()) {
+
+      int newLine = indexOfNewLine();
+      if (newLine >= 0) {
+        position += newLine + 1 - bufferPosition;
+        bufferPosition = newLine + 1;
+        return;
+      }
+
+      position += bufferLength - bufferPosition;
+      bufferPosition = bufferLength;
+    }
+  }
+
+  private int indexOfNewLine() {
+    for (int i = bufferPosition; i < bufferLength; i++) {
+      if (buffer[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Tampon rechargé s'il est consommé, false en fin de fichier
+  private boolean fillBuffer() throws IOException {
+
+    if (bufferPosition < bufferLength) {
+      return true;
+    }
+
+    int read = input.read(buffer);
+    while (read == 0) {
+      read = input.read(buffer);
+    }
+
+    bufferPosition = 0;
+    bufferLength = Math.max(0, read);
+    return read > 0;
+  }
+}
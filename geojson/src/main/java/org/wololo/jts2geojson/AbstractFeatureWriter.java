@@ -0,0 +1,96 @@
+package org.wololo.jts2geojson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Date;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Base of the streaming writers of GeoJSON features : the features are written one at a time with a
+ * {@link JsonGenerator}, without building the intermediate GeoJSON objects.
+ */
+public abstract class AbstractFeatureWriter implements Closeable, Flushable {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  protected JsonGenerator generator;
+  private GeometryJsonWriter geometryWriter;
+
+  /**
+   * @param writer the target of the features
+   * @param decimals the number of decimals of the coordinates, negative for the full precision
+   * @param closeWriter true to close the target when the writer is closed
+   */
+  protected AbstractFeatureWriter(Writer writer, int decimals, boolean closeWriter)
+      throws IOException {
+
+    this.generator = mapper.getFactory().createGenerator(writer);
+    this.generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, closeWriter);
+    this.geometryWriter = new GeometryJsonWriter(decimals);
+  }
+
+  /** Starts a feature : its geometry is written and its properties can follow. */
+  public void writeStartFeature(Geometry geometry) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("type", "Feature");
+    generator.writeFieldName("geometry");
+    geometryWriter.write(generator, geometry);
+    generator.writeObjectFieldStart("properties");
+  }
+
+  public void writeProperty(String name, Object value) throws IOException {
+
+    generator.writeFieldName(name);
+
+    if (value == null) {
+      generator.writeNull();
+    } else if (value instanceof String) {
+      generator.writeString((String) value);
+    } else if (value instanceof Long || value instanceof Integer) {
+      generator.writeNumber(((Number) value).longValue());
+    } else if (value instanceof Double) {
+      generator.writeNumber((Double) value);
+    } else if (value instanceof BigDecimal) {
+      generator.writeNumber((BigDecimal) value);
+    } else if (value instanceof Boolean) {
+      generator.writeBoolean((Boolean) value);
+    } else if (value instanceof Date) {
+      generator.writeNumber(((Date) value).getTime());
+    } else {
+      generator.writeObject(value);
+    }
+  }
+
+  public void writeEndFeature() throws IOException {
+    generator.writeEndObject();
+    generator.writeEndObject();
+  }
+
+  public void flush() throws IOException {
+    generator.flush();
+  }
+
+  public void close() throws IOException {
+    if (generator != null) {
+      generator.close();
+      generator = null;
+    }
+  }
+
+  /**
+   * Closes the writer without ending the objects and arrays still open, when the writing is
+   * abandoned.
+   */
+  public void abort() throws IOException {
+    if (generator != null) {
+      generator.configure(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT, false);
+      generator.close();
+      generator = null;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package org.wololo.jts2geojson;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer of a GeoJSON FeatureCollection.
+ *
+ * <p>The "crs" member, if any, is written before the "features" array, so that it is known to the
+ * streaming readers before the first feature.
+ */
+public class FeatureCollectionWriter extends AbstractFeatureWriter {
+
+  /**
+   * @param writer the target of the collection
+   * @param decimals the number of decimals of the coordinates, negative for the full precision
+   * @param closeWriter true to close the target when the collection is closed
+   */
+  public FeatureCollectionWriter(Writer writer, int decimals, boolean closeWriter)
+      throws IOException {
+    super(writer, decimals, closeWriter);
+  }
+
+  /**
+   * Starts the collection.
+   *
+   * @param crsName the name of the crs of the features, null to write no crs
+   */
+  public void writeStart(String crsName) throws IOException {
+
+    generator.writeStartObject();
+    generator.writeStringField("type", "FeatureCollection");
+
+    if (crsName != null) {
+      generator.writeObjectFieldStart("crs");
+      generator.writeStringField("type", "name");
+      generator.writeObjectFieldStart("properties");
+      generator.writeStringField("name", crsName);
+      generator.writeEndObject();
+      generator.writeEndObject();
+    }
+
+    generator.writeArrayFieldStart("features");
+  }
+
+  /** Ends the collection. */
+  public void writeEnd() throws IOException {
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+}
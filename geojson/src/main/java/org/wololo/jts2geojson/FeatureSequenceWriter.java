@@ -0,0 +1,30 @@
+package org.wololo.jts2geojson;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer of newline-delimited GeoJSON : each feature is written on its own line, without
+ * enclosing collection.
+ */
+public class FeatureSequenceWriter extends AbstractFeatureWriter {
+
+  /**
+   * @param writer the target of the features
+   * @param decimals the number of decimals of the coordinates, negative for the full precision
+   * @param closeWriter true to close the target when the writer is closed
+   */
+  public FeatureSequenceWriter(Writer writer, int decimals, boolean closeWriter)
+      throws IOException {
+    super(writer, decimals, closeWriter);
+
+    // Pas de séparateur entre les features : fin de ligne écrite après chacune
+    this.generator.setRootValueSeparator(null);
+  }
+
+  @Override
+  public void writeEndFeature() throws IOException {
+    super.writeEndFeature();
+    generator.writeRaw('\n');
+  }
+}
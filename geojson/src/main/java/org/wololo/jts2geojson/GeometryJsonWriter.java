@@ -0,0 +1,138 @@
+package org.wololo.jts2geojson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Writes JTS geometries as GeoJSON geometry objects with a {@link JsonGenerator}, reading the
+ * coordinates directly from the coordinate sequences.
+ *
+ * <p>As {@link GeoJSONWriter}, only the x and y ordinates are written.
+ */
+public class GeometryJsonWriter {
+
+  // 2^53 : plus grande valeur dont tous les entiers sont représentables en double
+  private static final double MAX_EXACT_VALUE = 9007199254740992.0;
+
+  private final int decimals;
+  private final double scale;
+
+  /** Writes the coordinates with their full precision. */
+  public GeometryJsonWriter() {
+    this(-1);
+  }
+
+  /**
+   * @param decimals the number of decimals of the coordinates, negative for the full precision
+   */
+  public GeometryJsonWriter(int decimals) {
+    this.decimals = decimals;
+    this.scale = decimals >= 0 ? Math.pow(10, decimals) : 1;
+  }
+
+  public void write(JsonGenerator generator, Geometry geometry) throws IOException {
+
+    if (geometry == null) {
+      generator.writeNull();
+      return;
+    }
+
+    generator.writeStartObject();
+    generator.writeStringField("type", geometry.getGeometryType());
+
+    if (geometry instanceof GeometryCollection
+        && !(geometry instanceof MultiPoint)
+        && !(geometry instanceof MultiLineString)
+        && !(geometry instanceof MultiPolygon)) {
+
+      generator.writeArrayFieldStart("geometries");
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        write(generator, geometry.getGeometryN(i));
+      }
+      generator.writeEndArray();
+
+    } else {
+
+      generator.writeFieldName("coordinates");
+      writeCoordinates(generator, geometry);
+    }
+
+    generator.writeEndObject();
+  }
+
+  private void writeCoordinates(JsonGenerator generator, Geometry geometry) throws IOException {
+
+    if (geometry instanceof Point) {
+
+      CoordinateSequence sequence = ((Point) geometry).getCoordinateSequence();
+      if (sequence.size() > 0) {
+        writePosition(generator, sequence, 0);
+      } else {
+        generator.writeStartArray();
+        generator.writeEndArray();
+      }
+
+    } else if (geometry instanceof LineString) {
+      writeSequence(generator, ((LineString) geometry).getCoordinateSequence());
+
+    } else if (geometry instanceof Polygon) {
+
+      Polygon polygon = (Polygon) geometry;
+      generator.writeStartArray();
+      if (!polygon.isEmpty()) {
+        writeSequence(generator, polygon.getExteriorRing().getCoordinateSequence());
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+          writeSequence(generator, polygon.getInteriorRingN(i).getCoordinateSequence());
+        }
+      }
+      generator.writeEndArray();
+
+    } else {
+
+      // Multi géométries
+      generator.writeStartArray();
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        writeCoordinates(generator, geometry.getGeometryN(i));
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private void writeSequence(JsonGenerator generator, CoordinateSequence sequence)
+      throws IOException {
+
+    generator.writeStartArray();
+    for (int i = 0; i < sequence.size(); i++) {
+      writePosition(generator, sequence, i);
+    }
+    generator.writeEndArray();
+  }
+
+  private void writePosition(JsonGenerator generator, CoordinateSequence sequence, int index)
+      throws IOException {
+
+    generator.writeStartArray();
+    writeOrdinate(generator, sequence.getX(index));
+    writeOrdinate(generator, sequence.getY(index));
+    generator.writeEndArray();
+  }
+
+  private void writeOrdinate(JsonGenerator generator, double value) throws IOException {
+
+    // Au-delà de 2^53, la valeur mise à l'échelle n'a plus de décimales à arrondir
+    // et dépasserait la capacité de Math.round
+    if (decimals >= 0 && !Double.isNaN(value) && Math.abs(value * scale) < MAX_EXACT_VALUE) {
+      value = Math.round(value * scale) / scale;
+    }
+    generator.writeNumber(value);
+  }
+}
@@ -0,0 +1,105 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import com.atolcd.hop.gis.io.features.Field.FieldType;
+import com.atolcd.hop.gis.io.features.Value;
+import org.apache.hop.core.exception.HopException;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+public abstract class AbstractFeatureCursor implements FeatureCursor {
+
+  private long limit;
+  private long count;
+  private PreparedGeometry spatialFilter;
+
+  public AbstractFeatureCursor(long limit) {
+    this(limit, null);
+  }
+
+  /**
+   * @param limit the maximum number of features, 0 for all the features
+   * @param spatialFilter the geometry the features must intersect, null for all the features
+   */
+  public AbstractFeatureCursor(long limit, PreparedGeometry spatialFilter) {
+
+    this.limit = limit;
+    this.count = 0;
+    this.spatialFilter = spatialFilter;
+  }
+
+  public Feature next() throws HopException {
+
+    // Limite atteinte
+    if (this.limit > 0 && this.count >= this.limit) {
+      return null;
+    }
+
+    Feature feature = readNext();
+
+    // Features hors du filtre spatial ignorées
+    while (feature != null && !isInSpatialFilter(feature)) {
+      feature = readNext();
+    }
+
+    if (feature != null) {
+      this.count++;
+    }
+
+    return feature;
+  }
+
+  public void close() throws HopException {}
+
+  // Intersection de la géométrie de la feature avec le filtre spatial
+  private boolean isInSpatialFilter(Feature feature) {
+
+    if (this.spatialFilter == null) {
+      return true;
+    }
+
+    for (Value value : feature.getValues()) {
+      if (value.getField().getType().equals(FieldType.GEOMETRY)) {
+        Geometry geometry = (Geometry) value.getValue();
+        return geometry != null && this.spatialFilter.intersects(geometry);
+      }
+    }
+
+    // Pas de géométrie : contenu non spatial
+    return true;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Reads the next feature from the source, without limit checking
+   *
+   * @return the next feature or null at end of source
+   * @throws HopException
+   */
+  protected abstract Feature readNext() throws HopException;
+}
@@ -22,7 +22,10 @@ package com.atolcd.hop.gis.io;
  * #L%
  */
 
+import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
+import com.atolcd.hop.gis.io.features.Field.FieldType;
+import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -30,6 +33,10 @@ import java.util.ArrayList;
 import java.util.List;
 import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.vfs.HopVfs;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 
 public abstract class AbstractFileReader implements FileReader {
 
@@ -40,6 +47,9 @@ public abstract class AbstractFileReader implements FileReader {
   protected boolean forceToMultiGeometry;
   protected boolean forceTo2DGeometry;
   protected long limit;
+  protected List<String> selectedFieldNames;
+  protected Geometry spatialFilter;
+  protected PreparedGeometry preparedSpatialFilter;
 
   public AbstractFileReader(String layerName, String geometryFieldName, String charsetName) {
 
@@ -54,6 +64,9 @@ public abstract class AbstractFileReader implements FileReader {
     this.forceToMultiGeometry = false;
     this.forceTo2DGeometry = false;
     this.limit = 0;
+    this.selectedFieldNames = null;
+    this.spatialFilter = null;
+    this.preparedSpatialFilter = null;
   }
 
   public Field getField(String name) {
@@ -69,7 +82,98 @@ public abstract class AbstractFileReader implements FileReader {
   }
 
   public List<Field> getFields() {
-    return fields;
+
+    if (this.selectedFieldNames == null) {
+      return fields;
+    }
+
+    List<Field> selectedFields = new ArrayList<Field>();
+    for (Field field : this.fields) {
+      if (isSelected(field)) {
+        selectedFields.add(field);
+      }
+    }
+
+    return selectedFields;
+  }
+
+  /**
+   * Reads the fields of the file from its headers, or from a sample of its features when the format
+   * has no schema, without reading all the features.
+   *
+   * @return the fields
+   * @throws Exception
+   */
+  protected abstract List<Field> probeFields() throws Exception;
+
+  // Champs depuis le cache des schémas ou lus dans le fichier
+  protected void initFields(String[] fileNames, String... options) throws Exception {
+
+    String key = SchemaCache.getKey(getClass().getName(), fileNames, options);
+    List<Field> cachedFields = SchemaCache.get(key);
+
+    if (cachedFields != null) {
+      this.fields = cachedFields;
+    } else {
+      this.fields = probeFields();
+      SchemaCache.put(key, this.fields);
+    }
+  }
+
+  /**
+   * Restricts the fields read to a list of fields. Geometry fields are always read.
+   *
+   * @param fieldNames the names of the fields to read, null or empty to read all the fields
+   */
+  public void setSelectedFields(List<String> fieldNames) {
+
+    if (fieldNames == null || fieldNames.isEmpty()) {
+      this.selectedFieldNames = null;
+    } else {
+      this.selectedFieldNames = new ArrayList<String>(fieldNames);
+    }
+  }
+
+  // Champ à lire : géométrie ou champ sélectionné
+  protected boolean isSelected(Field field) {
+
+    if (this.selectedFieldNames == null || field.getType().equals(FieldType.GEOMETRY)) {
+      return true;
+    }
+
+    for (String fieldName : this.selectedFieldNames) {
+      if (fieldName.equalsIgnoreCase(field.getName())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Restricts the features read to the ones whose geometry intersects a geometry.
+   *
+   * @param spatialFilter the geometry the features must intersect, null to read all the features
+   */
+  public void setSpatialFilter(Geometry spatialFilter) {
+
+    if (spatialFilter == null || spatialFilter.isEmpty()) {
+      this.spatialFilter = null;
+      this.preparedSpatialFilter = null;
+    } else {
+      this.spatialFilter = spatialFilter;
+      this.preparedSpatialFilter = PreparedGeometryFactory.prepare(spatialFilter);
+    }
+  }
+
+  // Emprise d'un enregistrement dans l'emprise du filtre spatial
+  protected boolean isInSpatialFilter(Envelope envelope) {
+
+    if (this.spatialFilter == null) {
+      return true;
+    }
+
+    return envelope != null && this.spatialFilter.getEnvelopeInternal().intersects(envelope);
   }
 
   public void setForceToMultiGeometry(boolean forceToMultiGeometry) {
@@ -84,6 +188,40 @@ public abstract class AbstractFileReader implements FileReader {
     this.limit = limit;
   }
 
+  public List<Feature> getFeatures() throws HopException {
+
+    List<Feature> features = new ArrayList<Feature>();
+    FeatureCursor featureCursor = getFeatureCursor();
+
+    try {
+
+      Feature feature = featureCursor.next();
+      while (feature != null) {
+        features.add(feature);
+        feature = featureCursor.next();
+      }
+
+    } finally {
+      featureCursor.close();
+    }
+
+    return features;
+  }
+
+  // Application des options de forçage de la géométrie
+  protected Geometry getOutputGeometry(Geometry geometry) {
+
+    if (this.forceTo2DGeometry) {
+      geometry = GeometryUtils.get2DGeometry(geometry);
+    }
+
+    if (this.forceToMultiGeometry) {
+      geometry = GeometryUtils.getMultiGeometry(geometry);
+    }
+
+    return geometry;
+  }
+
   // Vérification du nom de fichier
   protected URL checkFilename(String filename) throws HopException {
 
@@ -22,6 +22,7 @@ package com.atolcd.hop.gis.io;
  * #L%
  */
 
+import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import java.io.IOException;
 import java.net.URL;
@@ -37,6 +38,7 @@ public abstract class AbstractFileWriter implements FileWriter {
   protected String geometryFieldName;
   protected Charset charset;
   protected List<Field> fields;
+  private List<Feature> bufferedFeatures;
 
   public AbstractFileWriter(String geometryFieldName, String charsetName) {
 
@@ -53,6 +55,30 @@ public abstract class AbstractFileWriter implements FileWriter {
     this.fields = fields;
   }
 
+  // Ecriture par lots : par défaut, les features sont conservées jusqu'à la
+  // fermeture puis écrites en une seule fois
+  public void open() throws HopException {
+    this.bufferedFeatures = new ArrayList<Feature>();
+  }
+
+  public void writeBatch(List<Feature> features) throws HopException {
+    this.bufferedFeatures.addAll(features);
+  }
+
+  public void close() throws HopException {
+    List<Feature> features = this.bufferedFeatures;
+    this.bufferedFeatures = null;
+    writeFeatures(features);
+  }
+
+  public void abort() throws HopException {
+    this.bufferedFeatures = null;
+  }
+
+  public boolean isStreaming() {
+    return false;
+  }
+
   // Vérification du nom de fichier
   protected URL checkFilename(String filename) throws HopException {
 
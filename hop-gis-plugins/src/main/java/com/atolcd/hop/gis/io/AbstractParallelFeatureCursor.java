@@ -0,0 +1,174 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hop.core.exception.HopException;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+/**
+ * Cursor decoding a source by chunks on several threads. The source is a range of positions
+ * (records, bytes...) split into chunks, each decoded by a task of {@link #createChunkTask(long,
+ * long)}. The features are returned in the order of the source or in the order the chunks are
+ * decoded.
+ */
+public abstract class AbstractParallelFeatureCursor extends AbstractFeatureCursor {
+
+  private String sourceName;
+  private boolean keepOrder;
+  private long chunkSize;
+  private long nextPosition;
+  private long endPosition;
+
+  private ExecutorService executor;
+  private ArrayDeque<Future<List<Feature>>> pendingChunks;
+  private CompletionService<List<Feature>> completionService;
+  private int pendingCount;
+  private int maxPending;
+  private Iterator<Feature> chunkFeatures;
+
+  /**
+   * @param limit the maximum number of features, 0 for all the features
+   * @param spatialFilter the geometry the features must intersect, null for all the features
+   * @param sourceName the name of the source, for the error messages
+   * @param threads the number of threads decoding the chunks
+   * @param keepOrder true to return the features in the order of the source
+   * @param start the first position of the range to read
+   * @param end the position following the range to read
+   * @param chunkSize the number of positions of a chunk
+   */
+  public AbstractParallelFeatureCursor(
+      long limit,
+      PreparedGeometry spatialFilter,
+      String sourceName,
+      int threads,
+      boolean keepOrder,
+      long start,
+      long end,
+      long chunkSize) {
+
+    super(limit, spatialFilter);
+
+    this.sourceName = sourceName;
+    this.keepOrder = keepOrder;
+    this.chunkSize = chunkSize;
+    this.nextPosition = start;
+    this.endPosition = end;
+
+    this.executor = Executors.newFixedThreadPool(threads);
+    this.pendingChunks = new ArrayDeque<Future<List<Feature>>>();
+    this.completionService = new ExecutorCompletionService<List<Feature>>(this.executor);
+    this.pendingCount = 0;
+    this.maxPending = threads * 2;
+  }
+
+  protected Feature readNext() throws HopException {
+
+    try {
+
+      while (this.chunkFeatures == null || !this.chunkFeatures.hasNext()) {
+
+        // Soumission des blocs suivants
+        while (this.pendingCount < this.maxPending && this.nextPosition < this.endPosition) {
+
+          long chunkEnd = Math.min(this.endPosition, this.nextPosition + this.chunkSize);
+          Callable<List<Feature>> chunk = createChunkTask(this.nextPosition, chunkEnd);
+          if (this.keepOrder) {
+            this.pendingChunks.add(this.executor.submit(chunk));
+          } else {
+            this.completionService.submit(chunk);
+          }
+          this.pendingCount++;
+          this.nextPosition = chunkEnd;
+        }
+
+        if (this.pendingCount == 0) {
+          return null;
+        }
+
+        // Dans l'ordre de la source ou dans l'ordre de fin de décodage
+        List<Feature> features;
+        if (this.keepOrder) {
+          features = this.pendingChunks.poll().get();
+        } else {
+          features = this.completionService.take().get();
+        }
+        this.pendingCount--;
+        this.chunkFeatures = features.iterator();
+      }
+
+      return this.chunkFeatures.next();
+
+    } catch (ExecutionException e) {
+      throw new HopException("Error reading features" + this.sourceName, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HopException("Error reading features" + this.sourceName, e);
+    }
+  }
+
+  /**
+   * Stops the decoding threads and waits for the running tasks, so that the subclasses can then
+   * release the resources used by the tasks.
+   */
+  public void close() throws HopException {
+
+    ExecutorService executor = this.executor;
+    this.executor = null;
+    this.pendingChunks = null;
+    this.completionService = null;
+    this.chunkFeatures = null;
+
+    if (executor != null) {
+      executor.shutdownNow();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          // Tâches en cours non interruptibles pendant le décodage d'un bloc
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HopException("Error closing " + this.sourceName, e);
+      }
+    }
+  }
+
+  /**
+   * Creates the task decoding a chunk of the source, run on one of the threads of the cursor
+   *
+   * @param start the first position of the chunk
+   * @param end the position following the chunk
+   * @return the task returning the features of the chunk
+   */
+  protected abstract Callable<List<Feature>> createChunkTask(long start, long end);
+}
@@ -27,9 +27,9 @@ import com.atolcd.gis.dxf.Layer;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.apache.hop.core.exception.HopException;
 
@@ -62,13 +62,7 @@ public class DXFReader extends AbstractFileReader {
         this.dxfFileName = checkFilename(fileName).getFile();
       }
       this.readXData = readXData;
-
-      this.fields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
-      this.fields.add(new Field("Layer", FieldType.STRING, null, null));
-      this.fields.add(new Field("Text", FieldType.STRING, null, null));
-      if (this.readXData) {
-        this.fields.add(new Field("XData", FieldType.STRING, null, null));
-      }
+      this.fields = probeFields();
 
       this.circleAsPolygon = circleAsPolygon;
       this.ellipseAsPolygon = ellipseAsPolygon;
@@ -79,82 +73,95 @@ public class DXFReader extends AbstractFileReader {
     }
   }
 
-  public List<Feature> getFeatures() throws HopException {
-    List<Feature> features = new ArrayList<Feature>();
+  // Champs fixes, sans lecture du fichier
+  protected List<Field> probeFields() {
 
-    try {
-      com.atolcd.gis.dxf.DXFReader reader = new com.atolcd.gis.dxf.DXFReader(this.dxfFileName);
-      reader.setCircleAsPolygon(this.circleAsPolygon);
-      reader.setEllipseAsPolygon(this.ellipseAsPolygon);
-      reader.setPolylineAsPolygon(this.lineAsPolygon);
-
-      int entitiesTotalNumber = 0;
-      for (Layer layer : reader.getLayers()) {
-        entitiesTotalNumber += layer.getEntities().size();
-      }
+    List<Field> dxfFields = new ArrayList<Field>();
+    dxfFields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
+    dxfFields.add(new Field("Layer", FieldType.STRING, null, null));
+    dxfFields.add(new Field("Text", FieldType.STRING, null, null));
+    if (this.readXData) {
+      dxfFields.add(new Field("XData", FieldType.STRING, null, null));
+    }
+    return dxfFields;
+  }
+
+  public FeatureCursor getFeatureCursor() throws HopException {
+    return new DXFFeatureCursor();
+  }
+
+  private class DXFFeatureCursor extends AbstractFeatureCursor {
+
+    private Iterator<Layer> layerIt;
+    private Iterator<Entity> entityIt;
+    private Layer layer;
+
+    public DXFFeatureCursor() throws HopException {
+
+      super(limit, preparedSpatialFilter);
+
+      try {
+
+        com.atolcd.gis.dxf.DXFReader reader = new com.atolcd.gis.dxf.DXFReader(dxfFileName);
+        reader.setCircleAsPolygon(circleAsPolygon);
+        reader.setEllipseAsPolygon(ellipseAsPolygon);
+        reader.setPolylineAsPolygon(lineAsPolygon);
 
-      if (this.limit == 0 || this.limit > entitiesTotalNumber || this.limit < 0) {
-        this.limit = entitiesTotalNumber;
+        this.layerIt = reader.getLayers().iterator();
+        this.entityIt = null;
+        this.layer = null;
+
+      } catch (Exception e) {
+        throw new HopException("Error reading features" + dxfFileName, e);
       }
+    }
 
-      int entityNumber = 0;
-
-      for (Layer layer : reader.getLayers()) {
-        for (Entity entity : layer.getEntities()) {
-          if (entityNumber < this.limit) {
-            Feature feature = new Feature();
-
-            if (this.forceToMultiGeometry) {
-              feature.addValue(
-                  this.fields.get(0), GeometryUtils.getMultiGeometry(entity.getGeometry()));
-            } else {
-              feature.addValue(this.fields.get(0), entity.getGeometry());
-            }
-
-            feature.addValue(this.fields.get(0), entity.getGeometry());
-            feature.addValue(this.fields.get(1), layer.getName());
-            feature.addValue(this.fields.get(2), entity.getText());
-
-            if (this.readXData) {
-
-              List<ExtendedData> xDatas = entity.getExtendedData();
-              String xmlXData = "";
-
-              if (xDatas.isEmpty()) {
-                xmlXData = "<attributes/>";
-              } else {
-
-                xmlXData = "<attributes>";
-                for (ExtendedData xData : xDatas) {
-                  xmlXData +=
-                      "<attribute name = \""
-                          + xData.getName()
-                          + "\" type = \""
-                          + xData.getType()
-                          + "\">"
-                          + String.valueOf(xData.getValue())
-                          + "</attribute>";
-                }
-                xmlXData += "</attributes>";
-                feature.addValue(this.fields.get(3), xmlXData);
-              }
-            }
-
-            features.add(feature);
-            entityNumber += 1;
-          } else {
-            break;
-          }
+    protected Feature readNext() throws HopException {
+
+      // Passage au calque suivant contenant des entités
+      while (this.entityIt == null || !this.entityIt.hasNext()) {
+
+        if (!this.layerIt.hasNext()) {
+          return null;
         }
 
-        if (entityNumber > this.limit) {
-          break;
+        this.layer = this.layerIt.next();
+        this.entityIt = this.layer.getEntities().iterator();
+      }
+
+      Entity entity = this.entityIt.next();
+      Feature feature = new Feature();
+
+      feature.addValue(fields.get(0), getOutputGeometry(entity.getGeometry()));
+      feature.addValue(fields.get(1), this.layer.getName());
+      feature.addValue(fields.get(2), entity.getText());
+
+      if (readXData) {
+
+        List<ExtendedData> xDatas = entity.getExtendedData();
+        String xmlXData = "";
+
+        if (xDatas.isEmpty()) {
+          xmlXData = "<attributes/>";
+        } else {
+
+          xmlXData = "<attributes>";
+          for (ExtendedData xData : xDatas) {
+            xmlXData +=
+                "<attribute name = \""
+                    + xData.getName()
+                    + "\" type = \""
+                    + xData.getType()
+                    + "\">"
+                    + String.valueOf(xData.getValue())
+                    + "</attribute>";
+          }
+          xmlXData += "</attributes>";
+          feature.addValue(fields.get(3), xmlXData);
         }
       }
 
-    } catch (Exception e) {
-      throw new HopException("Error reading features" + this.dxfFileName, e);
+      return feature;
     }
-    return features;
   }
 }
@@ -0,0 +1,45 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import org.apache.hop.core.exception.HopException;
+
+/** Pull-based cursor over the features of a file, read one at a time. */
+public interface FeatureCursor extends AutoCloseable {
+
+  /**
+   * Reads the next feature
+   *
+   * @return the next feature or null when all features have been read
+   * @throws HopException
+   */
+  public Feature next() throws HopException;
+
+  /**
+   * Releases the files or connections held by the cursor
+   *
+   * @throws HopException
+   */
+  public void close() throws HopException;
+}
@@ -26,6 +26,7 @@ import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import java.util.List;
 import org.apache.hop.core.exception.HopException;
+import org.locationtech.jts.geom.Geometry;
 
 public interface FileReader {
 
@@ -35,7 +36,13 @@ public interface FileReader {
 
   public void setForceTo2DGeometry(boolean forceTo2DGeometry);
 
+  public void setSelectedFields(List<String> fieldNames);
+
+  public void setSpatialFilter(Geometry spatialFilter);
+
   public List<Field> getFields();
 
   public List<Feature> getFeatures() throws HopException;
+
+  public FeatureCursor getFeatureCursor() throws HopException;
 }
@@ -32,4 +32,41 @@ public interface FileWriter {
   public void setFields(List<Field> fields);
 
   public void writeFeatures(List<Feature> features) throws HopException;
+
+  /**
+   * Opens the output before writing the features by batches
+   *
+   * @throws HopException
+   */
+  public void open() throws HopException;
+
+  /**
+   * Writes a batch of features. {@link #open()} must have been called before
+   *
+   * @param features the features of the batch
+   * @throws HopException
+   */
+  public void writeBatch(List<Feature> features) throws HopException;
+
+  /**
+   * Terminates the output after the last batch and releases the files
+   *
+   * @throws HopException
+   */
+  public void close() throws HopException;
+
+  /**
+   * Releases the files and resources of an output that is not terminated, after an error or a
+   * stop, without writing the features kept in memory nor finalizing the files
+   *
+   * @throws HopException
+   */
+  public void abort() throws HopException;
+
+  /**
+   * Indicates if the batches are written as they come or kept in memory until {@link #close()}
+   *
+   * @return true if the features are not kept in memory
+   */
+  public boolean isStreaming();
 }
@@ -31,6 +31,7 @@ import com.atolcd.hop.gis.io.features.Field.FieldType;
 import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.apache.hop.core.exception.HopException;
 import org.locationtech.jts.geom.Geometry;
@@ -53,107 +54,109 @@ public class GPXReader extends AbstractFileReader {
         this.gpxFileName = checkFilename(fileName).getFile();
       }
 
-      this.fields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
-      this.fields.add(new Field("type", FieldType.STRING, null, null));
-      this.fields.add(new Field("name", FieldType.STRING, null, null));
-      this.fields.add(new Field("description", FieldType.STRING, null, null));
+      this.fields = probeFields();
 
     } catch (Exception e) {
       throw new HopException("Error initialize reader", e);
     }
   }
 
-  public List<Feature> getFeatures() throws HopException {
-    List<Feature> features = new ArrayList<Feature>();
+  // Champs fixes, sans lecture du fichier
+  protected List<Field> probeFields() {
 
-    try {
+    List<Field> gpxFields = new ArrayList<Field>();
+    gpxFields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
+    gpxFields.add(new Field("type", FieldType.STRING, null, null));
+    gpxFields.add(new Field("name", FieldType.STRING, null, null));
+    gpxFields.add(new Field("description", FieldType.STRING, null, null));
+    return gpxFields;
+  }
+
+  public FeatureCursor getFeatureCursor() throws HopException {
+    return new GPXFeatureCursor();
+  }
+
+  private class GPXFeatureCursor extends AbstractFeatureCursor {
+
+    private Iterator<WayPoint> wayPointIt;
+    private Iterator<Route> routeIt;
+    private Iterator<Track> trackIt;
+
+    public GPXFeatureCursor() throws HopException {
+
+      super(limit, preparedSpatialFilter);
 
-      com.atolcd.gis.gpx.type.Document gpxDocument =
-          new com.atolcd.gis.gpx.GpxReader().read(gpxFileName, this.charset.displayName());
+      try {
 
-      List<WayPoint> wayPoints = gpxDocument.getWayPoints();
-      List<Route> routes = gpxDocument.getRoutes();
-      List<Track> tracks = gpxDocument.getTracks();
+        com.atolcd.gis.gpx.type.Document gpxDocument =
+            new com.atolcd.gis.gpx.GpxReader().read(gpxFileName, charset.displayName());
 
-      int entitiesTotalNumber = wayPoints.size() + routes.size() + tracks.size();
+        this.wayPointIt = gpxDocument.getWayPoints().iterator();
+        this.routeIt = gpxDocument.getRoutes().iterator();
+        this.trackIt = gpxDocument.getTracks().iterator();
 
-      if (this.limit == 0 || this.limit > entitiesTotalNumber || this.limit < 0) {
-        this.limit = entitiesTotalNumber;
+      } catch (Exception e) {
+        throw new HopException("Error reading features" + gpxFileName, e);
       }
+    }
+
+    protected Feature readNext() {
 
-      int entityNumber = 0;
+      Feature feature = null;
 
       // WPT
-      for (WayPoint wayPoint : wayPoints) {
-        if (entityNumber < this.limit) {
-
-          Feature feature = new Feature();
-          if (this.forceTo2DGeometry) {
-            feature.addValue(
-                this.fields.get(0), GeometryUtils.get2DGeometry(wayPoint.getGeometry()));
-          } else {
-            feature.addValue(this.fields.get(0), wayPoint.getGeometry());
-          }
-          feature.addValue(this.fields.get(1), AbstractReaderWriter.GPX_TAG_WPT);
-          feature.addValue(this.fields.get(2), wayPoint.getName());
-          feature.addValue(this.fields.get(3), wayPoint.getDescription());
-
-          features.add(feature);
-          entityNumber++;
-        } else {
-          break;
-        }
+      if (this.wayPointIt.hasNext()) {
+
+        WayPoint wayPoint = this.wayPointIt.next();
+        feature =
+            getFeature(
+                wayPoint.getGeometry(),
+                AbstractReaderWriter.GPX_TAG_WPT,
+                wayPoint.getName(),
+                wayPoint.getDescription());
+
+        // RTE
+      } else if (this.routeIt.hasNext()) {
+
+        Route route = this.routeIt.next();
+        feature =
+            getFeature(
+                route.getGeometry(),
+                AbstractReaderWriter.GPX_TAG_RTE,
+                route.getName(),
+                route.getDescription());
+
+        // TRK
+      } else if (this.trackIt.hasNext()) {
+
+        Track track = this.trackIt.next();
+        Geometry geometry =
+            GeometryUtils.getNonEmptyGeometry(
+                4326, GeometryUtils.getMultiGeometry(track.getGeometry()));
+        feature =
+            getFeature(
+                geometry,
+                AbstractReaderWriter.GPX_TAG_TRK,
+                track.getName(),
+                track.getDescription());
       }
 
-      // RTE
-      for (Route route : routes) {
-        if (entityNumber < this.limit) {
-
-          Feature feature = new Feature();
-          if (this.forceTo2DGeometry) {
-            feature.addValue(this.fields.get(0), GeometryUtils.get2DGeometry(route.getGeometry()));
-          } else {
-            feature.addValue(this.fields.get(0), route.getGeometry());
-          }
-          feature.addValue(this.fields.get(1), AbstractReaderWriter.GPX_TAG_RTE);
-          feature.addValue(this.fields.get(2), route.getName());
-          feature.addValue(this.fields.get(3), route.getDescription());
-
-          features.add(feature);
-          entityNumber++;
-        } else {
-          break;
-        }
-      }
+      return feature;
+    }
 
-      // TRK
-      for (Track track : tracks) {
-        if (entityNumber < this.limit) {
-
-          Feature feature = new Feature();
-          Geometry geometry =
-              GeometryUtils.getNonEmptyGeometry(
-                  4326, GeometryUtils.getMultiGeometry(track.getGeometry()));
-          if (this.forceTo2DGeometry) {
-            feature.addValue(this.fields.get(0), GeometryUtils.get2DGeometry(geometry));
-          } else {
-            feature.addValue(this.fields.get(0), geometry);
-          }
-
-          feature.addValue(this.fields.get(1), AbstractReaderWriter.GPX_TAG_TRK);
-          feature.addValue(this.fields.get(2), track.getName());
-          feature.addValue(this.fields.get(3), track.getDescription());
-
-          features.add(feature);
-          entityNumber++;
-        } else {
-          break;
-        }
+    private Feature getFeature(Geometry geometry, String type, String name, String description) {
+
+      Feature feature = new Feature();
+      if (forceTo2DGeometry) {
+        feature.addValue(fields.get(0), GeometryUtils.get2DGeometry(geometry));
+      } else {
+        feature.addValue(fields.get(0), geometry);
       }
+      feature.addValue(fields.get(1), type);
+      feature.addValue(fields.get(2), name);
+      feature.addValue(fields.get(3), description);
 
-    } catch (Exception e) {
-      throw new HopException("Error reading features" + this.gpxFileName, e);
+      return feature;
     }
-    return features;
   }
 }
@@ -0,0 +1,91 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import com.atolcd.hop.gis.io.features.Field;
+import com.atolcd.hop.gis.io.features.Field.FieldType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.locationtech.jts.geom.Geometry;
+import org.wololo.jts2geojson.AbstractFeatureWriter;
+
+/**
+ * Fields of the features written as GeoJSON, resolved on the first feature : the geometry, the
+ * feature id and the properties, which are all the other fields.
+ */
+class GeoJSONFeatureFields {
+
+  private Field geometryField;
+  private Field idField;
+  private List<Field> propertyFields;
+
+  /**
+   * @param feature the first feature written
+   * @param fields the fields of the output
+   * @param geometryFieldName the name of the geometry field
+   * @param featureIdField the name of the feature id field, null for no feature id
+   */
+  GeoJSONFeatureFields(
+      Feature feature, List<Field> fields, String geometryFieldName, String featureIdField) {
+
+    this.geometryField = feature.getField(geometryFieldName);
+
+    if (featureIdField != null) {
+      this.idField = feature.getField(featureIdField);
+    }
+
+    this.propertyFields = new ArrayList<Field>();
+    for (Field field : fields) {
+      if (!field.getType().equals(FieldType.GEOMETRY)
+          && !field.getName().equalsIgnoreCase(featureIdField)) {
+        this.propertyFields.add(field);
+      }
+    }
+  }
+
+  Geometry getGeometry(Feature feature) {
+    return (Geometry) feature.getValue(this.geometryField);
+  }
+
+  // Géométrie et attributs écrits directement
+  void write(AbstractFeatureWriter writer, Feature feature) throws IOException {
+
+    writer.writeStartFeature(getGeometry(feature));
+
+    // id de feature
+    if (this.idField != null) {
+      String id = (String) feature.getValue(this.idField);
+      if (id != null) {
+        writer.writeProperty("id", id);
+      }
+    }
+
+    for (Field field : this.propertyFields) {
+      writer.writeProperty(field.getName(), feature.getValue(field));
+    }
+
+    writer.writeEndFeature();
+  }
+}
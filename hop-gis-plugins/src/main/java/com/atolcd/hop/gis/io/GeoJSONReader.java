@@ -25,24 +25,26 @@ package com.atolcd.hop.gis.io;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.hop.core.exception.HopException;
 import org.locationtech.jts.geom.Geometry;
 import org.wololo.geojson.Crs;
-import org.wololo.geojson.FeatureCollection;
-import org.wololo.geojson.GeoJSON;
-import org.wololo.geojson.GeoJSONFactory;
+import org.wololo.geojson.FeatureCollectionReader;
 
 public class GeoJSONReader extends AbstractFileReader {
 
+  // Nombre de features lues pour déterminer les champs
+  private static final int SCHEMA_SAMPLE_SIZE = 100;
+
   private String geoJsonFileName;
   private boolean geoJsonFileExist;
-  private GeoJSON json;
 
   public GeoJSONReader(String fileName, String geometryFieldName, String charsetName)
       throws HopException {
@@ -57,109 +59,242 @@ public class GeoJSONReader extends AbstractFileReader {
       this.geoJsonFileName = checkFilename(fileName).getFile();
     }
 
-    this.fields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
-    File file = new File(this.geoJsonFileName);
-    this.json = GeoJSONFactory.create(file);
+    // Schéma à partir d'un échantillon des features
+    try {
+      initFields(new String[] {this.geoJsonFileName}, geometryFieldName);
+    } catch (HopException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HopException("Error initialize reader", e);
+    }
+  }
 
-    if (this.json instanceof FeatureCollection) {
+  protected List<Field> probeFields() throws HopException {
 
-      org.wololo.geojson.Feature geoJsonfeature = ((FeatureCollection) json).getFeatures()[0];
-      for (Map.Entry<String, Object> entry : geoJsonfeature.getProperties().entrySet()) {
+    List<Field> jsonFields = new ArrayList<Field>();
+    jsonFields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
 
-        Field field = null;
-        String fieldName = entry.getKey();
-        Object value = entry.getValue();
+    // Types des propriétés des premières features
+    Map<String, FieldType> propertyTypes = new LinkedHashMap<String, FieldType>();
+    FeatureCollectionReader reader = null;
 
-        if (value instanceof String) {
+    try {
 
-          field = new Field(fieldName, FieldType.STRING, null, null);
+      reader = new FeatureCollectionReader(new File(this.geoJsonFileName));
 
-        } else if (value instanceof Integer) {
+      int sampleCount = 0;
+      while (sampleCount < SCHEMA_SAMPLE_SIZE) {
 
-          field = new Field(fieldName, FieldType.LONG, null, null);
+        org.wololo.geojson.Feature geoJsonfeature = reader.next();
+        if (geoJsonfeature == null) {
+          break;
+        }
 
-        } else if (value instanceof Boolean) {
+        for (Map.Entry<String, Object> entry : geoJsonfeature.getProperties().entrySet()) {
+          propertyTypes.put(
+              entry.getKey(),
+              getMergedType(propertyTypes.get(entry.getKey()), getType(entry.getValue())));
+        }
 
-          field = new Field(fieldName, FieldType.BOOLEAN, null, null);
+        sampleCount++;
+      }
 
-        } else if (value instanceof Double) {
+    } catch (IOException e) {
+      throw new HopException("Error initialize reader : only FeatureCollection is supported", e);
 
-          field = new Field(fieldName, FieldType.DOUBLE, null, null);
+    } finally {
+      closeReader(reader);
+    }
 
-        } else if (value instanceof Date) {
+    for (Map.Entry<String, FieldType> entry : propertyTypes.entrySet()) {
 
-          field = new Field(fieldName, FieldType.DATE, null, null);
-        }
+      // Propriété toujours nulle dans l'échantillon
+      FieldType type = entry.getValue() != null ? entry.getValue() : FieldType.STRING;
+      jsonFields.add(new Field(entry.getKey(), type, null, null));
+    }
 
-        this.fields.add(field);
-      }
+    return jsonFields;
+  }
+
+  public FeatureCursor getFeatureCursor() throws HopException {
+    return new GeoJSONFeatureCursor();
+  }
+
+  // Type de champ d'une valeur de propriété, null si valeur nulle
+  static FieldType getType(Object value) {
+
+    if (value == null) {
+      return null;
+
+    } else if (value instanceof Integer || value instanceof Long || value instanceof BigInteger) {
+      return FieldType.LONG;
+
+    } else if (value instanceof Double
+        || value instanceof Float
+        || value instanceof BigDecimal) {
+      return FieldType.DOUBLE;
+
+    } else if (value instanceof Boolean) {
+      return FieldType.BOOLEAN;
 
     } else {
+      return FieldType.STRING;
+    }
+  }
+
+  // Type commun de deux valeurs d'une même propriété
+  static FieldType getMergedType(FieldType type, FieldType otherType) {
+
+    if (type == null || type.equals(otherType)) {
+      return otherType != null ? otherType : type;
+
+    } else if (otherType == null) {
+      return type;
 
-      throw new HopException("Error initialize reader : only FeatureCollection is supported");
+    } else if ((type.equals(FieldType.LONG) || type.equals(FieldType.DOUBLE))
+        && (otherType.equals(FieldType.LONG) || otherType.equals(FieldType.DOUBLE))) {
+      return FieldType.DOUBLE;
+
+    } else {
+      return FieldType.STRING;
     }
   }
 
-  public List<Feature> getFeatures() {
+  // Valeur de propriété dans le type du champ
+  static Object getValue(Field field, Object value) {
 
-    List<Feature> features = new ArrayList<Feature>();
-    org.wololo.jts2geojson.GeoJSONReader geoJSONReader = new org.wololo.jts2geojson.GeoJSONReader();
-    FeatureCollection featureCollection = (FeatureCollection) json;
+    if (value == null) {
+      return null;
 
-    Crs crs = featureCollection.getCrs();
-    int srid = 0;
+    } else if (field.getType().equals(FieldType.LONG) && value instanceof Number) {
+      return ((Number) value).longValue();
 
-    if (crs != null) {
+    } else if (field.getType().equals(FieldType.DOUBLE) && value instanceof Number) {
+      return ((Number) value).doubleValue();
 
-      if (crs.getType().equalsIgnoreCase("name") && crs.getProperties().containsKey("name")) {
+    } else if (field.getType().equals(FieldType.STRING) && !(value instanceof String)) {
+      return String.valueOf(value);
 
-        try {
+    } else {
+      return value;
+    }
+  }
 
-          String csrName = (String) crs.getProperties().get("name");
-          int sridIndex = csrName.lastIndexOf(':');
-          srid = Integer.valueOf(csrName.substring(sridIndex + 1, csrName.length()));
+  private void closeReader(FeatureCollectionReader reader) throws HopException {
 
-        } catch (Exception e) {
-          srid = 0;
-        }
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw new HopException("Error closing " + geoJsonFileName, e);
       }
     }
+  }
 
-    // Traitement des features
-    org.wololo.geojson.Feature geoJsonfeatures[] = featureCollection.getFeatures();
-    if (this.limit == 0 || this.limit > geoJsonfeatures.length || this.limit < 0) {
-      this.limit = geoJsonfeatures.length;
-    }
+  private class GeoJSONFeatureCursor extends AbstractFeatureCursor {
 
-    for (int i = 0; i < this.limit; i++) {
+    private org.wololo.jts2geojson.GeoJSONReader geoJSONReader;
+    private FeatureCollectionReader reader;
+    private int srid;
+    private List<Field> readFields;
 
-      org.wololo.geojson.Feature geoJsonfeature = geoJsonfeatures[i];
-      Feature feature = new Feature();
-      for (Field field : fields) {
+    public GeoJSONFeatureCursor() throws HopException {
 
-        if (field.getType().equals(FieldType.GEOMETRY)) {
+      super(limit, preparedSpatialFilter);
 
-          Geometry geometry = geoJSONReader.read(geoJsonfeature.getGeometry());
+      // Seules les propriétés des champs sélectionnés sont lues
+      this.readFields = getFields();
 
-          if (this.forceTo2DGeometry) {
-            geometry = GeometryUtils.get2DGeometry(geometry);
-          }
+      this.geoJSONReader = new org.wololo.jts2geojson.GeoJSONReader();
+      this.srid = 0;
+
+      try {
 
-          if (this.forceToMultiGeometry) {
-            geometry = GeometryUtils.getMultiGeometry(geometry);
+        this.reader = new FeatureCollectionReader(new File(geoJsonFileName));
+
+        List<String> propertyNames = new ArrayList<String>();
+        for (Field field : this.readFields) {
+          if (!field.getType().equals(FieldType.GEOMETRY)) {
+            propertyNames.add(field.getName());
           }
+        }
+        this.reader.setPropertyNames(propertyNames);
+
+        // Système de coordonnées connu avant la première feature : s'il suit les
+        // features, première lecture du document sans décodage des features
+        Crs crs = this.reader.getCrs();
+        if (crs == null) {
+          crs = FeatureCollectionReader.readCrs(new File(geoJsonFileName));
+        }
+        this.srid = getSrid(crs);
+
+      } catch (IOException e) {
+        close();
+        throw new HopException("Error reading features" + geoJsonFileName, e);
+      }
+    }
+
+    protected Feature readNext() throws HopException {
 
-          geometry.setSRID(srid);
+      org.wololo.geojson.Feature geoJsonfeature;
+      try {
+        geoJsonfeature = this.reader.next();
+      } catch (IOException e) {
+        throw new HopException("Error reading features" + geoJsonFileName, e);
+      }
+
+      if (geoJsonfeature == null) {
+        return null;
+      }
+
+      Feature feature = new Feature();
+      for (Field field : this.readFields) {
+
+        if (field.getType().equals(FieldType.GEOMETRY)) {
+
+          Geometry geometry = null;
+          if (geoJsonfeature.getGeometry() != null) {
+            geometry = getOutputGeometry(this.geoJSONReader.read(geoJsonfeature.getGeometry()));
+            geometry.setSRID(this.srid);
+          }
           feature.addValue(field, geometry);
 
         } else {
-          feature.addValue(field, geoJsonfeature.getProperties().get(field.getName()));
+          feature.addValue(
+              field, getValue(field, geoJsonfeature.getProperties().get(field.getName())));
         }
       }
 
-      features.add(feature);
+      return feature;
     }
 
-    return features;
+    // Srid d'un crs de type name, 0 si absent ou non reconnu
+    private int getSrid(Crs crs) {
+
+      if (crs != null
+          && "name".equalsIgnoreCase(crs.getType())
+          && crs.getProperties() != null
+          && crs.getProperties().containsKey("name")) {
+
+        try {
+
+          String csrName = (String) crs.getProperties().get("name");
+          int sridIndex = csrName.lastIndexOf(':');
+          return Integer.valueOf(csrName.substring(sridIndex + 1, csrName.length()));
+
+        } catch (Exception e) {
+          return 0;
+        }
+      }
+
+      return 0;
+    }
+
+    public void close() throws HopException {
+
+      FeatureCollectionReader reader = this.reader;
+      this.reader = null;
+      closeReader(reader);
+    }
   }
 }
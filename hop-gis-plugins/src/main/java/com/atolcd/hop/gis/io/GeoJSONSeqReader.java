@@ -0,0 +1,315 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import com.atolcd.hop.gis.io.features.Field;
+import com.atolcd.hop.gis.io.features.Field.FieldType;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import org.apache.hop.core.exception.HopException;
+import org.locationtech.jts.geom.Geometry;
+import org.wololo.geojson.FeatureSequenceReader;
+
+/** Reader of GeoJSON text sequences and newline-delimited GeoJSON : one feature per line. */
+public class GeoJSONSeqReader extends AbstractFileReader {
+
+  // Nombre de features lues pour déterminer les champs
+  private static final int SCHEMA_SAMPLE_SIZE = 100;
+
+  // Taille en octets des blocs de lignes décodés par tâche en lecture parallèle
+  private static final long PARALLEL_CHUNK_SIZE = 4L * 1024 * 1024;
+
+  private String geoJsonSeqFileName;
+  private int parallelThreads;
+  private boolean parallelKeepOrder;
+
+  public GeoJSONSeqReader(String fileName, String geometryFieldName, String charsetName)
+      throws HopException {
+
+    super(null, geometryFieldName, charsetName);
+
+    if (!new File(checkFilename(fileName).getFile()).exists()) {
+      throw new HopException("Missing " + fileName + " file");
+    } else {
+      this.geoJsonSeqFileName = checkFilename(fileName).getFile();
+    }
+
+    this.parallelThreads = 1;
+    this.parallelKeepOrder = true;
+
+    // Schéma à partir d'un échantillon des features
+    try {
+      initFields(new String[] {this.geoJsonSeqFileName}, geometryFieldName);
+    } catch (HopException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HopException("Error initialize reader", e);
+    }
+  }
+
+  protected List<Field> probeFields() throws HopException {
+
+    List<Field> jsonFields = new ArrayList<Field>();
+    jsonFields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
+
+    // Types des propriétés des premières features
+    Map<String, FieldType> propertyTypes = new LinkedHashMap<String, FieldType>();
+    FeatureSequenceReader reader = null;
+
+    try {
+
+      reader = new FeatureSequenceReader(new File(this.geoJsonSeqFileName));
+
+      int sampleCount = 0;
+      while (sampleCount < SCHEMA_SAMPLE_SIZE) {
+
+        org.wololo.geojson.Feature geoJsonfeature = reader.next();
+        if (geoJsonfeature == null) {
+          break;
+        }
+
+        for (Map.Entry<String, Object> entry : geoJsonfeature.getProperties().entrySet()) {
+          propertyTypes.put(
+              entry.getKey(),
+              GeoJSONReader.getMergedType(
+                  propertyTypes.get(entry.getKey()), GeoJSONReader.getType(entry.getValue())));
+        }
+
+        sampleCount++;
+      }
+
+    } catch (IOException e) {
+      throw new HopException("Error initialize reader : one feature per line is expected", e);
+
+    } finally {
+      closeReader(reader);
+    }
+
+    for (Map.Entry<String, FieldType> entry : propertyTypes.entrySet()) {
+
+      // Propriété toujours nulle dans l'échantillon
+      FieldType type = entry.getValue() != null ? entry.getValue() : FieldType.STRING;
+      jsonFields.add(new Field(entry.getKey(), type, null, null));
+    }
+
+    return jsonFields;
+  }
+
+  /**
+   * Sets the number of threads decoding the lines. The file is split into byte ranges decoded
+   * independently.
+   *
+   * @param parallelThreads the number of threads, 1 to read the lines sequentially
+   */
+  public void setParallelThreads(int parallelThreads) {
+    this.parallelThreads = Math.max(1, parallelThreads);
+  }
+
+  /**
+   * Sets whether the features are returned in the order of the file in parallel reading
+   *
+   * @param parallelKeepOrder true to keep the order of the lines
+   */
+  public void setParallelKeepOrder(boolean parallelKeepOrder) {
+    this.parallelKeepOrder = parallelKeepOrder;
+  }
+
+  public FeatureCursor getFeatureCursor() throws HopException {
+
+    if (parallelThreads > 1) {
+      return new ParallelGeoJSONSeqFeatureCursor();
+    }
+
+    return new GeoJSONSeqFeatureCursor();
+  }
+
+  // Lecteur d'un intervalle d'octets limité aux propriétés des champs sélectionnés
+  private FeatureSequenceReader openReader(List<Field> readFields, long start, long end)
+      throws IOException {
+
+    FeatureSequenceReader reader =
+        new FeatureSequenceReader(new File(geoJsonSeqFileName), start, end);
+
+    List<String> propertyNames = new ArrayList<String>();
+    for (Field field : readFields) {
+      if (!field.getType().equals(FieldType.GEOMETRY)) {
+        propertyNames.add(field.getName());
+      }
+    }
+    reader.setPropertyNames(propertyNames);
+
+    return reader;
+  }
+
+  // Feature à partir d'une feature GeoJSON
+  private Feature getFeature(
+      org.wololo.jts2geojson.GeoJSONReader geoJSONReader,
+      List<Field> readFields,
+      org.wololo.geojson.Feature geoJsonfeature) {
+
+    Feature feature = new Feature();
+    for (Field field : readFields) {
+
+      if (field.getType().equals(FieldType.GEOMETRY)) {
+
+        Geometry geometry = null;
+        if (geoJsonfeature.getGeometry() != null) {
+          geometry = getOutputGeometry(geoJSONReader.read(geoJsonfeature.getGeometry()));
+          geometry.setSRID(0);
+        }
+        feature.addValue(field, geometry);
+
+      } else {
+        feature.addValue(
+            field,
+            GeoJSONReader.getValue(field, geoJsonfeature.getProperties().get(field.getName())));
+      }
+    }
+
+    return feature;
+  }
+
+  private void closeReader(FeatureSequenceReader reader) throws HopException {
+
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw new HopException("Error closing " + geoJsonSeqFileName, e);
+      }
+    }
+  }
+
+  private class GeoJSONSeqFeatureCursor extends AbstractFeatureCursor {
+
+    private org.wololo.jts2geojson.GeoJSONReader geoJSONReader;
+    private FeatureSequenceReader reader;
+    private List<Field> readFields;
+
+    public GeoJSONSeqFeatureCursor() throws HopException {
+
+      super(limit, preparedSpatialFilter);
+
+      // Seules les propriétés des champs sélectionnés sont lues
+      this.readFields = getFields();
+      this.geoJSONReader = new org.wololo.jts2geojson.GeoJSONReader();
+
+      try {
+        this.reader = openReader(this.readFields, 0, Long.MAX_VALUE);
+      } catch (IOException e) {
+        close();
+        throw new HopException("Error reading features" + geoJsonSeqFileName, e);
+      }
+    }
+
+    protected Feature readNext() throws HopException {
+
+      org.wololo.geojson.Feature geoJsonfeature;
+      try {
+        geoJsonfeature = this.reader.next();
+      } catch (IOException e) {
+        throw new HopException("Error reading features" + geoJsonSeqFileName, e);
+      }
+
+      if (geoJsonfeature == null) {
+        return null;
+      }
+
+      return getFeature(this.geoJSONReader, this.readFields, geoJsonfeature);
+    }
+
+    public void close() throws HopException {
+
+      FeatureSequenceReader reader = this.reader;
+      this.reader = null;
+      closeReader(reader);
+    }
+  }
+
+  /** Cursor decoding byte ranges of the file on several threads, each with its own reader. */
+  private class ParallelGeoJSONSeqFeatureCursor extends AbstractParallelFeatureCursor {
+
+    private List<Field> readFields;
+
+    public ParallelGeoJSONSeqFeatureCursor() {
+
+      super(
+          limit,
+          preparedSpatialFilter,
+          geoJsonSeqFileName,
+          parallelThreads,
+          parallelKeepOrder,
+          0,
+          new File(geoJsonSeqFileName).length(),
+          PARALLEL_CHUNK_SIZE);
+
+      this.readFields = getFields();
+    }
+
+    protected Callable<List<Feature>> createChunkTask(long start, long end) {
+      return new ChunkReader(this.readFields, start, end);
+    }
+  }
+
+  // Décodage des lignes commençant dans un intervalle d'octets
+  private class ChunkReader implements Callable<List<Feature>> {
+
+    private List<Field> readFields;
+    private long start;
+    private long end;
+
+    private ChunkReader(List<Field> readFields, long start, long end) {
+      this.readFields = readFields;
+      this.start = start;
+      this.end = end;
+    }
+
+    public List<Feature> call() throws Exception {
+
+      List<Feature> features = new ArrayList<Feature>();
+      org.wololo.jts2geojson.GeoJSONReader geoJSONReader =
+          new org.wololo.jts2geojson.GeoJSONReader();
+      FeatureSequenceReader reader = openReader(this.readFields, this.start, this.end);
+
+      try {
+
+        org.wololo.geojson.Feature geoJsonfeature = reader.next();
+        while (geoJsonfeature != null) {
+          features.add(getFeature(geoJSONReader, this.readFields, geoJsonfeature));
+          geoJsonfeature = reader.next();
+        }
+
+      } finally {
+        reader.close();
+      }
+
+      return features;
+    }
+  }
+}
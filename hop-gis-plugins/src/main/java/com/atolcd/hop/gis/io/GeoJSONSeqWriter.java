@@ -0,0 +1,150 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import org.apache.hop.core.exception.HopException;
+import org.wololo.jts2geojson.FeatureSequenceWriter;
+
+/** Writer of newline-delimited GeoJSON : one feature per line, without crs. */
+public class GeoJSONSeqWriter extends AbstractFileWriter {
+
+  private String geoJsonSeqFileName;
+
+  private String featureIdField;
+  private int coordinatePrecision;
+
+  private FeatureSequenceWriter sequenceWriter;
+  private GeoJSONFeatureFields featureFields;
+  private long featureCount;
+
+  public GeoJSONSeqWriter(String fileName, String geometryFieldName, String charsetName)
+      throws HopException {
+
+    super(geometryFieldName, charsetName);
+    this.geoJsonSeqFileName = checkFilename(fileName).getFile();
+    this.featureIdField = null;
+    this.coordinatePrecision = -1;
+  }
+
+  public String getFeatureIdField() {
+    return featureIdField;
+  }
+
+  public void setFeatureIdField(String featureIdField) {
+    this.featureIdField = featureIdField;
+  }
+
+  public int getCoordinatePrecision() {
+    return coordinatePrecision;
+  }
+
+  /**
+   * Nombre de décimales des coordonnées
+   *
+   * @param coordinatePrecision nombre de décimales, négatif pour la précision complète
+   */
+  public void setCoordinatePrecision(int coordinatePrecision) {
+    this.coordinatePrecision = coordinatePrecision;
+  }
+
+  public boolean isStreaming() {
+    return true;
+  }
+
+  public void writeFeatures(List<Feature> features) throws HopException {
+    open();
+    writeBatch(features);
+    close();
+  }
+
+  public void open() throws HopException {
+
+    this.featureCount = 0;
+    this.featureFields = null;
+
+    try {
+
+      this.sequenceWriter =
+          new FeatureSequenceWriter(
+              new OutputStreamWriter(
+                  Files.newOutputStream(Paths.get(this.geoJsonSeqFileName)), this.charset),
+              this.coordinatePrecision,
+              true);
+
+    } catch (IOException e) {
+      throw new HopException("Error writing features to " + this.geoJsonSeqFileName, e);
+    }
+  }
+
+  public void writeBatch(List<Feature> features) throws HopException {
+
+    try {
+
+      // Boucle sur chaque feature
+      for (Feature feature : features) {
+
+        // Récupération des champs utilisés
+        if (this.featureCount == 0) {
+          featureFields =
+              new GeoJSONFeatureFields(
+                  feature, this.fields, this.geometryFieldName, featureIdField);
+        }
+
+        // Une feature par ligne
+        featureFields.write(sequenceWriter, feature);
+        this.featureCount++;
+      }
+
+    } catch (IOException e) {
+      throw new HopException("Error writing features to " + this.geoJsonSeqFileName, e);
+    }
+  }
+
+  public void close() throws HopException {
+
+    try {
+      sequenceWriter.close();
+    } catch (IOException e) {
+      throw new HopException("Error writing features to " + this.geoJsonSeqFileName, e);
+    }
+  }
+
+  public void abort() throws HopException {
+
+    try {
+      if (sequenceWriter != null) {
+        sequenceWriter.abort();
+      }
+    } catch (IOException e) {
+      throw new HopException("Error closing " + this.geoJsonSeqFileName, e);
+    } finally {
+      sequenceWriter = null;
+    }
+  }
+}
@@ -23,33 +23,33 @@ package com.atolcd.hop.gis.io;
  */
 
 import com.atolcd.hop.gis.io.features.Feature;
-import com.atolcd.hop.gis.io.features.Field;
-import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import org.apache.hop.core.exception.HopException;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.wololo.geojson.Crs;
-import org.wololo.geojson.GeoJSON;
+import org.wololo.jts2geojson.FeatureCollectionWriter;
 
 public class GeoJSONWriter extends AbstractFileWriter {
 
-  private static GeometryFactory geometryFactory = new GeometryFactory();
   private String geoJsonFileName;
 
   private Writer writer;
   private boolean isServletOutput;
 
   private String featureIdField;
+  private int coordinatePrecision;
+
+  private FeatureCollectionWriter collectionWriter;
+  private GeoJSONFeatureFields featureFields;
+  private Integer srid;
+  private long featureCount;
+  private List<Feature> pendingFeatures;
+  private boolean started;
 
   public GeoJSONWriter(String fileName, String geometryFieldName, String charsetName)
       throws HopException {
@@ -59,6 +59,7 @@ public class GeoJSONWriter extends AbstractFileWriter {
     this.isServletOutput = false;
     this.writer = null;
     this.featureIdField = null;
+    this.coordinatePrecision = -1;
   }
 
   public GeoJSONWriter(Writer writer, String geometryFieldName, String charsetName)
@@ -69,6 +70,7 @@ public class GeoJSONWriter extends AbstractFileWriter {
     this.isServletOutput = true;
     this.writer = writer;
     this.featureIdField = null;
+    this.coordinatePrecision = -1;
   }
 
   public String getFeatureIdField() {
@@ -79,116 +81,162 @@ public class GeoJSONWriter extends AbstractFileWriter {
     this.featureIdField = featureIdField;
   }
 
-  @SuppressWarnings("unchecked")
-  public void writeFeatures(List<Feature> features) throws HopException {
+  public int getCoordinatePrecision() {
+    return coordinatePrecision;
+  }
 
-    // Récupération des champs utilisés
-    Field geometryField = null;
-    Field idField = null;
+  /**
+   * Nombre de décimales des coordonnées
+   *
+   * @param coordinatePrecision nombre de décimales, négatif pour la précision complète
+   */
+  public void setCoordinatePrecision(int coordinatePrecision) {
+    this.coordinatePrecision = coordinatePrecision;
+  }
 
-    org.wololo.jts2geojson.GeoJSONWriter geoJSONWriter = new org.wololo.jts2geojson.GeoJSONWriter();
-    List<org.wololo.geojson.Feature> geoJsonfeatures = new ArrayList<org.wololo.geojson.Feature>();
+  public boolean isStreaming() {
+    return true;
+  }
 
-    // Boucle sur chaque feature
-    Geometry geometries[] = new Geometry[features.size()];
-    int i = 0;
-    boolean first = true;
-    for (Feature feature : features) {
+  public void writeFeatures(List<Feature> features) throws HopException {
+    open();
+    writeBatch(features);
+    close();
+  }
 
-      if (first) {
+  public void open() throws HopException {
 
-        geometryField = feature.getField(this.geometryFieldName);
+    this.srid = null;
+    this.featureCount = 0;
+    this.featureFields = null;
+    this.pendingFeatures = new ArrayList<Feature>();
+    this.started = false;
 
-        if (featureIdField != null) {
-          idField = feature.getField(this.featureIdField);
-        }
+    try {
 
-        first = false;
+      if (!isServletOutput) {
+        this.writer =
+            new OutputStreamWriter(
+                Files.newOutputStream(Paths.get(this.geoJsonFileName)), this.charset);
       }
 
-      // Récupération de la géométrie
-      Geometry geometry = (Geometry) feature.getValue(geometryField);
-      geometries[i] = geometry;
+      this.collectionWriter =
+          new FeatureCollectionWriter(this.writer, this.coordinatePrecision, !isServletOutput);
+
+    } catch (IOException e) {
+      throw new HopException("Error writing features to " + getOutputName(), e);
+    }
+  }
+
+  public void writeBatch(List<Feature> features) throws HopException {
 
-      // Récupération des attribust
-      Map<String, Object> properties = new HashMap<String, Object>();
+    try {
 
-      // id de feature
-      if (featureIdField != null) {
-        String id = (String) feature.getValue(idField);
-        if (id != null) {
-          properties.put("id", id);
+      // Boucle sur chaque feature
+      for (Feature feature : features) {
+
+        // Récupération des champs utilisés
+        if (this.featureCount == 0) {
+          featureFields =
+              new GeoJSONFeatureFields(
+                  feature, this.fields, this.geometryFieldName, featureIdField);
         }
-      }
 
-      Iterator<Field> fieldIt = this.fields.iterator();
-      while (fieldIt.hasNext()) {
+        // Récupération de la géométrie
+        Geometry geometry = featureFields.getGeometry(feature);
+
+        // Vérification de la présence de plusieurs srid
+        if (geometry != null) {
+          if (srid == null) {
+            srid = geometry.getSRID();
+          } else if (srid != geometry.getSRID()) {
+            throw new HopException(
+                "Error writing features to "
+                    + getOutputName()
+                    + " : Mixed SRID are not supported ["
+                    + Math.min(srid, geometry.getSRID())
+                    + ", "
+                    + Math.max(srid, geometry.getSRID())
+                    + "]");
+          }
+        }
 
-        Field field = fieldIt.next();
-        if (!field.getType().equals(FieldType.GEOMETRY)) {
+        this.featureCount++;
 
-          if (!field.getName().equalsIgnoreCase(featureIdField)) {
-            properties.put(field.getName(), feature.getValue(field));
+        // Début de la collection à la première géométrie, le crs précédant
+        // les features : features sans géométrie conservées jusque-là
+        if (!started) {
+          pendingFeatures.add(feature);
+          if (srid != null) {
+            writeStart();
           }
+        } else {
+          featureFields.write(collectionWriter, feature);
         }
       }
 
-      // Ajout à la collection
-      geoJsonfeatures.add(
-          new org.wololo.geojson.Feature(geoJSONWriter.write(geometry), properties));
-
-      i++;
+    } catch (IOException e) {
+      throw new HopException("Error writing features to " + getOutputName(), e);
     }
+  }
 
-    // Vérification de la présence de" plusieurs srid
-    HashMap<String, Object> geometryCollectionInfos =
-        GeometryUtils.getGeometryCollectionInfos(
-            geometryFactory.createGeometryCollection(geometries));
-    List<Integer> srids = (List<Integer>) geometryCollectionInfos.get("SRIDS");
-    Crs crs = null;
-
-    if (srids.size() > 1) {
-      throw new HopException(
-          "Error writing features to "
-              + this.geoJsonFileName
-              + " : Mixed SRID are not supported "
-              + srids.toString());
-    } else {
+  public void close() throws HopException {
 
-      if (srids != null && !(srids.get(0) != null) && !srids.get(0).equals(0)) {
+    try {
 
-        HashMap<String, Object> crsProperties = new HashMap<String, Object>();
-        crsProperties.put("name", "urn:ogc:def:crs:EPSG::" + srids.get(0));
-        crs = new Crs("name", crsProperties);
+      // Servlet : pas de sortie en l'absence de features
+      if (!started && (!isServletOutput || this.featureCount > 0)) {
+        writeStart();
       }
-    }
-
-    GeoJSON json = geoJSONWriter.write(geoJsonfeatures, crs);
-    if (isServletOutput) {
 
-      try {
-
-        if (geoJsonfeatures.size() > 0) {
-          writer.write(json.toString());
-        }
+      if (started) {
+        collectionWriter.writeEnd();
+      }
 
-      } catch (IOException e) {
-        throw new HopException("Error writing features to servlet", e);
+      if (isServletOutput) {
+        collectionWriter.flush();
+        writer.flush();
+      } else {
+        collectionWriter.close();
       }
 
-    } else {
+    } catch (IOException e) {
+      throw new HopException("Error writing features to " + getOutputName(), e);
+    }
+  }
 
-      try {
+  public void abort() throws HopException {
 
-        PrintWriter printWriter = new PrintWriter(this.geoJsonFileName, this.charset.name());
-        printWriter.print(json);
-        printWriter.close();
+    this.pendingFeatures = null;
 
-      } catch (FileNotFoundException e) {
-        throw new HopException("Error writing features to " + this.geoJsonFileName, e);
-      } catch (IOException e) {
-        throw new HopException("Error writing features to " + this.geoJsonFileName, e);
+    try {
+      if (collectionWriter != null) {
+        collectionWriter.abort();
       }
+    } catch (IOException e) {
+      throw new HopException("Error closing " + getOutputName(), e);
+    } finally {
+      collectionWriter = null;
     }
   }
+
+  // Début de la collection avec le crs du srid unique puis features en attente
+  private void writeStart() throws IOException {
+
+    if (srid != null && srid != 0) {
+      collectionWriter.writeStart("urn:ogc:def:crs:EPSG::" + srid);
+    } else {
+      collectionWriter.writeStart(null);
+    }
+    started = true;
+
+    for (Feature feature : pendingFeatures) {
+      featureFields.write(collectionWriter, feature);
+    }
+    pendingFeatures.clear();
+  }
+
+  private String getOutputName() {
+    return isServletOutput ? "servlet" : this.geoJsonFileName;
+  }
 }
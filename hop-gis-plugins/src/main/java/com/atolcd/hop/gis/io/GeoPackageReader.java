@@ -25,19 +25,18 @@ package com.atolcd.hop.gis.io;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
+import com.j256.ormlite.dao.CloseableIterator;
 import java.io.File;
-import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageManager;
 import mil.nga.geopackage.contents.Contents;
 import mil.nga.geopackage.contents.ContentsDao;
 import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.extension.rtree.RTreeIndexExtension;
 import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.features.user.FeatureTable;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
@@ -65,9 +64,6 @@ public class GeoPackageReader extends AbstractFileReader {
   private String gpkgFileName;
   private boolean gpkgFileExist;
 
-  @SuppressWarnings("rawtypes")
-  private HashMap<String, UserTable> gpkgTables;
-
   private boolean gpkgContents;
 
   @SuppressWarnings("rawtypes")
@@ -94,14 +90,40 @@ public class GeoPackageReader extends AbstractFileReader {
     } else {
       this.layerName = tableName;
     }
-    this.gpkgTables = new HashMap<String, UserTable>();
-    this.gpkgContents = false;
+    this.gpkgContents =
+        this.layerName.equalsIgnoreCase(GeoPackageReader.GPKG_CONTENTS_TABLE_NAME);
     this.geometryFieldName = geometryFieldName;
 
+    // Schéma de la seule table lue
+    try {
+      initFields(new String[] {this.gpkgFileName}, this.layerName, geometryFieldName);
+    } catch (HopException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HopException("Error initialize reader", e);
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  protected List<Field> probeFields() throws HopException {
+
+    List<Field> gpkgFields = new ArrayList<Field>();
     GeoPackage geoPackage = GeoPackageManager.open(new File(this.gpkgFileName));
 
+    try {
+      probeFields(geoPackage, gpkgFields);
+    } finally {
+      geoPackage.close();
+    }
+
+    return gpkgFields;
+  }
+
+  @SuppressWarnings("rawtypes")
+  private void probeFields(GeoPackage geoPackage, List<Field> gpkgFields) throws HopException {
+
     // Si table gpk_contents
-    if (this.layerName.equalsIgnoreCase(GeoPackageReader.GPKG_CONTENTS_TABLE_NAME)) {
+    if (this.gpkgContents) {
 
       // Liste les tables de type
       // - features
@@ -109,41 +131,30 @@ public class GeoPackageReader extends AbstractFileReader {
       // - tiles
       // - autres si extensions
 
-      this.fields.add(new Field("table_name", FieldType.STRING, null, null));
-      this.fields.add(new Field("data_type", FieldType.STRING, null, null));
-      this.fields.add(new Field("identifier", FieldType.STRING, null, null));
-      this.fields.add(new Field("description", FieldType.STRING, null, null));
-      this.fields.add(new Field("last_change", FieldType.DATE, null, null));
-      this.fields.add(new Field("min_x", FieldType.DOUBLE, null, null));
-      this.fields.add(new Field("min_y", FieldType.DOUBLE, null, null));
-      this.fields.add(new Field("max_x", FieldType.DOUBLE, null, null));
-      this.fields.add(new Field("max_y", FieldType.DOUBLE, null, null));
-      this.fields.add(new Field("srs_id", FieldType.LONG, null, null));
+      gpkgFields.add(new Field("table_name", FieldType.STRING, null, null));
+      gpkgFields.add(new Field("data_type", FieldType.STRING, null, null));
+      gpkgFields.add(new Field("identifier", FieldType.STRING, null, null));
+      gpkgFields.add(new Field("description", FieldType.STRING, null, null));
+      gpkgFields.add(new Field("last_change", FieldType.DATE, null, null));
+      gpkgFields.add(new Field("min_x", FieldType.DOUBLE, null, null));
+      gpkgFields.add(new Field("min_y", FieldType.DOUBLE, null, null));
+      gpkgFields.add(new Field("max_x", FieldType.DOUBLE, null, null));
+      gpkgFields.add(new Field("max_y", FieldType.DOUBLE, null, null));
+      gpkgFields.add(new Field("srs_id", FieldType.LONG, null, null));
       this.gpkgContents = true;
 
       // Sinon, table "features" ou "attributes"
     } else {
 
-      // Collection de toutes les tables "features" ou "attributes"
-      // avec nom en majuscule
-
-      // Liste des tables "attributes"
-      for (String table : geoPackage.getAttributesTables()) {
-        this.gpkgTables.put(table.toUpperCase(), geoPackage.getAttributesDao(table).getTable());
-      }
-
-      // Liste des tables "features"
-      for (String table : geoPackage.getFeatureTables()) {
-        this.gpkgTables.put(table.toUpperCase(), geoPackage.getFeatureDao(table).getTable());
-      }
+      // Récupère la table
+      UserDao userDao = getUserDao(geoPackage);
 
       // Si table non trouvée
-      if (!this.gpkgTables.containsKey(this.layerName.toUpperCase())) {
+      if (userDao == null) {
         throw new HopException("Error initialize reader : Table " + this.layerName + " not found");
       }
 
-      // Récupère la table
-      UserTable table = this.gpkgTables.get(this.layerName.toUpperCase());
+      UserTable table = userDao.getTable();
 
       // Boucle sur les champs
       for (int i = 0; i < table.columnCount(); i++) {
@@ -219,159 +230,263 @@ public class GeoPackageReader extends AbstractFileReader {
                   + this.layerName);
         }
 
-        this.fields.add(field);
+        gpkgFields.add(field);
+      }
+    }
+  }
+
+  // DAO de la table "features" ou "attributes" lue, nom comparé sans la casse
+  @SuppressWarnings("rawtypes")
+  private UserDao getUserDao(GeoPackage geoPackage) {
+
+    for (String table : geoPackage.getFeatureTables()) {
+      if (table.equalsIgnoreCase(this.layerName)) {
+        return geoPackage.getFeatureDao(table);
+      }
+    }
+
+    for (String table : geoPackage.getAttributesTables()) {
+      if (table.equalsIgnoreCase(this.layerName)) {
+        return geoPackage.getAttributesDao(table);
       }
     }
 
-    geoPackage.close();
+    return null;
+  }
+
+  public FeatureCursor getFeatureCursor() throws HopException {
+    return new GeoPackageFeatureCursor();
   }
 
   @SuppressWarnings("rawtypes")
-  public List<Feature> getFeatures() throws HopException {
+  private class GeoPackageFeatureCursor extends AbstractFeatureCursor {
 
-    List<Feature> features = new ArrayList<Feature>();
-    long entityNumber = 0;
+    private GeoPackage geoPackage;
+    private CloseableIterator<Contents> contentsIt;
+    private UserCoreResult userCoreResult;
+    private List<Field> readFields;
 
-    GeoPackage geoPackage = GeoPackageManager.open(new File(this.gpkgFileName));
+    public GeoPackageFeatureCursor() throws HopException {
 
-    // Si table gpk_contents
-    if (this.gpkgContents) {
+      super(limit, preparedSpatialFilter);
+      this.readFields = getFields();
 
-      // Récupère le contenu
-      ContentsDao contentsDao = geoPackage.getContentsDao();
-      long entitiesTotalNumber = 0;
-      try {
-        entitiesTotalNumber = contentsDao.countOf();
-      } catch (SQLException e) {
-        throw new HopException("Error reading features :" + e.getMessage());
-      }
-      if (this.limit == 0 || this.limit > entitiesTotalNumber || this.limit < 0) {
-        this.limit = entitiesTotalNumber;
-      }
+      this.geoPackage = GeoPackageManager.open(new File(gpkgFileName));
 
-      // Boucle sur chaque content tant que limite non atteinte
-      for (Contents contents : contentsDao) {
-
-        if (entityNumber < this.limit) {
-          Feature feature = new Feature();
-          feature.addValue(this.getField("table_name"), contents.getTableName());
-          feature.addValue(this.getField("data_type"), contents.getDataType().getName());
-          feature.addValue(this.getField("identifier"), contents.getIdentifier());
-          feature.addValue(this.getField("description"), contents.getDescription());
-          feature.addValue(this.getField("last_change"), contents.getLastChange());
-          feature.addValue(this.getField("min_x"), contents.getMinX());
-          feature.addValue(this.getField("min_y"), contents.getMinY());
-          feature.addValue(this.getField("max_x"), contents.getMaxX());
-          feature.addValue(this.getField("max_y"), contents.getMaxY());
-          feature.addValue(this.getField("srs_id"), contents.getSrsId());
-
-          features.add(feature);
-          entityNumber++;
+      // Si table gpk_contents
+      if (gpkgContents) {
+
+        // Récupère le contenu
+        ContentsDao contentsDao = this.geoPackage.getContentsDao();
+        this.contentsIt = contentsDao.iterator();
+
+        // Sinon, table de feature ou d'attributs
+      } else {
 
+        // Récupère la table
+        UserDao userDao = getUserDao(this.geoPackage);
+        if (userDao == null) {
+          close();
+          throw new HopException("Error reading features : Table " + layerName + " not found");
+        }
+        UserTable table = userDao.getTable();
+
+        // Requête sur les seules colonnes sélectionnées et avec limite
+        String[] columns = null;
+        if (selectedFieldNames != null) {
+          columns = getColumnNames(table, this.readFields);
+        }
+
+        // Filtre spatial sur l'index RTree s'il existe
+        String where = null;
+        if (spatialFilter != null && table instanceof FeatureTable) {
+          where = getSpatialFilterWhere(this.geoPackage, (FeatureTable) table);
+        }
+
+        // Le filtre spatial exact est appliqué après la requête : limite appliquée par le curseur
+        String queryLimit = null;
+        if (limit > 0 && spatialFilter == null) {
+          queryLimit = String.valueOf(limit);
+        }
+
+        if (queryLimit == null && columns == null && where == null) {
+          this.userCoreResult = userDao.queryForAll();
         } else {
-          break;
+          this.userCoreResult = userDao.query(columns, where, null, null, null, null, queryLimit);
         }
       }
+    }
 
-      // Sinon, table de feature ou d'attributs
-    } else {
+    protected Feature readNext() throws HopException {
 
-      // Récupère la table
-      UserTable table = this.gpkgTables.get(this.layerName.toUpperCase());
-      UserDao userDao = null;
+      Feature feature = null;
 
-      if (table instanceof FeatureTable) {
-        userDao = geoPackage.getFeatureDao(table.getTableName());
-      } else {
-        userDao = geoPackage.getAttributesDao(table.getTableName());
+      if (this.contentsIt != null) {
+
+        if (this.contentsIt.hasNext()) {
+
+          Contents contents = this.contentsIt.next();
+          feature = new Feature();
+          feature.addValue(getField("table_name"), contents.getTableName());
+          feature.addValue(getField("data_type"), contents.getDataType().getName());
+          feature.addValue(getField("identifier"), contents.getIdentifier());
+          feature.addValue(getField("description"), contents.getDescription());
+          feature.addValue(getField("last_change"), contents.getLastChange());
+          feature.addValue(getField("min_x"), contents.getMinX());
+          feature.addValue(getField("min_y"), contents.getMinY());
+          feature.addValue(getField("max_x"), contents.getMaxX());
+          feature.addValue(getField("max_y"), contents.getMaxY());
+          feature.addValue(getField("srs_id"), contents.getSrsId());
+        }
+
+      } else if (this.userCoreResult.moveToNext()) {
+        feature = getFeature(this.userCoreResult.getRow(), this.readFields);
       }
 
-      // Requête avec limite
-      UserCoreResult userCoreResult = null;
-      if (this.limit <= 0) {
-        userCoreResult = userDao.queryForAll();
-      } else {
-        userCoreResult =
-            userDao.query(null, null, null, null, null, null, String.valueOf(this.limit));
+      return feature;
+    }
+
+    public void close() throws HopException {
+
+      if (this.userCoreResult != null) {
+        this.userCoreResult.close();
+        this.userCoreResult = null;
       }
 
-      // Bouche sur chaque ligne du résultat
-      while (userCoreResult.moveToNext()) {
+      if (this.contentsIt != null) {
+        this.contentsIt.closeQuietly();
+        this.contentsIt = null;
+      }
 
-        UserCoreRow userCoreRow = userCoreResult.getRow();
-        Feature feature = new Feature();
+      if (this.geoPackage != null) {
+        this.geoPackage.close();
+        this.geoPackage = null;
+      }
+    }
+  }
 
-        for (Field field : this.fields) {
+  // Sélection des identifiants dans l'index RTree dont l'emprise intersecte celle du filtre
+  private String getSpatialFilterWhere(GeoPackage geoPackage, FeatureTable table) {
 
-          Object inValue = null;
-          Object outValue = null;
+    RTreeIndexExtension extension = new RTreeIndexExtension(geoPackage);
+    if (table.getPkColumnName() == null
+        || !extension.has(table.getTableName(), table.getGeometryColumnName())) {
+      return null;
+    }
 
-          if (field.getType().equals(FieldType.GEOMETRY)) {
-            inValue = ((FeatureRow) userCoreRow).getGeometry();
-          } else {
-            inValue = userCoreRow.getValue(field.getName());
-          }
+    Envelope envelope = spatialFilter.getEnvelopeInternal();
+    return GeoPackageWriter.quote(table.getPkColumnName())
+        + " IN (SELECT "
+        + RTreeIndexExtension.COLUMN_ID
+        + " FROM "
+        + GeoPackageWriter.quote(
+            extension.getRTreeTableName(table.getTableName(), table.getGeometryColumnName()))
+        + " WHERE "
+        + RTreeIndexExtension.COLUMN_MIN_X
+        + " <= "
+        + envelope.getMaxX()
+        + " AND "
+        + RTreeIndexExtension.COLUMN_MAX_X
+        + " >= "
+        + envelope.getMinX()
+        + " AND "
+        + RTreeIndexExtension.COLUMN_MIN_Y
+        + " <= "
+        + envelope.getMaxY()
+        + " AND "
+        + RTreeIndexExtension.COLUMN_MAX_Y
+        + " >= "
+        + envelope.getMinY()
+        + ")";
+  }
 
-          if (inValue != null) {
+  // Noms des colonnes de la table pour les champs lus
+  @SuppressWarnings("rawtypes")
+  private String[] getColumnNames(UserTable table, List<Field> readFields) {
 
-            // byte[]
-            if (field.getType().equals(FieldType.BINARY)) {
+    List<String> columnNames = new ArrayList<String>();
+    if (table.getPkColumnName() != null) {
+      columnNames.add(table.getPkColumnName());
+    }
 
-              outValue = (byte[]) inValue;
+    for (Field field : readFields) {
 
-              // boolean
-            } else if (field.getType().equals(FieldType.BOOLEAN)) {
+      String columnName = field.getName();
+      if (field.getType().equals(FieldType.GEOMETRY)) {
+        columnName = ((FeatureTable) table).getGeometryColumnName();
+      }
 
-              outValue = (Boolean) inValue;
+      if (!columnNames.contains(columnName)) {
+        columnNames.add(columnName);
+      }
+    }
 
-              // date
-            } else if (field.getType().equals(FieldType.DATE)) {
+    return columnNames.toArray(new String[columnNames.size()]);
+  }
 
-              outValue = tryToParseDate(inValue);
+  @SuppressWarnings("rawtypes")
+  private Feature getFeature(UserCoreRow userCoreRow, List<Field> readFields)
+      throws HopException {
 
-              // double
-            } else if (field.getType().equals(FieldType.DOUBLE)) {
+    Feature feature = new Feature();
 
-              outValue = Double.parseDouble(inValue.toString());
+    for (Field field : readFields) {
 
-              // geometry
-            } else if (field.getType().equals(FieldType.GEOMETRY)) {
+      Object inValue = null;
+      Object outValue = null;
 
-              GeoPackageGeometryData geometryData = (GeoPackageGeometryData) inValue;
-              Geometry jtsGeometry = toJtsGeometry(geometryData.getGeometry());
-              jtsGeometry.setSRID(geometryData.getSrsId());
+      if (field.getType().equals(FieldType.GEOMETRY)) {
+        inValue = ((FeatureRow) userCoreRow).getGeometry();
+      } else {
+        inValue = userCoreRow.getValue(field.getName());
+      }
 
-              if (this.forceTo2DGeometry) {
-                jtsGeometry = GeometryUtils.get2DGeometry(jtsGeometry);
-              }
+      if (inValue != null) {
 
-              if (this.forceToMultiGeometry) {
-                jtsGeometry = GeometryUtils.getMultiGeometry(jtsGeometry);
-              }
+        // byte[]
+        if (field.getType().equals(FieldType.BINARY)) {
 
-              outValue = jtsGeometry;
+          outValue = (byte[]) inValue;
 
-              // long
-            } else if (field.getType().equals(FieldType.LONG)) {
+          // boolean
+        } else if (field.getType().equals(FieldType.BOOLEAN)) {
 
-              outValue = Long.parseLong(inValue.toString());
+          outValue = (Boolean) inValue;
 
-              // String
-            } else if (field.getType().equals(FieldType.STRING)) {
-              outValue = inValue.toString();
-            }
-          }
+          // date
+        } else if (field.getType().equals(FieldType.DATE)) {
 
-          feature.addValue(field, outValue);
-        }
+          outValue = tryToParseDate(inValue);
+
+          // double
+        } else if (field.getType().equals(FieldType.DOUBLE)) {
+
+          outValue = Double.parseDouble(inValue.toString());
+
+          // geometry
+        } else if (field.getType().equals(FieldType.GEOMETRY)) {
+
+          GeoPackageGeometryData geometryData = (GeoPackageGeometryData) inValue;
+          Geometry jtsGeometry = toJtsGeometry(geometryData.getGeometry());
+          jtsGeometry.setSRID(geometryData.getSrsId());
+
+          outValue = getOutputGeometry(jtsGeometry);
 
-        features.add(feature);
+          // long
+        } else if (field.getType().equals(FieldType.LONG)) {
+
+          outValue = Long.parseLong(inValue.toString());
+
+          // String
+        } else if (field.getType().equals(FieldType.STRING)) {
+          outValue = inValue.toString();
+        }
       }
-    }
 
-    geoPackage.close();
+      feature.addValue(field, outValue);
+    }
 
-    return features;
+    return feature;
   }
 
   public Object tryToParseDate(Object inValue) {
@@ -5,7 +5,11 @@ import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
 import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -28,6 +32,7 @@ import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.features.user.FeatureTableMetadata;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.user.ContentValues;
+import mil.nga.geopackage.user.UserDao;
 import org.apache.hop.core.exception.HopException;
 import org.cts.CRSFactory;
 import org.cts.crs.CRSException;
@@ -79,6 +84,28 @@ public class GeoPackageWriter extends AbstractFileWriter {
   private Long assignedSrid;
   private GpkgGeometryType assignedGeometryType;
   private long commitLimit;
+  private boolean bulkLoad;
+
+  // Etat de l'écriture par lots
+  private GeoPackage geoPackage;
+  private Field pkField;
+  private Field geometryField;
+  private List<Field> otherFields;
+  private Contents contents;
+  private FeatureDao featureDao;
+  private AttributesDao attributesDao;
+  private TreeSet<Long> srids;
+  private Envelope extent;
+  private long featIndex;
+
+  // Chargement en masse : requêtes préparées et index RTree alimenté hors triggers
+  private PreparedStatement insertStatement;
+  private PreparedStatement rtreeStatement;
+  private String[] insertColumns;
+  private String insertPkColumn;
+  private List<String> rtreeTriggers;
+  private long nextId;
+  private int batchCount;
 
   public enum GpkgGeometryType {
     GEOMETRY(mil.nga.sf.GeometryType.GEOMETRY),
@@ -172,7 +199,8 @@ public class GeoPackageWriter extends AbstractFileWriter {
     this.replaceTable = false;
     this.assignedSrid = null;
     this.assignedGeometryType = GpkgGeometryType.GEOMETRY;
-    this.commitLimit = 1;
+    this.commitLimit = 1000;
+    this.bulkLoad = false;
   }
 
   public void setReplaceFile(boolean replaceFile) {
@@ -203,6 +231,17 @@ public class GeoPackageWriter extends AbstractFileWriter {
     this.commitLimit = commitLimit;
   }
 
+  /**
+   * Sets the bulk load mode : the rows are inserted with batched prepared statements, the RTree
+   * index triggers are disabled during the load and the journal and synchronous settings of the
+   * database favor speed over crash safety.
+   *
+   * @param bulkLoad true to enable the bulk load mode
+   */
+  public void setBulkLoad(boolean bulkLoad) {
+    this.bulkLoad = bulkLoad;
+  }
+
   public void setAssignedGeometryType(String geometryType) {
 
     if (geometryType.equalsIgnoreCase("POINT")) {
@@ -231,7 +270,19 @@ public class GeoPackageWriter extends AbstractFileWriter {
     }
   }
 
+  public boolean isStreaming() {
+    return true;
+  }
+
   public void writeFeatures(List<Feature> features) throws HopException {
+    open();
+    if (features != null) {
+      writeBatch(features);
+    }
+    close();
+  }
+
+  public void open() throws HopException {
 
     boolean createTable = true;
 
@@ -253,7 +304,7 @@ public class GeoPackageWriter extends AbstractFileWriter {
     }
 
     // Ouverture du fichier
-    GeoPackage geoPackage =
+    this.geoPackage =
         GeoPackageManager.open(new File(checkFilename(this.gpkgFileName).getFile()));
     if ((geoPackage.getFeatureTables().contains(this.tableName)
         || geoPackage.getAttributesTables().contains(this.tableName))) {
@@ -268,9 +319,9 @@ public class GeoPackageWriter extends AbstractFileWriter {
     }
 
     // Récupération des colonnes de PK et de géométrie (si existe)
-    Field pkField = null;
-    Field geometryField = null;
-    List<Field> otherFields = new ArrayList<Field>();
+    this.pkField = null;
+    this.geometryField = null;
+    this.otherFields = new ArrayList<Field>();
 
     // Toutes les colonnes sauf pk et geometry
     for (Field field : this.fields) {
@@ -308,7 +359,7 @@ public class GeoPackageWriter extends AbstractFileWriter {
     }
 
     // Contents
-    Contents contents = null;
+    this.contents = null;
 
     // Si création de table
     if (createTable) {
@@ -421,96 +472,150 @@ public class GeoPackageWriter extends AbstractFileWriter {
       }
     }
 
-    // Alimentation des tables
-    if (features != null) {
+    // Préparation de l'alimentation des tables
+    this.srids = new TreeSet<Long>();
+    this.extent = null;
+    this.featIndex = 0;
+
+    if (this.commitLimit <= 0) {
+      this.commitLimit = (long) 1;
+    }
+
+    try {
 
       // Feature Table
       if (geometryField != null) {
+        this.featureDao = geoPackage.getFeatureDao(this.tableName);
+        if (this.bulkLoad) {
+          openBulkLoad(this.featureDao);
+        }
+        this.featureDao.getConnection().setAutoCommit(false);
 
-        // On stocke les srids des features pour mettre
-        // éventuellement le contenu des tables de métadonnées à jour si srid non forcé
-        TreeSet<Long> srids = new TreeSet<Long>();
+        // Attributes Table
+      } else {
+        this.attributesDao = geoPackage.getAttributesDao(this.tableName);
+        if (this.bulkLoad) {
+          openBulkLoad(this.attributesDao);
+        }
+        this.attributesDao.getConnection().setAutoCommit(false);
+      }
 
-        // Pour stockage de l'extent
-        Envelope extent = null;
+    } catch (SQLException e) {
+      throw new HopException("Error writing features to " + this.gpkgFileName, e);
+    }
+  }
 
-        FeatureDao featureDao = geoPackage.getFeatureDao(this.tableName);
-        int featIndex = 0;
+  public void writeBatch(List<Feature> features) throws HopException {
 
-        try {
+    // Feature Table
+    if (geometryField != null) {
 
-          if (this.commitLimit <= 0) {
-            this.commitLimit = (long) 1;
-          }
+      for (Feature feature : features) {
 
-          featureDao.getConnection().setAutoCommit(false);
+        // Nouvelle ligne de données
+        FeatureRow featureRow = featureDao.newRow();
 
-        } catch (SQLException e) {
-          throw new HopException("Error writing features to " + this.gpkgFileName, e);
+        // Récupération de la géométrie
+        Geometry geometry = (Geometry) feature.getValue(geometryField);
+
+        // Si forcer en 2d
+        if (this.forceTo2DGeometry) {
+          geometry = GeometryUtils.get2DGeometry(geometry);
         }
 
-        for (Feature feature : features) {
+        // On essaye d'hamoniser le type ou on retounr une erreur
+        geometry = checkGeometryType(geometry, (Long) feature.getValue(pkField), this.tableName);
 
-          // Nouvelle ligne de données
-          FeatureRow featureRow = featureDao.newRow();
+        // On recupère le srid stocké dans la géométrie JTS uniquement si non forcé
+        Long currentSrid = GeometryUtils.getSrid(geometry).longValue();
+        if (currentSrid != null && this.assignedSrid == null) {
+          srids.add(currentSrid);
+          this.assignedSrid = currentSrid;
+        }
 
-          // Récupération de la géométrie
-          Geometry geometry = (Geometry) feature.getValue(geometryField);
+        // Geométrie Geopackage
+        GeoPackageGeometryData geometryData = new GeoPackageGeometryData(this.assignedSrid);
+        geometryData.setGeometry(toGpkgGeometry(geometry));
+        featureRow.setGeometry(geometryData);
 
-          // Si forcer en 2d
-          if (this.forceTo2DGeometry) {
-            geometry = GeometryUtils.get2DGeometry(geometry);
-          }
+        // Intialisation ou modification de l'étendue
+        if (extent == null) {
+          extent = geometry.getEnvelopeInternal();
+        } else {
+          extent.expandToInclude(geometry.getEnvelopeInternal());
+        }
 
-          // On essaye d'hamoniser le type ou on retounr une erreur
-          geometry = checkGeometryType(geometry, (Long) feature.getValue(pkField), this.tableName);
+        // Autres colonnes
+        for (Field field : otherFields) {
+          featureRow.setValue(field.getName(), feature.getValue(field));
+        }
+
+        ContentValues contentValues = featureRow.toContentValues();
+        Object pkFieldValue = feature.getValue(pkField);
+        if (pkFieldValue != null) {
+          contentValues.put(this.pkFieldName, pkFieldValue);
+        }
 
-          // On recupère le srid stocké dans la géométrie JTS uniquement si non forcé
-          Long currentSrid = GeometryUtils.getSrid(geometry).longValue();
-          if (currentSrid != null && this.assignedSrid == null) {
-            srids.add(currentSrid);
-            this.assignedSrid = currentSrid;
+        if (this.bulkLoad) {
+          long id = insertBulk(contentValues);
+          if (rtreeStatement != null && geometry != null && !geometry.isEmpty()) {
+            insertRTreeEntry(id, geometry.getEnvelopeInternal());
           }
+        } else {
+          featureDao.insert(contentValues);
+        }
+        featIndex++;
 
-          // Geométrie Geopackage
-          GeoPackageGeometryData geometryData = new GeoPackageGeometryData(this.assignedSrid);
-          geometryData.setGeometry(toGpkgGeometry(geometry));
-          featureRow.setGeometry(geometryData);
+        if (featIndex == commitLimit) {
+          executeBulkBatch();
+          commit(featureDao.getConnection());
+          featIndex = 0;
+        }
+      }
 
-          // Intialisation ou modification de l'étendue
-          if (extent == null) {
-            extent = geometry.getEnvelopeInternal();
-          } else {
-            extent.expandToInclude(geometry.getEnvelopeInternal());
-          }
+      // Attributes Table
+    } else {
 
-          // Autres colonnes
-          for (Field field : otherFields) {
-            featureRow.setValue(field.getName(), feature.getValue(field));
-          }
+      for (Feature feature : features) {
 
-          ContentValues contentValues = featureRow.toContentValues();
-          Object pkFieldValue = feature.getValue(pkField);
-          if (pkFieldValue != null) {
-            contentValues.put(this.pkFieldName, pkFieldValue);
-          }
-          featureDao.insert(contentValues);
-          featIndex++;
+        AttributesRow attributesRow = attributesDao.newRow();
 
-          if (featIndex == commitLimit) {
-            try {
-              featureDao.getConnection().commit();
-            } catch (SQLException e) {
-              throw new HopException("Error writing features to " + this.gpkgFileName, e);
-            }
-            featIndex = 0;
-          }
+        for (Field field : otherFields) {
+          attributesRow.setValue(field.getName(), feature.getValue(field));
+        }
+
+        ContentValues contentValues = attributesRow.toContentValues();
+        Object pkFieldValue = feature.getValue(pkField);
+        if (pkFieldValue != null) {
+          contentValues.put(this.pkFieldName, pkFieldValue);
+        }
+        if (this.bulkLoad) {
+          insertBulk(contentValues);
+        } else {
+          attributesDao.insert(contentValues);
         }
+        featIndex++;
 
-        try {
-          featureDao.getConnection().commit();
-        } catch (SQLException e) {
-          throw new HopException("Error writing features to " + this.gpkgFileName, e);
+        if (featIndex == this.commitLimit) {
+          executeBulkBatch();
+          commit(attributesDao.getConnection());
+          featIndex = 0;
+        }
+      }
+    }
+  }
+
+  public void close() throws HopException {
+
+    try {
+
+      // Feature Table
+      if (geometryField != null) {
+
+        if (this.bulkLoad) {
+          closeBulkLoad(featureDao.getConnection());
+        } else {
+          commit(featureDao.getConnection());
         }
 
         // Maj etendue
@@ -557,62 +662,340 @@ public class GeoPackageWriter extends AbstractFileWriter {
 
         // Attributes Table
       } else {
+        if (this.bulkLoad) {
+          closeBulkLoad(attributesDao.getConnection());
+        } else {
+          commit(attributesDao.getConnection());
+        }
+      }
+
+      contents.setLastChange(new Date());
+      try {
+        geoPackage.getContentsDao().update(contents);
+      } catch (SQLException e) {
+        throw new HopException("Error writing features to " + this.gpkgFileName, e);
+      }
 
-        AttributesDao attributesDao = geoPackage.getAttributesDao(this.tableName);
-        int featIndex = 0;
-        try {
+    } finally {
+      closeStatement(this.insertStatement);
+      closeStatement(this.rtreeStatement);
+      this.insertStatement = null;
+      this.rtreeStatement = null;
+      this.rtreeTriggers = null;
+      geoPackage.close();
+      this.featureDao = null;
+      this.attributesDao = null;
+    }
+  }
 
-          if (this.commitLimit <= 0) {
-            this.commitLimit = (long) 1;
-          }
+  public void abort() throws HopException {
 
-          attributesDao.getConnection().setAutoCommit(false);
+    if (this.geoPackage == null) {
+      return;
+    }
 
-        } catch (SQLException e) {
-          throw new HopException("Error writing features to " + this.gpkgFileName, e);
+    try {
+
+      Connection connection = null;
+      if (this.featureDao != null) {
+        connection = this.featureDao.getConnection();
+      } else if (this.attributesDao != null) {
+        connection = this.attributesDao.getConnection();
+      }
+
+      // Lot en cours annulé et triggers RTree supprimés hors transaction rétablis
+      if (connection != null) {
+
+        if (!connection.getAutoCommit()) {
+          connection.rollback();
         }
+        restoreRTreeTriggers(connection);
+      }
 
-        for (Feature feature : features) {
+    } catch (SQLException e) {
+      throw new HopException("Error closing " + this.gpkgFileName, e);
 
-          AttributesRow attributesRow = attributesDao.newRow();
+    } finally {
+      closeStatement(this.insertStatement);
+      closeStatement(this.rtreeStatement);
+      this.insertStatement = null;
+      this.rtreeStatement = null;
+      this.rtreeTriggers = null;
+      geoPackage.close();
+      this.geoPackage = null;
+      this.featureDao = null;
+      this.attributesDao = null;
+    }
+  }
 
-          for (Field field : otherFields) {
-            attributesRow.setValue(field.getName(), feature.getValue(field));
-          }
+  // Préparation du chargement en masse, avant l'ouverture de la transaction
+  private void openBulkLoad(UserDao<?, ?, ?, ?> dao) throws SQLException {
 
-          ContentValues contentValues = attributesRow.toContentValues();
-          Object pkFieldValue = feature.getValue(pkField);
-          if (pkFieldValue != null) {
-            contentValues.put(this.pkFieldName, pkFieldValue);
+    Connection connection = dao.getConnection();
+
+    // Journal en mémoire et pas de synchronisation disque : le fichier est
+    // incohérent en cas d'arrêt brutal pendant le chargement
+    Statement statement = connection.createStatement();
+    try {
+      statement.execute("PRAGMA journal_mode = MEMORY");
+      statement.execute("PRAGMA synchronous = OFF");
+      statement.execute("PRAGMA cache_size = -65536");
+      statement.execute("PRAGMA temp_store = MEMORY");
+    } finally {
+      statement.close();
+    }
+
+    // Requête d'insertion sur toutes les colonnes de la table
+    this.insertColumns = dao.getColumnNames();
+    this.insertPkColumn = dao.getTable().getPkColumn().getName();
+
+    StringBuilder columns = new StringBuilder();
+    StringBuilder parameters = new StringBuilder();
+    for (String column : this.insertColumns) {
+      if (columns.length() > 0) {
+        columns.append(", ");
+        parameters.append(", ");
+      }
+      columns.append(quote(column));
+      parameters.append("?");
+    }
+    this.insertStatement =
+        connection.prepareStatement(
+            "INSERT INTO "
+                + quote(this.tableName)
+                + " ("
+                + columns
+                + ") VALUES ("
+                + parameters
+                + ")");
+
+    // Identifiants attribués comme par SQLite : à la suite du plus grand
+    this.nextId = 1;
+    Statement maxStatement = connection.createStatement();
+    try {
+      ResultSet resultSet =
+          maxStatement.executeQuery(
+              "SELECT MAX(" + quote(this.insertPkColumn) + ") FROM " + quote(this.tableName));
+      if (resultSet.next()) {
+        this.nextId = resultSet.getLong(1) + 1;
+      }
+      resultSet.close();
+    } finally {
+      maxStatement.close();
+    }
+
+    // Index RTree : triggers supprimés pendant le chargement, index alimenté directement
+    this.rtreeStatement = null;
+    this.rtreeTriggers = new ArrayList<String>();
+    RTreeIndexExtension extension = new RTreeIndexExtension(geoPackage);
+
+    if (geometryField != null
+        && extension.has(this.tableName, featureDao.getGeometryColumnName())) {
+
+      String rtreeTableName =
+          extension.getRTreeTableName(this.tableName, featureDao.getGeometryColumnName());
+
+      PreparedStatement triggerStatement =
+          connection.prepareStatement(
+              "SELECT name, sql FROM sqlite_master WHERE type = 'trigger' AND tbl_name = ?");
+      Statement dropStatement = connection.createStatement();
+      try {
+
+        triggerStatement.setString(1, this.tableName);
+        ResultSet resultSet = triggerStatement.executeQuery();
+        List<String> triggerNames = new ArrayList<String>();
+        while (resultSet.next()) {
+          if (resultSet.getString(1).startsWith(rtreeTableName + "_")) {
+            triggerNames.add(resultSet.getString(1));
+            this.rtreeTriggers.add(resultSet.getString(2));
           }
-          attributesDao.insert(contentValues);
+        }
+        resultSet.close();
 
-          if (featIndex == this.commitLimit) {
-            try {
-              attributesDao.getConnection().commit();
-            } catch (SQLException e) {
-              throw new HopException("Error writing features to " + this.gpkgFileName, e);
+        for (String triggerName : triggerNames) {
+          dropStatement.execute("DROP TRIGGER IF EXISTS " + quote(triggerName));
+        }
+
+      } finally {
+        triggerStatement.close();
+        dropStatement.close();
+      }
+
+      this.rtreeStatement =
+          connection.prepareStatement(
+              "INSERT OR REPLACE INTO "
+                  + quote(rtreeTableName)
+                  + " ("
+                  + RTreeIndexExtension.COLUMN_ID
+                  + ", "
+                  + RTreeIndexExtension.COLUMN_MIN_X
+                  + ", "
+                  + RTreeIndexExtension.COLUMN_MAX_X
+                  + ", "
+                  + RTreeIndexExtension.COLUMN_MIN_Y
+                  + ", "
+                  + RTreeIndexExtension.COLUMN_MAX_Y
+                  + ") VALUES (?, ?, ?, ?, ?)");
+    }
+
+    this.batchCount = 0;
+  }
+
+  // Ajout d'une ligne au lot d'insertion, retourne son identifiant
+  private long insertBulk(ContentValues contentValues) throws HopException {
+
+    try {
+
+      long id = 0;
+      for (int i = 0; i < this.insertColumns.length; i++) {
+
+        Object value = contentValues.get(this.insertColumns[i]);
+        if (this.insertColumns[i].equals(this.insertPkColumn)) {
+          id = value != null ? ((Number) value).longValue() : this.nextId;
+          this.nextId = Math.max(this.nextId, id + 1);
+          value = id;
+        }
+        this.insertStatement.setObject(i + 1, value);
+      }
+      this.insertStatement.addBatch();
+
+      this.batchCount++;
+      if (this.batchCount >= 1000) {
+        executeBulkBatch();
+      }
+
+      return id;
+
+    } catch (SQLException e) {
+      throw new HopException("Error writing features to " + this.gpkgFileName, e);
+    }
+  }
+
+  private void insertRTreeEntry(long id, Envelope envelope) throws HopException {
+
+    try {
+      this.rtreeStatement.setLong(1, id);
+      this.rtreeStatement.setDouble(2, envelope.getMinX());
+      this.rtreeStatement.setDouble(3, envelope.getMaxX());
+      this.rtreeStatement.setDouble(4, envelope.getMinY());
+      this.rtreeStatement.setDouble(5, envelope.getMaxY());
+      this.rtreeStatement.addBatch();
+    } catch (SQLException e) {
+      throw new HopException("Error writing features to " + this.gpkgFileName, e);
+    }
+  }
+
+  // Exécution des lots en attente
+  private void executeBulkBatch() throws HopException {
+
+    if (!this.bulkLoad || this.batchCount == 0) {
+      return;
+    }
+
+    try {
+      this.insertStatement.executeBatch();
+      if (this.rtreeStatement != null) {
+        this.rtreeStatement.executeBatch();
+      }
+      this.batchCount = 0;
+    } catch (SQLException e) {
+      throw new HopException("Error writing features to " + this.gpkgFileName, e);
+    }
+  }
+
+  // Fin du chargement en masse : derniers lots et rétablissement des triggers RTree,
+  // même si l'écriture des derniers lots échoue
+  private void closeBulkLoad(Connection connection) throws HopException {
+
+    HopException closeException = null;
+    try {
+      executeBulkBatch();
+      commit(connection);
+    } catch (HopException e) {
+      closeException = e;
+    }
+
+    try {
+      restoreRTreeTriggers(connection);
+    } catch (HopException e) {
+      if (closeException == null) {
+        closeException = e;
+      } else {
+        closeException.addSuppressed(e);
+      }
+    }
+
+    if (closeException != null) {
+      throw closeException;
+    }
+  }
+
+  // Rétablissement des triggers RTree supprimés (et validés) à l'ouverture : la
+  // transaction en échec est annulée et chaque trigger est recréé et validé une seule fois
+  private void restoreRTreeTriggers(Connection connection) throws HopException {
+
+    List<String> triggers = this.rtreeTriggers;
+    this.rtreeTriggers = null;
+    if (triggers == null || triggers.isEmpty()) {
+      return;
+    }
+
+    SQLException restoreException = null;
+    try {
+
+      if (!connection.getAutoCommit()) {
+        connection.rollback();
+      }
+
+      Statement statement = connection.createStatement();
+      try {
+        for (String triggerSql : triggers) {
+          try {
+            statement.execute(triggerSql);
+          } catch (SQLException e) {
+            if (restoreException == null) {
+              restoreException = e;
             }
-            featIndex = 0;
           }
         }
-        try {
-          attributesDao.getConnection().commit();
-        } catch (SQLException e) {
-          throw new HopException("Error writing features to " + this.gpkgFileName, e);
-        }
+      } finally {
+        statement.close();
       }
 
-      contents.setLastChange(new Date());
+      if (!connection.getAutoCommit()) {
+        connection.commit();
+      }
+
+    } catch (SQLException e) {
+      restoreException = e;
+    }
+
+    if (restoreException != null) {
+      throw new HopException("Error writing features to " + this.gpkgFileName, restoreException);
+    }
+  }
+
+  private void closeStatement(Statement statement) {
+    if (statement != null) {
       try {
-        geoPackage.getContentsDao().update(contents);
+        statement.close();
       } catch (SQLException e) {
-        throw new HopException("Error writing features to " + this.gpkgFileName, e);
+        // Fermeture en fin d'écriture
       }
-      geoPackage.close();
     }
+  }
+
+  // Identifiant SQL entre guillemets doubles
+  static String quote(String identifier) {
+    return "\"" + identifier.replace("\"", "\"\"") + "\"";
+  }
 
-    geoPackage.close();
+  private void commit(Connection connection) throws HopException {
+    try {
+      connection.commit();
+    } catch (SQLException e) {
+      throw new HopException("Error writing features to " + this.gpkgFileName, e);
+    }
   }
 
   private List<FeatureColumn> toGpkgFeatureColumns(List<Field> fields) {
@@ -25,7 +25,6 @@ package com.atolcd.hop.gis.io;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -64,86 +63,119 @@ public class MapInfoReader extends AbstractFileReader {
             "Missing " + replaceFileExtension(fileName, ".mif", ".mid") + " file");
       }
 
-      this.fields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
+      // Schéma dans l'entête du fichier MIF
+      initFields(new String[] {this.mifFileName}, geometryFieldName, this.charset.name());
 
-      MifMidReader mifMidReader = new MifMidReader(new File(this.mifFileName), this.charset);
+    } catch (Exception e) {
+      throw new HopException("Error initialize reader", e);
+    }
+  }
+
+  protected List<Field> probeFields() throws Exception {
+
+    List<Field> mifFields = new ArrayList<Field>();
+    mifFields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
+
+    MifMidReader mifMidReader = new MifMidReader(new File(this.mifFileName), this.charset);
+    try {
       mifMidReader.populateMMFileFeatureSchema();
       mifMidReader.readMMFileProperties();
+    } finally {
+      mifMidReader.close();
+    }
 
-      for (Entry<String, String> entry : mifMidReader.getColumns().entrySet()) {
-
-        Field field = null;
-        String fieldName = entry.getKey();
-        String miType = entry.getValue();
-        if (miType.equalsIgnoreCase("STRING")) {
-          field = new Field(fieldName, FieldType.STRING, null, null);
-        } else if (miType.equalsIgnoreCase("INTEGER")) {
-          field = new Field(fieldName, FieldType.LONG, null, null);
-        } else if (miType.equalsIgnoreCase("DATE")) {
-          field = new Field(fieldName, FieldType.DATE, null, null);
-        } else if (miType.equalsIgnoreCase("DOUBLE")) {
-          field = new Field(fieldName, FieldType.DOUBLE, null, null);
-        } else if (miType.equalsIgnoreCase("BOOLEAN")) {
-          field = new Field(fieldName, FieldType.BOOLEAN, null, null);
-        } else {
-          field = new Field(fieldName, FieldType.STRING, null, null);
-        }
-
-        this.fields.add(field);
+    for (Entry<String, String> entry : mifMidReader.getColumns().entrySet()) {
+
+      Field field = null;
+      String fieldName = entry.getKey();
+      String miType = entry.getValue();
+      if (miType.equalsIgnoreCase("STRING")) {
+        field = new Field(fieldName, FieldType.STRING, null, null);
+      } else if (miType.equalsIgnoreCase("INTEGER")) {
+        field = new Field(fieldName, FieldType.LONG, null, null);
+      } else if (miType.equalsIgnoreCase("DATE")) {
+        field = new Field(fieldName, FieldType.DATE, null, null);
+      } else if (miType.equalsIgnoreCase("DOUBLE")) {
+        field = new Field(fieldName, FieldType.DOUBLE, null, null);
+      } else if (miType.equalsIgnoreCase("BOOLEAN")) {
+        field = new Field(fieldName, FieldType.BOOLEAN, null, null);
+      } else {
+        field = new Field(fieldName, FieldType.STRING, null, null);
       }
 
-    } catch (Exception e) {
-      throw new HopException("Error initialize reader", e);
+      mifFields.add(field);
     }
+
+    return mifFields;
   }
 
-  public List<Feature> getFeatures() throws HopException {
+  public FeatureCursor getFeatureCursor() throws HopException {
+    return new MapInfoFeatureCursor();
+  }
 
-    List<Feature> features = new ArrayList<Feature>();
+  private class MapInfoFeatureCursor extends AbstractFeatureCursor {
 
-    try {
+    private MifMidReader mifMidReader;
+    private int featureNumber;
+    private int featureIndex;
 
-      MifMidReader mifMidReader = new MifMidReader(new File(this.mifFileName), this.charset);
+    public MapInfoFeatureCursor() throws HopException {
 
-      mifMidReader.populateMMFileFeatureSchema();
-      mifMidReader.readMMFileProperties();
-      mifMidReader.createIndexes();
+      super(limit, preparedSpatialFilter);
+
+      try {
+
+        this.mifMidReader = new MifMidReader(new File(mifFileName), charset);
+        this.mifMidReader.populateMMFileFeatureSchema();
+        this.mifMidReader.readMMFileProperties();
+        this.mifMidReader.createIndexes();
+
+        this.featureNumber = this.mifMidReader.getFeatureNumber();
+        this.featureIndex = 0;
 
-      if (this.limit == 0 || this.limit > mifMidReader.getFeatureNumber() || this.limit < 0) {
-        this.limit = mifMidReader.getFeatureNumber();
+      } catch (Exception e) {
+        close();
+        throw new HopException("Error reading features" + mifFileName, e);
       }
+    }
 
-      for (int i = 0; i < this.limit; i++) {
+    protected Feature readNext() throws HopException {
 
-        Feature feature = new Feature();
-        Geometry geometry = mifMidReader.getGeometry(i);
-        Object[] values = mifMidReader.getValues(i);
+      if (this.featureIndex >= this.featureNumber) {
+        return null;
+      }
 
-        if (this.forceTo2DGeometry) {
-          geometry = GeometryUtils.get2DGeometry(geometry);
-        }
+      try {
 
-        if (this.forceToMultiGeometry) {
-          geometry = GeometryUtils.getMultiGeometry(geometry);
-        }
+        Feature feature = new Feature();
+        Geometry geometry = this.mifMidReader.getGeometry(this.featureIndex);
+        Object[] values = this.mifMidReader.getValues(this.featureIndex);
 
-        feature.addValue(this.fields.get(0), geometry);
+        feature.addValue(fields.get(0), getOutputGeometry(geometry));
 
-        for (int j = 1; j < this.fields.size(); j++) {
-          feature.addValue(this.fields.get(j), values[j - 1]);
+        for (int j = 1; j < fields.size(); j++) {
+          feature.addValue(fields.get(j), values[j - 1]);
         }
 
-        features.add(feature);
+        this.featureIndex++;
+        return feature;
+
+      } catch (Exception e) {
+        throw new HopException("Error reading features" + mifFileName, e);
       }
+    }
 
-      mifMidReader.close();
+    public void close() throws HopException {
 
-    } catch (IOException e) {
-      throw new HopException("Error reading features" + this.mifFileName, e);
-    } catch (Exception e) {
-      throw new HopException("Error reading features" + this.mifFileName, e);
+      if (this.mifMidReader != null) {
+        try {
+          this.mifMidReader.close();
+        } catch (IOException e) {
+          throw new HopException("Error closing " + mifFileName, e);
+        } finally {
+          this.mifMidReader = null;
+        }
+      }
     }
-
-    return features;
   }
 }
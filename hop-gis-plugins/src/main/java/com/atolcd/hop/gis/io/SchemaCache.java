@@ -0,0 +1,100 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Field;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of the fields read from GIS files, keyed by the files (path, size and last
+ * modification time) and the reader options, so that the schema of an unchanged file is probed
+ * only once.
+ */
+public class SchemaCache {
+
+  private static final int MAX_SIZE = 64;
+
+  private static final Map<String, List<Field>> cache =
+      new LinkedHashMap<String, List<Field>>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Field>> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+
+  /**
+   * Builds the key of a schema
+   *
+   * @param readerName the name of the reader
+   * @param fileNames the files the schema is read from
+   * @param options the reader options changing the schema
+   * @return the key
+   */
+  public static String getKey(String readerName, String[] fileNames, String... options) {
+
+    StringBuilder key = new StringBuilder(readerName).append('|');
+    for (String fileName : fileNames) {
+
+      File file = new File(fileName);
+      key.append(file.getAbsolutePath())
+          .append('|')
+          .append(file.length())
+          .append('|')
+          .append(file.lastModified())
+          .append('|');
+    }
+
+    for (String option : options) {
+      key.append(option).append('|');
+    }
+
+    return key.toString();
+  }
+
+  /**
+   * Returns the fields of a schema
+   *
+   * @param key the key of the schema
+   * @return a copy of the fields or null if the schema is not in the cache
+   */
+  public static synchronized List<Field> get(String key) {
+
+    List<Field> fields = cache.get(key);
+    return fields != null ? new ArrayList<Field>(fields) : null;
+  }
+
+  public static synchronized void put(String key, List<Field> fields) {
+    cache.put(key, new ArrayList<Field>(fields));
+  }
+
+  public static synchronized void clear() {
+    cache.clear();
+  }
+}
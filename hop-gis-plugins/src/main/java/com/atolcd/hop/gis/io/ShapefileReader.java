@@ -25,30 +25,39 @@ package com.atolcd.hop.gis.io;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
 import com.vividsolutions.jump.io.EndianDataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import org.apache.hop.core.exception.HopException;
 import org.geotools.dbffile.DbfFile;
+import org.geotools.dbffile.MappedDbfFile;
+import org.geotools.shapefile.MappedShapefile;
 import org.geotools.shapefile.Shapefile;
 import org.geotools.shapefile.ShapefileHeader;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
 
 public class ShapefileReader extends AbstractFileReader {
 
   private static GeometryFactory geometryFactory = new GeometryFactory();
 
+  // Nombre d'enregistrements décodés par tâche en lecture parallèle
+  private static final int PARALLEL_CHUNK_SIZE = 4096;
+
   private String shpFileName;
   private String dbfFileName;
+  private String shxFileName;
   private boolean dbfFileExist;
   private boolean shpFileExist;
+  private boolean shxFileExist;
+  private long rowOffset;
+  private int parallelThreads;
+  private boolean parallelKeepOrder;
 
   public ShapefileReader(String fileName, String geometryFieldName, String charsetName)
       throws HopException {
@@ -72,6 +81,18 @@ public class ShapefileReader extends AbstractFileReader {
         this.dbfFileName = checkFilename(replaceFileExtension(fileName, ".shp", ".dbf")).getFile();
       }
 
+      // Index shx : lecture projetée en mémoire et accès direct aux enregistrements
+      this.shxFileExist =
+          new File(checkFilename(replaceFileExtension(fileName, ".shp", ".shx")).getFile())
+              .exists();
+      if (this.shxFileExist) {
+        this.shxFileName = checkFilename(replaceFileExtension(fileName, ".shp", ".shx")).getFile();
+      }
+
+      this.rowOffset = 0;
+      this.parallelThreads = 1;
+      this.parallelKeepOrder = true;
+
       // Entête shapefile
       EndianDataInputStream endianInputStream =
           new EndianDataInputStream(new FileInputStream(this.shpFileName));
@@ -99,88 +120,372 @@ public class ShapefileReader extends AbstractFileReader {
 
       endianInputStream.close();
 
-      this.fields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
-
-      // Si présence DBF
+      // Schéma dans l'entête du fichier DBF
       if (this.dbfFileExist) {
+        initFields(new String[] {this.dbfFileName}, geometryFieldName, this.charset.name());
+      } else {
+        this.fields = probeFields();
+      }
 
-        DbfFile dbfFile = new DbfFile(this.dbfFileName, this.charset);
-        for (int i = 0; i < dbfFile.getNumFields(); i++) {
-
-          if (dbfFile.getFieldType(i).equalsIgnoreCase(FieldType.STRING.toString())) {
-            this.fields.add(new Field(dbfFile.getFieldName(i), FieldType.STRING, null, null));
-          } else if (dbfFile.getFieldType(i).equalsIgnoreCase("INTEGER")) {
-            this.fields.add(new Field(dbfFile.getFieldName(i), FieldType.LONG, null, null));
-          } else if (dbfFile.getFieldType(i).equalsIgnoreCase(FieldType.DOUBLE.toString())) {
-            this.fields.add(new Field(dbfFile.getFieldName(i), FieldType.DOUBLE, null, null));
-          } else if (dbfFile.getFieldType(i).equalsIgnoreCase(FieldType.DATE.toString())) {
-            this.fields.add(new Field(dbfFile.getFieldName(i), FieldType.DATE, null, null));
-          } else {
-            this.fields.add(new Field(dbfFile.getFieldName(i), FieldType.STRING, null, null));
-          }
+    } catch (Exception e) {
+      throw new HopException("Error initialize reader", e);
+    }
+  }
+
+  protected List<Field> probeFields() throws Exception {
+
+    List<Field> dbfFields = new ArrayList<Field>();
+    dbfFields.add(new Field(geometryFieldName, FieldType.GEOMETRY, null, null));
+
+    // Si présence DBF
+    if (this.dbfFileExist) {
+
+      DbfFile dbfFile = new DbfFile(this.dbfFileName, this.charset);
+      for (int i = 0; i < dbfFile.getNumFields(); i++) {
+
+        if (dbfFile.getFieldType(i).equalsIgnoreCase(FieldType.STRING.toString())) {
+          dbfFields.add(new Field(dbfFile.getFieldName(i), FieldType.STRING, null, null));
+        } else if (dbfFile.getFieldType(i).equalsIgnoreCase("INTEGER")) {
+          dbfFields.add(new Field(dbfFile.getFieldName(i), FieldType.LONG, null, null));
+        } else if (dbfFile.getFieldType(i).equalsIgnoreCase(FieldType.DOUBLE.toString())) {
+          dbfFields.add(new Field(dbfFile.getFieldName(i), FieldType.DOUBLE, null, null));
+        } else if (dbfFile.getFieldType(i).equalsIgnoreCase(FieldType.DATE.toString())) {
+          dbfFields.add(new Field(dbfFile.getFieldName(i), FieldType.DATE, null, null));
+        } else {
+          dbfFields.add(new Field(dbfFile.getFieldName(i), FieldType.STRING, null, null));
         }
+      }
+
+      dbfFile.close();
+    }
+
+    return dbfFields;
+  }
+
+  /**
+   * Sets the number of records to skip before the first returned feature
+   *
+   * @param rowOffset the number of records to skip
+   */
+  public void setRowOffset(long rowOffset) {
+    this.rowOffset = Math.max(0, rowOffset);
+  }
+
+  /**
+   * Sets the number of threads decoding the records. The parallel reading needs the index (shx)
+   * file.
+   *
+   * @param parallelThreads the number of threads, 1 to read the records sequentially
+   */
+  public void setParallelThreads(int parallelThreads) {
+    this.parallelThreads = Math.max(1, parallelThreads);
+  }
+
+  /**
+   * Sets whether the features are returned in the order of the file in parallel reading
+   *
+   * @param parallelKeepOrder true to keep the order of the records
+   */
+  public void setParallelKeepOrder(boolean parallelKeepOrder) {
+    this.parallelKeepOrder = parallelKeepOrder;
+  }
 
-        dbfFile.close();
+  public FeatureCursor getFeatureCursor() throws HopException {
+
+    if (shxFileExist && parallelThreads > 1) {
+
+      int recordCount;
+      try {
+        MappedShapefile mappedShapefile = new MappedShapefile(shpFileName, shxFileName);
+        recordCount = mappedShapefile.getRecordCount();
+        mappedShapefile.close();
+      } catch (Exception e) {
+        throw new HopException("Error reading features" + shpFileName, e);
       }
 
-    } catch (Exception e) {
-      throw new HopException("Error initialize reader", e);
+      int start = (int) Math.min(rowOffset, recordCount);
+      int end = recordCount;
+      if (limit > 0 && spatialFilter == null) {
+        end = (int) Math.min(recordCount, start + limit);
+      }
+      return new ParallelShapefileFeatureCursor(start, end);
     }
+
+    return new ShapefileFeatureCursor();
   }
 
-  public List<Feature> getFeatures() throws HopException {
+  // Index des colonnes DBF des champs sélectionnés
+  private int[] getDbfColumns() {
 
-    List<Feature> features = new ArrayList<Feature>();
-    try {
+    List<Integer> selectedColumns = new ArrayList<Integer>();
+    for (int j = 1; j < fields.size(); j++) {
+      if (isSelected(fields.get(j))) {
+        selectedColumns.add(j - 1);
+      }
+    }
+
+    int[] columns = new int[selectedColumns.size()];
+    for (int j = 0; j < columns.length; j++) {
+      columns[j] = selectedColumns.get(j);
+    }
+    return columns;
+  }
+
+  // Premier enregistrement à partir de start dont l'emprise est dans celle du filtre spatial
+  private int nextRecordInSpatialFilter(MappedShapefile mappedShapefile, int start, int end) {
+
+    int recordIndex = start;
+    if (spatialFilter != null) {
+      while (recordIndex < end && !isInSpatialFilter(mappedShapefile.readEnvelope(recordIndex))) {
+        recordIndex++;
+      }
+    }
+    return recordIndex;
+  }
+
+  // Feature d'un enregistrement : géométrie et attributs DBF de même rang
+  private Feature getFeature(
+      Geometry geometry, MappedDbfFile dbfFile, int recordIndex, int[] columns, Object[] values)
+      throws Exception {
 
-      InputStream inputStream = new FileInputStream(this.shpFileName);
-      Shapefile shapefile = new Shapefile(inputStream);
-      GeometryCollection geometryCollection = shapefile.read(geometryFactory);
+    Feature feature = new Feature();
+    feature.addValue(fields.get(0), getOutputGeometry(geometry));
 
-      if (this.limit == 0 || this.limit > geometryCollection.getNumGeometries() || this.limit < 0) {
-        this.limit = geometryCollection.getNumGeometries();
+    if (dbfFile != null && recordIndex < dbfFile.getLastRec()) {
+
+      dbfFile.readRecord(recordIndex, columns, values);
+      for (int j = 0; j < columns.length; j++) {
+        feature.addValue(fields.get(columns[j] + 1), values[j]);
       }
+    }
+
+    return feature;
+  }
+
+  private class ShapefileFeatureCursor extends AbstractFeatureCursor {
+
+    private Shapefile shapefile;
+    private MappedShapefile mappedShapefile;
+    private MappedDbfFile dbfFile;
+    private int[] columns;
+    private Object[] values;
+    private int recordIndex;
+
+    public ShapefileFeatureCursor() throws HopException {
+
+      super(limit, preparedSpatialFilter);
+
+      try {
+
+        this.recordIndex = 0;
 
-      for (int i = 0; i < this.limit; i++) {
+        if (shxFileExist) {
 
-        Feature feature = new Feature();
-        Geometry geometry = geometryCollection.getGeometryN(i);
+          // Positionnement direct sur le premier enregistrement
+          this.mappedShapefile = new MappedShapefile(shpFileName, shxFileName);
+          this.mappedShapefile.setPosition((int) Math.min(rowOffset, Integer.MAX_VALUE));
+          this.recordIndex = this.mappedShapefile.getPosition();
 
-        if (this.forceTo2DGeometry) {
-          geometry = GeometryUtils.get2DGeometry(geometry);
+        } else {
+
+          this.shapefile = new Shapefile(shpFileName);
+          this.shapefile.readHeader();
+          while (this.recordIndex < rowOffset && this.shapefile.readNext(geometryFactory) != null) {
+            this.recordIndex++;
+          }
         }
 
-        if (this.forceToMultiGeometry) {
-          geometry = GeometryUtils.getMultiGeometry(geometry);
+        if (dbfFileExist) {
+          this.dbfFile = new MappedDbfFile(dbfFileName, charset);
+          this.columns = getDbfColumns();
+          this.values = new Object[this.columns.length];
         }
 
-        feature.addValue(this.fields.get(0), geometry);
-        features.add(feature);
+      } catch (Exception e) {
+        close();
+        throw new HopException("Error reading features" + shpFileName, e);
       }
+    }
 
-      inputStream.close();
-      shapefile.close();
+    protected Feature readNext() throws HopException {
 
-      if (this.dbfFileExist) {
+      try {
+
+        Geometry geometry;
+        if (this.mappedShapefile != null) {
+
+          // Enregistrements hors de l'emprise du filtre ignorés sans décodage
+          this.recordIndex =
+              nextRecordInSpatialFilter(
+                  this.mappedShapefile, this.recordIndex, this.mappedShapefile.getRecordCount());
+          this.mappedShapefile.setPosition(this.recordIndex);
+          geometry = this.mappedShapefile.readNext(geometryFactory);
+        } else {
+          geometry = this.shapefile.readNext(geometryFactory);
+        }
+        if (geometry == null) {
+          return null;
+        }
+
+        Feature feature =
+            getFeature(geometry, this.dbfFile, this.recordIndex, this.columns, this.values);
+        this.recordIndex++;
+        return feature;
+
+      } catch (Exception e) {
+        throw new HopException("Error reading features" + shpFileName, e);
+      }
+    }
+
+    public void close() throws HopException {
+
+      if (this.shapefile != null) {
+        this.shapefile.close();
+        this.shapefile = null;
+      }
 
-        DbfFile dbfFile = new DbfFile(this.dbfFileName, this.charset);
-        for (int i = 0; i < features.size(); i++) {
+      if (this.mappedShapefile != null) {
+        this.mappedShapefile.close();
+        this.mappedShapefile = null;
+      }
+
+      if (this.dbfFile != null) {
+        try {
+          this.dbfFile.close();
+        } catch (IOException e) {
+          throw new HopException("Error closing " + dbfFileName, e);
+        } finally {
+          this.dbfFile = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Cursor decoding chunks of records on several threads, each thread with its own shapefile and
+   * DBF readers, opened once for all the chunks it decodes.
+   */
+  private class ParallelShapefileFeatureCursor extends AbstractParallelFeatureCursor {
+
+    private ThreadLocal<RecordReader> recordReaders;
+    private List<RecordReader> openedReaders;
+
+    public ParallelShapefileFeatureCursor(int start, int end) {
+      super(
+          limit,
+          preparedSpatialFilter,
+          shpFileName,
+          parallelThreads,
+          parallelKeepOrder,
+          start,
+          end,
+          PARALLEL_CHUNK_SIZE);
+
+      this.recordReaders = new ThreadLocal<RecordReader>();
+      this.openedReaders = Collections.synchronizedList(new ArrayList<RecordReader>());
+    }
+
+    protected Callable<List<Feature>> createChunkTask(long start, long end) {
+      return new ChunkReader((int) start, (int) end);
+    }
+
+    // Lecteurs du thread en cours, ouverts à son premier bloc
+    private RecordReader getRecordReader() throws Exception {
+
+      RecordReader recordReader = this.recordReaders.get();
+      if (recordReader == null) {
+        recordReader = new RecordReader();
+        this.recordReaders.set(recordReader);
+        this.openedReaders.add(recordReader);
+      }
+      return recordReader;
+    }
 
-          byte[] record = dbfFile.GetDbfRec(i);
-          for (int j = 0; j < this.getFields().size() - 1; j++) {
-            features.get(i).addValue(this.fields.get(j + 1), dbfFile.ParseRecordColumn(record, j));
+    public void close() throws HopException {
+
+      // Threads arrêtés : plus aucun bloc en cours de décodage
+      super.close();
+
+      IOException closeException = null;
+      synchronized (this.openedReaders) {
+        for (RecordReader recordReader : this.openedReaders) {
+          try {
+            recordReader.close();
+          } catch (IOException e) {
+            if (closeException == null) {
+              closeException = e;
+            }
           }
         }
+        this.openedReaders.clear();
+      }
 
-        dbfFile.close();
+      if (closeException != null) {
+        throw new HopException("Error closing " + dbfFileName, closeException);
       }
+    }
 
-    } catch (IOException e) {
-      throw new HopException("Error reading features" + this.shpFileName, e);
-    } catch (Exception e) {
-      throw new HopException("Error reading features" + this.shpFileName, e);
+    // Décodage d'un bloc d'enregistrements avec les lecteurs du thread
+    private class ChunkReader implements Callable<List<Feature>> {
+
+      private int start;
+      private int end;
+
+      private ChunkReader(int start, int end) {
+        this.start = start;
+        this.end = end;
+      }
+
+      public List<Feature> call() throws Exception {
+        return getRecordReader().read(this.start, this.end);
+      }
+    }
+  }
+
+  // Lecteurs shapefile et DBF d'un thread de décodage
+  private class RecordReader {
+
+    private MappedShapefile mappedShapefile;
+    private MappedDbfFile dbfFile;
+    private int[] columns;
+    private Object[] values;
+
+    private RecordReader() throws Exception {
+
+      this.mappedShapefile = new MappedShapefile(shpFileName, shxFileName);
+
+      try {
+        if (dbfFileExist) {
+          this.dbfFile = new MappedDbfFile(dbfFileName, charset);
+          this.columns = getDbfColumns();
+          this.values = new Object[this.columns.length];
+        }
+      } catch (Exception e) {
+        close();
+        throw e;
+      }
+    }
+
+    private List<Feature> read(int start, int end) throws Exception {
+
+      List<Feature> features = new ArrayList<Feature>(end - start);
+
+      int i = nextRecordInSpatialFilter(this.mappedShapefile, start, end);
+      while (i < end) {
+        Geometry geometry = this.mappedShapefile.read(i, geometryFactory);
+        features.add(getFeature(geometry, this.dbfFile, i, this.columns, this.values));
+        i = nextRecordInSpatialFilter(this.mappedShapefile, i + 1, end);
+      }
+
+      return features;
     }
 
-    return features;
+    private void close() throws IOException {
+
+      this.mappedShapefile.close();
+      if (this.dbfFile != null) {
+        this.dbfFile.close();
+      }
+    }
   }
 }
@@ -0,0 +1,246 @@
+package com.atolcd.hop.gis.io;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.atolcd.hop.gis.io.features.Feature;
+import com.atolcd.hop.gis.utils.GeometryUtils;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.hop.core.exception.HopException;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Writer of a set of shapefiles : a new file, numbered name_001.shp, name_002.shp..., is started
+ * when the current one reaches a size or a number of records, and at the latest before the 2GB
+ * limit of the format. The geometries can also be routed by type (point, linestring or polygon)
+ * to separate sets of files, numbered name_point_001.shp...
+ */
+public class ShapefileSplitWriter extends AbstractFileWriter {
+
+  private String fileName;
+  private boolean forceTo2DGeometry;
+  private boolean createPrjFile;
+  private long maxFileLength;
+  private int maxRecordCount;
+  private boolean splitByGeometryType;
+
+  // Fichier en cours et numéro du fichier en cours par type de géométrie
+  private Map<String, ShapefileWriter> partWriters;
+  private Map<String, Integer> partNumbers;
+  private String lastGeometryType;
+
+  public ShapefileSplitWriter(String fileName, String geometryFieldName, String charsetName)
+      throws HopException {
+
+    super(geometryFieldName, charsetName);
+
+    checkFilename(fileName);
+    this.fileName = fileName;
+    this.forceTo2DGeometry = false;
+    this.createPrjFile = false;
+    this.maxFileLength = 0;
+    this.maxRecordCount = 0;
+    this.splitByGeometryType = false;
+  }
+
+  public void setForceTo2DGeometry(boolean forceTo2DGeometry) {
+    this.forceTo2DGeometry = forceTo2DGeometry;
+  }
+
+  public void setCreatePrjFile(boolean createPrjFile) {
+    this.createPrjFile = createPrjFile;
+  }
+
+  /**
+   * Sets the length in bytes of .shp or .dbf file from which a new file is started
+   *
+   * @param maxFileLength the length in bytes, 0 for no limit other than the 2GB of the format
+   */
+  public void setMaxFileLength(long maxFileLength) {
+    this.maxFileLength = maxFileLength;
+  }
+
+  /**
+   * Sets the number of records from which a new file is started
+   *
+   * @param maxRecordCount the number of records, 0 for no limit
+   */
+  public void setMaxRecordCount(int maxRecordCount) {
+    this.maxRecordCount = maxRecordCount;
+  }
+
+  /**
+   * Sets whether the points, linestrings and polygons are written to separate files
+   *
+   * @param splitByGeometryType true to write one set of files per type of geometry
+   */
+  public void setSplitByGeometryType(boolean splitByGeometryType) {
+    this.splitByGeometryType = splitByGeometryType;
+  }
+
+  public boolean isStreaming() {
+    return true;
+  }
+
+  public void writeFeatures(List<Feature> features) throws HopException {
+    open();
+    writeBatch(features);
+    close();
+  }
+
+  public void open() throws HopException {
+    this.partWriters = new HashMap<String, ShapefileWriter>();
+    this.partNumbers = new HashMap<String, Integer>();
+    this.lastGeometryType = null;
+  }
+
+  public void writeBatch(List<Feature> features) throws HopException {
+
+    Iterator<Feature> featureIt = features.iterator();
+    while (featureIt.hasNext()) {
+
+      Feature feature = featureIt.next();
+      Geometry geometry = (Geometry) feature.getValue(feature.getField(this.geometryFieldName));
+      String geometryType = getGeometryType(geometry);
+
+      // Fichier suivant si le fichier en cours a atteint un seuil ou la limite
+      // de 2GB du format
+      ShapefileWriter partWriter = this.partWriters.get(geometryType);
+      if (partWriter != null
+          && partWriter.getRecordCount() > 0
+          && (isFull(partWriter) || !partWriter.canWrite(geometry))) {
+        this.partWriters.remove(geometryType);
+        partWriter.close();
+        partWriter = null;
+      }
+
+      if (partWriter == null) {
+        partWriter = openPartWriter(geometryType);
+      }
+
+      partWriter.writeBatch(Collections.singletonList(feature));
+    }
+  }
+
+  public void close() throws HopException {
+
+    HopException closeException = null;
+    for (ShapefileWriter partWriter : this.partWriters.values()) {
+      try {
+        partWriter.close();
+      } catch (HopException e) {
+        if (closeException == null) {
+          closeException = e;
+        }
+      }
+    }
+
+    this.partWriters = null;
+    this.partNumbers = null;
+
+    if (closeException != null) {
+      throw closeException;
+    }
+  }
+
+  public void abort() throws HopException {
+
+    if (this.partWriters == null) {
+      return;
+    }
+
+    HopException abortException = null;
+    for (ShapefileWriter partWriter : this.partWriters.values()) {
+      try {
+        partWriter.abort();
+      } catch (HopException e) {
+        if (abortException == null) {
+          abortException = e;
+        }
+      }
+    }
+
+    this.partWriters = null;
+    this.partNumbers = null;
+
+    if (abortException != null) {
+      throw abortException;
+    }
+  }
+
+  // Type de géométrie déterminant l'ensemble de fichiers de la feature
+  private String getGeometryType(Geometry geometry) {
+
+    if (!this.splitByGeometryType) {
+      return "";
+    }
+
+    String type = GeometryUtils.getGeometryType(geometry);
+
+    // Géométrie vide : écrite avec la feature précédente
+    if (type == null) {
+      return this.lastGeometryType != null ? this.lastGeometryType : "point";
+    }
+
+    this.lastGeometryType = type.replace("MULTI", "").toLowerCase();
+    return this.lastGeometryType;
+  }
+
+  private boolean isFull(ShapefileWriter partWriter) {
+
+    if (this.maxRecordCount > 0 && partWriter.getRecordCount() >= this.maxRecordCount) {
+      return true;
+    }
+
+    return this.maxFileLength > 0 && partWriter.getFileLength() >= this.maxFileLength;
+  }
+
+  private ShapefileWriter openPartWriter(String geometryType) throws HopException {
+
+    Integer partNumber = this.partNumbers.get(geometryType);
+    partNumber = partNumber == null ? 1 : partNumber + 1;
+    this.partNumbers.put(geometryType, partNumber);
+
+    // nom_001.shp ou nom_point_001.shp
+    String suffix = String.format("_%03d.shp", partNumber);
+    if (!geometryType.isEmpty()) {
+      suffix = "_" + geometryType + suffix;
+    }
+
+    ShapefileWriter partWriter =
+        new ShapefileWriter(
+            replaceFileExtension(this.fileName, ".shp", suffix),
+            this.geometryFieldName,
+            this.charset.name());
+    partWriter.setFields(this.fields);
+    partWriter.setForceTo2DGeometry(this.forceTo2DGeometry);
+    partWriter.setCreatePrjFile(this.createPrjFile);
+    partWriter.open();
+
+    this.partWriters.put(geometryType, partWriter);
+    return partWriter;
+  }
+}
@@ -26,16 +26,21 @@ import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
 import com.atolcd.hop.gis.utils.GeometryUtils;
-import com.vividsolutions.jump.io.EndianDataOutputStream;
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.Vector;
 import org.apache.hop.core.exception.HopException;
 import org.cts.CRSFactory;
@@ -45,13 +50,17 @@ import org.cts.registry.RegistryManager;
 import org.geotools.dbffile.DbfFieldDef;
 import org.geotools.dbffile.DbfFile;
 import org.geotools.dbffile.DbfFileWriter;
+import org.geotools.shapefile.MappedShapefile;
 import org.geotools.shapefile.Shapefile;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
 
 public class ShapefileWriter extends AbstractFileWriter {
 
@@ -66,6 +75,16 @@ public class ShapefileWriter extends AbstractFileWriter {
   boolean forceTo2DGeometry;
   boolean createPrjFile;
   private int srid;
+  private DbfFileWriter dbfFileWriter;
+  private Shapefile shapefile;
+  private File spoolFile;
+  private DataOutputStream spoolStream;
+  private long spoolShpLength;
+  private WKBWriter wkbWriter;
+  private TreeSet<String> types;
+  private TreeSet<String> primaryTypes;
+  private TreeSet<Integer> dimensions;
+  private TreeSet<Integer> srids;
 
   public ShapefileWriter(String fileName, String geometryFieldName, String charsetName)
       throws HopException {
@@ -102,301 +121,576 @@ public class ShapefileWriter extends AbstractFileWriter {
     this.createPrjFile = createPrjFile;
   }
 
-  @SuppressWarnings({"rawtypes", "unchecked"})
-  public void writeFeatures(List<Feature> features) throws HopException {
+  public boolean isStreaming() {
+    return true;
+  }
 
-    try {
+  /**
+   * Returns the number of features written since {@link #open()}.
+   *
+   * @return the number of records of the shapefile
+   */
+  public int getRecordCount() {
+    return this.dbfFileWriter.getWriteCount();
+  }
 
-      // Structure DBF
-      List<DbfFieldDef> dbfFields = new ArrayList<DbfFieldDef>();
-      Iterator<Field> fieldIt = this.fields.iterator();
-      while (fieldIt.hasNext()) {
+  /**
+   * Returns the length in bytes of the largest of the .shp and .dbf files written since {@link
+   * #open()}. The length of the .shp file is estimated while its shape type is not settled.
+   *
+   * @return the length of the largest file
+   */
+  public long getFileLength() {
+    return Math.max(getShpLength(), this.dbfFileWriter.getWriteLength());
+  }
 
-        DbfFieldDef dbfField = null;
-        Field field = fieldIt.next();
+  /**
+   * Checks that a feature with the given geometry can be written without exceeding the 2GB limit
+   * of the .shp and .dbf files.
+   *
+   * @param geometry the geometry of the feature
+   * @return true if the files stay under the limit
+   */
+  public boolean canWrite(Geometry geometry) throws HopException {
+
+    if (this.dbfFileWriter.getWriteLength() + this.dbfFileWriter.getRecordLength()
+        > Shapefile.MAX_FILE_LENGTH) {
+      return false;
+    }
 
-        // Geometrie
-        if (field.getType().equals(FieldType.GEOMETRY)) {
+    if (geometry == null) {
+      return true;
+    }
 
-          // Pas pris en compte dans le DBF
+    try {
 
-          // Texte
-        } else if (field.getType().equals(FieldType.STRING)) {
+      // Longueur maximale : géométrie en 3D
+      int length = Shapefile.getShapeHandler(geometry, 4).getLength(geometry);
+      return getShpLength() + 2L * (4 + length) <= Shapefile.MAX_FILE_LENGTH;
 
-          // Longueur définie
-          if (field.getLength() != null && field.getLength() <= 255) {
+    } catch (Exception e) {
+      throw new HopException("Error writing features to " + this.shpFileName, e);
+    }
+  }
 
-            dbfField = new DbfFieldDef(field.getName(), 'C', field.getLength(), 0);
+  private long getShpLength() {
 
-          } else {
-            dbfField = new DbfFieldDef(field.getName(), 'C', 255, 0);
-          }
+    if (this.spoolStream != null) {
+      return this.spoolShpLength;
+    } else if (this.shapefile != null) {
+      return this.shapefile.getWriteLength();
+    }
 
-          // Date
-        } else if (field.getType().equals(FieldType.DATE)) {
+    return 100; // header
+  }
 
-          dbfField = new DbfFieldDef(field.getName(), 'D', 8, 0);
+  public void writeFeatures(List<Feature> features) throws HopException {
+    open();
+    writeBatch(features);
+    close();
+  }
 
-          // Entier
-        } else if (field.getType().equals(FieldType.LONG)) {
+  public void open() throws HopException {
 
-          if (field.getLength() != null && field.getLength() <= 10) {
+    try {
 
-            dbfField = new DbfFieldDef(field.getName(), 'N', field.getLength(), 0);
+      // Dbf : nombre d'enregistrements mis à jour à la fermeture
+      List<DbfFieldDef> dbfFields = getDbfFields();
+      this.dbfFileWriter = new DbfFileWriter(this.dbfFileName);
+      this.dbfFileWriter.setCharset(this.charset);
+      this.dbfFileWriter.writeHeader(dbfFields.toArray(new DbfFieldDef[dbfFields.size()]), 0);
+
+      // Shp et shx écrits au fil de l'eau dès la première géométrie, qui fixe
+      // le type de shapefile
+      this.shapefile = null;
+      this.spoolFile = null;
+      this.spoolStream = null;
+      this.wkbWriter = new WKBWriter(3, true);
+
+      this.types = new TreeSet<String>();
+      this.primaryTypes = new TreeSet<String>();
+      this.dimensions = new TreeSet<Integer>();
+      this.srids = new TreeSet<Integer>();
+      this.srid = 0;
+      this.zOnlyShapefile = false;
+      this.multiPointShapefile = false;
 
-          } else {
-            dbfField = new DbfFieldDef(field.getName(), 'N', 10, 0);
-          }
+    } catch (Exception e) {
+      throw new HopException("Error writing features to " + this.shpFileName, e);
+    }
+  }
 
-          // Double
-        } else if (field.getType().equals(FieldType.DOUBLE)) {
+  public void writeBatch(List<Feature> features) throws HopException {
 
-          int maxLength = 20;
-          int maxDecimalCount = 15;
+    try {
 
-          if (field.getLength() != null && field.getLength() <= maxLength) {
-            maxLength = field.getLength();
-          }
+      Iterator<Feature> featureIt = features.iterator();
+      while (featureIt.hasNext()) {
 
-          if (field.getDecimalCount() != null && field.getDecimalCount() <= maxDecimalCount) {
-            maxDecimalCount = field.getDecimalCount();
-          }
+        Feature feature = featureIt.next();
 
-          dbfField = new DbfFieldDef(field.getName(), 'N', maxLength, maxDecimalCount);
+        // Récupération de la géométrie
+        Geometry geometry = (Geometry) feature.getValue(feature.getField(this.geometryFieldName));
+        if (geometry instanceof LineString || geometry instanceof Polygon) {
+          geometry = GeometryUtils.getMultiGeometry(geometry);
+        }
 
-          // Booléen
-        } else if (field.getType().equals(FieldType.BOOLEAN)) {
+        // Vérification homogénéité au fil de l'eau
+        checkGeometry(geometry);
 
-          dbfField = new DbfFieldDef(field.getName(), 'L', 1, 0);
+        if (this.spoolStream == null && this.shapefile == null) {
+          openShapefile(geometry);
+        } else if (this.spoolStream == null && !isWritable(geometry)) {
+          spoolShapefile();
+        }
 
-          // Autres types
+        if (this.spoolStream != null) {
+          spoolGeometry(geometry);
         } else {
-          dbfField = new DbfFieldDef(field.getName(), 'C', 255, 0);
+          writeGeometry(geometry);
         }
 
-        if (dbfField != null) {
-          dbfFields.add(dbfField);
-        }
+        this.dbfFileWriter.writeRecord(getDbfRow(feature));
       }
 
-      // Boucle sur chaque feature
-      Geometry[] geometries = new Geometry[features.size()];
-      Vector[] rows = new Vector[features.size()];
-      Iterator<Feature> featureIt = features.iterator();
-      int i = 0;
-      while (featureIt.hasNext()) {
+    } catch (HopException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HopException("Error writing features to " + this.shpFileName, e);
+    }
+  }
 
-        Feature feature = featureIt.next();
+  public void close() throws HopException {
 
-        // Récupération de la géométrie
-        Geometry geometry = (Geometry) feature.getValue(feature.getField(this.geometryFieldName));
-        if (geometry instanceof LineString || geometry instanceof Polygon) {
-          geometry = GeometryUtils.getMultiGeometry(geometry);
+    try {
+
+      this.dbfFileWriter.close();
+
+      if (this.spoolStream != null) {
+        writeSpooledShapefile();
+
+      } else if (this.shapefile != null) {
+        this.shapefile.closeWrite();
+
+      } else {
+        Shapefile emptyShapefile = new Shapefile(this.shpFileName);
+        emptyShapefile.openWrite(this.shxFileName, Shapefile.POINT); // default
+        emptyShapefile.closeWrite();
+      }
+
+      // Prj
+      if (srid > 0 && createPrjFile) {
+
+        CRSFactory cRSFactory = new CRSFactory();
+        RegistryManager registryManager = cRSFactory.getRegistryManager();
+        registryManager.addRegistry(new EPSGRegistry());
+        CoordinateReferenceSystem crs = cRSFactory.getCRS("EPSG:" + srid);
+        if (crs != null) {
+
+          PrintWriter printWriter = new PrintWriter(this.prjFileName, this.charset.name());
+          printWriter.print(crs.toWKT());
+          printWriter.close();
         }
-        geometries[i] = geometry;
+      }
 
-        Vector row = new Vector();
-        Iterator<Field> colIt = this.fields.iterator();
+    } catch (Exception e) {
+      throw new HopException("Error writing features to " + this.shpFileName, e);
 
-        while (colIt.hasNext()) {
+    } finally {
+      this.shapefile = null;
+      if (this.spoolFile != null) {
+        this.spoolFile.delete();
+        this.spoolFile = null;
+      }
+    }
+  }
 
-          Field field = colIt.next();
-          Object value = feature.getValue(field);
+  public void abort() throws HopException {
 
-          // Entier
-          if (field.getType().equals(FieldType.LONG)) {
+    try {
 
-            if (value != null) {
-              row.add(Long.parseLong(String.valueOf(value)));
-            } else {
-              row.add(new Long(0));
-            }
+      if (this.dbfFileWriter != null) {
+        this.dbfFileWriter.abort();
+      }
 
-            // Double
-          } else if (field.getType().equals(FieldType.DOUBLE)) {
+      if (this.spoolStream != null) {
+        this.spoolStream.close();
+      }
 
-            if (value != null) {
-              row.add((Double) value);
-            } else {
-              row.add(new Double(0.0));
-            }
+      if (this.shapefile != null) {
+        this.shapefile.abortWrite();
+      }
 
-            // Date
-          } else if (field.getType().equals(FieldType.DATE)) {
+    } catch (IOException e) {
+      throw new HopException("Error closing " + this.shpFileName, e);
+
+    } finally {
+      this.dbfFileWriter = null;
+      this.spoolStream = null;
+      this.shapefile = null;
+      if (this.spoolFile != null) {
+        this.spoolFile.delete();
+        this.spoolFile = null;
+      }
+    }
+  }
 
-            if (value != null) {
-              row.add(DbfFile.DATE_PARSER.format((Date) value));
-            } else {
-              row.add("");
-            }
+  // Ouverture du shp et du shx avec le type de la première géométrie
+  private void openShapefile(Geometry geometry) throws Exception {
 
-            // Booléen
-          } else if (field.getType().equals(FieldType.BOOLEAN)) {
+    int dimension = 2; // x,y
+    if (!this.forceTo2DGeometry && GeometryUtils.getCoordinateDimension(geometry) == 3) {
+      dimension = 4; // x,y,z
+    }
 
-            if (value != null) {
-              row.add((Boolean) value);
-            } else {
-              row.add(false);
-            }
+    this.shapefile = new Shapefile(this.shpFileName);
+    this.shapefile.openWrite(this.shxFileName, Shapefile.getShapeType(geometry, dimension));
+  }
 
-            // Caractère
-          } else if (field.getType().equals(FieldType.STRING)) {
+  // La géométrie peut-elle être écrite avec le type de shapefile déjà fixé
+  private boolean isWritable(Geometry geometry) {
 
-            if (value != null) {
-              row.add((String) value);
-            } else {
-              row.add("");
-            }
+    int shapeType = this.shapefile.getWriteShapeType();
 
-            // Autre -> Caractère
-          } else {
+    // Shapefile 3D et géométrie 2D : shapefile 2D au final
+    if (Shapefile.hasZ(shapeType)
+        && !geometry.isEmpty()
+        && GeometryUtils.getCoordinateDimension(geometry) != 3) {
+      return false;
+    }
 
-            // Autres colonnes de type "GEOMETRY" ignorées : 1 seule
-            // geométry pour SHP
-            if (!field.getType().equals(FieldType.GEOMETRY)) {
+    // Shapefile POINT et géométrie MULTIPOINT : shapefile MULTIPOINT au final
+    if ((shapeType == Shapefile.POINT || shapeType == Shapefile.POINTZ)
+        && geometry instanceof MultiPoint) {
+      return false;
+    }
 
-              if (value != null) {
-                row.add((String) value);
-              } else {
-                row.add("");
-              }
+    return true;
+  }
 
-            } else {
+  private void writeGeometry(Geometry geometry) throws IOException {
 
-            }
-          }
-        }
+    int shapeType = this.shapefile.getWriteShapeType();
+    if ((shapeType == Shapefile.MULTIPOINT || shapeType == Shapefile.MULTIPOINTZ)
+        && geometry instanceof Point) {
+      geometry = GeometryUtils.getMultiGeometry(geometry);
+    }
+
+    this.shapefile.writeNext(geometry);
+  }
+
+  // Type de shapefile remis en cause : les géométries déjà écrites sont relues
+  // et stockées temporairement en WKB avec les suivantes jusqu'à la fermeture
+  private void spoolShapefile() throws Exception {
+
+    this.shapefile.closeWrite();
+    this.shapefile = null;
+
+    this.spoolFile = File.createTempFile("hop-gis-shp", ".wkb");
+    this.spoolFile.deleteOnExit();
+    this.spoolStream =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spoolFile)));
+    this.spoolShpLength = 100; // header
 
-        rows[i] = row;
-        i++;
+    MappedShapefile mappedShapefile = new MappedShapefile(this.shpFileName, this.shxFileName);
+    try {
+      Geometry geometry = mappedShapefile.readNext(geometryFactory);
+      while (geometry != null) {
+        spoolGeometry(geometry);
+        geometry = mappedShapefile.readNext(geometryFactory);
       }
+    } finally {
+      mappedShapefile.close();
+    }
+  }
+
+  private void spoolGeometry(Geometry geometry) throws Exception {
+
+    byte[] wkb = this.wkbWriter.write(geometry);
+    this.spoolStream.writeInt(wkb.length);
+    this.spoolStream.write(wkb);
+
+    // Longueur estimée de l'enregistrement dans le shp final
+    if (geometry instanceof Point && this.types.contains("MULTIPOINT")) {
+      geometry = GeometryUtils.getMultiGeometry(geometry);
+    }
+    int dimension = 2; // x,y
+    if (!this.forceTo2DGeometry && GeometryUtils.getCoordinateDimension(geometry) == 3) {
+      dimension = 4; // x,y,z
+    }
+    this.spoolShpLength +=
+        2L * (4 + Shapefile.getShapeHandler(geometry, dimension).getLength(geometry));
+  }
 
-      // Création des fichiers SHP, SHX et DBF
-      GeometryCollection geometryCollection = geometryFactory.createGeometryCollection(geometries);
+  // Création du shp et du shx à partir des géométries stockées temporairement
+  private void writeSpooledShapefile() throws Exception {
 
-      // Vérification homogénéité de la collection
-      checkGeometryCollection(geometryCollection);
+    DataInputStream spoolInputStream = null;
+
+    try {
+
+      this.spoolStream.close();
+
+      // 3D uniquement
+      if (this.dimensions.size() == 1 && this.dimensions.contains(3)) {
+        this.zOnlyShapefile = true;
+      }
 
       // Cas différencié POINT / MULTIPOINT pour shapefile
-      if (this.multiPointShapefile) {
-        geometryCollection = toMultiPoint(geometryCollection);
+      if (this.primaryTypes.contains("POINT")) {
+        this.multiPointShapefile = this.types.contains("MULTIPOINT");
       }
 
-      // Shp
-      // Shapefile shapefile = new Shapefile(new
-      // File(this.shpFileName).toURI().toURL());
-      Shapefile shapefile = new Shapefile(this.shpFileName);
+      int dimension = 2; // x,y
       if (!this.forceTo2DGeometry && this.zOnlyShapefile) {
-        shapefile.write(geometryCollection, 4); // x,y,z
-      } else {
-        shapefile.write(geometryCollection, 2); // x,y
+        dimension = 4; // x,y,z
       }
 
-      // Shx
-      BufferedOutputStream bufferedOutputStream =
-          new BufferedOutputStream(new FileOutputStream(this.shxFileName));
-      EndianDataOutputStream endianDataOutputStream =
-          new EndianDataOutputStream(bufferedOutputStream);
-      if (!this.forceTo2DGeometry && this.zOnlyShapefile) {
-        shapefile.writeIndex(geometryCollection, endianDataOutputStream, 4); // x,y,z
+      // Création des fichiers SHP et SHX
+      spoolInputStream =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(this.spoolFile)));
+      WKBReader wkbReader = new WKBReader(geometryFactory);
+      Shapefile shapefile = new Shapefile(this.shpFileName);
+
+      Geometry geometry = readSpooledGeometry(spoolInputStream, wkbReader);
+      if (geometry == null) {
+        shapefile.openWrite(this.shxFileName, Shapefile.POINT); // default
       } else {
-        shapefile.writeIndex(geometryCollection, endianDataOutputStream, 2); // x,y
+        shapefile.openWrite(this.shxFileName, Shapefile.getShapeType(geometry, dimension));
       }
-      bufferedOutputStream.close();
 
-      // Dbf
-      DbfFileWriter dbfFileWriter;
-      dbfFileWriter = new DbfFileWriter(this.dbfFileName);
-      dbfFileWriter.setCharset(this.charset);
-      dbfFileWriter.writeHeader(
-          dbfFields.toArray(new DbfFieldDef[dbfFields.size()]), features.size());
-      dbfFileWriter.writeRecords(rows);
-      dbfFileWriter.close();
+      while (geometry != null) {
+        shapefile.writeNext(geometry);
+        geometry = readSpooledGeometry(spoolInputStream, wkbReader);
+      }
+      shapefile.closeWrite();
 
-      // Prj
-      if (srid > 0 && createPrjFile) {
+    } finally {
+      if (spoolInputStream != null) {
+        spoolInputStream.close();
+      }
+    }
+  }
 
-        CRSFactory cRSFactory = new CRSFactory();
-        RegistryManager registryManager = cRSFactory.getRegistryManager();
-        registryManager.addRegistry(new EPSGRegistry());
-        CoordinateReferenceSystem crs = cRSFactory.getCRS("EPSG:" + srid);
-        if (crs != null) {
+  private List<DbfFieldDef> getDbfFields() {
 
-          PrintWriter printWriter = new PrintWriter(this.prjFileName, this.charset.name());
-          printWriter.print(crs.toWKT());
-          printWriter.close();
+    // Structure DBF
+    List<DbfFieldDef> dbfFields = new ArrayList<DbfFieldDef>();
+    Iterator<Field> fieldIt = this.fields.iterator();
+    while (fieldIt.hasNext()) {
+
+      DbfFieldDef dbfField = null;
+      Field field = fieldIt.next();
+
+      // Geometrie
+      if (field.getType().equals(FieldType.GEOMETRY)) {
+
+        // Pas pris en compte dans le DBF
+
+        // Texte
+      } else if (field.getType().equals(FieldType.STRING)) {
+
+        // Longueur définie
+        if (field.getLength() != null && field.getLength() <= 255) {
+
+          dbfField = new DbfFieldDef(field.getName(), 'C', field.getLength(), 0);
+
+        } else {
+          dbfField = new DbfFieldDef(field.getName(), 'C', 255, 0);
         }
+
+        // Date
+      } else if (field.getType().equals(FieldType.DATE)) {
+
+        dbfField = new DbfFieldDef(field.getName(), 'D', 8, 0);
+
+        // Entier
+      } else if (field.getType().equals(FieldType.LONG)) {
+
+        if (field.getLength() != null && field.getLength() <= 10) {
+
+          dbfField = new DbfFieldDef(field.getName(), 'N', field.getLength(), 0);
+
+        } else {
+          dbfField = new DbfFieldDef(field.getName(), 'N', 10, 0);
+        }
+
+        // Double
+      } else if (field.getType().equals(FieldType.DOUBLE)) {
+
+        int maxLength = 20;
+        int maxDecimalCount = 15;
+
+        if (field.getLength() != null && field.getLength() <= maxLength) {
+          maxLength = field.getLength();
+        }
+
+        if (field.getDecimalCount() != null && field.getDecimalCount() <= maxDecimalCount) {
+          maxDecimalCount = field.getDecimalCount();
+        }
+
+        dbfField = new DbfFieldDef(field.getName(), 'N', maxLength, maxDecimalCount);
+
+        // Booléen
+      } else if (field.getType().equals(FieldType.BOOLEAN)) {
+
+        dbfField = new DbfFieldDef(field.getName(), 'L', 1, 0);
+
+        // Autres types
+      } else {
+        dbfField = new DbfFieldDef(field.getName(), 'C', 255, 0);
       }
 
-    } catch (IOException e) {
-      throw new HopException("Error writing features to " + this.shpFileName, e);
-    } catch (Exception e) {
-      throw new HopException("Error writing features to " + this.shpFileName, e);
+      if (dbfField != null) {
+        dbfFields.add(dbfField);
+      }
     }
+
+    return dbfFields;
   }
 
-  @SuppressWarnings("unchecked")
-  private void checkGeometryCollection(GeometryCollection geometryCollection) throws HopException {
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private Vector getDbfRow(Feature feature) {
 
-    HashMap<String, Object> geometryCollectionInfos =
-        GeometryUtils.getGeometryCollectionInfos(geometryCollection);
+    Vector row = new Vector();
+    Iterator<Field> colIt = this.fields.iterator();
 
-    // Présence d'une GEOMETRYCOLLECTION
-    List<String> types = (List<String>) geometryCollectionInfos.get("TYPES");
-    if (types.contains("GEOMETRYCOLLECTION")) {
-      throw new HopException(
-          "Error writing features to "
-              + this.shpFileName
-              + " : GEOMETRYCOLLECTION geometries are not supported");
-    }
+    while (colIt.hasNext()) {
 
-    // Présence de plusieurs SRID
-    List<Integer> srids = (List<Integer>) geometryCollectionInfos.get("SRIDS");
-    if (srids.size() == 0) {
-      this.srid = 0;
-    } else if (srids.size() > 1) {
-      throw new HopException(
-          "Error writing features to "
-              + this.shpFileName
-              + " : Mixed SRID are not supported "
-              + srids.toString());
-    } else {
+      Field field = colIt.next();
+      Object value = feature.getValue(field);
+
+      // Entier
+      if (field.getType().equals(FieldType.LONG)) {
+
+        if (value != null) {
+          row.add(Long.parseLong(String.valueOf(value)));
+        } else {
+          row.add(new Long(0));
+        }
+
+        // Double
+      } else if (field.getType().equals(FieldType.DOUBLE)) {
+
+        if (value != null) {
+          row.add((Double) value);
+        } else {
+          row.add(new Double(0.0));
+        }
+
+        // Date
+      } else if (field.getType().equals(FieldType.DATE)) {
+
+        if (value != null) {
+          row.add(DbfFile.DATE_PARSER.format((Date) value));
+        } else {
+          row.add("");
+        }
+
+        // Booléen
+      } else if (field.getType().equals(FieldType.BOOLEAN)) {
+
+        if (value != null) {
+          row.add((Boolean) value);
+        } else {
+          row.add(false);
+        }
+
+        // Caractère
+      } else if (field.getType().equals(FieldType.STRING)) {
+
+        if (value != null) {
+          row.add((String) value);
+        } else {
+          row.add("");
+        }
+
+        // Autre -> Caractère
+      } else {
 
-      if (!srids.get(0).equals(0)) {
-        this.srid = srids.get(0);
+        // Autres colonnes de type "GEOMETRY" ignorées : 1 seule
+        // geométry pour SHP
+        if (!field.getType().equals(FieldType.GEOMETRY)) {
+
+          if (value != null) {
+            row.add((String) value);
+          } else {
+            row.add("");
+          }
+
+        } else {
+
+        }
       }
     }
 
-    // 3D uniquement
-    List<Integer> dimensions = (List<Integer>) geometryCollectionInfos.get("DIMENSIONS");
-    if (dimensions.size() == 1 && dimensions.contains(3)) {
-      this.zOnlyShapefile = true;
+    return row;
+  }
+
+  private void checkGeometry(Geometry geometry) throws HopException {
+
+    String type = GeometryUtils.getGeometryType(geometry);
+    if (type != null) {
+
+      // Présence d'une GEOMETRYCOLLECTION
+      if (type.equals("GEOMETRYCOLLECTION")) {
+        throw new HopException(
+            "Error writing features to "
+                + this.shpFileName
+                + " : GEOMETRYCOLLECTION geometries are not supported");
+      }
+
+      this.types.add(type);
+      this.primaryTypes.add(type.replace("MULTI", ""));
+
+      // Types généraux de geometry
+      if (this.primaryTypes.size() > 1) {
+        throw new HopException(
+            "Error writing features to "
+                + this.shpFileName
+                + " : Mixed types of geometries are not supported "
+                + this.types.toString());
+      }
+
+      if (GeometryUtils.getCoordinateDimension(geometry) == 3) {
+        this.dimensions.add(3);
+      } else {
+        this.dimensions.add(2);
+      }
     }
 
-    // Types généraux de geometry
-    List<String> primaryTypes = (List<String>) geometryCollectionInfos.get("PRIMARY_TYPES");
-    if (primaryTypes.size() > 1) {
+    // Présence de plusieurs SRID
+    this.srids.add(geometry.getSRID());
+    if (this.srids.size() > 1) {
       throw new HopException(
           "Error writing features to "
               + this.shpFileName
-              + " : Mixed types of geometries are not supported "
-              + types.toString());
-    } else {
-
-      // Cas différencié POINT / MULTIPOINT pour shapefile
-      if (primaryTypes.contains("POINT")) {
-        this.multiPointShapefile = types.contains("MULTIPOINT");
-      }
+              + " : Mixed SRID are not supported "
+              + this.srids.toString());
+    } else if (geometry.getSRID() != 0) {
+      this.srid = geometry.getSRID();
     }
   }
 
-  private GeometryCollection toMultiPoint(GeometryCollection geometryCollection) {
+  private Geometry readSpooledGeometry(DataInputStream spoolInputStream, WKBReader wkbReader)
+      throws IOException, ParseException {
 
-    MultiPoint[] geometries = new MultiPoint[geometryCollection.getNumGeometries()];
-    for (int i = 0; i < geometryCollection.getNumGeometries(); i++) {
-      geometries[i] =
-          (MultiPoint) GeometryUtils.getMultiGeometry(geometryCollection.getGeometryN(i));
+    int length;
+    try {
+      length = spoolInputStream.readInt();
+    } catch (EOFException e) {
+      return null;
     }
-    return geometryFactory.createGeometryCollection(geometries);
+
+    byte[] wkb = new byte[length];
+    spoolInputStream.readFully(wkb);
+    Geometry geometry = wkbReader.read(wkb);
+
+    // Cas différencié POINT / MULTIPOINT pour shapefile
+    if (this.multiPointShapefile) {
+      geometry = GeometryUtils.getMultiGeometry(geometry);
+    }
+
+    return geometry;
   }
 }
@@ -23,15 +23,14 @@ package com.atolcd.hop.gis.io;
  */
 
 import com.atolcd.gis.spatialite.Database;
-import com.atolcd.gis.spatialite.Row;
+import com.atolcd.gis.spatialite.RowCursor;
 import com.atolcd.gis.spatialite.Table;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.Field;
 import com.atolcd.hop.gis.io.features.Field.FieldType;
-import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.io.File;
-import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.apache.hop.core.exception.HopException;
 import org.locationtech.jts.geom.Geometry;
@@ -65,14 +64,26 @@ public class SpatialiteReader extends AbstractFileReader {
     this.database = new Database();
 
     try {
+      initFields(new String[] {this.spatialiteFileName}, this.layerName);
+    } catch (HopException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HopException("Error initialize reader", e);
+    }
+  }
+
+  protected List<Field> probeFields() throws Exception {
 
-      database.open(this.spatialiteFileName);
+    List<Field> sqliteFields = new ArrayList<Field>();
+    database.open(this.spatialiteFileName);
+
+    try {
 
       // Si liste de contenu
       if (this.listContent) {
 
-        this.fields.add(new Field("table_name", FieldType.STRING, null, null));
-        this.fields.add(new Field("is_spatial", FieldType.BOOLEAN, null, null));
+        sqliteFields.add(new Field("table_name", FieldType.STRING, null, null));
+        sqliteFields.add(new Field("is_spatial", FieldType.BOOLEAN, null, null));
 
       } else {
         Table dbTable = database.getTable(this.layerName);
@@ -120,72 +131,135 @@ public class SpatialiteReader extends AbstractFileReader {
             field = new Field(dbField.getName(), FieldType.STRING, null, null);
           }
 
-          this.fields.add(field);
+          sqliteFields.add(field);
         }
       }
 
+    } finally {
       database.close();
-
-    } catch (ClassNotFoundException e) {
-      throw new HopException("Error initialize reader", e);
-    } catch (SQLException e) {
-      throw new HopException("Error initialize reader", e);
     }
+
+    return sqliteFields;
   }
 
-  public List<Feature> getFeatures() throws HopException {
+  public FeatureCursor getFeatureCursor() throws HopException {
+    return new SpatialiteFeatureCursor();
+  }
 
-    List<Feature> features = new ArrayList<Feature>();
+  private class SpatialiteFeatureCursor extends AbstractFeatureCursor {
 
-    try {
+    private Iterator<Table> tableIt;
+    private RowCursor rowCursor;
+    private List<Field> readFields;
+    private int[] readIndexes;
 
-      database.open(this.spatialiteFileName);
+    public SpatialiteFeatureCursor() throws HopException {
 
-      // Si liste de contenu
-      if (this.listContent) {
+      super(limit, preparedSpatialFilter);
+      this.readFields = getFields();
+
+      try {
 
-        for (Table dbTable : database.getTables()) {
+        database.open(spatialiteFileName);
 
-          Feature feature = new Feature();
-          feature.addValue(this.getField("table_name"), dbTable.getName());
-          feature.addValue(this.getField("is_spatial"), dbTable.isSpatial());
-          features.add(feature);
+        // Si liste de contenu
+        if (listContent) {
+          this.tableIt = database.getTables().iterator();
+        } else {
+          // Sélection des seules colonnes lues
+          List<String> fieldNames = new ArrayList<String>();
+          for (Field field : this.readFields) {
+            fieldNames.add(field.getName());
+          }
+
+          // Filtre spatial sur l'emprise puis exact : limite appliquée par le curseur
+          if (spatialFilter != null) {
+            this.rowCursor =
+                database.getRowCursor(
+                    database.getTable(layerName),
+                    fieldNames,
+                    spatialFilter.getEnvelopeInternal(),
+                    0L);
+          } else {
+            this.rowCursor =
+                database.getRowCursor(database.getTable(layerName), fieldNames, null, limit);
+          }
+
+          // Position des colonnes lues dans le curseur
+          this.readIndexes = new int[this.readFields.size()];
+          for (int i = 0; i < this.readFields.size(); i++) {
+            this.readIndexes[i] = this.rowCursor.indexOf(this.readFields.get(i).getName());
+          }
+        }
+
+      } catch (Exception e) {
+        close();
+        throw new HopException("Error reading features" + spatialiteFileName, e);
+      }
+    }
+
+    protected Feature readNext() throws HopException {
+
+      Feature feature = null;
+
+      if (this.tableIt != null) {
+
+        if (this.tableIt.hasNext()) {
+
+          Table dbTable = this.tableIt.next();
+          feature = new Feature();
+          feature.addValue(getField("table_name"), dbTable.getName());
+          feature.addValue(getField("is_spatial"), dbTable.isSpatial());
         }
 
       } else {
-        Table dbTable = database.getTable(this.layerName);
 
-        for (Row row : this.database.getRows(dbTable, limit)) {
+        try {
 
-          Feature feature = new Feature();
-          for (Field field : this.fields) {
-            Object value = row.getValue(field.getName());
+          if (this.rowCursor.next()) {
 
-            if (field.getType().equals(FieldType.GEOMETRY)) {
-              if (this.forceTo2DGeometry) {
-                value = GeometryUtils.get2DGeometry((Geometry) value);
+            feature = new Feature();
+            for (int i = 0; i < this.readFields.size(); i++) {
+
+              Field field = this.readFields.get(i);
+              Object value = null;
+              if (this.readIndexes[i] >= 0) {
+                value = this.rowCursor.getValue(this.readIndexes[i]);
               }
 
-              if (this.forceToMultiGeometry) {
-                value = GeometryUtils.getMultiGeometry((Geometry) value);
+              if (field.getType().equals(FieldType.GEOMETRY)) {
+                value = getOutputGeometry((Geometry) value);
               }
-            }
 
-            feature.addValue(field, row.getValue(field.getName()));
+              feature.addValue(field, value);
+            }
           }
-          features.add(feature);
+
+        } catch (Exception e) {
+          throw new HopException("Error reading features" + spatialiteFileName, e);
         }
       }
 
-      database.close();
+      return feature;
+    }
 
-    } catch (ClassNotFoundException e) {
-      throw new HopException("Error reading features" + this.spatialiteFileName, e);
-    } catch (SQLException e) {
-      throw new HopException("Error reading features" + this.spatialiteFileName, e);
-    } catch (Exception e) {
-      throw new HopException("Error reading features" + this.spatialiteFileName, e);
+    public void close() throws HopException {
+
+      RowCursor rowCursor = this.rowCursor;
+      this.tableIt = null;
+      this.rowCursor = null;
+
+      try {
+        try {
+          if (rowCursor != null) {
+            rowCursor.close();
+          }
+        } finally {
+          database.close();
+        }
+      } catch (Exception e) {
+        throw new HopException("Error closing " + spatialiteFileName, e);
+      }
     }
-    return features;
   }
 }
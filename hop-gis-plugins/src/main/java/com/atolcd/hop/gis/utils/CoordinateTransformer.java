@@ -25,21 +25,17 @@ package com.atolcd.hop.gis.utils;
 import org.apache.hop.core.exception.HopException;
 import org.cts.IllegalCoordinateException;
 import org.cts.op.CoordinateOperation;
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.LineString;
-import org.locationtech.jts.geom.LinearRing;
-import org.locationtech.jts.geom.MultiLineString;
-import org.locationtech.jts.geom.MultiPoint;
-import org.locationtech.jts.geom.MultiPolygon;
-import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 public final class CoordinateTransformer {
 
-  private static GeometryFactory geometryFactory = new GeometryFactory();
+  // Géométries de sortie avec coordonnées stockées dans un tableau de doubles
+  private static GeometryFactory geometryFactory =
+      new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
 
   /**
    * Conversion d'une géométrie JTS d'un système de coordonnées vers un autre
@@ -54,44 +50,11 @@ public final class CoordinateTransformer {
 
     if (!GeometryUtils.isNullOrEmptyGeometry(geometry)) {
 
-      // Point
-      if (geometry instanceof Point) {
-
-        return tranformPoint((Point) geometry, transformation);
-
-        // MultiPoint
-      } else if (geometry instanceof MultiPoint) {
-
-        return tranformMultiPoint((MultiPoint) geometry, transformation);
-
-        // Linestring
-      } else if (geometry instanceof LineString) {
-
-        return tranformLineString((LineString) geometry, transformation);
-
-        // MultiLineString
-      } else if (geometry instanceof MultiLineString) {
-
-        return tranformMultiLineString((MultiLineString) geometry, transformation);
-
-      } else if (geometry instanceof Polygon) {
-
-        return tranformPolygon((Polygon) geometry, transformation);
-
-      } else if (geometry instanceof MultiPolygon) {
-
-        return tranformMultiPolygon((MultiPolygon) geometry, transformation);
-
-      } else if (geometry instanceof GeometryCollection) {
-
-        return tranformGeometryCollection((GeometryCollection) geometry, transformation);
-
-      } else {
-        throw new HopException(
-            "Transformation error : "
-                + geometry.getClass().getCanonicalName()
-                + " is not supported.");
-      }
+      // Copie de la géométrie puis transformation des coordonnées sur place
+      Geometry outGeometry = geometryFactory.createGeometry(geometry);
+      transformInPlace(outGeometry, transformation);
+      outGeometry.setSRID(0);
+      return outGeometry;
 
     } else {
       return null;
@@ -99,211 +62,60 @@ public final class CoordinateTransformer {
   }
 
   /**
-   * Transformation d'un point
+   * Conversion sur place des coordonnées d'une géométrie JTS, sans allocation par sommet. La
+   * géométrie ne doit pas être partagée avec d'autres lignes.
    *
-   * @param point
+   * @param geometry
    * @param transformation
-   * @return
    * @throws HopException
    */
-  private static Point tranformPoint(Point point, CoordinateOperation transformation)
+  public static void transformInPlace(Geometry geometry, CoordinateOperation transformation)
       throws HopException {
-    return geometryFactory.createPoint(transformCoordinate(point.getCoordinate(), transformation));
-  }
 
-  /**
-   * Transformation d'une ligne
-   *
-   * @param lineString
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static LineString tranformLineString(
-      LineString lineString, CoordinateOperation transformation) throws HopException {
-    return geometryFactory.createLineString(
-        tranformCoordinates(lineString.getCoordinates(), transformation));
-  }
+    if (!GeometryUtils.isNullOrEmptyGeometry(geometry)) {
 
-  /**
-   * Transformation d'un polygone
-   *
-   * @param polygon
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static Polygon tranformPolygon(Polygon polygon, CoordinateOperation transformation)
-      throws HopException {
+      TransformationFilter filter = new TransformationFilter(transformation);
+      geometry.apply(filter);
 
-    LinearRing exteriorRing =
-        geometryFactory.createLinearRing(
-            tranformLineString(polygon.getExteriorRing(), transformation).getCoordinates());
-    LinearRing interiorRings[] = new LinearRing[polygon.getNumInteriorRing()];
-    for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
-      interiorRings[i] =
-          geometryFactory.createLinearRing(
-              tranformLineString(polygon.getInteriorRingN(i), transformation).getCoordinates());
+      if (filter.error != null) {
+        throw new HopException("Transformation error", filter.error);
+      }
     }
-
-    return geometryFactory.createPolygon(exteriorRing, interiorRings);
-  }
-
-  /**
-   * Transformation d'un (multi) point
-   *
-   * @param multiPoint
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static MultiPoint tranformMultiPoint(
-      MultiPoint multiPoint, CoordinateOperation transformation) throws HopException {
-
-    return geometryFactory.createMultiPoint(
-        tranformCoordinates(multiPoint.getCoordinates(), transformation));
   }
 
-  /**
-   * Transformation d'une (multi) ligne
-   *
-   * @param multiLineString
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static MultiLineString tranformMultiLineString(
-      MultiLineString multiLineString, CoordinateOperation transformation) throws HopException {
-
-    LineString lineStrings[] = new LineString[multiLineString.getNumGeometries()];
-    for (int i = 0; i < multiLineString.getNumGeometries(); i++) {
-      lineStrings[i] =
-          tranformLineString((LineString) multiLineString.getGeometryN(i), transformation);
-    }
-
-    return geometryFactory.createMultiLineString(lineStrings);
-  }
+  /** Transformation des coordonnées X et Y de chaque séquence (Z inchangé) */
+  private static final class TransformationFilter implements CoordinateSequenceFilter {
 
-  /**
-   * Transformation d'un (multi) polygone
-   *
-   * @param multiPolygon
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static MultiPolygon tranformMultiPolygon(
-      MultiPolygon multiPolygon, CoordinateOperation transformation) throws HopException {
+    private final CoordinateOperation transformation;
+    private final double[] point = new double[2];
+    private IllegalCoordinateException error;
 
-    Polygon polygons[] = new Polygon[multiPolygon.getNumGeometries()];
-    for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
-      polygons[i] = tranformPolygon((Polygon) multiPolygon.getGeometryN(i), transformation);
+    private TransformationFilter(CoordinateOperation transformation) {
+      this.transformation = transformation;
     }
 
-    return geometryFactory.createMultiPolygon(polygons);
-  }
-
-  /**
-   * Transformation d'une collection de géométries
-   *
-   * @param geometryCollection
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static GeometryCollection tranformGeometryCollection(
-      GeometryCollection geometryCollection, CoordinateOperation transformation)
-      throws HopException {
-
-    Geometry geometries[] = new Geometry[geometryCollection.getNumGeometries()];
-    for (int i = 0; i < geometryCollection.getNumGeometries(); i++) {
-
-      Geometry geometry = geometryCollection.getGeometryN(i);
-
-      // Point
-      if (geometry instanceof Point) {
-
-        geometries[i] = tranformPoint((Point) geometry, transformation);
-
-        // MultiPoint
-      } else if (geometry instanceof MultiPoint) {
-
-        geometries[i] = tranformMultiPoint((MultiPoint) geometry, transformation);
-
-        // Linestring
-      } else if (geometry instanceof LineString) {
-
-        geometries[i] = tranformLineString((LineString) geometry, transformation);
-
-        // MultiLineString
-      } else if (geometry instanceof MultiLineString) {
+    public void filter(CoordinateSequence sequence, int i) {
 
-        geometries[i] = tranformMultiLineString((MultiLineString) geometry, transformation);
+      point[0] = sequence.getX(i);
+      point[1] = sequence.getY(i);
 
-      } else if (geometry instanceof Polygon) {
+      try {
 
-        geometries[i] = tranformPolygon((Polygon) geometry, transformation);
+        double[] result = transformation.transform(point);
+        sequence.setOrdinate(i, CoordinateSequence.X, result[0]);
+        sequence.setOrdinate(i, CoordinateSequence.Y, result[1]);
 
-      } else if (geometry instanceof MultiPolygon) {
-
-        geometries[i] = tranformMultiPolygon((MultiPolygon) geometry, transformation);
+      } catch (IllegalCoordinateException e) {
+        error = e;
       }
     }
 
-    return geometryFactory.createGeometryCollection(geometries);
-  }
-
-  /**
-   * Transformation d'un tableau de coordonnées
-   *
-   * @param coordinates
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static Coordinate[] tranformCoordinates(
-      Coordinate coordinates[], CoordinateOperation transformation) throws HopException {
-
-    Coordinate outCoordinates[] = new Coordinate[coordinates.length];
-    for (int i = 0; i < coordinates.length; i++) {
-      outCoordinates[i] = transformCoordinate(coordinates[i], transformation);
+    public boolean isDone() {
+      return error != null;
     }
 
-    return outCoordinates;
-  }
-
-  /**
-   * Transformation d'une coordonnée
-   *
-   * @param coordinate
-   * @param transformation
-   * @return
-   * @throws HopException
-   */
-  private static Coordinate transformCoordinate(
-      Coordinate coordinate, CoordinateOperation transformation) throws HopException {
-
-    try {
-
-      double[] pIn;
-      double[] pOut;
-
-      pIn = new double[2];
-      pIn[0] = coordinate.x;
-      pIn[1] = coordinate.y;
-
-      pOut = transformation.transform(pIn);
-
-      if (!Double.isNaN(coordinate.z)) {
-        return new Coordinate(pOut[0], pOut[1], coordinate.z);
-      } else {
-        return new Coordinate(pOut[0], pOut[1]);
-      }
-
-    } catch (IllegalCoordinateException e) {
-      new HopException(e);
+    public boolean isGeometryChanged() {
+      return true;
     }
-
-    return null;
   }
 }
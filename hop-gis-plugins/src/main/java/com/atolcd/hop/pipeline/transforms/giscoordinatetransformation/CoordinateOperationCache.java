@@ -0,0 +1,96 @@
+package com.atolcd.hop.pipeline.transforms.giscoordinatetransformation;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.cts.op.CoordinateOperation;
+
+/**
+ * Bounded LRU cache of coordinate operations keyed by source and target CRS codes. A single
+ * instance is shared JVM-wide, by all the copies of the transform in all the running pipelines, so
+ * access is synchronized and the hit and request counters cover all of them.
+ */
+public class CoordinateOperationCache {
+
+  private final int maxSize;
+  private final Map<String, CoordinateOperation> cache;
+
+  private long hits;
+  private long requests;
+
+  public CoordinateOperationCache(final int maxSize) {
+
+    this.maxSize = maxSize;
+    this.cache =
+        new LinkedHashMap<String, CoordinateOperation>(16, 0.75f, true) {
+
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CoordinateOperation> eldest) {
+            return size() > CoordinateOperationCache.this.maxSize;
+          }
+        };
+  }
+
+  private static String getKey(String inputCRSCode, String outputCRSCode) {
+    return inputCRSCode + "|" + outputCRSCode;
+  }
+
+  /**
+   * Returns the cached coordinate operation between two CRS
+   *
+   * @param inputCRSCode
+   * @param outputCRSCode
+   * @return the coordinate operation or null if not cached
+   */
+  public synchronized CoordinateOperation get(String inputCRSCode, String outputCRSCode) {
+
+    requests++;
+    CoordinateOperation operation = cache.get(getKey(inputCRSCode, outputCRSCode));
+    if (operation != null) {
+      hits++;
+    }
+    return operation;
+  }
+
+  public synchronized void put(
+      String inputCRSCode, String outputCRSCode, CoordinateOperation operation) {
+    cache.put(getKey(inputCRSCode, outputCRSCode), operation);
+  }
+
+  /** @return the number of hits since the start of the JVM, for all the pipelines */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** @return the number of requests since the start of the JVM, for all the pipelines */
+  public synchronized long getRequests() {
+    return requests;
+  }
+
+  public synchronized int getSize() {
+    return cache.size();
+  }
+}
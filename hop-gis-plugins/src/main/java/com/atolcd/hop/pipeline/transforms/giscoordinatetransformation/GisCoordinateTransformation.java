@@ -62,6 +62,16 @@ public class GisCoordinateTransformation
 
   CoordinateOperation transformation = null;
 
+  // Transformations partagées dans la JVM par toutes les étapes de tous les pipelines
+  private static final int TRANSFORMATION_CACHE_SIZE = 100;
+  private static final CoordinateOperationCache transformationCache =
+      new CoordinateOperationCache(TRANSFORMATION_CACHE_SIZE);
+
+  String outputCRSCode = null;
+  int transformationSrid = -1;
+  long transformationRequests = 0;
+  long transformationHits = 0;
+
   public GisCoordinateTransformation(
       TransformMeta s,
       GisCoordinateTransformationMeta meta,
@@ -116,11 +126,13 @@ public class GisCoordinateTransformation
 
       if (crsOperationType.equalsIgnoreCase("REPROJECT")) {
 
+        outputCRSCode = meta.getOutputCRSAuthority() + ":" + resolve(meta.getOutputCRSCode());
+
         if (!meta.isCrsFromGeometry()) {
           transformation =
               getTransformation(
                   meta.getInputCRSAuthority() + ":" + resolve(meta.getInputCRSCode()),
-                  meta.getOutputCRSAuthority() + ":" + resolve(meta.getOutputCRSCode()));
+                  outputCRSCode);
         }
       }
 
@@ -149,10 +161,11 @@ public class GisCoordinateTransformation
 
           if (inGeometry.getSRID() > 0) {
 
-            transformation =
-                getTransformation(
-                    "EPSG:" + inGeometry.getSRID(),
-                    meta.getOutputCRSAuthority() + ":" + resolve(meta.getOutputCRSCode()));
+            // Même SRID que la ligne précédente : transformation inchangée
+            if (inGeometry.getSRID() != transformationSrid || transformation == null) {
+              transformation = getTransformation("EPSG:" + inGeometry.getSRID(), outputCRSCode);
+              transformationSrid = inGeometry.getSRID();
+            }
 
           } else {
             throw new HopException(
@@ -193,12 +206,32 @@ public class GisCoordinateTransformation
   @Override
   public void dispose() {
 
+    if (transformationRequests > 0) {
+      logBasic(
+          "CRS transformation cache : "
+              + transformationHits
+              + " hits / "
+              + transformationRequests
+              + " requests for this copy (JVM-wide cache shared by all the pipelines : "
+              + transformationCache.getSize()
+              + " transformations, "
+              + transformationCache.getHits()
+              + " hits / "
+              + transformationCache.getRequests()
+              + " requests since the JVM started)");
+    }
+
     super.dispose();
   }
 
   private CoordinateOperation getTransformation(String inputCRSCode, String outputCRSCode) {
 
-    CoordinateOperation transformation = null;
+    transformationRequests++;
+    CoordinateOperation transformation = transformationCache.get(inputCRSCode, outputCRSCode);
+    if (transformation != null) {
+      transformationHits++;
+      return transformation;
+    }
 
     // Création de la transformation à partir des CRS entrées et sorties
     try {
@@ -211,6 +244,7 @@ public class GisCoordinateTransformation
 
       if (!transformations.isEmpty()) {
         transformation = transformations.get(0);
+        transformationCache.put(inputCRSCode, outputCRSCode, transformation);
       } else {
         new HopException("No transformation available");
       }
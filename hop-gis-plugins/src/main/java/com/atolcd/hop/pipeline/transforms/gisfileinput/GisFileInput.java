@@ -24,15 +24,16 @@ package com.atolcd.hop.pipeline.transforms.gisfileinput;
 
 import com.atolcd.hop.gis.io.AbstractFileReader;
 import com.atolcd.hop.gis.io.DXFReader;
+import com.atolcd.hop.gis.io.FeatureCursor;
 import com.atolcd.hop.gis.io.GPXReader;
 import com.atolcd.hop.gis.io.GeoJSONReader;
+import com.atolcd.hop.gis.io.GeoJSONSeqReader;
 import com.atolcd.hop.gis.io.GeoPackageReader;
 import com.atolcd.hop.gis.io.MapInfoReader;
 import com.atolcd.hop.gis.io.ShapefileReader;
 import com.atolcd.hop.gis.io.SpatialiteReader;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.FeatureConverter;
-import java.util.Iterator;
 import org.apache.hop.core.Const;
 import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.row.RowMeta;
@@ -45,6 +46,7 @@ public class GisFileInput extends BaseTransform<GisFileInputMeta, GisFileInputDa
   private static Class<?> PKG = GisFileInput.class;
 
   private AbstractFileReader fileReader;
+  private FeatureCursor featureCursor;
 
   public GisFileInput(
       TransformMeta s,
@@ -66,17 +68,46 @@ public class GisFileInput extends BaseTransform<GisFileInputMeta, GisFileInputDa
       meta.getFields(data.outputRowMeta, getTransformName(), null, null, this, metadataProvider);
 
       if (meta.getInputFormat().equalsIgnoreCase("ESRI_SHP")) {
-        fileReader =
+        ShapefileReader shapefileReader =
             new ShapefileReader(
                 resolve(meta.getInputFileName()),
                 resolve(meta.getGeometryFieldName()),
                 meta.getEncoding());
+
+        String rowOffset = resolve((String) meta.getInputParameterValue("ROW_OFFSET"));
+        shapefileReader.setRowOffset(Const.toLong(rowOffset, 0));
+
+        String parallelThreads = resolve((String) meta.getInputParameterValue("PARALLEL_THREADS"));
+        shapefileReader.setParallelThreads(Const.toInt(parallelThreads, 1));
+
+        String parallelKeepOrder =
+            resolve((String) meta.getInputParameterValue("PARALLEL_KEEP_ORDER"));
+        if (parallelKeepOrder != null && !parallelKeepOrder.isEmpty()) {
+          shapefileReader.setParallelKeepOrder(Boolean.parseBoolean(parallelKeepOrder));
+        }
+        fileReader = shapefileReader;
       } else if (meta.getInputFormat().equalsIgnoreCase("GEOJSON")) {
         fileReader =
             new GeoJSONReader(
                 resolve(meta.getInputFileName()),
                 resolve(meta.getGeometryFieldName()),
                 meta.getEncoding());
+      } else if (meta.getInputFormat().equalsIgnoreCase("GEOJSONSEQ")) {
+        GeoJSONSeqReader geoJsonSeqReader =
+            new GeoJSONSeqReader(
+                resolve(meta.getInputFileName()),
+                resolve(meta.getGeometryFieldName()),
+                meta.getEncoding());
+
+        String parallelThreads = resolve((String) meta.getInputParameterValue("PARALLEL_THREADS"));
+        geoJsonSeqReader.setParallelThreads(Const.toInt(parallelThreads, 1));
+
+        String parallelKeepOrder =
+            resolve((String) meta.getInputParameterValue("PARALLEL_KEEP_ORDER"));
+        if (parallelKeepOrder != null && !parallelKeepOrder.isEmpty()) {
+          geoJsonSeqReader.setParallelKeepOrder(Boolean.parseBoolean(parallelKeepOrder));
+        }
+        fileReader = geoJsonSeqReader;
       } else if (meta.getInputFormat().equalsIgnoreCase("MAPINFO_MIF")) {
         fileReader =
             new MapInfoReader(
@@ -134,19 +165,37 @@ public class GisFileInput extends BaseTransform<GisFileInputMeta, GisFileInputDa
       }
 
       fileReader.setLimit(meta.getRowLimit());
+      fileReader.setSelectedFields(meta.getSelectedFieldNames(this));
+      fileReader.setSpatialFilter(meta.getSpatialFilterGeometry(this));
+      featureCursor = fileReader.getFeatureCursor();
       incrementLinesInput();
       logBasic("Initialized successfully");
     }
 
-    Iterator<Feature> featureIt = fileReader.getFeatures().iterator();
-    while (featureIt.hasNext()) {
+    // Lecture des features une à une
+    Feature feature = featureCursor.next();
+    if (feature == null) {
 
-      putRow(data.outputRowMeta, FeatureConverter.getRow(data.outputRowMeta, featureIt.next()));
-      incrementLinesOutput();
+      closeFeatureCursor();
+      setOutputDone();
+      return false;
     }
 
-    setOutputDone();
-    return false;
+    putRow(data.outputRowMeta, FeatureConverter.getRow(data.outputRowMeta, feature));
+    incrementLinesOutput();
+
+    return true;
+  }
+
+  private void closeFeatureCursor() throws HopException {
+
+    if (featureCursor != null) {
+      try {
+        featureCursor.close();
+      } finally {
+        featureCursor = null;
+      }
+    }
   }
 
   @Override
@@ -156,6 +205,13 @@ public class GisFileInput extends BaseTransform<GisFileInputMeta, GisFileInputDa
 
   @Override
   public void dispose() {
+
+    try {
+      closeFeatureCursor();
+    } catch (HopException e) {
+      logError("Error closing input file : " + e.toString());
+    }
+
     super.dispose();
   }
 
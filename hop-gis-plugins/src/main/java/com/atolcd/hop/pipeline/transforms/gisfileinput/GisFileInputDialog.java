@@ -103,6 +103,16 @@ public class GisFileInputDialog extends BaseTransformDialog implements ITransfor
   private Text wRowLimit;
   private FormData fdlRowLimit, fdRowLimit;
 
+  // Champs à lire
+  private Label wlSelectedFields;
+  private TextVar wSelectedFields;
+  private FormData fdlSelectedFields, fdSelectedFields;
+
+  // Filtre spatial
+  private Label wlSpatialFilter;
+  private TextVar wSpatialFilter;
+  private FormData fdlSpatialFilter, fdSpatialFilter;
+
   private ColumnInfo[] paramsColumnInfo;
 
   private GisFileInputMeta input;
@@ -369,6 +379,48 @@ public class GisFileInputDialog extends BaseTransformDialog implements ITransfor
     fdRowLimit.top = new FormAttachment(wEncoding, margin);
     wRowLimit.setLayoutData(fdRowLimit);
 
+    // Champs à lire
+    wlSelectedFields = new Label(wOptionnalGroup, SWT.RIGHT);
+    wlSelectedFields.setText(BaseMessages.getString(PKG, "GisFileInput.SelectedFields.Label"));
+    props.setLook(wlSelectedFields);
+    fdlSelectedFields = new FormData();
+    fdlSelectedFields.left = new FormAttachment(0, 0);
+    fdlSelectedFields.top = new FormAttachment(wRowLimit, margin);
+    fdlSelectedFields.right = new FormAttachment(middle, -margin);
+    wlSelectedFields.setLayoutData(fdlSelectedFields);
+
+    wSelectedFields = new TextVar(variables, wOptionnalGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wSelectedFields.setToolTipText(
+        BaseMessages.getString(PKG, "GisFileInput.SelectedFields.ToolTip"));
+    props.setLook(wSelectedFields);
+    wSelectedFields.addModifyListener(lsMod);
+    fdSelectedFields = new FormData();
+    fdSelectedFields.left = new FormAttachment(middle, 0);
+    fdSelectedFields.right = new FormAttachment(100, 0);
+    fdSelectedFields.top = new FormAttachment(wRowLimit, margin);
+    wSelectedFields.setLayoutData(fdSelectedFields);
+
+    // Filtre spatial
+    wlSpatialFilter = new Label(wOptionnalGroup, SWT.RIGHT);
+    wlSpatialFilter.setText(BaseMessages.getString(PKG, "GisFileInput.SpatialFilter.Label"));
+    props.setLook(wlSpatialFilter);
+    fdlSpatialFilter = new FormData();
+    fdlSpatialFilter.left = new FormAttachment(0, 0);
+    fdlSpatialFilter.top = new FormAttachment(wSelectedFields, margin);
+    fdlSpatialFilter.right = new FormAttachment(middle, -margin);
+    wlSpatialFilter.setLayoutData(fdlSpatialFilter);
+
+    wSpatialFilter = new TextVar(variables, wOptionnalGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wSpatialFilter.setToolTipText(
+        BaseMessages.getString(PKG, "GisFileInput.SpatialFilter.ToolTip"));
+    props.setLook(wSpatialFilter);
+    wSpatialFilter.addModifyListener(lsMod);
+    fdSpatialFilter = new FormData();
+    fdSpatialFilter.left = new FormAttachment(middle, 0);
+    fdSpatialFilter.right = new FormAttachment(100, 0);
+    fdSpatialFilter.top = new FormAttachment(wSelectedFields, margin);
+    wSpatialFilter.setLayoutData(fdSpatialFilter);
+
     fdOptionnalGroup = new FormData();
     fdOptionnalGroup.left = new FormAttachment(0, margin);
     fdOptionnalGroup.right = new FormAttachment(100, -margin);
@@ -528,6 +580,14 @@ public class GisFileInputDialog extends BaseTransformDialog implements ITransfor
 
     wRowLimit.setText(input.getRowLimit().toString());
 
+    if (input.getSelectedFields() != null) {
+      wSelectedFields.setText(input.getSelectedFields());
+    }
+
+    if (input.getSpatialFilter() != null) {
+      wSpatialFilter.setText(input.getSpatialFilter());
+    }
+
     wTransformName.selectAll();
   }
 
@@ -564,6 +624,8 @@ public class GisFileInputDialog extends BaseTransformDialog implements ITransfor
     input.setGeometryFieldName(wGeometryField.getText());
     input.setEncoding(wEncoding.getText());
     input.setRowLimit(Long.valueOf(wRowLimit.getText()));
+    input.setSelectedFields(wSelectedFields.getText());
+    input.setSpatialFilter(wSpatialFilter.getText());
     dispose();
   }
 
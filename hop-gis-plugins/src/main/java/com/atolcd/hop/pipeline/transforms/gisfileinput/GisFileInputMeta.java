@@ -26,11 +26,13 @@ import com.atolcd.hop.gis.io.AbstractFileReader;
 import com.atolcd.hop.gis.io.DXFReader;
 import com.atolcd.hop.gis.io.GPXReader;
 import com.atolcd.hop.gis.io.GeoJSONReader;
+import com.atolcd.hop.gis.io.GeoJSONSeqReader;
 import com.atolcd.hop.gis.io.GeoPackageReader;
 import com.atolcd.hop.gis.io.MapInfoReader;
 import com.atolcd.hop.gis.io.ShapefileReader;
 import com.atolcd.hop.gis.io.SpatialiteReader;
 import com.atolcd.hop.gis.io.features.FeatureConverter;
+import com.atolcd.hop.gis.utils.GeometryUtils;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,6 +47,7 @@ import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.exception.HopXmlException;
 import org.apache.hop.core.row.IRowMeta;
 import org.apache.hop.core.row.value.ValueMetaBase;
+import org.apache.hop.core.util.Utils;
 import org.apache.hop.core.variables.IVariables;
 import org.apache.hop.core.xml.XmlHandler;
 import org.apache.hop.metadata.api.HopMetadataProperty;
@@ -55,6 +58,9 @@ import org.apache.hop.pipeline.transform.ITransformDialog;
 import org.apache.hop.pipeline.transform.ITransformMeta;
 import org.apache.hop.pipeline.transform.TransformMeta;
 import org.eclipse.swt.widgets.Shell;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.w3c.dom.Node;
 
 @Transform(
@@ -87,6 +93,10 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
 
   private Long rowLimit;
 
+  private String selectedFields;
+
+  private String spatialFilter;
+
   public GisFileInputMeta() {
     super();
 
@@ -108,6 +118,16 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
         true,
         Arrays.asList(new String[] {"TRUE", "FALSE"}),
         "FALSE");
+    shpDef.addParameterDef(
+        "ROW_OFFSET", ValueMetaBase.TYPE_INTEGER, false, new ArrayList<String>(), "0");
+    shpDef.addParameterDef(
+        "PARALLEL_THREADS", ValueMetaBase.TYPE_INTEGER, false, new ArrayList<String>(), "1");
+    shpDef.addParameterDef(
+        "PARALLEL_KEEP_ORDER",
+        ValueMetaBase.TYPE_BOOLEAN,
+        false,
+        Arrays.asList(new String[] {"TRUE", "FALSE"}),
+        "TRUE");
     this.inputFormatDefs.put("ESRI_SHP", shpDef);
 
     // GeoJSON
@@ -124,6 +144,28 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
         "FALSE");
     this.inputFormatDefs.put("GEOJSON", geojsonDef);
 
+    // GeoJSON : une feature par ligne
+    GisInputFormatDef geojsonSeqDef =
+        new GisInputFormatDef(
+            "GEOJSONSEQ",
+            new String[] {"*.geojsonl;*.GEOJSONL", "*.geojsons;*.GEOJSONS", "*.ndjson;*.NDJSON"},
+            new String[] {"*.geojsonl", "*.geojsons", "*.ndjson"});
+    geojsonSeqDef.addParameterDef(
+        "FORCE_TO_MULTIGEOMETRY",
+        ValueMetaBase.TYPE_BOOLEAN,
+        true,
+        Arrays.asList(new String[] {"TRUE", "FALSE"}),
+        "FALSE");
+    geojsonSeqDef.addParameterDef(
+        "PARALLEL_THREADS", ValueMetaBase.TYPE_INTEGER, false, new ArrayList<String>(), "1");
+    geojsonSeqDef.addParameterDef(
+        "PARALLEL_KEEP_ORDER",
+        ValueMetaBase.TYPE_BOOLEAN,
+        false,
+        Arrays.asList(new String[] {"TRUE", "FALSE"}),
+        "TRUE");
+    this.inputFormatDefs.put("GEOJSONSEQ", geojsonSeqDef);
+
     // Mapinfo MIF/MID
     GisInputFormatDef mapinfoDef =
         new GisInputFormatDef("MAPINFO_MIF", new String[] {"*.mif;*.MIF"}, new String[] {"*.mif"});
@@ -262,6 +304,85 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
     this.rowLimit = rowLimit;
   }
 
+  public String getSelectedFields() {
+    return selectedFields;
+  }
+
+  public void setSelectedFields(String selectedFields) {
+    this.selectedFields = selectedFields;
+  }
+
+  /**
+   * Names of the fields to read, separated by commas in the transform settings
+   *
+   * @param space the variables to resolve
+   * @return the names of the fields or null to read all the fields
+   */
+  public List<String> getSelectedFieldNames(IVariables space) {
+
+    if (Utils.isEmpty(selectedFields)) {
+      return null;
+    }
+
+    List<String> fieldNames = new ArrayList<String>();
+    for (String fieldName : space.resolve(selectedFields).split(",")) {
+      if (!fieldName.trim().isEmpty()) {
+        fieldNames.add(fieldName.trim());
+      }
+    }
+
+    return fieldNames.isEmpty() ? null : fieldNames;
+  }
+
+  public String getSpatialFilter() {
+    return spatialFilter;
+  }
+
+  public void setSpatialFilter(String spatialFilter) {
+    this.spatialFilter = spatialFilter;
+  }
+
+  /**
+   * Geometry the features must intersect, given in the transform settings as a bounding box
+   * (xmin,ymin,xmax,ymax) or as a WKT/EWKT geometry
+   *
+   * @param space the variables to resolve
+   * @return the geometry or null to read all the features
+   * @throws HopException
+   */
+  public Geometry getSpatialFilterGeometry(IVariables space) throws HopException {
+
+    if (Utils.isEmpty(spatialFilter)) {
+      return null;
+    }
+
+    String value = space.resolve(spatialFilter).trim();
+    if (value.isEmpty()) {
+      return null;
+    }
+
+    try {
+
+      // Emprise
+      String[] bounds = value.split(",");
+      if (bounds.length == 4 && !value.contains("(")) {
+        Envelope envelope =
+            new Envelope(
+                Double.parseDouble(bounds[0].trim()),
+                Double.parseDouble(bounds[2].trim()),
+                Double.parseDouble(bounds[1].trim()),
+                Double.parseDouble(bounds[3].trim()));
+        return new GeometryFactory().toGeometry(envelope);
+      }
+
+      // Géométrie WKT ou EWKT
+      return GeometryUtils.getGeometryFromEWKT(value);
+
+    } catch (Exception e) {
+      throw new HopException("Invalid spatial filter " + value, e);
+    }
+  }
+
   @Override
   public String getXml() {
 
@@ -287,6 +408,8 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
     retval.append("    " + XmlHandler.addTagValue("geometryFieldName", geometryFieldName));
     retval.append("    " + XmlHandler.addTagValue("encoding", encoding));
     retval.append("    " + XmlHandler.addTagValue("rowLimit", rowLimit));
+    retval.append("    " + XmlHandler.addTagValue("selectedFields", selectedFields));
+    retval.append("    " + XmlHandler.addTagValue("spatialFilter", spatialFilter));
 
     return retval.toString();
   }
@@ -323,6 +446,12 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
                 space.resolve(inputFileName),
                 space.resolve(geometryFieldName),
                 charset.displayName());
+      } else if (inputFormat.equalsIgnoreCase("GEOJSONSEQ")) {
+        fileReader =
+            new GeoJSONSeqReader(
+                space.resolve(inputFileName),
+                space.resolve(geometryFieldName),
+                charset.displayName());
       } else if (inputFormat.equalsIgnoreCase("MAPINFO_MIF")) {
         fileReader =
             new MapInfoReader(
@@ -358,6 +487,7 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
                 space.resolve(geometryFieldName),
                 charset.displayName());
       }
+      fileReader.setSelectedFields(getSelectedFieldNames(space));
       r.addRowMeta(FeatureConverter.getRowMeta(fileReader.getFields(), origin));
     } catch (HopException e) {
       e.printStackTrace();
@@ -414,6 +544,8 @@ public class GisFileInputMeta extends BaseTransformMeta<GisFileInput, GisFileInp
       geometryFieldName = XmlHandler.getTagValue(stepnode, "geometryFieldName");
       encoding = XmlHandler.getTagValue(stepnode, "encoding");
       rowLimit = Long.valueOf(XmlHandler.getTagValue(stepnode, "rowLimit"));
+      selectedFields = XmlHandler.getTagValue(stepnode, "selectedFields");
+      spatialFilter = XmlHandler.getTagValue(stepnode, "spatialFilter");
 
     } catch (Exception e) {
       throw new HopXmlException("Unable to read step info from XML node", e);
@@ -25,10 +25,12 @@ package com.atolcd.hop.pipeline.transforms.gisfileoutput;
 import com.atolcd.hop.gis.io.AbstractFileWriter;
 import com.atolcd.hop.gis.io.DXFWriter;
 import com.atolcd.hop.gis.io.GPXWriter;
+import com.atolcd.hop.gis.io.GeoJSONSeqWriter;
 import com.atolcd.hop.gis.io.GeoJSONWriter;
 import com.atolcd.hop.gis.io.GeoPackageWriter;
 import com.atolcd.hop.gis.io.KMLWriter;
 import com.atolcd.hop.gis.io.SVGWriter;
+import com.atolcd.hop.gis.io.ShapefileSplitWriter;
 import com.atolcd.hop.gis.io.ShapefileWriter;
 import com.atolcd.hop.gis.io.features.Feature;
 import com.atolcd.hop.gis.io.features.FeatureConverter;
@@ -47,7 +49,11 @@ import org.apache.hop.pipeline.transform.TransformMeta;
 
 public class GisFileOutput extends BaseTransform<GisFileOutputMeta, GisFileOutputData> {
 
+  private static final int DEFAULT_WRITE_BATCH_SIZE = 1000;
+
   private List<Feature> gisFeatures = new ArrayList<Feature>();
+  private AbstractFileWriter fileWriter;
+  private int batchSize = DEFAULT_WRITE_BATCH_SIZE;
 
   public GisFileOutput(
       TransformMeta s,
@@ -64,614 +70,761 @@ public class GisFileOutput extends BaseTransform<GisFileOutputMeta, GisFileOutpu
 
     Object[] r = getRow();
 
-    // Ecriture des fichiers à partir de la collection de features
+    // Fin des données : écriture du dernier lot et fermeture des fichiers
     if (r == null) {
 
-      AbstractFileWriter fileWriter = null;
+      // Création contextuelle du fichier en l'absence de données
+      if (fileWriter == null && !meta.isCreateFileAtEnd()) {
+        openFileWriter();
+      }
 
-      // ESRI_SHP
-      if (meta.getOutputFormat().equalsIgnoreCase("ESRI_SHP")) {
+      if (fileWriter != null) {
+        writeFeatures();
 
-        fileWriter =
-            new ShapefileWriter(
-                resolve(meta.getOutputFileName()), meta.getGeometryFieldName(), meta.getEncoding());
-
-        // Forcer en 2D
-        String forceTo2D =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
-        if (forceTo2D != null) {
-          ((ShapefileWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
-        }
+        // Writer fermé : plus abandonné par dispose(), même en cas d'erreur
+        AbstractFileWriter closedFileWriter = fileWriter;
+        fileWriter = null;
+        closedFileWriter.close();
+        logBasic("Write file - End");
+      }
 
-        // PRJ
-        String withPRJ =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "ESRI_SHP_CREATE_PRJ"));
-        if (withPRJ != null) {
-          ((ShapefileWriter) fileWriter).setCreatePrjFile(Boolean.parseBoolean(withPRJ));
-        }
+      setOutputDone();
+      return false;
+    }
 
-        // GEOJSON -- TODO SERVLET
-      } else if (meta.getOutputFormat().equalsIgnoreCase("GEOJSON")) {
+    if (first) {
 
-        if (meta.isDataToServlet()) {
-          // Writer writer = getTrans().getServletPrintWriter();
-          // fileWriter = new GeoJSONWriter(writer, meta.getGeometryFieldName(),
-          // meta.getEncoding());
-        } else {
-          fileWriter =
-              new GeoJSONWriter(
-                  resolve(meta.getOutputFileName()),
-                  meta.getGeometryFieldName(),
-                  meta.getEncoding());
-        }
+      first = false;
+      data.outputRowMeta = (IRowMeta) getInputRowMeta().clone();
+      meta.getFields(data.outputRowMeta, getTransformName(), null, null, this, metadataProvider);
+      openFileWriter();
+      logBasic("Initialized successfully");
+    }
 
-        // Exporter id
-        String featureIdField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "GEOJSON_FEATURE_ID"));
-        if (featureIdField != null && !featureIdField.isEmpty()) {
-          ((GeoJSONWriter) fileWriter).setFeatureIdField(featureIdField);
-        }
+    // Nouvelle feature pour chaque ligne, écrites par lots
+    gisFeatures.add(FeatureConverter.getFeature(data.outputRowMeta, r));
+    if (gisFeatures.size() >= batchSize) {
+      writeFeatures();
+    }
+    putRow(data.outputRowMeta, r);
 
-        // KML -- TODO SERVLET
-      } else if (meta.getOutputFormat().equalsIgnoreCase("KML")) {
+    if (checkFeedback(getLinesRead())) {
+      logBasic("Linenr " + getLinesRead());
+    }
 
-        if (meta.isDataToServlet()) {
-          // Writer writer = getTrans().getServletPrintWriter();
-          // fileWriter = new KMLWriter(writer, meta.getGeometryFieldName(), meta.getEncoding());
+    return true;
+  }
 
-        } else {
-          fileWriter =
-              new KMLWriter(
-                  resolve(meta.getOutputFileName()),
-                  meta.getGeometryFieldName(),
-                  meta.getEncoding());
+  // Ouverture du fichier pour une écriture par lots
+  private void openFileWriter() throws HopException {
+
+    fileWriter = getFileWriter();
+    fileWriter.setFields(
+        FeatureConverter.getFields(
+            getPipelineMeta().getPrevTransformFields(variables, getTransformMeta())));
+
+    // Taille des lots
+    batchSize = DEFAULT_WRITE_BATCH_SIZE;
+    String writeBatchSize =
+        resolve(
+            (String)
+                meta.getInputParameterValue(
+                    GisOutputFormatParameterDef.TYPE_FIXED, "WRITE_BATCH_SIZE"));
+    if (writeBatchSize != null && !writeBatchSize.isEmpty()) {
+      batchSize = Integer.parseInt(writeBatchSize);
+      if (batchSize <= 0) {
+        batchSize = DEFAULT_WRITE_BATCH_SIZE;
+      }
+    }
+
+    logBasic("Write file - Start");
+    fileWriter.open();
+  }
+
+  // Ecriture des features du lot en cours
+  private void writeFeatures() throws HopException {
+
+    if (gisFeatures.size() > 0) {
+      fileWriter.writeBatch(gisFeatures);
+      gisFeatures = new ArrayList<Feature>();
+    }
+  }
+
+  // Création du writer selon le format de sortie
+  private AbstractFileWriter getFileWriter() throws HopException {
+
+    AbstractFileWriter fileWriter = null;
+
+    // ESRI_SHP
+    if (meta.getOutputFormat().equalsIgnoreCase("ESRI_SHP")) {
+
+      // Découpage en plusieurs fichiers
+      String splitFileSize =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "ESRI_SHP_SPLIT_FILE_SIZE"));
+      String splitRecordCount =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "ESRI_SHP_SPLIT_RECORD_COUNT"));
+      String splitByType =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "ESRI_SHP_SPLIT_BY_TYPE"));
+
+      boolean split = Boolean.parseBoolean(splitByType);
+      split = split || (splitFileSize != null && !splitFileSize.isEmpty());
+      split = split || (splitRecordCount != null && !splitRecordCount.isEmpty());
+
+      // Forcer en 2D
+      String forceTo2D =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
+
+      // PRJ
+      String withPRJ =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "ESRI_SHP_CREATE_PRJ"));
+
+      if (split) {
+
+        ShapefileSplitWriter splitWriter =
+            new ShapefileSplitWriter(
+                resolve(meta.getOutputFileName()),
+                meta.getGeometryFieldName(),
+                meta.getEncoding());
+
+        // Taille en Mo et nombre d'enregistrements par fichier
+        if (splitFileSize != null && !splitFileSize.isEmpty()) {
+          splitWriter.setMaxFileLength(Long.parseLong(splitFileSize) * 1024 * 1024);
         }
+        if (splitRecordCount != null && !splitRecordCount.isEmpty()) {
+          splitWriter.setMaxRecordCount(Integer.parseInt(splitRecordCount));
+        }
+        splitWriter.setSplitByGeometryType(Boolean.parseBoolean(splitByType));
 
-        // Forcer en 2D
-        String forceTo2D =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
         if (forceTo2D != null) {
-          ((KMLWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
+          splitWriter.setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
         }
-
-        // Exporter les attributs
-        String withAttributs =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "KML_EXPORT_ATTRIBUTS"));
-        if (withAttributs != null) {
-          ((KMLWriter) fileWriter).setExportWithAttributs(Boolean.parseBoolean(withAttributs));
+        if (withPRJ != null) {
+          splitWriter.setCreatePrjFile(Boolean.parseBoolean(withPRJ));
         }
+        fileWriter = splitWriter;
 
-        // Exporter nom <Document>
-        String docName =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "KML_DOC_NAME"));
-        if (docName != null) {
-          ((KMLWriter) fileWriter).setDocumentName(docName);
-        }
+      } else {
 
-        // Exporter description <Document>
-        String docDescription =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "KML_DOC_DESCRIPTION"));
-        if (docDescription != null) {
-          ((KMLWriter) fileWriter).setDocumentDescription(docDescription);
-        }
+        fileWriter =
+            new ShapefileWriter(
+                resolve(meta.getOutputFileName()),
+                meta.getGeometryFieldName(),
+                meta.getEncoding());
 
-        // Exporter nom <Placemark>
-        String featureNameField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "KML_PLACEMARK_NAME"));
-        if (featureNameField != null && !featureNameField.isEmpty()) {
-          ((KMLWriter) fileWriter).setFeatureNameField(featureNameField);
+        if (forceTo2D != null) {
+          ((ShapefileWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
         }
-
-        // Exporter description <Placemark>
-        String featureDescriptionField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "KML_PLACEMARK_DESCRIPTION"));
-        if (featureDescriptionField != null && !featureNameField.isEmpty()) {
-          ((KMLWriter) fileWriter).setFeatureDescriptionField(featureDescriptionField);
+        if (withPRJ != null) {
+          ((ShapefileWriter) fileWriter).setCreatePrjFile(Boolean.parseBoolean(withPRJ));
         }
+      }
 
-        // DXF
-      } else if (meta.getOutputFormat().equalsIgnoreCase("DXF")) {
+      // GEOJSON -- TODO SERVLET
+    } else if (meta.getOutputFormat().equalsIgnoreCase("GEOJSON")) {
 
-        String layerName =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "DXF_LAYER_NAME"));
+      if (meta.isDataToServlet()) {
+        // Writer writer = getTrans().getServletPrintWriter();
+        // fileWriter = new GeoJSONWriter(writer, meta.getGeometryFieldName(),
+        // meta.getEncoding());
+      } else {
         fileWriter =
-            new DXFWriter(
+            new GeoJSONWriter(
                 resolve(meta.getOutputFileName()),
-                layerName,
                 meta.getGeometryFieldName(),
                 meta.getEncoding());
+      }
 
-        String layerNameFieldName =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "DXF_FEATURE_LAYER_NAME"));
-        if (layerNameFieldName != null && !layerNameFieldName.isEmpty()) {
-          ((DXFWriter) fileWriter).setLayerNameFieldName(layerNameFieldName);
-        }
+      // Exporter id
+      String featureIdField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "GEOJSON_FEATURE_ID"));
+      if (featureIdField != null && !featureIdField.isEmpty()) {
+        ((GeoJSONWriter) fileWriter).setFeatureIdField(featureIdField);
+      }
 
-        String precision =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "DXF_COORD_PRECISION"));
-        if (precision != null) {
-          ((DXFWriter) fileWriter).setPrecision(Integer.parseInt(precision));
-        }
+      // Précision des coordonnées
+      String coordPrecision =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GEOJSON_COORD_PRECISION"));
+      if (coordPrecision != null && !coordPrecision.isEmpty()) {
+        ((GeoJSONWriter) fileWriter).setCoordinatePrecision(Integer.parseInt(coordPrecision));
+      }
 
-        // Forcer en 2D
-        String forceTo2D =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
-        if (forceTo2D != null) {
-          ((DXFWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
-        }
+      // GEOJSONSEQ
+    } else if (meta.getOutputFormat().equalsIgnoreCase("GEOJSONSEQ")) {
 
-        // Write xData
-        String exportXdataD =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "DXF_WRITE_XDATA"));
-        if (exportXdataD != null) {
-          ((DXFWriter) fileWriter).setExportWithAttributs(Boolean.parseBoolean(exportXdataD));
-        }
-        // GPX -- TODO SERVLET
-      } else if (meta.getOutputFormat().equalsIgnoreCase("GPX")) {
+      fileWriter =
+          new GeoJSONSeqWriter(
+              resolve(meta.getOutputFileName()), meta.getGeometryFieldName(), meta.getEncoding());
 
-        if (meta.isDataToServlet()) {
-          // Writer writer = getTrans().getServletPrintWriter();
-          // fileWriter = new GPXWriter(writer, meta.getGeometryFieldName(), meta.getEncoding());
+      // Exporter id
+      String featureIdField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "GEOJSON_FEATURE_ID"));
+      if (featureIdField != null && !featureIdField.isEmpty()) {
+        ((GeoJSONSeqWriter) fileWriter).setFeatureIdField(featureIdField);
+      }
 
-        } else {
-          fileWriter =
-              new GPXWriter(
-                  resolve(meta.getOutputFileName()),
-                  meta.getGeometryFieldName(),
-                  meta.getEncoding());
-        }
+      // Précision des coordonnées
+      String coordPrecision =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GEOJSON_COORD_PRECISION"));
+      if (coordPrecision != null && !coordPrecision.isEmpty()) {
+        ((GeoJSONSeqWriter) fileWriter).setCoordinatePrecision(Integer.parseInt(coordPrecision));
+      }
 
-        // Version
-        String version =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_VERSION"));
-        if (version != null) {
-          ((GPXWriter) fileWriter).setVersion(version);
-        }
+      // KML -- TODO SERVLET
+    } else if (meta.getOutputFormat().equalsIgnoreCase("KML")) {
 
-        // Exporter nom <metadata>
-        String metaName =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_NAME"));
-        if (metaName != null) {
-          ((GPXWriter) fileWriter).setDocumentName(metaName);
-        }
+      if (meta.isDataToServlet()) {
+        // Writer writer = getTrans().getServletPrintWriter();
+        // fileWriter = new KMLWriter(writer, meta.getGeometryFieldName(), meta.getEncoding());
 
-        // Exporter description <metadata>
-        String metaDescription =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_DESCRIPTION"));
-        if (metaDescription != null) {
-          ((GPXWriter) fileWriter).setDocumentDescription(metaDescription);
-        }
+      } else {
+        fileWriter =
+            new KMLWriter(
+                resolve(meta.getOutputFileName()),
+                meta.getGeometryFieldName(),
+                meta.getEncoding());
+      }
 
-        // Nom Auteur
-        String metaAuthorName =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_AUTHOR_NAME"));
-        if (metaAuthorName != null) {
-          ((GPXWriter) fileWriter).setAuthorName(metaAuthorName);
-        }
+      // Forcer en 2D
+      String forceTo2D =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
+      if (forceTo2D != null) {
+        ((KMLWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
+      }
 
-        // Email Auteur
-        String metaAuthorEmail =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_AUTHOR_EMAIL"));
-        if (metaAuthorEmail != null) {
-          ((GPXWriter) fileWriter).setAuthorEmail(metaAuthorEmail);
-        }
+      // Exporter les attributs
+      String withAttributs =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "KML_EXPORT_ATTRIBUTS"));
+      if (withAttributs != null) {
+        ((KMLWriter) fileWriter).setExportWithAttributs(Boolean.parseBoolean(withAttributs));
+      }
 
-        // Mots clefs
-        String metaKeyWords =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_KEYWORDS"));
-        if (metaKeyWords != null) {
-          ((GPXWriter) fileWriter).setKeywords(metaKeyWords);
-        }
+      // Exporter nom <Document>
+      String docName =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "KML_DOC_NAME"));
+      if (docName != null) {
+        ((KMLWriter) fileWriter).setDocumentName(docName);
+      }
 
-        // Date et heure
-        String dateTime =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_DATETIME"));
-        if (dateTime != null) {
+      // Exporter description <Document>
+      String docDescription =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "KML_DOC_DESCRIPTION"));
+      if (docDescription != null) {
+        ((KMLWriter) fileWriter).setDocumentDescription(docDescription);
+      }
 
-          try {
-            ((GPXWriter) fileWriter).setDatetime(toCalendar(dateTime));
-          } catch (Exception e) {
+      // Exporter nom <Placemark>
+      String featureNameField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "KML_PLACEMARK_NAME"));
+      if (featureNameField != null && !featureNameField.isEmpty()) {
+        ((KMLWriter) fileWriter).setFeatureNameField(featureNameField);
+      }
 
-            throw new HopException(e.getMessage());
-          }
-        }
+      // Exporter description <Placemark>
+      String featureDescriptionField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "KML_PLACEMARK_DESCRIPTION"));
+      if (featureDescriptionField != null && !featureNameField.isEmpty()) {
+        ((KMLWriter) fileWriter).setFeatureDescriptionField(featureDescriptionField);
+      }
 
-        // Exporter nom <wpt>,<rte> ou <trk>
-        String featureNameField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "GPX_FEATURE_NAME"));
-        if (featureNameField != null && !featureNameField.isEmpty()) {
-          ((GPXWriter) fileWriter).setFeatureNameField(featureNameField);
-        }
+      // DXF
+    } else if (meta.getOutputFormat().equalsIgnoreCase("DXF")) {
 
-        // Exporter description <wpt>,<rte> ou <trk>
-        String featureDescriptionField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "GPX_FEATURE_DESCRIPTION"));
-        if (featureDescriptionField != null && !featureDescriptionField.isEmpty()) {
-          ((GPXWriter) fileWriter).setFeatureDescriptionField(featureDescriptionField);
-        }
+      String layerName =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "DXF_LAYER_NAME"));
+      fileWriter =
+          new DXFWriter(
+              resolve(meta.getOutputFileName()),
+              layerName,
+              meta.getGeometryFieldName(),
+              meta.getEncoding());
+
+      String layerNameFieldName =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "DXF_FEATURE_LAYER_NAME"));
+      if (layerNameFieldName != null && !layerNameFieldName.isEmpty()) {
+        ((DXFWriter) fileWriter).setLayerNameFieldName(layerNameFieldName);
+      }
 
-        // GEOPACKAGE
-      } else if (meta.getOutputFormat().equalsIgnoreCase("GEOPACKAGE")) {
+      String precision =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "DXF_COORD_PRECISION"));
+      if (precision != null) {
+        ((DXFWriter) fileWriter).setPrecision(Integer.parseInt(precision));
+      }
 
+      // Forcer en 2D
+      String forceTo2D =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
+      if (forceTo2D != null) {
+        ((DXFWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
+      }
+
+      // Write xData
+      String exportXdataD =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "DXF_WRITE_XDATA"));
+      if (exportXdataD != null) {
+        ((DXFWriter) fileWriter).setExportWithAttributs(Boolean.parseBoolean(exportXdataD));
+      }
+      // GPX -- TODO SERVLET
+    } else if (meta.getOutputFormat().equalsIgnoreCase("GPX")) {
+
+      if (meta.isDataToServlet()) {
+        // Writer writer = getTrans().getServletPrintWriter();
+        // fileWriter = new GPXWriter(writer, meta.getGeometryFieldName(), meta.getEncoding());
+
+      } else {
         fileWriter =
-            new GeoPackageWriter(
+            new GPXWriter(
                 resolve(meta.getOutputFileName()),
-                resolve(
-                    (String)
-                        meta.getInputParameterValue(
-                            GisOutputFormatParameterDef.TYPE_FIXED, "DB_TABLE_NAME")),
-                resolve(
-                    (String)
-                        meta.getInputParameterValue(
-                            GisOutputFormatParameterDef.TYPE_FIELD, "DB_TABLE_PK_FIELD")),
-                resolve(meta.getGeometryFieldName()),
+                meta.getGeometryFieldName(),
                 meta.getEncoding());
+      }
 
-        // Commit limit
-        String commitLimit =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "DB_TABLE_COMMIT_LIMIT"));
-        if (commitLimit != null) {
-          ((GeoPackageWriter) fileWriter).setCommitLimit(Long.parseLong(commitLimit));
-        }
+      // Version
+      String version =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_VERSION"));
+      if (version != null) {
+        ((GPXWriter) fileWriter).setVersion(version);
+      }
 
-        // Remplacer fichier
-        String replaceFile =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "REPLACE_FILE"));
-        if (replaceFile != null) {
-          ((GeoPackageWriter) fileWriter).setReplaceFile(Boolean.parseBoolean(replaceFile));
-        }
+      // Exporter nom <metadata>
+      String metaName =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_NAME"));
+      if (metaName != null) {
+        ((GPXWriter) fileWriter).setDocumentName(metaName);
+      }
 
-        // Remplacer table
-        String replaceTable =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "REPLACE_TABLE"));
-        if (replaceTable != null) {
-          ((GeoPackageWriter) fileWriter).setReplaceTable(Boolean.parseBoolean(replaceTable));
-        }
+      // Exporter description <metadata>
+      String metaDescription =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_DESCRIPTION"));
+      if (metaDescription != null) {
+        ((GPXWriter) fileWriter).setDocumentDescription(metaDescription);
+      }
 
-        // Forcer en 2D
-        String forceTo2D =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
-        if (forceTo2D != null) {
-          ((GeoPackageWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
-        }
+      // Nom Auteur
+      String metaAuthorName =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_AUTHOR_NAME"));
+      if (metaAuthorName != null) {
+        ((GPXWriter) fileWriter).setAuthorName(metaAuthorName);
+      }
 
-        // SRID
-        String geometrySrid =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_GEOMETRY_SRID"));
-        if (geometrySrid != null) {
-          if (geometrySrid.isEmpty()) {
-            ((GeoPackageWriter) fileWriter).setAssignedSrid(-1);
-          } else {
-            ((GeoPackageWriter) fileWriter).setAssignedSrid(Long.parseLong(geometrySrid));
-          }
-        }
+      // Email Auteur
+      String metaAuthorEmail =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_AUTHOR_EMAIL"));
+      if (metaAuthorEmail != null) {
+        ((GPXWriter) fileWriter).setAuthorEmail(metaAuthorEmail);
+      }
 
-        // Type de géométrie
-        String geometryType =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_GEOMETRY_GEOMETRYTYPE"));
-        if (geometryType != null) {
-          ((GeoPackageWriter) fileWriter).setAssignedGeometryType(geometryType);
-        }
+      // Mots clefs
+      String metaKeyWords =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_KEYWORDS"));
+      if (metaKeyWords != null) {
+        ((GPXWriter) fileWriter).setKeywords(metaKeyWords);
+      }
 
-        // Identifier
-        String contentsIdentifier =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_CONTENTS_IDENTIFIER"));
-        if (contentsIdentifier != null) {
-          ((GeoPackageWriter) fileWriter).setContentsIdentifier(contentsIdentifier);
-        } else {
+      // Date et heure
+      String dateTime =
           resolve(
               (String)
                   meta.getInputParameterValue(
-                      GisOutputFormatParameterDef.TYPE_FIXED, "DB_TABLE_NAME"));
-        }
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPX_META_DATETIME"));
+      if (dateTime != null) {
+
+        try {
+          ((GPXWriter) fileWriter).setDatetime(toCalendar(dateTime));
+        } catch (Exception e) {
 
-        // Description
-        String contentsDescription =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_CONTENTS_DESCRIPTION"));
-        if (contentsDescription != null) {
-          ((GeoPackageWriter) fileWriter).setContentsDescription(contentsDescription);
+          throw new HopException(e.getMessage());
         }
+      }
 
-        // SVG -- TODO SERVLET
-      } else if (meta.getOutputFormat().equalsIgnoreCase("SVG")) {
+      // Exporter nom <wpt>,<rte> ou <trk>
+      String featureNameField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "GPX_FEATURE_NAME"));
+      if (featureNameField != null && !featureNameField.isEmpty()) {
+        ((GPXWriter) fileWriter).setFeatureNameField(featureNameField);
+      }
 
-        if (meta.isDataToServlet()) {
-          // Writer writer = getTrans().getServletPrintWriter();
-          // fileWriter = new SVGWriter(writer, meta.getGeometryFieldName(), meta.getEncoding());
+      // Exporter description <wpt>,<rte> ou <trk>
+      String featureDescriptionField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "GPX_FEATURE_DESCRIPTION"));
+      if (featureDescriptionField != null && !featureDescriptionField.isEmpty()) {
+        ((GPXWriter) fileWriter).setFeatureDescriptionField(featureDescriptionField);
+      }
 
-        } else {
-          fileWriter =
-              new SVGWriter(
-                  resolve(meta.getOutputFileName()),
-                  meta.getGeometryFieldName(),
-                  meta.getEncoding());
-        }
+      // GEOPACKAGE
+    } else if (meta.getOutputFormat().equalsIgnoreCase("GEOPACKAGE")) {
+
+      fileWriter =
+          new GeoPackageWriter(
+              resolve(meta.getOutputFileName()),
+              resolve(
+                  (String)
+                      meta.getInputParameterValue(
+                          GisOutputFormatParameterDef.TYPE_FIXED, "DB_TABLE_NAME")),
+              resolve(
+                  (String)
+                      meta.getInputParameterValue(
+                          GisOutputFormatParameterDef.TYPE_FIELD, "DB_TABLE_PK_FIELD")),
+              resolve(meta.getGeometryFieldName()),
+              meta.getEncoding());
+
+      // Commit limit
+      String commitLimit =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "DB_TABLE_COMMIT_LIMIT"));
+      if (commitLimit != null) {
+        ((GeoPackageWriter) fileWriter).setCommitLimit(Long.parseLong(commitLimit));
+      }
 
-        // Largeur
-        int svgWidth =
-            Integer.parseInt(
-                resolve(
-                    (String)
-                        meta.getInputParameterValue(
-                            GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_WIDTH")));
-        ((SVGWriter) fileWriter).setWidth(svgWidth);
-
-        // Hauteur
-        int svgHeight =
-            Integer.parseInt(
-                resolve(
-                    (String)
-                        meta.getInputParameterValue(
-                            GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_HEIGHT")));
-        ((SVGWriter) fileWriter).setHeight(svgHeight);
-
-        // Precision
-        String precision =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_COORD_PRECISION"));
-        if (precision != null) {
-          ((SVGWriter) fileWriter).setPrecision(Integer.parseInt(precision));
-        }
+      // Remplacer fichier
+      String replaceFile =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "REPLACE_FILE"));
+      if (replaceFile != null) {
+        ((GeoPackageWriter) fileWriter).setReplaceFile(Boolean.parseBoolean(replaceFile));
+      }
 
-        // Exporter title  du doc
-        String title =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_TITLE"));
-        if (title != null) {
-          ((SVGWriter) fileWriter).setDocumentTitle(title);
-        }
+      // Remplacer table
+      String replaceTable =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "REPLACE_TABLE"));
+      if (replaceTable != null) {
+        ((GeoPackageWriter) fileWriter).setReplaceTable(Boolean.parseBoolean(replaceTable));
+      }
 
-        // Exporter description  du doc
-        String description =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_DESCRIPTION"));
-        if (description != null) {
-          ((SVGWriter) fileWriter).setDocumentDescription(description);
-        }
+      // Chargement en masse
+      String bulkLoad =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_BULK_LOAD"));
+      if (bulkLoad != null) {
+        ((GeoPackageWriter) fileWriter).setBulkLoad(Boolean.parseBoolean(bulkLoad));
+      }
 
-        // Feuille de style
-        String styleSheet =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_STYLESHEET"));
-        if (styleSheet != null) {
-          ((SVGWriter) fileWriter).setStyleSheet(styleSheet);
-        }
+      // Forcer en 2D
+      String forceTo2D =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "FORCE_TO_2D"));
+      if (forceTo2D != null) {
+        ((GeoPackageWriter) fileWriter).setForceTo2DGeometry(Boolean.parseBoolean(forceTo2D));
+      }
 
-        // Usage de la feuille de style
-        String styleSheetMode =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_STYLESHEET_MODE"));
-        if (styleSheetMode != null) {
-          ((SVGWriter) fileWriter).setStyleSheetMode(styleSheetMode);
+      // SRID
+      String geometrySrid =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_GEOMETRY_SRID"));
+      if (geometrySrid != null) {
+        if (geometrySrid.isEmpty()) {
+          ((GeoPackageWriter) fileWriter).setAssignedSrid(-1);
+        } else {
+          ((GeoPackageWriter) fileWriter).setAssignedSrid(Long.parseLong(geometrySrid));
         }
+      }
 
-        // Usage des symboles
-        String symbolMode =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_SYMBOL_MODE"));
-        if (symbolMode != null) {
-          ((SVGWriter) fileWriter).setSymbolMode(symbolMode);
-        }
+      // Type de géométrie
+      String geometryType =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_GEOMETRY_GEOMETRYTYPE"));
+      if (geometryType != null) {
+        ((GeoPackageWriter) fileWriter).setAssignedGeometryType(geometryType);
+      }
 
-        // Exporter id
-        String featureIdField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_ID"));
-        if (featureIdField != null && !featureIdField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureIdField(featureIdField);
-        }
+      // Identifier
+      String contentsIdentifier =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_CONTENTS_IDENTIFIER"));
+      if (contentsIdentifier != null) {
+        ((GeoPackageWriter) fileWriter).setContentsIdentifier(contentsIdentifier);
+      } else {
+        resolve(
+            (String)
+                meta.getInputParameterValue(
+                    GisOutputFormatParameterDef.TYPE_FIXED, "DB_TABLE_NAME"));
+      }
 
-        // Exporter title
-        String featureTitleField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_TITLE"));
-        if (featureTitleField != null && !featureTitleField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureTitleField(featureTitleField);
-        }
+      // Description
+      String contentsDescription =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "GPKG_CONTENTS_DESCRIPTION"));
+      if (contentsDescription != null) {
+        ((GeoPackageWriter) fileWriter).setContentsDescription(contentsDescription);
+      }
 
-        // Exporter description
-        String featureDescriptionField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_DESCRIPTION"));
-        if (featureDescriptionField != null && !featureDescriptionField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureDescriptionField(featureDescriptionField);
-        }
+      // SVG -- TODO SERVLET
+    } else if (meta.getOutputFormat().equalsIgnoreCase("SVG")) {
 
-        // Style svg
-        String featureStyleField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_STYLE"));
-        if (featureStyleField != null && !featureStyleField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureSvgStyleField(featureStyleField);
-        }
+      if (meta.isDataToServlet()) {
+        // Writer writer = getTrans().getServletPrintWriter();
+        // fileWriter = new SVGWriter(writer, meta.getGeometryFieldName(), meta.getEncoding());
 
-        // Class CSS
-        String featureCssClassField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_CLASS"));
-        if (featureCssClassField != null && !featureCssClassField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureCssClassField(featureCssClassField);
-        }
+      } else {
+        fileWriter =
+            new SVGWriter(
+                resolve(meta.getOutputFileName()),
+                meta.getGeometryFieldName(),
+                meta.getEncoding());
+      }
 
-        // Symbole
-        String featureSymbolField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_SYMBOL"));
-        if (featureSymbolField != null && !featureSymbolField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureSymbolField(featureSymbolField);
-        }
+      // Largeur
+      int svgWidth =
+          Integer.parseInt(
+              resolve(
+                  (String)
+                      meta.getInputParameterValue(
+                          GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_WIDTH")));
+      ((SVGWriter) fileWriter).setWidth(svgWidth);
+
+      // Hauteur
+      int svgHeight =
+          Integer.parseInt(
+              resolve(
+                  (String)
+                      meta.getInputParameterValue(
+                          GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_HEIGHT")));
+      ((SVGWriter) fileWriter).setHeight(svgHeight);
+
+      // Precision
+      String precision =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_COORD_PRECISION"));
+      if (precision != null) {
+        ((SVGWriter) fileWriter).setPrecision(Integer.parseInt(precision));
+      }
 
-        // Symbole
-        String featureLabelField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_LABEL"));
-        if (featureLabelField != null && !featureLabelField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureLabelField(featureLabelField);
-        }
+      // Exporter title  du doc
+      String title =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_TITLE"));
+      if (title != null) {
+        ((SVGWriter) fileWriter).setDocumentTitle(title);
+      }
 
-        // Groupe
-        String featureGroupField =
-            resolve(
-                (String)
-                    meta.getInputParameterValue(
-                        GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_GROUP"));
-        if (featureGroupField != null && !featureGroupField.isEmpty()) {
-          ((SVGWriter) fileWriter).setFeatureGroupField(featureGroupField);
-        }
+      // Exporter description  du doc
+      String description =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_DESCRIPTION"));
+      if (description != null) {
+        ((SVGWriter) fileWriter).setDocumentDescription(description);
       }
 
-      fileWriter.setFields(
-          FeatureConverter.getFields(
-              getPipelineMeta().getPrevTransformFields(variables, getTransformMeta())));
+      // Feuille de style
+      String styleSheet =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_STYLESHEET"));
+      if (styleSheet != null) {
+        ((SVGWriter) fileWriter).setStyleSheet(styleSheet);
+      }
 
-      // Création contextuelle du fichier
-      if ((gisFeatures.size() == 0 && !meta.isCreateFileAtEnd()) || gisFeatures.size() > 0) {
+      // Usage de la feuille de style
+      String styleSheetMode =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_STYLESHEET_MODE"));
+      if (styleSheetMode != null) {
+        ((SVGWriter) fileWriter).setStyleSheetMode(styleSheetMode);
+      }
 
-        logBasic("Write file - Start");
-        fileWriter.writeFeatures(gisFeatures);
-        logBasic("Write file - End");
+      // Usage des symboles
+      String symbolMode =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIXED, "SVG_DOC_SYMBOL_MODE"));
+      if (symbolMode != null) {
+        ((SVGWriter) fileWriter).setSymbolMode(symbolMode);
       }
 
-      setOutputDone();
-      return false;
-    }
+      // Exporter id
+      String featureIdField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_ID"));
+      if (featureIdField != null && !featureIdField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureIdField(featureIdField);
+      }
 
-    if (first) {
+      // Exporter title
+      String featureTitleField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_TITLE"));
+      if (featureTitleField != null && !featureTitleField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureTitleField(featureTitleField);
+      }
 
-      first = false;
-      data.outputRowMeta = (IRowMeta) getInputRowMeta().clone();
-      meta.getFields(data.outputRowMeta, getTransformName(), null, null, this, metadataProvider);
-      logBasic("Initialized successfully");
-    }
+      // Exporter description
+      String featureDescriptionField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_DESCRIPTION"));
+      if (featureDescriptionField != null && !featureDescriptionField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureDescriptionField(featureDescriptionField);
+      }
 
-    // Nouvelle feature pour chaque ligne
-    gisFeatures.add(FeatureConverter.getFeature(data.outputRowMeta, r));
-    putRow(data.outputRowMeta, r);
+      // Style svg
+      String featureStyleField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_STYLE"));
+      if (featureStyleField != null && !featureStyleField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureSvgStyleField(featureStyleField);
+      }
 
-    if (checkFeedback(getLinesRead())) {
-      logBasic("Linenr " + getLinesRead());
+      // Class CSS
+      String featureCssClassField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_CLASS"));
+      if (featureCssClassField != null && !featureCssClassField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureCssClassField(featureCssClassField);
+      }
+
+      // Symbole
+      String featureSymbolField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_SYMBOL"));
+      if (featureSymbolField != null && !featureSymbolField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureSymbolField(featureSymbolField);
+      }
+
+      // Symbole
+      String featureLabelField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_LABEL"));
+      if (featureLabelField != null && !featureLabelField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureLabelField(featureLabelField);
+      }
+
+      // Groupe
+      String featureGroupField =
+          resolve(
+              (String)
+                  meta.getInputParameterValue(
+                      GisOutputFormatParameterDef.TYPE_FIELD, "SVG_FEATURE_GROUP"));
+      if (featureGroupField != null && !featureGroupField.isEmpty()) {
+        ((SVGWriter) fileWriter).setFeatureGroupField(featureGroupField);
+      }
     }
 
-    return true;
+    return fileWriter;
   }
 
   @Override
@@ -681,6 +834,19 @@ public class GisFileOutput extends BaseTransform<GisFileOutputMeta, GisFileOutpu
 
   @Override
   public void dispose() {
+
+    // Erreur ou arrêt avant la fin des données : fichiers libérés sans être finalisés
+    if (fileWriter != null) {
+      try {
+        fileWriter.abort();
+      } catch (HopException e) {
+        logError("Error closing the output file : " + e.toString());
+      } finally {
+        fileWriter = null;
+        gisFeatures = new ArrayList<Feature>();
+      }
+    }
+
     super.dispose();
   }
 
@@ -87,6 +87,16 @@ public class GisFileOutputMeta extends BaseTransformMeta<GisFileOutput, GisFileO
         true,
         Arrays.asList(new String[] {"TRUE", "FALSE"}),
         "TRUE");
+    shpDef.addParameterFixedDef("ESRI_SHP_SPLIT_FILE_SIZE", ValueMetaBase.TYPE_INTEGER, false);
+    shpDef.addParameterFixedDef("ESRI_SHP_SPLIT_RECORD_COUNT", ValueMetaBase.TYPE_INTEGER, false);
+    shpDef.addParameterFixedDef(
+        "ESRI_SHP_SPLIT_BY_TYPE",
+        ValueMetaBase.TYPE_BOOLEAN,
+        true,
+        Arrays.asList(new String[] {"TRUE", "FALSE"}),
+        "FALSE");
+    shpDef.addParameterFixedDef(
+        "WRITE_BATCH_SIZE", ValueMetaBase.TYPE_INTEGER, true, null, "1000");
     this.outputFormatDefs.put("ESRI_SHP", shpDef);
 
     // GeoJSON
@@ -96,8 +106,24 @@ public class GisFileOutputMeta extends BaseTransformMeta<GisFileOutput, GisFileO
             new String[] {"*.geojson;*.GEOJSON", "*.json;*.JSON"},
             new String[] {"*.geojson", "*.json"});
     geojsonDef.addParameterFieldDef("GEOJSON_FEATURE_ID", ValueMetaBase.TYPE_STRING, false);
+    geojsonDef.addParameterFixedDef(
+        "WRITE_BATCH_SIZE", ValueMetaBase.TYPE_INTEGER, true, null, "1000");
+    geojsonDef.addParameterFixedDef("GEOJSON_COORD_PRECISION", ValueMetaBase.TYPE_INTEGER, false);
     this.outputFormatDefs.put("GEOJSON", geojsonDef);
 
+    // GeoJSON : une feature par ligne
+    GisOutputFormatDef geojsonSeqDef =
+        new GisOutputFormatDef(
+            "GEOJSONSEQ",
+            new String[] {"*.geojsonl;*.GEOJSONL", "*.geojsons;*.GEOJSONS", "*.ndjson;*.NDJSON"},
+            new String[] {"*.geojsonl", "*.geojsons", "*.ndjson"});
+    geojsonSeqDef.addParameterFieldDef("GEOJSON_FEATURE_ID", ValueMetaBase.TYPE_STRING, false);
+    geojsonSeqDef.addParameterFixedDef(
+        "WRITE_BATCH_SIZE", ValueMetaBase.TYPE_INTEGER, true, null, "1000");
+    geojsonSeqDef.addParameterFixedDef(
+        "GEOJSON_COORD_PRECISION", ValueMetaBase.TYPE_INTEGER, false);
+    this.outputFormatDefs.put("GEOJSONSEQ", geojsonSeqDef);
+
     // Keyhole Markup LanguageKML
     GisOutputFormatDef kmlDef =
         new GisOutputFormatDef("KML", new String[] {"*.kml;*.KML"}, new String[] {"*.kml"});
@@ -171,6 +197,12 @@ public class GisFileOutputMeta extends BaseTransformMeta<GisFileOutput, GisFileO
         true,
         Arrays.asList(new String[] {"TRUE", "FALSE"}),
         "FALSE");
+    gpkgDef.addParameterFixedDef(
+        "GPKG_BULK_LOAD",
+        ValueMetaBase.TYPE_BOOLEAN,
+        true,
+        Arrays.asList(new String[] {"TRUE", "FALSE"}),
+        "FALSE");
     gpkgDef.addParameterFixedDef("GPKG_CONTENTS_IDENTIFIER", ValueMetaBase.TYPE_STRING, false);
     gpkgDef.addParameterFixedDef("GPKG_CONTENTS_DESCRIPTION", ValueMetaBase.TYPE_STRING, false);
     gpkgDef.addParameterFixedDef("GPKG_GEOMETRY_SRID", ValueMetaBase.TYPE_INTEGER, false);
@@ -196,6 +228,8 @@ public class GisFileOutputMeta extends BaseTransformMeta<GisFileOutput, GisFileO
         Arrays.asList(new String[] {"TRUE", "FALSE"}),
         "TRUE");
     gpkgDef.addParameterFieldDef("DB_TABLE_PK_FIELD", ValueMetaBase.TYPE_INTEGER, true);
+    gpkgDef.addParameterFixedDef(
+        "WRITE_BATCH_SIZE", ValueMetaBase.TYPE_INTEGER, true, null, "1000");
     this.outputFormatDefs.put("GEOPACKAGE", gpkgDef);
 
     // Scalable Vector Graphics SVG
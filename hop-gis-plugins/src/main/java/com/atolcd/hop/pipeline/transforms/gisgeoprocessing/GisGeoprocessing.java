@@ -24,10 +24,16 @@ package com.atolcd.hop.pipeline.transforms.gisgeoprocessing;
 
 import com.atolcd.hop.core.row.value.ValueMetaGeometry;
 import com.atolcd.hop.gis.utils.GeometryUtils;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hop.core.Const;
 import org.apache.hop.core.exception.HopException;
@@ -71,6 +77,8 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
 
   private static GeometryFactory geometryFactory = new GeometryFactory();
 
+  private static final int WINDOW_ROWS_PER_THREAD = 16;
+
   private String operator;
 
   private Integer firstGeometryFieldIndex;
@@ -93,9 +101,11 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
   private boolean withExtractType;
   private boolean withExplode;
 
-  private Geometry getGeoprocessingResult(Object[] row) throws HopException {
+  private int threadCount;
+  private boolean keepOrder;
+  private int windowSize;
 
-    Geometry firstGeometry = new ValueMetaGeometry().getGeometry(row[firstGeometryFieldIndex]);
+  private Double getDistance(Object[] row) throws HopException {
 
     Double distance = null;
     if (withDistance) {
@@ -113,9 +123,14 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
       }
     }
 
+    return distance;
+  }
+
+  private Geometry getGeoprocessingResult(
+      Geometry firstGeometry, Geometry secondGeometry, Double distance) throws HopException {
+
     if (withSecondGeometry) {
 
-      Geometry secondGeometry = new ValueMetaGeometry().getGeometry(row[secondGeometryFieldIndex]);
       return getTwoGeometriesGeoprocessing(operator, firstGeometry, secondGeometry, distance);
 
     } else {
@@ -128,10 +143,6 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
 
           if (distance != null) {
 
-            if (bufferSegmentsCount == null) {
-              bufferSegmentsCount = 8;
-            }
-
             BufferParameters bufferParams = new BufferParameters();
             bufferParams.setQuadrantSegments(bufferSegmentsCount);
             bufferParams.setSingleSided(bufferSingleSide);
@@ -191,12 +202,16 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
 
   @Override
   public boolean processRow() throws HopException {
-    Geometry geoprocessingResult;
 
     Object[] r = getRow();
 
     if (r == null) {
 
+      // Lignes encore en cours de traitement parallèle
+      if (data.executor != null) {
+        flushPendingRows(0);
+      }
+
       setOutputDone();
       return false;
     }
@@ -269,6 +284,10 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
         bufferJoinStyle = meta.getBufferJoinStyle();
         bufferSingleSide = meta.getBufferSingleSide();
 
+        if (bufferSegmentsCount == null) {
+          bufferSegmentsCount = 8;
+        }
+
       } else {
         bufferSegmentsCount = null;
         bufferCapStyle = null;
@@ -276,11 +295,93 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
         bufferSingleSide = null;
       }
 
+      // Traitement parallèle des opérateurs coûteux
+      threadCount = 1;
+      if (ArrayUtils.contains(meta.getParallelOperators(), operator)) {
+
+        String parallelThreads = resolve(meta.getParallelThreads());
+        if (parallelThreads != null && !parallelThreads.isEmpty()) {
+          try {
+            threadCount = Integer.parseInt(parallelThreads);
+          } catch (Exception e) {
+            throw new HopException("Number of threads is not valid");
+          }
+        }
+      }
+
+      if (threadCount > 1) {
+
+        keepOrder = meta.isParallelKeepOrder();
+        windowSize = threadCount * WINDOW_ROWS_PER_THREAD;
+        data.executor = Executors.newFixedThreadPool(threadCount);
+
+        if (keepOrder) {
+          data.pendingRows = new ArrayDeque<Future<List<Object[]>>>();
+        } else {
+          data.completionService = new ExecutorCompletionService<List<Object[]>>(data.executor);
+          data.pendingCount = 0;
+        }
+
+        logBasic(
+            "Parallel processing with "
+                + threadCount
+                + " threads ("
+                + (keepOrder ? "ordered" : "unordered")
+                + " output)");
+      }
+
       logBasic("Initialized successfully");
     }
 
-    Object[] currenRow = RowDataUtil.resizeArray(r, r.length + 1);
-    geoprocessingResult = getGeoprocessingResult(r);
+    // Lecture des paramètres dans le thread de la transformation
+    final Object[] currentRow = RowDataUtil.resizeArray(r, r.length + 1);
+    final Geometry firstGeometry =
+        new ValueMetaGeometry().getGeometry(r[firstGeometryFieldIndex]);
+    final Geometry secondGeometry =
+        withSecondGeometry
+            ? new ValueMetaGeometry().getGeometry(r[secondGeometryFieldIndex])
+            : null;
+    final Double distance = getDistance(r);
+
+    if (data.executor == null) {
+
+      putOutputRows(getOutputRows(currentRow, firstGeometry, secondGeometry, distance));
+
+    } else {
+
+      Callable<List<Object[]>> task =
+          new Callable<List<Object[]>>() {
+            public List<Object[]> call() throws Exception {
+              return getOutputRows(currentRow, firstGeometry, secondGeometry, distance);
+            }
+          };
+
+      if (keepOrder) {
+        data.pendingRows.add(data.executor.submit(task));
+      } else {
+        data.completionService.submit(task);
+        data.pendingCount++;
+      }
+
+      flushPendingRows(windowSize);
+    }
+
+    incrementLinesInput();
+    if (checkFeedback(getLinesRead())) {
+      logBasic("Linenr " + getLinesRead());
+    }
+
+    return true;
+  }
+
+  // Lignes de sortie pour une ligne d'entrée
+  private List<Object[]> getOutputRows(
+      Object[] currentRow, Geometry firstGeometry, Geometry secondGeometry, Double distance)
+      throws HopException {
+
+    List<Object[]> outputRows = new ArrayList<Object[]>();
+    Geometry geoprocessingResult =
+        getGeoprocessingResult(firstGeometry, secondGeometry, distance);
     Geometry[] resultGeometries = null;
 
     if (withExplode && geoprocessingResult != null) {
@@ -305,7 +406,7 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
 
     for (Geometry resultGeometry : resultGeometries) {
 
-      Object[] outputRow = currenRow.clone();
+      Object[] outputRow = currentRow.clone();
 
       if (withExtractType && !GeometryUtils.isNullOrEmptyGeometry(resultGeometry)) {
 
@@ -326,24 +427,67 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
       if (returnType.equalsIgnoreCase("ALL")) {
 
         outputRow[outputFieldIndex] = resultGeometry;
-        putRow(data.outputRowMeta, outputRow);
+        outputRows.add(outputRow);
 
       } else if (returnType.equalsIgnoreCase("NOT_NULL")) {
 
         if (!GeometryUtils.isNullOrEmptyGeometry(resultGeometry)) {
 
           outputRow[outputFieldIndex] = resultGeometry;
-          putRow(data.outputRowMeta, outputRow);
+          outputRows.add(outputRow);
         }
       }
     }
 
-    incrementLinesInput();
-    if (checkFeedback(getLinesRead())) {
-      logBasic("Linenr " + getLinesRead());
+    return outputRows;
+  }
+
+  private void putOutputRows(List<Object[]> outputRows) throws HopException {
+
+    for (Object[] outputRow : outputRows) {
+      putRow(data.outputRowMeta, outputRow);
     }
+  }
 
-    return true;
+  // Ecriture des résultats disponibles jusqu'à ce qu'il ne reste
+  // pas plus de maxPending lignes en cours de traitement
+  private void flushPendingRows(int maxPending) throws HopException {
+
+    try {
+
+      if (keepOrder) {
+
+        while (data.pendingRows.size() > maxPending
+            || (!data.pendingRows.isEmpty() && data.pendingRows.peek().isDone())) {
+          putOutputRows(data.pendingRows.poll().get());
+        }
+
+      } else {
+
+        while (data.pendingCount > maxPending) {
+          putOutputRows(data.completionService.take().get());
+          data.pendingCount--;
+        }
+
+        Future<List<Object[]>> done;
+        while ((done = data.completionService.poll()) != null) {
+          putOutputRows(done.get());
+          data.pendingCount--;
+        }
+      }
+
+    } catch (InterruptedException e) {
+
+      Thread.currentThread().interrupt();
+      throw new HopException("Parallel processing interrupted", e);
+
+    } catch (ExecutionException e) {
+
+      if (e.getCause() instanceof HopException) {
+        throw (HopException) e.getCause();
+      }
+      throw new HopException("Error processing geometry", e.getCause());
+    }
   }
 
   @Override
@@ -353,6 +497,12 @@ public class GisGeoprocessing extends BaseTransform<GisGeoprocessingMeta, GisGeo
 
   @Override
   public void dispose() {
+
+    if (data.executor != null) {
+      data.executor.shutdownNow();
+      data.executor = null;
+    }
+
     super.dispose();
   }
 
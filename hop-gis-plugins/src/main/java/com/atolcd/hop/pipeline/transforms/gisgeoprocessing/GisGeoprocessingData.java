@@ -22,6 +22,11 @@ package com.atolcd.hop.pipeline.transforms.gisgeoprocessing;
  * #L%
  */
 
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.apache.hop.core.row.IRowMeta;
 import org.apache.hop.pipeline.transform.BaseTransformData;
 
@@ -29,6 +34,12 @@ public class GisGeoprocessingData extends BaseTransformData {
 
   public IRowMeta outputRowMeta;
 
+  // Traitement parallèle
+  public ExecutorService executor;
+  public ArrayDeque<Future<List<Object[]>>> pendingRows;
+  public CompletionService<List<Object[]>> completionService;
+  public int pendingCount;
+
   public GisGeoprocessingData() {
     super();
   }
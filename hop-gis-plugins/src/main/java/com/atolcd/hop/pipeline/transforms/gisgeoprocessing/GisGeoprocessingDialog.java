@@ -118,6 +118,14 @@ public class GisGeoprocessingDialog extends BaseTransformDialog implements ITran
   private Button wBufferSingleSide;
   private FormData fdlBufferSingleSide, fdBufferSingleSide;
 
+  private Label wlParallelThreads;
+  private TextVar wParallelThreads;
+  private FormData fdlParallelThreads, fdParallelThreads;
+
+  private Label wlParallelKeepOrder;
+  private Button wParallelKeepOrder;
+  private FormData fdlParallelKeepOrder, fdParallelKeepOrder;
+
   private Label wlSecondGeometryField;
   private CCombo wSecondGeometryField;
   private FormData fdlSecondGeometryField, fdSecondGeometryField;
@@ -438,6 +446,56 @@ public class GisGeoprocessingDialog extends BaseTransformDialog implements ITran
           }
         });
 
+    // Nombre de threads
+    wlParallelThreads = new Label(wInputGroup, SWT.RIGHT);
+    wlParallelThreads.setText(BaseMessages.getString(PKG, "GisGeoprocessing.ParallelThreads.Label"));
+    props.setLook(wlParallelThreads);
+    fdlParallelThreads = new FormData();
+    fdlParallelThreads.left = new FormAttachment(0, 0);
+    fdlParallelThreads.top = new FormAttachment(wBufferSingleSide, margin);
+    fdlParallelThreads.right = new FormAttachment(middle, -margin);
+    wlParallelThreads.setLayoutData(fdlParallelThreads);
+
+    wParallelThreads = new TextVar(variables, wInputGroup, SWT.BORDER | SWT.READ_ONLY);
+    wParallelThreads.setToolTipText(
+        BaseMessages.getString(PKG, "GisGeoprocessing.ParallelThreads.ToolTip"));
+    wParallelThreads.setEditable(true);
+    props.setLook(wParallelThreads);
+    wParallelThreads.addModifyListener(lsMod);
+    fdParallelThreads = new FormData();
+    fdParallelThreads.left = new FormAttachment(middle, 0);
+    fdParallelThreads.top = new FormAttachment(wBufferSingleSide, margin);
+    fdParallelThreads.width = 150;
+    wParallelThreads.setLayoutData(fdParallelThreads);
+
+    // Conserver l'ordre des lignes
+    wlParallelKeepOrder = new Label(wInputGroup, SWT.RIGHT);
+    wlParallelKeepOrder.setText(
+        BaseMessages.getString(PKG, "GisGeoprocessing.ParallelKeepOrder.Label"));
+    props.setLook(wlParallelKeepOrder);
+    fdlParallelKeepOrder = new FormData();
+    fdlParallelKeepOrder.left = new FormAttachment(0, 0);
+    fdlParallelKeepOrder.top = new FormAttachment(wParallelThreads, margin);
+    fdlParallelKeepOrder.right = new FormAttachment(middle, -margin);
+    wlParallelKeepOrder.setLayoutData(fdlParallelKeepOrder);
+
+    wParallelKeepOrder = new Button(wInputGroup, SWT.CHECK);
+    wParallelKeepOrder.setToolTipText(
+        BaseMessages.getString(PKG, "GisGeoprocessing.ParallelKeepOrder.ToolTip"));
+    props.setLook(wParallelKeepOrder);
+    fdParallelKeepOrder = new FormData();
+    fdParallelKeepOrder.left = new FormAttachment(middle, 0);
+    fdParallelKeepOrder.top = new FormAttachment(wParallelThreads, margin);
+    fdParallelKeepOrder.right = new FormAttachment(100, 0);
+    wParallelKeepOrder.setLayoutData(fdParallelKeepOrder);
+    wParallelKeepOrder.addSelectionListener(
+        new SelectionAdapter() {
+
+          public void widgetSelected(SelectionEvent arg0) {
+            input.setChanged();
+          }
+        });
+
     fdInputGroup = new FormData();
     fdInputGroup.left = new FormAttachment(0, margin);
     fdInputGroup.right = new FormAttachment(100, -margin);
@@ -670,6 +728,11 @@ public class GisGeoprocessingDialog extends BaseTransformDialog implements ITran
       wBufferSingleSide.setSelection(false);
     }
 
+    if (input.getParallelThreads() != null) {
+      wParallelThreads.setText(input.getParallelThreads());
+    }
+    wParallelKeepOrder.setSelection(input.isParallelKeepOrder());
+
     if (input.getReturnType() != null) {
       wReturnType.setText(getReturnTypeLabel(input.getReturnType()));
     }
@@ -707,6 +770,8 @@ public class GisGeoprocessingDialog extends BaseTransformDialog implements ITran
     input.setBufferJoinStyle(getStyleBufferKey(wBufferJoinStyle.getText()));
     input.setBufferSingleSide(wBufferSingleSide.getSelection());
     input.setOutputFieldName(wOutputField.getText());
+    input.setParallelThreads(wParallelThreads.getText());
+    input.setParallelKeepOrder(wParallelKeepOrder.getSelection());
 
     dispose();
   }
@@ -811,6 +876,22 @@ public class GisGeoprocessingDialog extends BaseTransformDialog implements ITran
         wBufferSingleSide.setEnabled(false);
         wBufferSingleSide.setSelection(false);
       }
+
+      // Traitement parallèle
+      if (ArrayUtils.contains(input.getParallelOperators(), operatorKey)) {
+
+        wlParallelThreads.setEnabled(true);
+        wParallelThreads.setEnabled(true);
+        wlParallelKeepOrder.setEnabled(true);
+        wParallelKeepOrder.setEnabled(true);
+
+      } else {
+
+        wlParallelThreads.setEnabled(false);
+        wParallelThreads.setEnabled(false);
+        wlParallelKeepOrder.setEnabled(false);
+        wParallelKeepOrder.setEnabled(false);
+      }
     }
   }
 
@@ -145,6 +145,39 @@ public class GisGeoprocessingMeta
   // Géométrie de sortie
   private String outputFieldName;
 
+  // Pour opérateurs coûteux pouvant être traités en parallèle
+  private static String[] parallelOperators =
+      new String[] {
+        "BUFFER",
+        "EXTENDED_BUFFER",
+        "CONCAVE_HULL",
+        "SIMPLIFY_POLYGON",
+        "SNAP_TO_GEOMETRY",
+        "POLYGONIZE"
+      };
+  private String parallelThreads;
+  private boolean parallelKeepOrder;
+
+  public String[] getParallelOperators() {
+    return parallelOperators;
+  }
+
+  public String getParallelThreads() {
+    return parallelThreads;
+  }
+
+  public void setParallelThreads(String parallelThreads) {
+    this.parallelThreads = parallelThreads;
+  }
+
+  public boolean isParallelKeepOrder() {
+    return parallelKeepOrder;
+  }
+
+  public void setParallelKeepOrder(boolean parallelKeepOrder) {
+    this.parallelKeepOrder = parallelKeepOrder;
+  }
+
   public String[] getBufferJoinStyles() {
     return bufferJoinStyles;
   }
@@ -302,6 +335,9 @@ public class GisGeoprocessingMeta
     retval.append("    " + XmlHandler.addTagValue("bufferCapStyle", bufferCapStyle));
     retval.append("    " + XmlHandler.addTagValue("bufferJoinStyle", bufferJoinStyle));
 
+    retval.append("    " + XmlHandler.addTagValue("parallelThreads", parallelThreads));
+    retval.append("    " + XmlHandler.addTagValue("parallelKeepOrder", parallelKeepOrder));
+
     return retval.toString();
   }
 
@@ -346,6 +382,10 @@ public class GisGeoprocessingMeta
       bufferCapStyle = XmlHandler.getTagValue(stepnode, "bufferCapStyle");
       bufferJoinStyle = XmlHandler.getTagValue(stepnode, "bufferJoinStyle");
 
+      parallelThreads = XmlHandler.getTagValue(stepnode, "parallelThreads");
+      String keepOrder = XmlHandler.getTagValue(stepnode, "parallelKeepOrder");
+      parallelKeepOrder = keepOrder == null || "Y".equalsIgnoreCase(keepOrder);
+
     } catch (Exception e) {
       throw new HopXmlException("Unable to read step info from XML node", e);
     }
@@ -355,6 +395,8 @@ public class GisGeoprocessingMeta
     operator = "CENTROID";
     returnType = "ALL";
     extractType = "ALL";
+    parallelThreads = "1";
+    parallelKeepOrder = true;
   }
 
   public void check(
@@ -24,6 +24,10 @@ package com.atolcd.hop.pipeline.transforms.gisgroupby;
 
 import com.atolcd.hop.core.row.value.GeometryInterface;
 import com.atolcd.hop.gis.utils.GeometryUtils;
+import com.atolcd.hop.pipeline.transforms.gisgroupby.GisGroupByData.GroupKey;
+import com.atolcd.hop.pipeline.transforms.gisgroupby.GisGroupByData.HashAggregate;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -32,10 +36,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
+import org.apache.hop.core.Const;
 import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.exception.HopFileException;
 import org.apache.hop.core.exception.HopValueException;
@@ -53,6 +61,7 @@ import org.apache.hop.pipeline.PipelineMeta;
 import org.apache.hop.pipeline.transform.BaseTransform;
 import org.apache.hop.pipeline.transform.TransformMeta;
 import org.locationtech.jts.dissolve.LineDissolver;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.util.GeometryCombiner;
@@ -72,6 +81,7 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
   // private boolean allNullsAreZero = false;
   private boolean minNullIsValued = false;
   private Integer geometrySRID = 0;
+  private static GeometryFactory geometryFactory = new GeometryFactory();
 
   public GisGroupBy(
       TransformMeta stepMeta,
@@ -192,6 +202,11 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
       initGroupMeta(data.inputRowMeta);
     }
 
+    // Agrégation par table de hachage : lignes non triées
+    if (meta.isHashAggregation()) {
+      return processHashRow(r);
+    }
+
     if (first || data.newBatch) {
       // Create a new group aggregate (init)
       //
@@ -296,6 +311,196 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
     return true;
   }
 
+  private boolean processHashRow(Object[] r) throws HopException {
+
+    if (first) {
+
+      first = false;
+
+      if (!meta.isHashAggregationAllowed()) {
+        throw new HopException(
+            BaseMessages.getString(PKG, "GroupByMeta.CheckResult.HashAggregationNotAllowed"));
+      }
+
+      // Métadonnées des agrégats
+      newAggregate(r);
+      data.groupAggMeta = new RowMeta();
+      data.groupAggMeta.addRowMeta(data.groupMeta);
+      data.groupAggMeta.addRowMeta(data.aggMeta);
+
+      data.hashGroups = new LinkedHashMap<GroupKey, HashAggregate>();
+      data.hashMaxGroups = 0;
+      String hashMaxGroups = resolve(meta.getHashMaxGroups());
+      if (hashMaxGroups != null && !hashMaxGroups.isEmpty()) {
+        try {
+          data.hashMaxGroups = Integer.parseInt(hashMaxGroups);
+        } catch (NumberFormatException e) {
+          throw new HopException("Maximum number of groups in memory is not valid", e);
+        }
+      }
+    }
+
+    if (r == null) {
+
+      flushHashGroups();
+
+      // Aucune ligne en entrée
+      if (getLinesRead() == 0 && meta.isAlwaysGivingBackOneRow()) {
+        newAggregate(null);
+        Object[] result = buildResult(null);
+        if (result != null) {
+          putRow(data.groupAggMeta, result);
+        }
+      }
+
+      setOutputDone();
+      return false;
+    }
+
+    addToHashAggregate(r);
+
+    if (checkFeedback(getLinesRead())) {
+      if (isBasic()) {
+        logBasic(BaseMessages.getString(PKG, "GroupBy.LineNumber") + getLinesRead());
+      }
+    }
+
+    return true;
+  }
+
+  // Ajout de la ligne à l'agrégat de son groupe
+  private void addToHashAggregate(Object[] r) throws HopException {
+
+    Object[] groupData = RowDataUtil.allocateRowData(data.groupnrs.length);
+    for (int i = 0; i < data.groupnrs.length; i++) {
+      groupData[i] = r[data.groupnrs[i]];
+    }
+
+    GroupKey key = new GroupKey(data.groupMeta, groupData);
+    HashAggregate aggregate = data.hashGroups.get(key);
+
+    if (aggregate == null) {
+
+      // Trop de groupes en mémoire : ligne traitée lors d'une passe suivante
+      if (data.hashMaxGroups > 0 && data.hashGroups.size() >= data.hashMaxGroups) {
+        spillRow(r);
+        return;
+      }
+
+      data.counts = new long[data.subjectnrs.length];
+      newAggregate(r);
+
+      aggregate = new HashAggregate();
+      aggregate.agg = data.agg;
+      aggregate.counts = data.counts;
+      aggregate.mean = data.mean;
+      aggregate.geometrySRID = 0;
+      data.hashGroups.put(key, aggregate);
+    }
+
+    loadHashAggregate(aggregate);
+    calcAggregate(r);
+    aggregate.distinctObjs = data.distinctObjs;
+    aggregate.geometrySRID = geometrySRID;
+  }
+
+  private void loadHashAggregate(HashAggregate aggregate) {
+    data.agg = aggregate.agg;
+    data.counts = aggregate.counts;
+    data.mean = aggregate.mean;
+    data.distinctObjs = aggregate.distinctObjs;
+    geometrySRID = aggregate.geometrySRID;
+  }
+
+  // Envoi des groupes en mémoire puis traitement des lignes déversées sur disque
+  private void flushHashGroups() throws HopException {
+
+    while (true) {
+
+      for (Map.Entry<GroupKey, HashAggregate> entry : data.hashGroups.entrySet()) {
+
+        loadHashAggregate(entry.getValue());
+        Object[] result = entry.getKey().getGroupData();
+        result = RowDataUtil.addRowData(result, data.groupnrs.length, getAggregateResult());
+        putRow(data.groupAggMeta, result);
+      }
+      data.hashGroups.clear();
+
+      if (data.spillRows == 0) {
+        break;
+      }
+
+      // Nouvelle passe sur les lignes des groupes non traités
+      File spillFile = data.spillFile;
+      long spillRows = data.spillRows;
+      closeSpillOutput();
+      data.spillFile = null;
+      data.spillRows = 0;
+      data.spillPasses++;
+
+      if (isDetailed()) {
+        logDetailed(
+            "Hash aggregation pass " + data.spillPasses + " : " + spillRows + " rows read back");
+      }
+
+      DataInputStream spillDis = null;
+      try {
+
+        spillDis = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+        for (long i = 0; i < spillRows && !isStopped(); i++) {
+          addToHashAggregate(data.inputRowMeta.readData(spillDis));
+        }
+
+      } catch (IOException e) {
+        throw new HopFileException(
+            BaseMessages.getString(PKG, "GroupBy.Exception.UnableToReadBackRowFromTemporaryFile"),
+            e);
+
+      } finally {
+
+        try {
+          if (spillDis != null) {
+            spillDis.close();
+          }
+        } catch (IOException e) {
+          throw new HopFileException(
+              BaseMessages.getString(PKG, "GroupBy.Exception.UnableToCloseInputStream"), e);
+        }
+        spillFile.delete();
+      }
+    }
+  }
+
+  private void spillRow(Object[] r) throws HopFileException {
+
+    if (data.spillDos == null) {
+      try {
+        data.spillFile =
+            File.createTempFile(meta.getPrefix(), ".tmp", new File(resolve(meta.getDirectory())));
+        data.spillDos =
+            new DataOutputStream(new BufferedOutputStream(new FileOutputStream(data.spillFile)));
+      } catch (IOException e) {
+        throw new HopFileException(
+            BaseMessages.getString(PKG, "GroupBy.Exception.UnableToCreateTemporaryFile"), e);
+      }
+    }
+
+    data.inputRowMeta.writeData(data.spillDos, r);
+    data.spillRows++;
+  }
+
+  private void closeSpillOutput() throws HopFileException {
+    try {
+      if (data.spillDos != null) {
+        data.spillDos.close();
+        data.spillDos = null;
+      }
+    } catch (IOException e) {
+      throw new HopFileException(
+          BaseMessages.getString(PKG, "GroupBy.Exception.UnableToCloseInputStream"), e);
+    }
+  }
+
   private void handleLastOfGroup() throws HopException {
     if (meta.passAllRows()) {
       // ALL ROWS
@@ -593,51 +798,23 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
 
           break;
 
-          // GIS : Union des géométries
+          // GIS : Ajout des géométries à la liste du groupe
         case GisGroupByMeta.TYPE_GROUP_GEOMETRY_UNION:
+        case GisGroupByMeta.TYPE_GROUP_GEOMETRY_AGG:
+        case GisGroupByMeta.TYPE_GROUP_GEOMETRY_DISSOLVE:
           if (subj != null) {
-            Geometry geometryForUnion =
-                GeometryCombiner.combine(
-                    ((GeometryInterface) valueMeta).getGeometry(value),
-                    ((GeometryInterface) subjMeta).getGeometry(subj));
-            geometrySRID = ((GeometryInterface) subjMeta).getGeometry(subj).getSRID();
-            data.agg[i] = geometryForUnion;
+            Geometry geometry = ((GeometryInterface) subjMeta).getGeometry(subj);
+            geometrySRID = geometry.getSRID();
+            ((List<Geometry>) value).add(geometry);
           }
           break;
 
           // GIS : Union des étendues
         case GisGroupByMeta.TYPE_GROUP_GEOMETRY_EXTENT:
           if (subj != null) {
-            Geometry geometryForExtent =
-                GeometryCombiner.combine(
-                    ((GeometryInterface) valueMeta).getGeometry(value).getEnvelope(),
-                    ((GeometryInterface) subjMeta).getGeometry(subj).getEnvelope());
-            geometrySRID = ((GeometryInterface) subjMeta).getGeometry(subj).getSRID();
-            data.agg[i] = geometryForExtent;
-          }
-          break;
-
-          // GIS : Union des étendues
-        case GisGroupByMeta.TYPE_GROUP_GEOMETRY_AGG:
-          if (subj != null) {
-            Geometry geometryForAgg =
-                GeometryCombiner.combine(
-                    ((GeometryInterface) valueMeta).getGeometry(value),
-                    ((GeometryInterface) subjMeta).getGeometry(subj));
-            geometrySRID = ((GeometryInterface) subjMeta).getGeometry(subj).getSRID();
-            data.agg[i] = geometryForAgg;
-          }
-          break;
-
-          // GIS : Dissolution des géométries
-        case GisGroupByMeta.TYPE_GROUP_GEOMETRY_DISSOLVE:
-          if (subj != null) {
-            Geometry geometryForDissolve =
-                GeometryCombiner.combine(
-                    ((GeometryInterface) valueMeta).getGeometry(value),
-                    ((GeometryInterface) subjMeta).getGeometry(subj));
-            geometrySRID = ((GeometryInterface) subjMeta).getGeometry(subj).getSRID();
-            data.agg[i] = geometryForDissolve;
+            Geometry geometry = ((GeometryInterface) subjMeta).getGeometry(subj);
+            geometrySRID = geometry.getSRID();
+            ((Envelope) value).expandToInclude(geometry.getEnvelopeInternal());
           }
           break;
 
@@ -710,14 +887,20 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
           v = new StringBuilder();
           break;
 
-          // GIS : Ajout des géométries ou étendues à la collection
+          // GIS : Liste des géométries du groupe
         case GisGroupByMeta.TYPE_GROUP_GEOMETRY_UNION:
-        case GisGroupByMeta.TYPE_GROUP_GEOMETRY_EXTENT:
         case GisGroupByMeta.TYPE_GROUP_GEOMETRY_AGG:
         case GisGroupByMeta.TYPE_GROUP_GEOMETRY_DISSOLVE:
           vMeta = subjMeta.clone();
           vMeta.setName(meta.getAggregateField()[i]);
-          v = new GeometryFactory().createGeometryCollection(null);
+          v = new ArrayList<Geometry>();
+          break;
+
+          // GIS : Etendue du groupe
+        case GisGroupByMeta.TYPE_GROUP_GEOMETRY_EXTENT:
+          vMeta = subjMeta.clone();
+          vMeta.setName(meta.getAggregateField()[i]);
+          v = new Envelope();
           break;
 
         default:
@@ -776,6 +959,7 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
    * @return
    * @throws HopValueException
    */
+  @SuppressWarnings("unchecked")
   Object[] getAggregateResult() throws HopValueException {
     Object[] result = new Object[data.subjectnrs.length];
 
@@ -828,10 +1012,18 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
 
             // GIS : Union des géométries
           case GisGroupByMeta.TYPE_GROUP_GEOMETRY_UNION:
-            Geometry geomUnionGroup =
-                ((GeometryInterface) data.aggMeta.getValueMeta(i)).getGeometry(ag);
-            UnaryUnionOp unionOperateor = new UnaryUnionOp(geomUnionGroup);
-            Geometry geometryUnion = unionOperateor.union();
+            Geometry geometryUnion;
+            int unionThreads = Const.toInt(resolve(meta.getValueField()[i]), 1);
+            if (unionThreads > 1) {
+              // Union parallèle par partitions spatiales
+              geometryUnion = ParallelUnion.union((List<Geometry>) ag, getUnionPool(unionThreads));
+              if (geometryUnion == null) {
+                geometryUnion = geometryFactory.createGeometryCollection();
+              }
+            } else {
+              UnaryUnionOp unionOperateor = new UnaryUnionOp(getCombinedGeometry(ag));
+              geometryUnion = unionOperateor.union();
+            }
             geometryUnion = GeometryUtils.getMergedGeometry(geometryUnion);
             geometryUnion.setSRID(geometrySRID);
             ag = geometryUnion;
@@ -839,27 +1031,21 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
 
             // GIS : Extent des géométries
           case GisGroupByMeta.TYPE_GROUP_GEOMETRY_EXTENT:
-            Geometry geomExtentGroup =
-                ((GeometryInterface) data.aggMeta.getValueMeta(i)).getGeometry(ag);
-            Geometry geomtryExtent = geomExtentGroup.getEnvelope();
+            Geometry geomtryExtent = geometryFactory.toGeometry((Envelope) ag);
             geomtryExtent.setSRID(geometrySRID);
             ag = geomtryExtent;
             break;
 
             // GIS : Aggrégation des géométries
           case GisGroupByMeta.TYPE_GROUP_GEOMETRY_AGG:
-            Geometry geomAggGroup =
-                ((GeometryInterface) data.aggMeta.getValueMeta(i)).getGeometry(ag);
-            Geometry geomtryAgg = geomAggGroup;
+            Geometry geomtryAgg = getCombinedGeometry(ag);
             geomtryAgg.setSRID(geometrySRID);
             ag = geomtryAgg;
             break;
 
             // GIS : Dissolution des géométries
           case GisGroupByMeta.TYPE_GROUP_GEOMETRY_DISSOLVE:
-            Geometry geomDissolveGroup =
-                ((GeometryInterface) data.aggMeta.getValueMeta(i)).getGeometry(ag);
-            Geometry geometryDissolve = LineDissolver.dissolve(geomDissolveGroup);
+            Geometry geometryDissolve = LineDissolver.dissolve(getCombinedGeometry(ag));
             geometryDissolve.setSRID(geometrySRID);
             ag = geometryDissolve;
             break;
@@ -881,6 +1067,39 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
     return result;
   }
 
+  /**
+   * Pool of the parallel geometry unions, created on first use
+   *
+   * @param threads the number of threads
+   * @return the pool
+   */
+  private ForkJoinPool getUnionPool(int threads) {
+
+    if (data.unionPool == null || data.unionPool.getParallelism() != threads) {
+      if (data.unionPool != null) {
+        data.unionPool.shutdown();
+      }
+      data.unionPool = new ForkJoinPool(threads);
+    }
+    return data.unionPool;
+  }
+
+  /**
+   * Combines the geometries of a group in a single pass
+   *
+   * @param ag the list of geometries of the group
+   * @return the collection of the geometries, empty if there is none
+   */
+  @SuppressWarnings("unchecked")
+  private Geometry getCombinedGeometry(Object ag) {
+
+    Geometry geometry = GeometryCombiner.combine((List<Geometry>) ag);
+    if (geometry == null) {
+      geometry = geometryFactory.createGeometryCollection();
+    }
+    return geometry;
+  }
+
   private void addToBuffer(Object[] row) throws HopFileException {
     data.bufferList.add(row);
     if (data.bufferList.size() > 5000) {
@@ -992,10 +1211,29 @@ public class GisGroupBy extends BaseTransform<GisGroupByMeta, GisGroupByData> {
       data.tempFile.delete();
     }
 
+    if (data.spillFile != null) {
+      try {
+        closeSpillOutput();
+      } catch (HopFileException e) {
+        logError(e.getMessage());
+      }
+      data.spillFile.delete();
+    }
+
+    if (data.unionPool != null) {
+      data.unionPool.shutdownNow();
+    }
+
     super.dispose();
   }
 
   public void batchComplete() throws HopException {
+    if (meta.isHashAggregation()) {
+      if (data.hashGroups != null) {
+        flushHashGroups();
+      }
+      return;
+    }
     handleLastOfGroup();
     data.newBatch = true;
   }
@@ -29,7 +29,10 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.hop.core.exception.HopValueException;
 import org.apache.hop.core.row.IRowMeta;
 import org.apache.hop.core.row.IValueMeta;
 import org.apache.hop.pipeline.transform.BaseTransformData;
@@ -100,6 +103,65 @@ public class GisGroupByData extends BaseTransformData {
 
   public boolean newBatch;
 
+  // Agrégation par table de hachage (lignes non triées)
+  public Map<GroupKey, HashAggregate> hashGroups;
+  public int hashMaxGroups;
+
+  public File spillFile;
+  public DataOutputStream spillDos;
+  public long spillRows;
+  public int spillPasses;
+
+  // Pool des unions de géométries parallèles
+  public ForkJoinPool unionPool;
+
+  /** Values of the group fields, compared with the group metadata */
+  public static class GroupKey {
+
+    private final IRowMeta groupMeta;
+    private final Object[] groupData;
+    private final int hashCode;
+
+    public GroupKey(IRowMeta groupMeta, Object[] groupData) throws HopValueException {
+      this.groupMeta = groupMeta;
+      this.groupData = groupData;
+      this.hashCode = groupMeta.hashCode(groupData);
+    }
+
+    public Object[] getGroupData() {
+      return groupData;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+      if (!(obj instanceof GroupKey)) {
+        return false;
+      }
+
+      try {
+        return groupMeta.compare(groupData, ((GroupKey) obj).groupData) == 0;
+      } catch (HopValueException e) {
+        return false;
+      }
+    }
+  }
+
+  /** Aggregate state of a group */
+  public static class HashAggregate {
+
+    public Object[] agg;
+    public long[] counts;
+    public double[] mean;
+    public Set<Object>[] distinctObjs;
+    public Integer geometrySRID;
+  }
+
   /** */
   public GisGroupByData() {
     super();
@@ -117,6 +117,18 @@ public class GisGroupByDialog extends BaseTransformDialog implements ITransformD
   private Button wAlwaysAddResult;
 
   private FormData fdlAlwaysAddResult, fdAlwaysAddResult;
+
+  private Label wlHashAggregation;
+
+  private Button wHashAggregation;
+
+  private FormData fdlHashAggregation, fdHashAggregation;
+
+  private Label wlHashMaxGroups;
+
+  private TextVar wHashMaxGroups;
+
+  private FormData fdlHashMaxGroups, fdHashMaxGroups;
   private Button wGet, wGetAgg;
   private FormData fdGet, fdGetAgg;
   private Listener lsGet, lsGetAgg;
@@ -338,12 +350,62 @@ public class GisGroupByDialog extends BaseTransformDialog implements ITransformD
     fdAlwaysAddResult.right = new FormAttachment(100, 0);
     wAlwaysAddResult.setLayoutData(fdAlwaysAddResult);
 
+    // Unsorted rows : hash aggregation
+    //
+    wlHashAggregation = new Label(shell, SWT.RIGHT);
+    wlHashAggregation.setText(BaseMessages.getString(PKG, "GroupByDialog.HashAggregation.Label"));
+    wlHashAggregation.setToolTipText(
+        BaseMessages.getString(PKG, "GroupByDialog.HashAggregation.ToolTip"));
+    props.setLook(wlHashAggregation);
+    fdlHashAggregation = new FormData();
+    fdlHashAggregation.left = new FormAttachment(0, 0);
+    fdlHashAggregation.top = new FormAttachment(wAlwaysAddResult, margin);
+    fdlHashAggregation.right = new FormAttachment(middle, -margin);
+    wlHashAggregation.setLayoutData(fdlHashAggregation);
+    wHashAggregation = new Button(shell, SWT.CHECK);
+    wHashAggregation.setToolTipText(
+        BaseMessages.getString(PKG, "GroupByDialog.HashAggregation.ToolTip"));
+    props.setLook(wHashAggregation);
+    fdHashAggregation = new FormData();
+    fdHashAggregation.left = new FormAttachment(middle, 0);
+    fdHashAggregation.top = new FormAttachment(wAlwaysAddResult, margin);
+    fdHashAggregation.right = new FormAttachment(100, 0);
+    wHashAggregation.setLayoutData(fdHashAggregation);
+    wHashAggregation.addSelectionListener(
+        new SelectionAdapter() {
+          public void widgetSelected(SelectionEvent e) {
+            input.setChanged();
+            setFlags();
+          }
+        });
+
+    // Maximum number of groups in memory
+    //
+    wlHashMaxGroups = new Label(shell, SWT.RIGHT);
+    wlHashMaxGroups.setText(BaseMessages.getString(PKG, "GroupByDialog.HashMaxGroups.Label"));
+    props.setLook(wlHashMaxGroups);
+    fdlHashMaxGroups = new FormData();
+    fdlHashMaxGroups.left = new FormAttachment(0, 0);
+    fdlHashMaxGroups.top = new FormAttachment(wHashAggregation, margin);
+    fdlHashMaxGroups.right = new FormAttachment(middle, -margin);
+    wlHashMaxGroups.setLayoutData(fdlHashMaxGroups);
+    wHashMaxGroups = new TextVar(variables, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wHashMaxGroups.setToolTipText(
+        BaseMessages.getString(PKG, "GroupByDialog.HashMaxGroups.ToolTip"));
+    props.setLook(wHashMaxGroups);
+    wHashMaxGroups.addModifyListener(lsMod);
+    fdHashMaxGroups = new FormData();
+    fdHashMaxGroups.left = new FormAttachment(middle, 0);
+    fdHashMaxGroups.top = new FormAttachment(wHashAggregation, margin);
+    fdHashMaxGroups.right = new FormAttachment(100, 0);
+    wHashMaxGroups.setLayoutData(fdHashMaxGroups);
+
     wlGroup = new Label(shell, SWT.NONE);
     wlGroup.setText(BaseMessages.getString(PKG, "GroupByDialog.Group.Label"));
     props.setLook(wlGroup);
     fdlGroup = new FormData();
     fdlGroup.left = new FormAttachment(0, 0);
-    fdlGroup.top = new FormAttachment(wAlwaysAddResult, margin);
+    fdlGroup.top = new FormAttachment(wHashMaxGroups, margin);
     wlGroup.setLayoutData(fdlGroup);
 
     int nrKeyCols = 1;
@@ -556,11 +618,23 @@ public class GisGroupByDialog extends BaseTransformDialog implements ITransformD
   }
 
   public void setFlags() {
-    wlSortDir.setEnabled(wAllRows.getSelection());
-    wbSortDir.setEnabled(wAllRows.getSelection());
-    wSortDir.setEnabled(wAllRows.getSelection());
-    wlPrefix.setEnabled(wAllRows.getSelection());
-    wPrefix.setEnabled(wAllRows.getSelection());
+    // All rows are not available with unsorted rows
+    if (wHashAggregation.getSelection() && wAllRows.getSelection()) {
+      wAllRows.setSelection(false);
+      input.setPassAllRows(false);
+    }
+    wlAllRows.setEnabled(!wHashAggregation.getSelection());
+    wAllRows.setEnabled(!wHashAggregation.getSelection());
+    wlHashMaxGroups.setEnabled(wHashAggregation.getSelection());
+    wHashMaxGroups.setEnabled(wHashAggregation.getSelection());
+
+    // Temp files for all rows or for groups spilled to disk
+    boolean tempFiles = wAllRows.getSelection() || wHashAggregation.getSelection();
+    wlSortDir.setEnabled(tempFiles);
+    wbSortDir.setEnabled(tempFiles);
+    wSortDir.setEnabled(tempFiles);
+    wlPrefix.setEnabled(tempFiles);
+    wPrefix.setEnabled(tempFiles);
     wlAddLineNr.setEnabled(wAllRows.getSelection());
     wAddLineNr.setEnabled(wAllRows.getSelection());
 
@@ -585,6 +659,10 @@ public class GisGroupByDialog extends BaseTransformDialog implements ITransformD
       wLineNrField.setText(input.getLineNrInGroupField());
     }
     wAlwaysAddResult.setSelection(input.isAlwaysGivingBackOneRow());
+    wHashAggregation.setSelection(input.isHashAggregation());
+    if (input.getHashMaxGroups() != null) {
+      wHashMaxGroups.setText(input.getHashMaxGroups());
+    }
 
     if (input.getGroupField() != null) {
       for (int i = 0; i < input.getGroupField().length; i++) {
@@ -641,6 +719,8 @@ public class GisGroupByDialog extends BaseTransformDialog implements ITransformD
 
     input.setLineNrInGroupField(wLineNrField.getText());
     input.setAlwaysGivingBackOneRow(wAlwaysAddResult.getSelection());
+    input.setHashAggregation(wHashAggregation.getSelection());
+    input.setHashMaxGroups(wHashMaxGroups.getText());
 
     input.allocate(sizegroup, nrfields);
 
@@ -662,6 +742,7 @@ public class GisGroupByDialog extends BaseTransformDialog implements ITransformD
     transformName = wTransformName.getText();
 
     if (sizegroup > 0
+        && !input.isHashAggregation()
         && "Y".equalsIgnoreCase(props.getCustomParameter(STRING_SORT_WARNING_PARAMETER, "Y"))) {
       MessageDialogWithToggle md =
           new MessageDialogWithToggle(
@@ -201,6 +201,15 @@ public class GisGroupByMeta extends BaseTransformMeta<GisGroupBy, GisGroupByData
    */
   private boolean alwaysGivingBackOneRow;
 
+  /** Aggregate unsorted rows, keeping one aggregate per group in a hash map. */
+  private boolean hashAggregation;
+
+  /**
+   * Maximum number of groups kept in memory in hash aggregation mode, rows of the other groups are
+   * spilled to disk and aggregated in a later pass (empty or 0 : no limit)
+   */
+  private String hashMaxGroups;
+
   public GisGroupByMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -376,6 +385,9 @@ public class GisGroupByMeta extends BaseTransformMeta<GisGroupBy, GisGroupByData
         valueField[i] = XmlHandler.getTagValue(fnode, "valuefield");
       }
 
+      hashAggregation = "Y".equalsIgnoreCase(XmlHandler.getTagValue(stepnode, "hash_aggregation"));
+      hashMaxGroups = XmlHandler.getTagValue(stepnode, "hash_max_groups");
+
       String giveBackRow = XmlHandler.getTagValue(stepnode, "give_back_row");
       if (giveBackRow.isEmpty()) {
         alwaysGivingBackOneRow = hasNumberOfValues;
@@ -421,6 +433,8 @@ public class GisGroupByMeta extends BaseTransformMeta<GisGroupBy, GisGroupByData
     prefix = "grp";
 
     passAllRows = false;
+    hashAggregation = false;
+    hashMaxGroups = "0";
     aggregateIgnored = false;
     aggregateIgnoredField = null;
 
@@ -570,6 +584,8 @@ public class GisGroupByMeta extends BaseTransformMeta<GisGroupBy, GisGroupByData
     retval.append("      ").append(XmlHandler.addTagValue("add_linenr", addingLineNrInGroup));
     retval.append("      ").append(XmlHandler.addTagValue("linenr_fieldname", lineNrInGroupField));
     retval.append("      ").append(XmlHandler.addTagValue("give_back_row", alwaysGivingBackOneRow));
+    retval.append("      ").append(XmlHandler.addTagValue("hash_aggregation", hashAggregation));
+    retval.append("      ").append(XmlHandler.addTagValue("hash_max_groups", hashMaxGroups));
 
     retval.append("      <group>").append(Const.CR);
     for (int i = 0; i < groupField.length; i++) {
@@ -623,6 +639,37 @@ public class GisGroupByMeta extends BaseTransformMeta<GisGroupBy, GisGroupByData
               stepMeta);
       remarks.add(cr);
     }
+
+    // Agrégation par table de hachage : pas de cumul ni de renvoi de toutes les lignes
+    if (hashAggregation && !isHashAggregationAllowed()) {
+      cr =
+          new CheckResult(
+              ICheckResult.TYPE_RESULT_ERROR,
+              BaseMessages.getString(PKG, "GroupByMeta.CheckResult.HashAggregationNotAllowed"),
+              stepMeta);
+      remarks.add(cr);
+    }
+  }
+
+  /**
+   * Hash aggregation does not keep rows order : all rows and cumulative aggregates are not allowed
+   *
+   * @return true if the aggregation can be done on unsorted rows
+   */
+  public boolean isHashAggregationAllowed() {
+
+    if (passAllRows) {
+      return false;
+    }
+
+    for (int i = 0; i < aggregateType.length; i++) {
+      if (aggregateType[i] == TYPE_GROUP_CUMULATIVE_SUM
+          || aggregateType[i] == TYPE_GROUP_CUMULATIVE_AVERAGE) {
+        return false;
+      }
+    }
+
+    return true;
   }
 
   /**
@@ -694,4 +741,32 @@ public class GisGroupByMeta extends BaseTransformMeta<GisGroupBy, GisGroupByData
   public void setAlwaysGivingBackOneRow(boolean alwaysGivingBackOneRow) {
     this.alwaysGivingBackOneRow = alwaysGivingBackOneRow;
   }
+
+  /**
+   * @return the hashAggregation
+   */
+  public boolean isHashAggregation() {
+    return hashAggregation;
+  }
+
+  /**
+   * @param hashAggregation the hashAggregation to set
+   */
+  public void setHashAggregation(boolean hashAggregation) {
+    this.hashAggregation = hashAggregation;
+  }
+
+  /**
+   * @return the hashMaxGroups
+   */
+  public String getHashMaxGroups() {
+    return hashMaxGroups;
+  }
+
+  /**
+   * @param hashMaxGroups the hashMaxGroups to set
+   */
+  public void setHashMaxGroups(String hashMaxGroups) {
+    this.hashMaxGroups = hashMaxGroups;
+  }
 }
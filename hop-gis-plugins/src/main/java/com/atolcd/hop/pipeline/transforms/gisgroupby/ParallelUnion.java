@@ -0,0 +1,126 @@
+package com.atolcd.hop.pipeline.transforms.gisgroupby;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.union.UnaryUnionOp;
+
+/**
+ * Union of a large set of geometries on a fork-join pool : the geometries are ordered spatially
+ * through a STR-tree, partitions of neighbouring geometries are unioned in parallel and the partial
+ * results are merged two by two.
+ */
+public class ParallelUnion {
+
+  /** Number of geometries unioned by a single task */
+  private static final int LEAF_SIZE = 512;
+
+  private static final int NODE_CAPACITY = 10;
+
+  /**
+   * Union of geometries
+   *
+   * @param geometries the geometries to union
+   * @param pool the pool running the union tasks
+   * @return the union or null if there is no geometry
+   */
+  public static Geometry union(List<Geometry> geometries, ForkJoinPool pool) {
+
+    if (geometries.size() <= LEAF_SIZE * 2) {
+      return UnaryUnionOp.union(geometries);
+    }
+
+    return pool.invoke(new UnionTask(getSpatiallyOrdered(geometries), 0, geometries.size()));
+  }
+
+  // Ordre des feuilles du STR-tree : géométries voisines contiguës
+  private static List<Geometry> getSpatiallyOrdered(List<Geometry> geometries) {
+
+    STRtree tree = new STRtree(NODE_CAPACITY);
+    for (Geometry geometry : geometries) {
+      tree.insert(geometry.getEnvelopeInternal(), geometry);
+    }
+
+    List<Geometry> ordered = new ArrayList<Geometry>(geometries.size());
+    addItems(tree.itemsTree(), ordered);
+    return ordered;
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static void addItems(List items, List<Geometry> ordered) {
+
+    for (Object item : items) {
+      if (item instanceof List) {
+        addItems((List) item, ordered);
+      } else {
+        ordered.add((Geometry) item);
+      }
+    }
+  }
+
+  private static class UnionTask extends RecursiveTask<Geometry> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Geometry> geometries;
+    private final int start;
+    private final int end;
+
+    private UnionTask(List<Geometry> geometries, int start, int end) {
+      this.geometries = geometries;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected Geometry compute() {
+
+      if (end - start <= LEAF_SIZE) {
+        return UnaryUnionOp.union(geometries.subList(start, end));
+      }
+
+      int middle = (start + end) >>> 1;
+      UnionTask left = new UnionTask(geometries, start, middle);
+      UnionTask right = new UnionTask(geometries, middle, end);
+      left.fork();
+      Geometry rightUnion = right.compute();
+      Geometry leftUnion = left.join();
+
+      if (leftUnion == null) {
+        return rightUnion;
+      }
+      if (rightUnion == null) {
+        return leftUnion;
+      }
+
+      // Fusion des résultats partiels (géométries hétérogènes possibles)
+      return UnaryUnionOp.union(Arrays.asList(leftUnion, rightUnion));
+    }
+  }
+}
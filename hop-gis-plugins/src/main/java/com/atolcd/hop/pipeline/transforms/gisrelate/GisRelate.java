@@ -24,8 +24,14 @@ package com.atolcd.hop.pipeline.transforms.gisrelate;
 
 import com.atolcd.hop.core.row.value.GeometryInterface;
 import com.atolcd.hop.gis.utils.GeometryUtils;
+import com.atolcd.hop.pipeline.transforms.gisrelate.GisRelateData.LookupEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hop.core.Const;
+import org.apache.hop.core.IRowSet;
 import org.apache.hop.core.exception.HopException;
 import org.apache.hop.core.row.IRowMeta;
 import org.apache.hop.core.row.RowDataUtil;
@@ -34,8 +40,11 @@ import org.apache.hop.pipeline.PipelineMeta;
 import org.apache.hop.pipeline.transform.BaseTransform;
 import org.apache.hop.pipeline.transform.TransformMeta;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.index.strtree.STRtree;
 
 public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
@@ -43,6 +52,15 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
   private static GeometryFactory geometryFactory = new GeometryFactory();
 
+  private static final int DEFAULT_PREPARED_CACHE_SIZE = 100;
+
+  private static final Comparator<LookupEntry> LOOKUP_ENTRY_ORDER =
+      new Comparator<LookupEntry>() {
+        public int compare(LookupEntry a, LookupEntry b) {
+          return Integer.compare(a.index, b.index);
+        }
+      };
+
   private String operator;
 
   private Integer firstGeometryFieldIndex;
@@ -68,27 +86,32 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
     if (!GeometryUtils.isNullOrEmptyGeometry(firstGeometry)
         && !GeometryUtils.isNullOrEmptyGeometry(secondGeometry)) {
 
-      Double distance = null;
+      return process(operator, firstGeometry, secondGeometry, getDistance(row));
+    }
 
-      if (withDistance) {
+    return null;
+  }
 
-        if (distanceFieldIndex != null) {
+  private Double getDistance(Object[] row) throws HopException {
 
-          distance = getInputRowMeta().getNumber(row, distanceFieldIndex);
+    Double distance = null;
 
-          if (distance == null) {
-            throw new HopException("Distance can not be null");
-          }
+    if (withDistance) {
 
-        } else {
-          distance = distanceValue;
+      if (distanceFieldIndex != null) {
+
+        distance = getInputRowMeta().getNumber(row, distanceFieldIndex);
+
+        if (distance == null) {
+          throw new HopException("Distance can not be null");
         }
-      }
 
-      return process(operator, firstGeometry, secondGeometry, distance);
+      } else {
+        distance = distanceValue;
+      }
     }
 
-    return null;
+    return distance;
   }
 
   public GisRelate(
@@ -106,6 +129,11 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
     Object result;
 
+    // Jointure spatiale : lecture et indexation du flux d'info avant le flux principal
+    if (meta.isLookup() && data.lookupIndex == null) {
+      readLookupRows();
+    }
+
     Object[] r = getRow();
 
     if (r == null) {
@@ -118,7 +146,12 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
       first = false;
       data.outputRowMeta = (IRowMeta) getInputRowMeta().clone();
-      meta.getFields(data.outputRowMeta, getTransformName(), null, null, this, metadataProvider);
+      IRowMeta[] infoRowMeta = null;
+      if (meta.isLookup()) {
+        infoRowMeta = new IRowMeta[] {data.lookupRowMeta};
+      }
+      meta.getFields(
+          data.outputRowMeta, getTransformName(), infoRowMeta, null, this, metadataProvider);
 
       operator = meta.getOperator();
       returnType = meta.getReturnType();
@@ -126,11 +159,14 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
       // Récupération des indexes des colonnes contenant les géomrtries
       // d'entrée
       firstGeometryFieldIndex = getInputRowMeta().indexOfValue(meta.getFirstGeometryFieldName());
-      secondGeometryFieldIndex = getInputRowMeta().indexOfValue(meta.getSecondGeometryFieldName());
       firstGeometryInterface =
           (GeometryInterface) getInputRowMeta().getValueMeta(firstGeometryFieldIndex);
-      secondGeometryInterface =
-          (GeometryInterface) getInputRowMeta().getValueMeta(secondGeometryFieldIndex);
+      if (!meta.isLookup()) {
+        secondGeometryFieldIndex =
+            getInputRowMeta().indexOfValue(meta.getSecondGeometryFieldName());
+        secondGeometryInterface =
+            (GeometryInterface) getInputRowMeta().getValueMeta(secondGeometryFieldIndex);
+      }
       // Besoin de distance
       if (ArrayUtils.contains(meta.getWithDistanceOperators(), operator)) {
 
@@ -157,16 +193,43 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
         resultType = Double.class;
       }
 
+      if (meta.isLookup() && !resultType.equals(Boolean.class)) {
+        throw new HopException(
+            "Function \"" + operator + "\" is not allowed with a lookup transform");
+      }
+
       // Récupération de l'index de la colonne contenant le résultat
       outputFieldIndex = data.outputRowMeta.indexOfValue(meta.getOutputFieldName());
 
+      // Cache LRU des géométries A préparées
+      if (meta.isPreparedGeometryCache()
+          && ArrayUtils.contains(meta.getPreparedOperators(), operator)) {
+
+        int cacheSize = DEFAULT_PREPARED_CACHE_SIZE;
+        String preparedGeometryCacheSize = resolve(meta.getPreparedGeometryCacheSize());
+        if (preparedGeometryCacheSize != null && !preparedGeometryCacheSize.isEmpty()) {
+          try {
+            cacheSize = Integer.parseInt(preparedGeometryCacheSize);
+          } catch (Exception e) {
+            throw new HopException("Prepared geometry cache size is not valid");
+          }
+        }
+
+        data.preparedGeometries = new PreparedGeometryCache(Math.max(cacheSize, 1));
+      }
+
       logBasic("Initialized successfully");
     }
 
     Object[] outputRow = null;
-    result = getRelateResult(r);
 
-    if (resultType.equals(Boolean.class)) {
+    if (meta.isLookup()) {
+
+      processLookupRow(r);
+
+    } else if (resultType.equals(Boolean.class)) {
+
+      result = getRelateResult(r);
 
       if (returnType.equalsIgnoreCase("ALL")) {
 
@@ -183,6 +246,7 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
     } else if (resultType.equals(Double.class)) {
 
+      result = getRelateResult(r);
       outputRow = RowDataUtil.resizeArray(r, r.length + 1);
       outputRow[outputFieldIndex] = (Double) result;
       putRow(data.outputRowMeta, outputRow);
@@ -197,6 +261,130 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
     return true;
   }
 
+  // Lecture du flux d'info et construction de l'index spatial
+  private void readLookupRows() throws HopException {
+
+    IRowSet rowSet = findInputRowSet(meta.getLookupTransformName());
+    if (rowSet == null) {
+      throw new HopException(
+          "Lookup transform \"" + meta.getLookupTransformName() + "\" is not an input");
+    }
+
+    data.lookupIndex = new STRtree();
+    data.lookupEntries = new ArrayList<LookupEntry>();
+
+    Object[] lookupRow = getRowFrom(rowSet);
+    data.lookupRowMeta = rowSet.getRowMeta();
+    if (data.lookupRowMeta == null) {
+      data.lookupRowMeta =
+          getPipelineMeta().getTransformFields(variables, meta.getLookupTransformName());
+    }
+
+    secondGeometryFieldIndex = data.lookupRowMeta.indexOfValue(meta.getSecondGeometryFieldName());
+    if (secondGeometryFieldIndex < 0) {
+      throw new HopException(
+          "Field \""
+              + meta.getSecondGeometryFieldName()
+              + "\" not found in lookup transform \""
+              + meta.getLookupTransformName()
+              + "\"");
+    }
+    secondGeometryInterface =
+        (GeometryInterface) data.lookupRowMeta.getValueMeta(secondGeometryFieldIndex);
+
+    while (lookupRow != null) {
+
+      Geometry geometry = secondGeometryInterface.getGeometry(lookupRow[secondGeometryFieldIndex]);
+      if (!GeometryUtils.isNullOrEmptyGeometry(geometry)) {
+
+        LookupEntry entry = new LookupEntry(data.lookupEntries.size(), geometry, lookupRow);
+        data.lookupEntries.add(entry);
+        data.lookupIndex.insert(geometry.getEnvelopeInternal(), entry);
+      }
+
+      lookupRow = getRowFrom(rowSet);
+    }
+
+    data.lookupIndex.build();
+    logBasic("Lookup index built with " + data.lookupEntries.size() + " geometries");
+  }
+
+  // Jointure d'une ligne du flux principal avec les lignes du flux d'info
+  private void processLookupRow(Object[] row) throws HopException {
+
+    String lookupMode = meta.getLookupMode();
+    List<LookupEntry> matches =
+        getLookupMatches(row, lookupMode.equalsIgnoreCase("FIRST_MATCH"));
+    int inputSize = getInputRowMeta().size();
+
+    if (lookupMode.equalsIgnoreCase("MATCH_COUNT")) {
+
+      Object[] outputRow = RowDataUtil.resizeArray(row, inputSize + 1);
+      outputRow[outputFieldIndex] = Long.valueOf(matches.size());
+      putRow(data.outputRowMeta, outputRow);
+
+    } else if (lookupMode.equalsIgnoreCase("FIRST_MATCH")) {
+
+      Object[] lookupRow = new Object[data.lookupRowMeta.size()];
+      if (!matches.isEmpty()) {
+        lookupRow = matches.get(0).row;
+      }
+      putRow(data.outputRowMeta, RowDataUtil.addRowData(row, inputSize, lookupRow));
+
+    } else {
+
+      for (LookupEntry match : matches) {
+        putRow(data.outputRowMeta, RowDataUtil.addRowData(row, inputSize, match.row));
+      }
+    }
+  }
+
+  // Lignes du flux d'info en relation avec la géométrie A, dans l'ordre du flux
+  private List<LookupEntry> getLookupMatches(Object[] row, boolean firstOnly)
+      throws HopException {
+
+    List<LookupEntry> matches = new ArrayList<LookupEntry>();
+
+    Geometry firstGeometry = firstGeometryInterface.getGeometry(row[firstGeometryFieldIndex]);
+    if (GeometryUtils.isNullOrEmptyGeometry(firstGeometry)) {
+      return matches;
+    }
+
+    Double distance = getDistance(row);
+
+    // Relations "négatives" : l'emprise ne permet pas de filtrer
+    List<LookupEntry> candidates = null;
+    if (operator.equalsIgnoreCase("DISJOINT")
+        || operator.equalsIgnoreCase("IS_NOT_WITHIN_DISTANCE")) {
+      candidates = data.lookupEntries;
+
+    } else {
+
+      Envelope envelope = new Envelope(firstGeometry.getEnvelopeInternal());
+      if (distance != null) {
+        envelope.expandBy(Math.abs(distance));
+      }
+
+      candidates = new ArrayList<LookupEntry>();
+      for (Object item : data.lookupIndex.query(envelope)) {
+        candidates.add((LookupEntry) item);
+      }
+      Collections.sort(candidates, LOOKUP_ENTRY_ORDER);
+    }
+
+    for (LookupEntry candidate : candidates) {
+
+      if ((Boolean) process(operator, firstGeometry, candidate.geometry, distance)) {
+        matches.add(candidate);
+        if (firstOnly) {
+          break;
+        }
+      }
+    }
+
+    return matches;
+  }
+
   @Override
   public boolean init() {
     return super.init();
@@ -204,6 +392,18 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
   @Override
   public void dispose() {
+
+    if (data.preparedGeometries != null) {
+      logBasic(
+          "Prepared geometry cache : "
+              + data.preparedGeometries.getHits()
+              + " hits / "
+              + data.preparedGeometries.getRequests()
+              + " requests ("
+              + String.format("%.1f", data.preparedGeometries.getHitRate() * 100)
+              + "%)");
+    }
+
     super.dispose();
   }
 
@@ -232,6 +432,11 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
     if (GeometryUtils.getSrid(inGeometryA).compareTo(GeometryUtils.getSrid(inGeometryB)) == 0) {
 
+      // Prédicats évalués sur la géométrie A préparée
+      if (data.preparedGeometries != null) {
+        return processPrepared(operator, data.preparedGeometries.get(inGeometryA), inGeometryB);
+      }
+
       if (operator.equalsIgnoreCase("CONTAINS")) {
         result = inGeometryA.contains(inGeometryB);
 
@@ -315,4 +520,43 @@ public class GisRelate extends BaseTransform<GisRelateMeta, GisRelateData> {
 
     return result;
   }
+
+  private Object processPrepared(
+      String operator, PreparedGeometry preparedGeometryA, Geometry inGeometryB) {
+
+    Object result = false;
+
+    if (operator.equalsIgnoreCase("CONTAINS")) {
+      result = preparedGeometryA.contains(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("COVERED_BY")) {
+      result = preparedGeometryA.coveredBy(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("COVERS")) {
+      result = preparedGeometryA.covers(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("CROSSES")) {
+      result = preparedGeometryA.crosses(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("DISJOINT")) {
+      result = preparedGeometryA.disjoint(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("INTERSECTS")) {
+      result = preparedGeometryA.intersects(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("WITHIN")) {
+      result = preparedGeometryA.within(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("OVERLAPS")) {
+      result = preparedGeometryA.overlaps(inGeometryB);
+
+    } else if (operator.equalsIgnoreCase("TOUCHES")) {
+      result = preparedGeometryA.touches(inGeometryB);
+
+    } else {
+      throw new IllegalArgumentException("Function \"" + operator + "\" is not allowed");
+    }
+
+    return result;
+  }
 }
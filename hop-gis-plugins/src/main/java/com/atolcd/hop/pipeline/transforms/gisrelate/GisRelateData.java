@@ -22,13 +22,38 @@ package com.atolcd.hop.pipeline.transforms.gisrelate;
  * #L%
  */
 
+import java.util.List;
 import org.apache.hop.core.row.IRowMeta;
 import org.apache.hop.pipeline.transform.BaseTransformData;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
 
 public class GisRelateData extends BaseTransformData {
 
   public IRowMeta outputRowMeta;
 
+  // Jointure spatiale : lignes du flux d'info indexées sur l'emprise
+  // de leur géométrie
+  public IRowMeta lookupRowMeta;
+  public STRtree lookupIndex;
+  public List<LookupEntry> lookupEntries;
+
+  // Cache des géométries A préparées
+  public PreparedGeometryCache preparedGeometries;
+
+  public static class LookupEntry {
+
+    public int index;
+    public Geometry geometry;
+    public Object[] row;
+
+    public LookupEntry(int index, Geometry geometry, Object[] row) {
+      this.index = index;
+      this.geometry = geometry;
+      this.row = row;
+    }
+  }
+
   public GisRelateData() {
     super();
   }
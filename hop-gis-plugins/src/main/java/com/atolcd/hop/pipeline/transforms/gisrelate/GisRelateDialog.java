@@ -83,6 +83,14 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
   private CCombo wReturnType;
   private FormData fdlReturnType, fdReturnType;
 
+  private Label wlLookupTransform;
+  private CCombo wLookupTransform;
+  private FormData fdlLookupTransform, fdLookupTransform;
+
+  private Label wlLookupMode;
+  private CCombo wLookupMode;
+  private FormData fdlLookupMode, fdLookupMode;
+
   private Label wlFirstGeometryField;
   private CCombo wFirstGeometryField;
   private FormData fdlFirstGeometryField, fdFirstGeometryField;
@@ -98,6 +106,14 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
   private Button wDynamicDistance;
   private FormData fdlDynamicDistance, fdDynamicDistance;
 
+  private Label wlPreparedGeometryCache;
+  private Button wPreparedGeometryCache;
+  private FormData fdlPreparedGeometryCache, fdPreparedGeometryCache;
+
+  private Label wlPreparedGeometryCacheSize;
+  private TextVar wPreparedGeometryCacheSize;
+  private FormData fdlPreparedGeometryCacheSize, fdPreparedGeometryCacheSize;
+
   private Label wlSecondGeometryField;
   private CCombo wSecondGeometryField;
   private FormData fdlSecondGeometryField, fdSecondGeometryField;
@@ -212,6 +228,35 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     InputGroupLayout.marginHeight = 5;
     wInputGroup.setLayout(InputGroupLayout);
 
+    // Flux d'info pour la géométrie B
+    wlLookupTransform = new Label(wInputGroup, SWT.RIGHT);
+    wlLookupTransform.setText(BaseMessages.getString(PKG, "GisRelate.LookupTransform.Label"));
+    props.setLook(wlLookupTransform);
+    fdlLookupTransform = new FormData();
+    fdlLookupTransform.left = new FormAttachment(0, 0);
+    fdlLookupTransform.top = new FormAttachment(0, margin);
+    fdlLookupTransform.right = new FormAttachment(middle, -margin);
+    wlLookupTransform.setLayoutData(fdlLookupTransform);
+
+    wLookupTransform = new CCombo(wInputGroup, SWT.BORDER | SWT.READ_ONLY);
+    wLookupTransform.setToolTipText(
+        BaseMessages.getString(PKG, "GisRelate.LookupTransform.ToolTip"));
+    wLookupTransform.setEditable(false);
+    props.setLook(wLookupTransform);
+    wLookupTransform.addModifyListener(lsMod);
+    fdLookupTransform = new FormData();
+    fdLookupTransform.left = new FormAttachment(middle, 0);
+    fdLookupTransform.right = new FormAttachment(100, 0);
+    fdLookupTransform.top = new FormAttachment(0, margin);
+    wLookupTransform.setLayoutData(fdLookupTransform);
+    wLookupTransform.addModifyListener(
+        new ModifyListener() {
+
+          public void modifyText(ModifyEvent arg0) {
+            setLookupFlags();
+          }
+        });
+
     // Première géométrie
     wlFirstGeometryField = new Label(wInputGroup, SWT.RIGHT);
     wlFirstGeometryField.setText(
@@ -219,7 +264,7 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     props.setLook(wlFirstGeometryField);
     fdlFirstGeometryField = new FormData();
     fdlFirstGeometryField.left = new FormAttachment(0, 0);
-    fdlFirstGeometryField.top = new FormAttachment(0, margin);
+    fdlFirstGeometryField.top = new FormAttachment(wLookupTransform, margin);
     fdlFirstGeometryField.right = new FormAttachment(middle, -margin);
     wlFirstGeometryField.setLayoutData(fdlFirstGeometryField);
 
@@ -232,7 +277,7 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     fdFirstGeometryField = new FormData();
     fdFirstGeometryField.left = new FormAttachment(middle, 0);
     fdFirstGeometryField.right = new FormAttachment(100, 0);
-    fdFirstGeometryField.top = new FormAttachment(wTransformName, margin);
+    fdFirstGeometryField.top = new FormAttachment(wLookupTransform, margin);
     wFirstGeometryField.setLayoutData(fdFirstGeometryField);
 
     // Seconde géométrie
@@ -319,6 +364,58 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     fdDistanceField.top = new FormAttachment(wDynamicDistance, margin);
     wDistanceField.setLayoutData(fdDistanceField);
 
+    // Cache de géométries préparées
+    wlPreparedGeometryCache = new Label(wInputGroup, SWT.RIGHT);
+    wlPreparedGeometryCache.setText(
+        BaseMessages.getString(PKG, "GisRelate.PreparedGeometryCache.Label"));
+    props.setLook(wlPreparedGeometryCache);
+    fdlPreparedGeometryCache = new FormData();
+    fdlPreparedGeometryCache.left = new FormAttachment(0, 0);
+    fdlPreparedGeometryCache.top = new FormAttachment(wDistanceValue, margin);
+    fdlPreparedGeometryCache.right = new FormAttachment(middle, -margin);
+    wlPreparedGeometryCache.setLayoutData(fdlPreparedGeometryCache);
+
+    wPreparedGeometryCache = new Button(wInputGroup, SWT.CHECK);
+    wPreparedGeometryCache.setToolTipText(
+        BaseMessages.getString(PKG, "GisRelate.PreparedGeometryCache.ToolTip"));
+    props.setLook(wPreparedGeometryCache);
+    fdPreparedGeometryCache = new FormData();
+    fdPreparedGeometryCache.left = new FormAttachment(middle, 0);
+    fdPreparedGeometryCache.top = new FormAttachment(wDistanceValue, margin);
+    fdPreparedGeometryCache.right = new FormAttachment(100, 0);
+    wPreparedGeometryCache.setLayoutData(fdPreparedGeometryCache);
+    wPreparedGeometryCache.addSelectionListener(
+        new SelectionAdapter() {
+
+          public void widgetSelected(SelectionEvent arg0) {
+            input.setChanged();
+            setOperatorFlags();
+          }
+        });
+
+    // Taille du cache
+    wlPreparedGeometryCacheSize = new Label(wInputGroup, SWT.RIGHT);
+    wlPreparedGeometryCacheSize.setText(
+        BaseMessages.getString(PKG, "GisRelate.PreparedGeometryCacheSize.Label"));
+    props.setLook(wlPreparedGeometryCacheSize);
+    fdlPreparedGeometryCacheSize = new FormData();
+    fdlPreparedGeometryCacheSize.left = new FormAttachment(0, 0);
+    fdlPreparedGeometryCacheSize.top = new FormAttachment(wPreparedGeometryCache, margin);
+    fdlPreparedGeometryCacheSize.right = new FormAttachment(middle, -margin);
+    wlPreparedGeometryCacheSize.setLayoutData(fdlPreparedGeometryCacheSize);
+
+    wPreparedGeometryCacheSize = new TextVar(variables, wInputGroup, SWT.BORDER | SWT.READ_ONLY);
+    wPreparedGeometryCacheSize.setToolTipText(
+        BaseMessages.getString(PKG, "GisRelate.PreparedGeometryCacheSize.ToolTip"));
+    wPreparedGeometryCacheSize.setEditable(true);
+    props.setLook(wPreparedGeometryCacheSize);
+    wPreparedGeometryCacheSize.addModifyListener(lsMod);
+    fdPreparedGeometryCacheSize = new FormData();
+    fdPreparedGeometryCacheSize.left = new FormAttachment(middle, 0);
+    fdPreparedGeometryCacheSize.top = new FormAttachment(wPreparedGeometryCache, margin);
+    fdPreparedGeometryCacheSize.width = 150;
+    wPreparedGeometryCacheSize.setLayoutData(fdPreparedGeometryCacheSize);
+
     fdInputGroup = new FormData();
     fdInputGroup.left = new FormAttachment(0, margin);
     fdInputGroup.right = new FormAttachment(100, -margin);
@@ -386,6 +483,34 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     fdOutputField.top = new FormAttachment(wReturnType, margin);
     wOutputField.setLayoutData(fdOutputField);
 
+    // Résultat de la jointure
+    wlLookupMode = new Label(wOutputGroup, SWT.RIGHT);
+    wlLookupMode.setText(BaseMessages.getString(PKG, "GisRelate.LookupMode.Label"));
+    props.setLook(wlLookupMode);
+    fdlLookupMode = new FormData();
+    fdlLookupMode.left = new FormAttachment(0, 0);
+    fdlLookupMode.top = new FormAttachment(wOutputField, margin);
+    fdlLookupMode.right = new FormAttachment(middle, -margin);
+    wlLookupMode.setLayoutData(fdlLookupMode);
+
+    wLookupMode = new CCombo(wOutputGroup, SWT.BORDER | SWT.READ_ONLY);
+    wLookupMode.setToolTipText(BaseMessages.getString(PKG, "GisRelate.LookupMode.ToolTip"));
+    wLookupMode.setEditable(false);
+    props.setLook(wLookupMode);
+    wLookupMode.addModifyListener(lsMod);
+    fdLookupMode = new FormData();
+    fdLookupMode.left = new FormAttachment(middle, 0);
+    fdLookupMode.right = new FormAttachment(100, 0);
+    fdLookupMode.top = new FormAttachment(wOutputField, margin);
+    wLookupMode.setLayoutData(fdLookupMode);
+    wLookupMode.addModifyListener(
+        new ModifyListener() {
+
+          public void modifyText(ModifyEvent arg0) {
+            setLookupFlags();
+          }
+        });
+
     fdOutputGroup = new FormData();
     fdOutputGroup.left = new FormAttachment(0, margin);
     fdOutputGroup.right = new FormAttachment(100, -margin);
@@ -429,6 +554,16 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
           }
         });
 
+    // Etapes précédentes pouvant fournir le flux d'info
+    wLookupTransform.add("");
+    TransformMeta transformMeta = pipelineMeta.findTransform(transformName);
+    if (transformMeta != null) {
+      for (TransformMeta previousTransform :
+          pipelineMeta.findPreviousTransforms(transformMeta, true)) {
+        wLookupTransform.add(previousTransform.getName());
+      }
+    }
+
     wFirstGeometryField.setItems(
         getFieldsFromType(ValueMetaBase.getTypeDesc(ValueMetaGeometry.TYPE_GEOMETRY)));
     wSecondGeometryField.setItems(
@@ -471,6 +606,26 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     Collections.sort(returnTypes);
     wReturnType.setItems(returnTypes.toArray(new String[returnTypes.size()]));
 
+    // Liste des résultats de jointure
+    List<String> lookupModes = new ArrayList<String>();
+    for (String lookupMode : input.getLookupModes()) {
+      lookupModes.add(getLookupModeLabel(lookupMode));
+    }
+    wLookupMode.setItems(lookupModes.toArray(new String[lookupModes.size()]));
+
+    if (input.getLookupTransformName() != null) {
+      wLookupTransform.setText(input.getLookupTransformName());
+    }
+
+    if (input.getLookupMode() != null) {
+      wLookupMode.setText(getLookupModeLabel(input.getLookupMode()));
+    }
+
+    wPreparedGeometryCache.setSelection(input.isPreparedGeometryCache());
+    if (input.getPreparedGeometryCacheSize() != null) {
+      wPreparedGeometryCacheSize.setText(input.getPreparedGeometryCacheSize());
+    }
+
     if (input.getOperator() != null) {
       wOperator.setText(getOperatorLabel(input.getOperator()));
     }
@@ -523,6 +678,17 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     input.setDistanceFieldName(wDistanceField.getText());
     input.setDistanceValue(wDistanceValue.getText());
     input.setOutputFieldName(wOutputField.getText());
+    input.setPreparedGeometryCache(wPreparedGeometryCache.getSelection());
+    input.setPreparedGeometryCacheSize(wPreparedGeometryCacheSize.getText());
+    input.setLookupTransformName(wLookupTransform.getText());
+    input.setLookupMode(getLookupModeKey(wLookupMode.getText()));
+    if (input.isLookup()) {
+      input
+          .getTransformIOMeta()
+          .getInfoStreams()
+          .get(0)
+          .setTransformMeta(pipelineMeta.findTransform(wLookupTransform.getText()));
+    }
 
     dispose();
   }
@@ -568,10 +734,28 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
         wDistanceValue.setText("");
       }
 
+      // Cache de géométries préparées
+      if (ArrayUtils.contains(input.getPreparedOperators(), operatorKey)) {
+
+        wlPreparedGeometryCache.setEnabled(true);
+        wPreparedGeometryCache.setEnabled(true);
+        wlPreparedGeometryCacheSize.setEnabled(wPreparedGeometryCache.getSelection());
+        wPreparedGeometryCacheSize.setEnabled(wPreparedGeometryCache.getSelection());
+
+      } else {
+
+        wlPreparedGeometryCache.setEnabled(false);
+        wPreparedGeometryCache.setEnabled(false);
+        wPreparedGeometryCache.setSelection(false);
+        wlPreparedGeometryCacheSize.setEnabled(false);
+        wPreparedGeometryCacheSize.setEnabled(false);
+      }
+
       if (ArrayUtils.contains(input.getBoolResultOperators(), operatorKey)) {
 
-        wlReturnType.setEnabled(true);
-        wReturnType.setEnabled(true);
+        // Pas de filtrage de lignes en cas de jointure
+        wlReturnType.setEnabled(wLookupTransform.getText().isEmpty());
+        wReturnType.setEnabled(wLookupTransform.getText().isEmpty());
 
       } else {
 
@@ -603,6 +787,73 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
     }
   }
 
+  // Si jointure avec un flux d'info
+  private void setLookupFlags() {
+
+    String lookupTransformName = wLookupTransform.getText();
+    boolean lookup = lookupTransformName != null && !lookupTransformName.isEmpty();
+
+    // Géométrie B issue du flux d'info
+    String secondGeometryFieldName = wSecondGeometryField.getText();
+    if (lookup) {
+      try {
+        wSecondGeometryField.setItems(
+            getFieldsFromType(
+                pipelineMeta.getTransformFields(variables, lookupTransformName),
+                ValueMetaBase.getTypeDesc(ValueMetaGeometry.TYPE_GEOMETRY)));
+      } catch (HopException ke) {
+        new ErrorDialog(
+            shell,
+            BaseMessages.getString(PKG, "ChangeFileEncodingDialog.FailedToGetFields.DialogTitle"),
+            BaseMessages.getString(PKG, "ChangeFileEncodingDialog.FailedToGetFields.DialogMessage"),
+            ke);
+      }
+    } else {
+      wSecondGeometryField.setItems(
+          getFieldsFromType(ValueMetaBase.getTypeDesc(ValueMetaGeometry.TYPE_GEOMETRY)));
+    }
+    wSecondGeometryField.setText(secondGeometryFieldName);
+
+    wlLookupMode.setEnabled(lookup);
+    wLookupMode.setEnabled(lookup);
+
+    if (lookup) {
+
+      if (wLookupMode.getText().isEmpty()) {
+        wLookupMode.setText(getLookupModeLabel("ALL_MATCHES"));
+      }
+
+      wlReturnType.setEnabled(false);
+      wReturnType.setEnabled(false);
+      wReturnType.setText(getReturnTypeLabel("ALL"));
+
+      // Seul le nombre de correspondances est écrit dans la colonne de résultat
+      boolean matchCount = "MATCH_COUNT".equals(getLookupModeKey(wLookupMode.getText()));
+      wlOutputField.setEnabled(matchCount);
+      wOutputField.setEnabled(matchCount);
+    }
+  }
+
+  // Libellé du résultat de jointure en fonction du code
+  private String getLookupModeLabel(String key) {
+
+    return BaseMessages.getString(PKG, "GisRelate.LookupMode." + key + ".Label");
+  }
+
+  // Code du résultat de jointure en fonction du libellé
+  private String getLookupModeKey(String label) {
+
+    for (String key : input.getLookupModes()) {
+
+      if (label.equalsIgnoreCase(
+          BaseMessages.getString(PKG, "GisRelate.LookupMode." + key + ".Label"))) {
+        return key;
+      }
+    }
+
+    return null;
+  }
+
   // Libellé de l'opérateur en fonction du code
   private String getOperatorLabel(String key) {
 
@@ -662,23 +913,7 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
 
         // Récupération des colonnes de l'étape précédente
         IRowMeta r = pipelineMeta.getPrevTransformFields(variables, transformMeta);
-        if (r != null) {
-
-          // Filtrage par type de colonne texte
-          TreeSet<String> fieldsTree = new TreeSet<String>();
-          String[] fieldNames = r.getFieldNames();
-          String[] fieldNamesAndTypes = r.getFieldNamesAndTypes(0);
-
-          for (int i = 0; i < fieldNames.length; i++) {
-            if (fieldNamesAndTypes[i].toLowerCase().contains(type.toLowerCase())) {
-              if (fieldNames[i] != null && !fieldNames[i].isEmpty()) {
-                fieldsTree.add(fieldNames[i]);
-              }
-            }
-          }
-
-          fieldNamesFromType = fieldsTree.toArray(new String[] {});
-        }
+        fieldNamesFromType = getFieldsFromType(r, type);
 
       } catch (HopException ke) {
         new ErrorDialog(
@@ -691,4 +926,30 @@ public class GisRelateDialog extends BaseTransformDialog implements ITransformDi
 
     return fieldNamesFromType;
   }
+
+  // Liste les colonnes d'un certain type parmi les colonnes d'une étape
+  private String[] getFieldsFromType(IRowMeta r, String type) {
+
+    String fieldNamesFromType[] = null;
+
+    if (r != null) {
+
+      // Filtrage par type de colonne texte
+      TreeSet<String> fieldsTree = new TreeSet<String>();
+      String[] fieldNames = r.getFieldNames();
+      String[] fieldNamesAndTypes = r.getFieldNamesAndTypes(0);
+
+      for (int i = 0; i < fieldNames.length; i++) {
+        if (fieldNamesAndTypes[i].toLowerCase().contains(type.toLowerCase())) {
+          if (fieldNames[i] != null && !fieldNames[i].isEmpty()) {
+            fieldsTree.add(fieldNames[i]);
+          }
+        }
+      }
+
+      fieldNamesFromType = fieldsTree.toArray(new String[] {});
+    }
+
+    return fieldNamesFromType;
+  }
 }
@@ -35,13 +35,19 @@ import org.apache.hop.core.row.IValueMeta;
 import org.apache.hop.core.row.value.ValueMetaBase;
 import org.apache.hop.core.variables.IVariables;
 import org.apache.hop.core.xml.XmlHandler;
+import org.apache.hop.i18n.BaseMessages;
 import org.apache.hop.metadata.api.IHopMetadataProvider;
 import org.apache.hop.pipeline.PipelineMeta;
 import org.apache.hop.pipeline.transform.BaseTransformMeta;
 import org.apache.hop.pipeline.transform.ITransformDialog;
+import org.apache.hop.pipeline.transform.ITransformIOMeta;
 import org.apache.hop.pipeline.transform.ITransformMeta;
+import org.apache.hop.pipeline.transform.TransformIOMeta;
 import org.apache.hop.pipeline.transform.TransformMeta;
 import org.apache.hop.pipeline.transform.stream.IStream;
+import org.apache.hop.pipeline.transform.stream.IStream.StreamType;
+import org.apache.hop.pipeline.transform.stream.Stream;
+import org.apache.hop.pipeline.transform.stream.StreamIcon;
 import org.apache.hop.resource.IResourceNaming;
 import org.eclipse.swt.widgets.Shell;
 import org.w3c.dom.Node;
@@ -98,6 +104,27 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
   // Colonne de sortie
   private String outputFieldName;
 
+  // Jointure spatiale avec un flux d'info indexé
+  private static String[] lookupModes = new String[] {"ALL_MATCHES", "FIRST_MATCH", "MATCH_COUNT"};
+  private String lookupTransformName;
+  private String lookupMode;
+
+  // Cache de géométries A préparées
+  private static String[] preparedOperators =
+      new String[] {
+        "CONTAINS",
+        "COVERED_BY",
+        "COVERS",
+        "CROSSES",
+        "DISJOINT",
+        "INTERSECTS",
+        "WITHIN",
+        "OVERLAPS",
+        "TOUCHES"
+      };
+  private boolean preparedGeometryCache;
+  private String preparedGeometryCacheSize;
+
   public String getOperator() {
     return operator;
   }
@@ -178,6 +205,74 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
     this.distanceValue = distanceValue;
   }
 
+  public String getLookupTransformName() {
+    return lookupTransformName;
+  }
+
+  public void setLookupTransformName(String lookupTransformName) {
+    this.lookupTransformName = lookupTransformName;
+    resetTransformIoMeta();
+  }
+
+  public String getLookupMode() {
+    return lookupMode;
+  }
+
+  public void setLookupMode(String lookupMode) {
+    this.lookupMode = lookupMode;
+  }
+
+  public String[] getLookupModes() {
+    return lookupModes;
+  }
+
+  public String[] getPreparedOperators() {
+    return preparedOperators;
+  }
+
+  public boolean isPreparedGeometryCache() {
+    return preparedGeometryCache;
+  }
+
+  public void setPreparedGeometryCache(boolean preparedGeometryCache) {
+    this.preparedGeometryCache = preparedGeometryCache;
+  }
+
+  public String getPreparedGeometryCacheSize() {
+    return preparedGeometryCacheSize;
+  }
+
+  public void setPreparedGeometryCacheSize(String preparedGeometryCacheSize) {
+    this.preparedGeometryCacheSize = preparedGeometryCacheSize;
+  }
+
+  // Géométrie B lue depuis le flux d'info
+  public boolean isLookup() {
+    return lookupTransformName != null && !lookupTransformName.isEmpty();
+  }
+
+  @Override
+  public ITransformIOMeta getTransformIOMeta() {
+
+    ITransformIOMeta ioMeta = super.getTransformIOMeta(false);
+    if (ioMeta == null) {
+
+      ioMeta = new TransformIOMeta(true, true, false, false, false, false);
+      if (isLookup()) {
+        ioMeta.addStream(
+            new Stream(
+                StreamType.INFO,
+                null,
+                BaseMessages.getString(PKG, "GisRelate.LookupTransform.Label"),
+                StreamIcon.INFO,
+                lookupTransformName));
+      }
+      setTransformIOMeta(ioMeta);
+    }
+
+    return ioMeta;
+  }
+
   @Override
   public String getXml() {
 
@@ -192,6 +287,11 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
     retval.append("    " + XmlHandler.addTagValue("distanceFieldName", distanceFieldName));
     retval.append("    " + XmlHandler.addTagValue("distanceValue", distanceValue));
     retval.append("    " + XmlHandler.addTagValue("outputFieldName", outputFieldName));
+    retval.append("    " + XmlHandler.addTagValue("lookupTransformName", lookupTransformName));
+    retval.append("    " + XmlHandler.addTagValue("lookupMode", lookupMode));
+    retval.append("    " + XmlHandler.addTagValue("preparedGeometryCache", preparedGeometryCache));
+    retval.append(
+        "    " + XmlHandler.addTagValue("preparedGeometryCacheSize", preparedGeometryCacheSize));
     return retval.toString();
   }
 
@@ -204,6 +304,21 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
       IVariables space,
       IHopMetadataProvider metadataProvider) {
 
+    // Jointure spatiale : nombre de correspondances ou colonnes du flux d'info
+    if (isLookup()) {
+
+      if (lookupMode.equalsIgnoreCase("MATCH_COUNT")) {
+        IValueMeta valueMeta = new ValueMetaBase(outputFieldName, ValueMetaBase.TYPE_INTEGER);
+        valueMeta.setOrigin(origin);
+        r.addValueMeta(valueMeta);
+
+      } else if (info != null && info.length > 0 && info[0] != null) {
+        r.mergeRowMeta(info[0], origin);
+      }
+
+      return;
+    }
+
     if (ArrayUtils.contains(numericResultOperators, operator)) {
       IValueMeta valueMeta =
           (IValueMeta) new ValueMetaBase(outputFieldName, ValueMetaBase.TYPE_NUMBER);
@@ -240,6 +355,15 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
       distanceFieldName = XmlHandler.getTagValue(stepnode, "distanceFieldName");
       distanceValue = XmlHandler.getTagValue(stepnode, "distanceValue");
       outputFieldName = XmlHandler.getTagValue(stepnode, "outputFieldName");
+      lookupTransformName = XmlHandler.getTagValue(stepnode, "lookupTransformName");
+      lookupMode = XmlHandler.getTagValue(stepnode, "lookupMode");
+      if (lookupMode == null) {
+        lookupMode = "ALL_MATCHES";
+      }
+      preparedGeometryCache =
+          "Y".equalsIgnoreCase(XmlHandler.getTagValue(stepnode, "preparedGeometryCache"));
+      preparedGeometryCacheSize = XmlHandler.getTagValue(stepnode, "preparedGeometryCacheSize");
+      resetTransformIoMeta();
 
     } catch (Exception e) {
       throw new HopXmlException("Unable to read step info from XML node", e);
@@ -249,6 +373,10 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
   public void setDefault() {
     operator = "CONTAINS";
     returnType = "ALL";
+    lookupTransformName = null;
+    lookupMode = "ALL_MATCHES";
+    preparedGeometryCache = false;
+    preparedGeometryCacheSize = "100";
   }
 
   public ITransformDialog getDialog(
@@ -286,6 +414,16 @@ public class GisRelateMeta extends BaseTransformMeta<GisRelate, GisRelateData> {
               CheckResult.TYPE_RESULT_ERROR, "No input received from other steps.", transformMeta);
       remarks.add(cr);
     }
+
+    if (isLookup() && !ArrayUtils.contains(boolResultOperators, operator)) {
+
+      cr =
+          new CheckResult(
+              CheckResult.TYPE_RESULT_ERROR,
+              "Only spatial relationships are allowed with a lookup transform.",
+              transformMeta);
+      remarks.add(cr);
+    }
   }
 
   @Override
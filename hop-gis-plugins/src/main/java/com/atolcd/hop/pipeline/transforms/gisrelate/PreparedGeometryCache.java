@@ -0,0 +1,107 @@
+package com.atolcd.hop.pipeline.transforms.gisrelate;
+
+/*
+ * #%L
+ * Apache Hop GIS Plugin
+ * %%
+ * Copyright (C) 2021 Atol CD
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+/**
+ * LRU cache of prepared geometries, keyed by geometry WKB so that identical geometries read from
+ * different rows share the same prepared instance.
+ */
+public class PreparedGeometryCache {
+
+  private final int maxSize;
+  private final Map<ByteBuffer, PreparedGeometry> cache;
+  private final WKBWriter wkbWriter = new WKBWriter(3, true);
+
+  // Dernière géométrie demandée (même instance)
+  private Geometry lastGeometry;
+  private PreparedGeometry lastPreparedGeometry;
+
+  private long hits;
+  private long requests;
+
+  public PreparedGeometryCache(final int maxSize) {
+
+    this.maxSize = maxSize;
+    this.cache =
+        new LinkedHashMap<ByteBuffer, PreparedGeometry>(16, 0.75f, true) {
+
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<ByteBuffer, PreparedGeometry> eldest) {
+            return size() > PreparedGeometryCache.this.maxSize;
+          }
+        };
+  }
+
+  /**
+   * Returns the prepared version of the geometry, preparing and caching it when needed
+   *
+   * @param geometry
+   * @return the prepared geometry
+   */
+  public PreparedGeometry get(Geometry geometry) {
+
+    requests++;
+
+    if (geometry == lastGeometry) {
+      hits++;
+      return lastPreparedGeometry;
+    }
+
+    ByteBuffer key = ByteBuffer.wrap(wkbWriter.write(geometry));
+    PreparedGeometry preparedGeometry = cache.get(key);
+
+    if (preparedGeometry != null) {
+      hits++;
+    } else {
+      preparedGeometry = PreparedGeometryFactory.prepare(geometry);
+      cache.put(key, preparedGeometry);
+    }
+
+    lastGeometry = geometry;
+    lastPreparedGeometry = preparedGeometry;
+
+    return preparedGeometry;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getRequests() {
+    return requests;
+  }
+
+  public double getHitRate() {
+    return requests == 0 ? 0 : (double) hits / requests;
+  }
+}
@@ -0,0 +1,142 @@
+package com.vividsolutions.jump.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An EndianDataInputStream reading from a ByteBuffer, for example a memory-mapped region of a
+ * file. Values are decoded directly from the buffer without intermediate copy.
+ */
+public class EndianByteBufferInputStream extends EndianDataInputStream {
+  private ByteBuffer buffer;
+
+  /** Creates new EndianByteBufferInputStream reading from the current position of the buffer */
+  public EndianByteBufferInputStream(ByteBuffer buffer) {
+    super();
+    this.buffer = buffer;
+  }
+
+  /** close the stream * */
+  public void close() throws IOException {
+    buffer = null;
+  }
+
+  /** read a byte in BigEndian - the same as LE because its only 1 byte */
+  public byte readByteBE() throws IOException {
+    try {
+      return buffer.get();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a byte in LittleEndian - the same as BE because its only 1 byte */
+  public byte readByteLE() throws IOException {
+    return readByteBE();
+  }
+
+  /** read a byte in LittleEndian - the same as BE because its only 1 byte */
+  public void readByteLEnum(byte[] b) throws IOException {
+    try {
+      buffer.get(b);
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a byte in BigEndian - the same as LE because its only 1 byte. */
+  public int readUnsignedByteBE() throws IOException {
+    return readByteBE() & 0xff;
+  }
+
+  /** read a byte in LittleEndian - the same as BE because its only 1 byte. */
+  public int readUnsignedByteLE() throws IOException {
+    return readByteBE() & 0xff;
+  }
+
+  /** read a 16bit short in BE */
+  public short readShortBE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.BIG_ENDIAN).getShort();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 16bit short in LE */
+  public short readShortLE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.LITTLE_ENDIAN).getShort();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 32bit int in BE */
+  public int readIntBE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.BIG_ENDIAN).getInt();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 32bit int in LE */
+  public int readIntLE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.LITTLE_ENDIAN).getInt();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 64bit long in BE */
+  public long readLongBE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.BIG_ENDIAN).getLong();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 64bit long in LE */
+  public long readLongLE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.LITTLE_ENDIAN).getLong();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 64bit double in BE */
+  public double readDoubleBE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.BIG_ENDIAN).getDouble();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /** read a 64bit double in LE */
+  public double readDoubleLE() throws IOException {
+    try {
+      return buffer.order(ByteOrder.LITTLE_ENDIAN).getDouble();
+    } catch (BufferUnderflowException e) {
+      throw new EOFException();
+    }
+  }
+
+  /**
+   * skip ahead in the stream
+   *
+   * @param num number of bytes to read ahead
+   */
+  public int skipBytes(int num) throws IOException {
+    int skipped = Math.min(num, buffer.remaining());
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+}
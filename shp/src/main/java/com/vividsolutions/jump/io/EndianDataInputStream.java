@@ -56,6 +56,11 @@ public class EndianDataInputStream {
     inputStream = new DataInputStream(new BufferedInputStream(in));
   }
 
+  /** Creates an EndianDataInputStream for subclasses reading from another source */
+  protected EndianDataInputStream() {
+    inputStream = null;
+  }
+
   /** close the stream * */
   public void close() throws IOException {
     inputStream.close();
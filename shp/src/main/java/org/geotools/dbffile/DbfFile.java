@@ -42,6 +42,7 @@ public class DbfFile implements DbfConsts {
   int filesize;
   int numfields;
   Map<String, String> uniqueStrings;
+  int streamRec; // next record of the sequential stream dFile
   public DbfFieldDef[] fielddef;
 
   @SuppressWarnings("serial")
@@ -182,6 +183,8 @@ public class DbfFile implements DbfConsts {
     }
 
     sfile.skipBytes(1); // end of field defs marker
+    sfile.skipBytes(data_offset - (DBF_BUFFSIZE * (numfields + 1)) - 1);
+    streamRec = 0;
   }
 
   /**
@@ -213,13 +216,18 @@ public class DbfFile implements DbfConsts {
   public byte[] GetDbfRec(int row) throws java.io.IOException { // [sstein
     // 9.Sept.08]
 
-    rFile.seek(data_offset + (rec_size * row));
-
     // Multi byte character modification thanks to Hisaji ONO
     byte[] strbuf = new byte[rec_size]; // <---- byte array buffer fo
     // storing string's byte data
 
-    dFile.readByteLEnum(strbuf);
+    if (row == streamRec) {
+      // sequential reading through the buffered stream
+      dFile.readByteLEnum(strbuf);
+      streamRec++;
+    } else {
+      rFile.seek(data_offset + ((long) rec_size * row));
+      rFile.readFully(strbuf);
+    }
     // record.append(new String(strbuf)); // <- append byte array to String
     // Buffer //[sstein 9.Sept.08]
 
@@ -4,6 +4,7 @@ import com.vividsolutions.jump.io.EndianDataOutputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.util.Calendar;
@@ -27,6 +28,10 @@ public class DbfFileWriter implements DbfConsts {
 
   int NoRecs = 0;
 
+  int writtenRecs = 0;
+
+  private String fileName;
+
   int recLength = 0;
 
   DbfFieldDef fields[];
@@ -41,6 +46,7 @@ public class DbfFileWriter implements DbfConsts {
     if (DEBUG)
       System.out.println(
           "---->uk.ac.leeds.ccg.dbffile.DbfFileWriter constructed. Will identify itself as " + DBC);
+    fileName = file;
     ls = new EndianDataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
   }
 
@@ -127,6 +133,7 @@ public class DbfFileWriter implements DbfConsts {
       throw new DbfFileException(
           DBC + "wrong number of fields " + rec.size() + " expected " + NoFields);
     String s;
+    writtenRecs++;
     ls.writeByteLE(' ');
     int len;
     StringBuffer tmps;
@@ -215,9 +222,48 @@ public class DbfFileWriter implements DbfConsts {
     } // fields
   }
 
+  /**
+   * Closes the file. If the number of records written differs from the number given to {@link
+   * #writeHeader(DbfFieldDef[], int)} (records written one by one without knowing their count),
+   * the header is updated.
+   */
   public void close() throws IOException {
     ls.writeByteLE(0x1a); // eof mark
     ls.close();
+
+    if (header && writtenRecs != NoRecs) {
+      RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+      try {
+        file.seek(4);
+        file.write(writtenRecs & 0xff);
+        file.write((writtenRecs >> 8) & 0xff);
+        file.write((writtenRecs >> 16) & 0xff);
+        file.write((writtenRecs >> 24) & 0xff);
+      } finally {
+        file.close();
+      }
+      NoRecs = writtenRecs;
+    }
+  }
+
+  /** Closes the file without eof mark nor header update, when the writing is abandoned. */
+  public void abort() throws IOException {
+    ls.close();
+  }
+
+  /** Returns the number of records written by {@link #writeRecord(Vector)} so far. */
+  public int getWriteCount() {
+    return writtenRecs;
+  }
+
+  /** Returns the length in bytes of a record, as computed by {@link #writeHeader}. */
+  public int getRecordLength() {
+    return recLength;
+  }
+
+  /** Returns the length in bytes of the file written so far, eof mark included. */
+  public long getWriteLength() {
+    return 32L * NoFields + 32 + 1 + (long) writtenRecs * recLength + 1;
   }
 
   int dp = 2; // default number of decimals to write
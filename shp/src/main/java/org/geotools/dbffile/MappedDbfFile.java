@@ -0,0 +1,367 @@
+package org.geotools.dbffile;
+
+import com.vividsolutions.jump.io.EndianByteBufferInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * Memory-mapped reader of a DBF (or DBase) file.
+ *
+ * <p>The records are decoded directly from the mapped file : numeric fields are parsed from their
+ * bytes without intermediate String, character fields are decoded with a cached decoder and only
+ * the requested columns are decoded. The values are the ones of {@link DbfFile#ParseRecordColumn},
+ * except for integer fields which are returned as Long.
+ *
+ * <p>An instance is not thread safe : each thread must open its own reader.
+ */
+public class MappedDbfFile implements DbfConsts {
+
+  // Taille des fenêtres de projection du fichier
+  private static final long WINDOW_SIZE = 16L * 1024 * 1024;
+
+  private static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private String fileName;
+  private FileChannel channel;
+  private long fileSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private int lastRec;
+  private int dataOffset;
+  private int recSize;
+  private int numFields;
+  private DbfFieldDef[] fielddef;
+  private Charset charset;
+  private CharsetDecoder decoder;
+  private CharBuffer chars;
+  private byte[] bytes;
+  private Calendar calendar;
+
+  /**
+   * Opens the file and reads the header and the field definitions.
+   *
+   * @param fileName The file to be opened, includes path and .dbf
+   * @param charset The charset of the character fields
+   */
+  public MappedDbfFile(String fileName, Charset charset) throws IOException, DbfFileException {
+
+    this.fileName = fileName;
+    channel = new RandomAccessFile(fileName, "r").getChannel();
+    fileSize = channel.size();
+
+    if (fileSize < DBF_BUFFSIZE) {
+      close();
+      throw new DbfFileException("DbFi>Invalid dbf file " + fileName);
+    }
+
+    EndianByteBufferInputStream header =
+        new EndianByteBufferInputStream(getRegion(0, DBF_BUFFSIZE));
+    header.skipBytes(4); // id and date of last update
+    lastRec = header.readIntLE();
+    dataOffset = header.readShortLE() & 0xffff;
+    recSize = header.readShortLE() & 0xffff;
+    numFields = (dataOffset - DBF_BUFFSIZE - 1) / DBF_BUFFSIZE;
+
+    EndianByteBufferInputStream fields =
+        new EndianByteBufferInputStream(getRegion(DBF_BUFFSIZE, numFields * DBF_BUFFSIZE));
+    fielddef = new DbfFieldDef[numFields];
+    int widthsofar = 1;
+    for (int index = 0; index < numFields; index++) {
+      fielddef[index] = new DbfFieldDef();
+      fielddef[index].setup(widthsofar, fields, charset);
+      widthsofar += fielddef[index].fieldlen;
+    }
+
+    this.charset = charset;
+    decoder =
+        charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    chars = CharBuffer.allocate(256);
+    bytes = new byte[256];
+    calendar = new GregorianCalendar();
+    calendar.setLenient(true);
+  }
+
+  /** Returns the number of records in the database file. */
+  public int getLastRec() {
+    return lastRec;
+  }
+
+  /** Returns the number of fields in the records in the database file. */
+  public int getNumFields() {
+    return numFields;
+  }
+
+  /** Returns the definition of a field. */
+  public DbfFieldDef getFieldDef(int col) {
+    return fielddef[col];
+  }
+
+  /**
+   * Decodes some columns of a record.
+   *
+   * @param row the row to decode
+   * @param columns the indexes of the columns to decode, null for all the columns
+   * @param values the decoded values, in the order of columns
+   */
+  public void readRecord(int row, int[] columns, Object[] values) throws IOException {
+
+    ByteBuffer record = getRegion(dataOffset + (long) recSize * row, recSize);
+    int recordStart = record.position();
+
+    int count = columns == null ? numFields : columns.length;
+    for (int i = 0; i < count; i++) {
+      int col = columns == null ? i : columns[i];
+      values[i] = parseColumn(record, recordStart + fielddef[col].fieldstart, fielddef[col]);
+    }
+  }
+
+  public void close() throws IOException {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } finally {
+      channel = null;
+      window = null;
+    }
+  }
+
+  // Valeur d'une colonne à partir des octets de l'enregistrement
+  private Object parseColumn(ByteBuffer record, int start, DbfFieldDef field) {
+
+    int end = start + field.fieldlen;
+
+    switch (field.fieldtype) {
+      case 'C': // character
+        while ((start < end) && (record.get(end - 1) == ' ' || record.get(end - 1) == 0)) {
+          end--; // trim trailing spaces
+        }
+        return decodeString(record, start, end);
+
+      case 'F': // same as numeric, more or less
+      case 'N': // numeric
+        while ((start < end) && (record.get(start) == ' ')) start++;
+        while ((start < end) && (record.get(end - 1) == ' ' || record.get(end - 1) == 0)) end--;
+
+        if (field.fieldnumdec == 0 && field.fieldtype == 'N') {
+          return Long.valueOf(parseLong(record, start, end));
+        } else {
+          return Double.valueOf(parseDouble(record, start, end));
+        }
+
+      case 'D': // date
+        return parseDate(record, start, end);
+
+      default:
+        return decodeString(record, start, end);
+    }
+  }
+
+  // Entier, 0 si invalide (comme DbfFile)
+  private long parseLong(ByteBuffer record, int start, int end) {
+
+    if (start == end) {
+      return 0;
+    }
+
+    boolean negative = false;
+    int i = start;
+    byte b = record.get(i);
+    if (b == '-' || b == '+') {
+      negative = b == '-';
+      i++;
+    }
+
+    if (i == end || end - i > 18) {
+      return parseLongString(record, start, end);
+    }
+
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = record.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return parseLongString(record, start, end);
+      }
+      value = value * 10 + digit;
+    }
+
+    return negative ? -value : value;
+  }
+
+  private long parseLongString(ByteBuffer record, int start, int end) {
+    try {
+      return Long.parseLong(getAscii(record, start, end));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  // Décimal, NaN si invalide (comme DbfFile)
+  private double parseDouble(ByteBuffer record, int start, int end) {
+
+    if (start == end) {
+      return Double.NaN;
+    }
+
+    boolean negative = false;
+    int i = start;
+    byte b = record.get(i);
+    if (b == '-' || b == '+') {
+      negative = b == '-';
+      i++;
+    }
+
+    // Mantisse entière et nombre de décimales : valeur exacte si la mantisse
+    // et la puissance de 10 sont représentables en double
+    long mantissa = 0;
+    int digits = 0;
+    int decimals = -1;
+    boolean hasDigit = false;
+    for (; i < end; i++) {
+      byte c = record.get(i);
+      if (c == '.' && decimals < 0) {
+        decimals = 0;
+        continue;
+      }
+      int digit = c - '0';
+      if (digit < 0 || digit > 9 || digits >= 15) {
+        return parseDoubleString(record, start, end);
+      }
+      mantissa = mantissa * 10 + digit;
+      hasDigit = true;
+      if (mantissa > 0) digits++;
+      if (decimals >= 0) decimals++;
+    }
+
+    if (!hasDigit || decimals > 22) {
+      return parseDoubleString(record, start, end);
+    }
+
+    double value = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+    return negative ? -value : value;
+  }
+
+  private double parseDoubleString(ByteBuffer record, int start, int end) {
+    try {
+      return Double.parseDouble(getAscii(record, start, end));
+    } catch (NumberFormatException e) {
+      // dBase can have numbers that look like '********'
+      return Double.NaN;
+    }
+  }
+
+  // Date au format yyyyMMdd
+  private Date parseDate(ByteBuffer record, int start, int end) {
+
+    int trimmedEnd = end;
+    while ((start < trimmedEnd) && (record.get(trimmedEnd - 1) == ' ')) trimmedEnd--;
+    if (start == trimmedEnd) {
+      return null;
+    }
+
+    if (end - start == 8) {
+
+      int date = 0;
+      for (int i = start; i < end; i++) {
+        int digit = record.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return null;
+        }
+        date = date * 10 + digit;
+      }
+
+      // Not sure if Jan 1, 0001 is the most appropriate value.
+      if (date == 0) {
+        date = 10101;
+      }
+
+      calendar.clear();
+      calendar.set(date / 10000, (date / 100) % 100 - 1, date % 100);
+      return calendar.getTime();
+    }
+
+    return null;
+  }
+
+  private String decodeString(ByteBuffer record, int start, int end) {
+
+    int length = end - start;
+    if (length == 0) {
+      return "";
+    }
+
+    ByteBuffer source = record.duplicate();
+    source.limit(end);
+    source.position(start);
+
+    if (chars.capacity() < length) {
+      chars = CharBuffer.allocate(length);
+    }
+    chars.clear();
+
+    decoder.reset();
+    CoderResult result = decoder.decode(source, chars, true);
+    if (result.isOverflow()) {
+      // plus de caractères que d'octets
+      return new String(getBytes(record, start, end), 0, length, charset);
+    }
+    decoder.flush(chars);
+
+    chars.flip();
+    return chars.toString();
+  }
+
+  private String getAscii(ByteBuffer record, int start, int end) {
+    return new String(getBytes(record, start, end), 0, end - start, StandardCharsets.ISO_8859_1);
+  }
+
+  private byte[] getBytes(ByteBuffer record, int start, int end) {
+
+    int length = end - start;
+    if (bytes.length < length) {
+      bytes = new byte[length];
+    }
+    for (int i = 0; i < length; i++) {
+      bytes[i] = record.get(start + i);
+    }
+    return bytes;
+  }
+
+  // Région du fichier, projetée si besoin dans une nouvelle fenêtre
+  private ByteBuffer getRegion(long start, int length) throws IOException {
+
+    if (start < 0 || start + length > fileSize) {
+      throw new IOException("Record beyond end of file " + fileName);
+    }
+
+    if (window == null || start < windowStart || start + length > windowStart + window.capacity()) {
+      long size = Math.min(Math.max(WINDOW_SIZE, length), fileSize - start);
+      window = channel.map(MapMode.READ_ONLY, start, size);
+      windowStart = start;
+    }
+
+    ByteBuffer region = window.duplicate();
+    region.position((int) (start - windowStart));
+    region.limit((int) (start - windowStart) + length);
+    return region;
+  }
+}
@@ -0,0 +1,234 @@
+package org.geotools.shapefile;
+
+import com.vividsolutions.jump.io.EndianByteBufferInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+/**
+ * Memory-mapped reader of an ESRI Shape file and its index (shx).
+ *
+ * <p>The records are located with the offsets of the index, so that any record can be read without
+ * reading the previous ones, and are decoded directly from the mapped file. The shape file is
+ * mapped by windows, which allows files larger than 2 GB.
+ */
+public class MappedShapefile {
+
+  // Taille des fenêtres de projection du fichier shp
+  private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+  private static final int HEADER_LENGTH = 100; // en octets
+  private static final int RECORD_HEADER_LENGTH = 8; // en octets
+
+  private String fileName;
+  private FileChannel shapeChannel;
+  private long shapeSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private ByteBuffer index;
+  private int recordCount;
+  private ShapefileHeader header;
+  private ShapeHandler handler;
+  private int position;
+  private int errors;
+
+  /**
+   * Opens a shapefile and its index
+   *
+   * @param fileName the shape (shp) file name
+   * @param indexFileName the index (shx) file name
+   */
+  public MappedShapefile(String fileName, String indexFileName)
+      throws IOException, ShapefileException, Exception {
+
+    this.fileName = fileName;
+
+    RandomAccessFile indexFile = new RandomAccessFile(indexFileName, "r");
+    try {
+      FileChannel indexChannel = indexFile.getChannel();
+      index = indexChannel.map(MapMode.READ_ONLY, 0, indexChannel.size());
+      index.order(ByteOrder.BIG_ENDIAN);
+    } finally {
+      indexFile.close();
+    }
+
+    if (index.capacity() < HEADER_LENGTH) {
+      throw new ShapefileException("Invalid shapefile index " + indexFileName);
+    }
+    recordCount = (index.capacity() - HEADER_LENGTH) / 8;
+
+    shapeChannel = new RandomAccessFile(fileName, "r").getChannel();
+    shapeSize = shapeChannel.size();
+
+    header = new ShapefileHeader(new EndianByteBufferInputStream(getRegion(0, HEADER_LENGTH)));
+    handler = Shapefile.getShapeHandler(header.getShapeType());
+    if (handler == null) {
+      close();
+      throw new ShapeTypeNotSupportedException("Unsuported shape type:" + header.getShapeType());
+    }
+
+    position = 0;
+    errors = 0;
+  }
+
+  /** Get the main header of the shapefile. */
+  public ShapefileHeader getHeader() {
+    return header;
+  }
+
+  /** Get the number of records of the shapefile, from its index. */
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  /** Get the index of the record read by the next call to {@link #readNext(GeometryFactory)}. */
+  public int getPosition() {
+    return position;
+  }
+
+  /**
+   * Moves the record by record reading to a record.
+   *
+   * @param position the index of the next record to read, starting at 0
+   */
+  public void setPosition(int position) {
+    this.position = Math.max(0, Math.min(position, recordCount));
+  }
+
+  /**
+   * Reads the next shape of the file.
+   *
+   * @param geometryFactory the geometry factory to use to read the shape
+   * @return the next shape, an empty geometry if the record is invalid or null at end of file
+   */
+  public Geometry readNext(GeometryFactory geometryFactory) throws IOException {
+
+    if (position >= recordCount) {
+      return null;
+    }
+
+    return read(position++, geometryFactory);
+  }
+
+  /**
+   * Reads a shape of the file.
+   *
+   * @param recordIndex the index of the record, starting at 0
+   * @param geometryFactory the geometry factory to use to read the shape
+   * @return the shape or an empty geometry if the record is invalid
+   */
+  public Geometry read(int recordIndex, GeometryFactory geometryFactory) throws IOException {
+
+    if (recordIndex < 0 || recordIndex >= recordCount) {
+      throw new IndexOutOfBoundsException(
+          "Record " + recordIndex + " out of range 0-" + (recordCount - 1));
+    }
+
+    // Offset et longueur en mots de 16 bits dans le shx
+    long offset = 2L * index.getInt(HEADER_LENGTH + 8 * recordIndex);
+    int contentLength = index.getInt(HEADER_LENGTH + 8 * recordIndex + 4);
+
+    try {
+      ByteBuffer record = getRegion(offset + RECORD_HEADER_LENGTH, 2 * contentLength);
+      Geometry body =
+          handler.read(new EndianByteBufferInputStream(record), geometryFactory, contentLength);
+      if (body.getUserData() != null) errors++;
+      return body;
+    } catch (Exception e) {
+      System.err.println("Error processing record " + (recordIndex + 1) + " : " + e.getMessage());
+      System.err.println("   an empty Geometry has been returned");
+      errors++;
+      return handler.getEmptyGeometry(geometryFactory);
+    }
+  }
+
+  /**
+   * Reads the bounding box of a shape from its record header, without decoding its coordinates.
+   *
+   * @param recordIndex the index of the record, starting at 0
+   * @return the bounding box of the shape or null if the shape is null or the record is invalid
+   */
+  public Envelope readEnvelope(int recordIndex) {
+
+    if (recordIndex < 0 || recordIndex >= recordCount) {
+      throw new IndexOutOfBoundsException(
+          "Record " + recordIndex + " out of range 0-" + (recordCount - 1));
+    }
+
+    long offset = 2L * index.getInt(HEADER_LENGTH + 8 * recordIndex);
+    int contentLength = index.getInt(HEADER_LENGTH + 8 * recordIndex + 4);
+
+    try {
+      ByteBuffer record = getRegion(offset + RECORD_HEADER_LENGTH, 2 * contentLength);
+      record.order(ByteOrder.LITTLE_ENDIAN);
+      int start = record.position();
+      int shapeType = record.getInt(start);
+
+      switch (shapeType) {
+        case 0: // null shape
+          return null;
+
+        case 1: // point : x, y
+        case 11:
+        case 21:
+          double x = record.getDouble(start + 4);
+          double y = record.getDouble(start + 12);
+          return new Envelope(x, x, y, y);
+
+        default: // xmin, ymin, xmax, ymax
+          return new Envelope(
+              record.getDouble(start + 4),
+              record.getDouble(start + 20),
+              record.getDouble(start + 12),
+              record.getDouble(start + 28));
+      }
+
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /** Get the number of errors found after a read. */
+  public int getErrorNumber() {
+    return errors;
+  }
+
+  public void close() {
+    try {
+      if (shapeChannel != null) {
+        shapeChannel.close();
+      }
+    } catch (IOException ex) {
+    } finally {
+      shapeChannel = null;
+      window = null;
+      index = null;
+    }
+  }
+
+  // Région du fichier shp, projetée si besoin dans une nouvelle fenêtre
+  private ByteBuffer getRegion(long start, int length) throws IOException {
+
+    if (start < 0 || start + length > shapeSize) {
+      throw new IOException("Record beyond end of file " + fileName);
+    }
+
+    if (window == null || start < windowStart || start + length > windowStart + window.capacity()) {
+      long size = Math.min(Math.max(WINDOW_SIZE, length), shapeSize - start);
+      window = shapeChannel.map(MapMode.READ_ONLY, start, size);
+      windowStart = start;
+    }
+
+    ByteBuffer region = window.duplicate();
+    region.position((int) (start - windowStart));
+    region.limit((int) (start - windowStart) + length);
+    return region;
+  }
+}
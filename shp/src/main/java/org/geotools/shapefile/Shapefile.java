@@ -4,12 +4,16 @@ import com.vividsolutions.jump.io.EndianDataInputStream;
 import com.vividsolutions.jump.io.EndianDataOutputStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -62,12 +66,26 @@ public class Shapefile {
   public static final int MULTIPOINTZ = 18;
   public static final int MULTIPATCH = 31;
   public static final int UNDEFINED = -1;
+
+  /** Maximum length in bytes of a shapefile : offsets of the index are signed 32 bits words. */
+  public static final long MAX_FILE_LENGTH = Integer.MAX_VALUE;
   // Types 2,4,6,7 and 9 were undefined at time or writeing
 
   // private URL baseURL;
   private String fileName;
   private InputStream myInputStream;
   private int errors;
+  private EndianDataInputStream recordStream;
+  private ShapeHandler recordHandler;
+  private String indexFileName;
+  private EndianDataOutputStream shapeOutputStream;
+  private EndianDataOutputStream indexOutputStream;
+  private ShapeHandler writeHandler;
+  private Envelope writeBounds;
+  private double writeZmin;
+  private double writeZmax;
+  private int writePosition;
+  private int writeCount;
 
   /**
    * Creates and initialises a shapefile from a url
@@ -189,6 +207,54 @@ public class Shapefile {
     return geometryFactory.createGeometryCollection((Geometry[]) list.toArray(new Geometry[] {}));
   }
 
+  /**
+   * Reads the main header and prepares a record by record reading of the shapes with {@link
+   * #readNext(GeometryFactory)}.
+   *
+   * @return the main header of the shapefile
+   */
+  public ShapefileHeader readHeader() throws IOException, ShapefileException, Exception {
+
+    recordStream = getInputStream();
+    ShapefileHeader mainHeader = new ShapefileHeader(recordStream);
+    int type = mainHeader.getShapeType();
+    recordHandler = getShapeHandler(type);
+    if (recordHandler == null)
+      throw new ShapeTypeNotSupportedException("Unsuported shape type:" + type);
+    errors = 0;
+
+    return mainHeader;
+  }
+
+  /**
+   * Reads the next shape of the file. {@link #readHeader()} must have been called before.
+   *
+   * @param geometryFactory the geometry factory to use to read the shape
+   * @return the next shape, an empty geometry if the record is invalid or null at end of file
+   */
+  public Geometry readNext(GeometryFactory geometryFactory) throws IOException {
+
+    int recordNumber = 0;
+    int contentLength = 0;
+    try {
+      recordNumber = recordStream.readIntBE();
+      contentLength = recordStream.readIntBE();
+    } catch (EOFException e) {
+      return null;
+    }
+
+    try {
+      Geometry body = recordHandler.read(recordStream, geometryFactory, contentLength);
+      if (body.getUserData() != null) errors++;
+      return body;
+    } catch (Exception e) {
+      System.err.println("Error processing record " + recordNumber + " : " + e.getMessage());
+      System.err.println("   an empty Geometry has been returned");
+      errors++;
+      return recordHandler.getEmptyGeometry(geometryFactory);
+    }
+  }
+
   /** Get the number of errors found after a read. */
   public int getErrorNumber() {
     return errors;
@@ -230,6 +296,161 @@ public class Shapefile {
     file.close();
   }
 
+  /**
+   * Opens the shapefile and its index for a record by record writing of the shapes with {@link
+   * #writeNext(Geometry)}. The headers are written with empty values and updated by {@link
+   * #closeWrite()}.
+   *
+   * @param indexFileName the index (shx) file name
+   * @param shapeType the shape type of all the records
+   */
+  public void openWrite(String indexFileName, int shapeType) throws IOException, Exception {
+
+    writeHandler = getShapeHandler(shapeType);
+    if (writeHandler == null)
+      throw new ShapeTypeNotSupportedException("Unsuported shape type:" + shapeType);
+
+    this.indexFileName = indexFileName;
+    shapeOutputStream = getOutputStream();
+    indexOutputStream =
+        new EndianDataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFileName)));
+
+    writeBounds = new Envelope();
+    writeZmin = Double.MAX_VALUE;
+    writeZmax = -Double.MAX_VALUE;
+    writePosition = 50; // header length in WORDS
+    writeCount = 0;
+
+    ShapefileHeader emptyHeader = new ShapefileHeader(shapeType, writeBounds, 0.0, 0.0, 0, 0);
+    emptyHeader.write(shapeOutputStream);
+    emptyHeader.writeToIndex(indexOutputStream);
+  }
+
+  /**
+   * Writes the next shape of the file. {@link #openWrite(String, int)} must have been called
+   * before.
+   *
+   * @param geometry the shape to write
+   */
+  public void writeNext(Geometry geometry) throws IOException {
+
+    int length = writeHandler.getLength(geometry);
+    if (2L * (writePosition + 4 + length) > MAX_FILE_LENGTH) {
+      throw new IOException("Shapefile " + fileName + " exceeds the 2GB size limit");
+    }
+    writeCount++;
+
+    shapeOutputStream.writeIntBE(writeCount);
+    shapeOutputStream.writeIntBE(length);
+    writeHandler.write(geometry, shapeOutputStream);
+
+    indexOutputStream.writeIntBE(writePosition);
+    indexOutputStream.writeIntBE(length);
+    writePosition += length + 4; // length of shape + header in WORDS
+
+    writeBounds.expandToInclude(geometry.getEnvelopeInternal());
+    if (hasZ(writeHandler.getShapeType())) {
+      Coordinate[] cc = geometry.getCoordinates();
+      for (int j = 0; j < cc.length; j++) {
+        if (Double.isNaN(cc[j].z)) continue;
+        if (cc[j].z < writeZmin) writeZmin = cc[j].z;
+        if (cc[j].z > writeZmax) writeZmax = cc[j].z;
+      }
+    }
+  }
+
+  /**
+   * Returns the length in bytes of the shapefile written by {@link #writeNext(Geometry)} so far.
+   */
+  public long getWriteLength() {
+    return 2L * writePosition;
+  }
+
+  /** Returns the number of shapes written by {@link #writeNext(Geometry)} so far. */
+  public int getWriteCount() {
+    return writeCount;
+  }
+
+  /** Returns the shape type of the shapefile opened by {@link #openWrite(String, int)}. */
+  public int getWriteShapeType() {
+    return writeHandler.getShapeType();
+  }
+
+  /**
+   * Closes the shapefile and its index opened by {@link #openWrite(String, int)} and updates their
+   * headers with the bounds and lengths of the written shapes.
+   */
+  public void closeWrite() throws IOException {
+
+    shapeOutputStream.flush();
+    shapeOutputStream.close();
+    indexOutputStream.flush();
+    indexOutputStream.close();
+
+    // No z bounds without any z value
+    boolean zvalues = hasZ(writeHandler.getShapeType()) && writeZmin <= writeZmax;
+    ShapefileHeader mainHeader =
+        new ShapefileHeader(
+            writeHandler.getShapeType(),
+            writeBounds,
+            zvalues ? writeZmin : 0.0,
+            zvalues ? writeZmax : 0.0,
+            writePosition,
+            50 + (4 * writeCount));
+
+    ByteArrayOutputStream shapeHeader = new ByteArrayOutputStream(100);
+    EndianDataOutputStream shapeHeaderStream = new EndianDataOutputStream(shapeHeader);
+    mainHeader.write(shapeHeaderStream);
+    shapeHeaderStream.flush();
+    updateHeader(fileName, shapeHeader.toByteArray());
+
+    ByteArrayOutputStream indexHeader = new ByteArrayOutputStream(100);
+    EndianDataOutputStream indexHeaderStream = new EndianDataOutputStream(indexHeader);
+    mainHeader.writeToIndex(indexHeaderStream);
+    indexHeaderStream.flush();
+    updateHeader(indexFileName, indexHeader.toByteArray());
+
+    shapeOutputStream = null;
+    indexOutputStream = null;
+  }
+
+  /**
+   * Closes the shapefile and its index opened by {@link #openWrite(String, int)} without updating
+   * their headers, when the writing is abandoned.
+   */
+  public void abortWrite() throws IOException {
+
+    try {
+      if (shapeOutputStream != null) {
+        shapeOutputStream.close();
+      }
+    } finally {
+      shapeOutputStream = null;
+      if (indexOutputStream != null) {
+        indexOutputStream.close();
+        indexOutputStream = null;
+      }
+    }
+  }
+
+  /** Returns true if the shape type stores z values. */
+  public static boolean hasZ(int shapeType) {
+    return shapeType == POINTZ
+        || shapeType == ARCZ
+        || shapeType == POLYGONZ
+        || shapeType == MULTIPOINTZ;
+  }
+
+  private static void updateHeader(String fileName, byte[] header) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+    try {
+      file.seek(0);
+      file.write(header);
+    } finally {
+      file.close();
+    }
+  }
+
   // ShapeFileDimension => 2=x,y ; 3=x,y,m ; 4=x,y,z,m
   /**
    * Saves a shapefile index (shx) to an output stream.
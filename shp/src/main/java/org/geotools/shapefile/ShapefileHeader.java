@@ -94,6 +94,28 @@ public class ShapefileHeader {
     indexLength = 50 + (4 * numShapes);
   }
 
+  /**
+   * Creates a header from values computed while writing the shapes.
+   *
+   * @param shapeType the shape type of all the records
+   * @param bounds the bounds of all the records
+   * @param zmin the minimum z value
+   * @param zmax the maximum z value
+   * @param fileLength the shapefile length in 16bit words
+   * @param indexLength the index length in 16bit words
+   */
+  public ShapefileHeader(
+      int shapeType, Envelope bounds, double zmin, double zmax, int fileLength, int indexLength) {
+    this.shapeType = shapeType;
+    this.version = Shapefile.VERSION;
+    this.fileCode = Shapefile.SHAPEFILE_ID;
+    this.bounds = bounds;
+    this.zmin = zmin;
+    this.zmax = zmax;
+    this.fileLength = fileLength;
+    this.indexLength = indexLength;
+  }
+
   public void setFileLength(int fileLength) {
     this.fileLength = fileLength;
   }
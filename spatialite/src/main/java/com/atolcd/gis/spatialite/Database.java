@@ -9,14 +9,16 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.sqlite.SQLiteConfig;
-import org.sqlite.spatialite.io.GeometryBlobReader;
-import org.sqlite.spatialite.io.GeometryBlobWriter;
+import org.sqlite.spatialite.io.GeometryBlobDecoder;
+import org.sqlite.spatialite.io.GeometryBlobEncoder;
 
 public class Database {
 
@@ -39,20 +41,35 @@ public class Database {
   private static String SQL_META_TYPE_TABLE = "table";
   // private static String SQL_META_TYPE_VIEW = "view";
 
-  private static GeometryBlobWriter geometryBlobWriter = new GeometryBlobWriter();
-  private static GeometryBlobReader geometryBlobReader = new GeometryBlobReader();
+  private static GeometryBlobEncoder geometryBlobEncoder = new GeometryBlobEncoder();
+  private static GeometryBlobDecoder geometryBlobDecoder = new GeometryBlobDecoder();
 
   private Connection connection;
   private String fileName;
   private HashMap<String, Table> tables;
   private boolean spatial;
 
+  // Ecriture par lots
+  private static long DEFAULT_WRITE_COMMIT_LIMIT = 1000;
+  private static int DEFAULT_WRITE_BATCH_SIZE = 1000;
+
+  private Table writeTable;
+  private PreparedStatement writeStatement;
+  private long writeCommitLimit;
+  private long writeIndex;
+  private int writeBatchSize;
+  private int writeBatchIndex;
+  private boolean writeBulkLoad;
+  private String[] writeSavedPragmas;
+
   public Database() {
 
     this.connection = null;
     this.fileName = null;
     this.tables = new HashMap<String, Table>();
     this.spatial = false;
+    this.writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+    this.writeBulkLoad = false;
   }
 
   public Table getTable(String name) {
@@ -67,6 +84,26 @@ public class Database {
     return spatial;
   }
 
+  /**
+   * Nombre de lignes envoyées en un seul lot (JDBC batch) lors de l'écriture
+   *
+   * @param writeBatchSize
+   */
+  public void setWriteBatchSize(int writeBatchSize) {
+    this.writeBatchSize = writeBatchSize > 0 ? writeBatchSize : DEFAULT_WRITE_BATCH_SIZE;
+  }
+
+  /**
+   * Ecriture sans journal sur disque ni synchronisation le temps du chargement. La base peut être
+   * corrompue si le chargement est interrompu. Les paramètres en cours de la base (journal_mode,
+   * synchronous...) sont rétablis à la fin de l'écriture.
+   *
+   * @param writeBulkLoad
+   */
+  public void setWriteBulkLoad(boolean writeBulkLoad) {
+    this.writeBulkLoad = writeBulkLoad;
+  }
+
   /**
    * Cr�ation d'une base de donn�e spatialite vierge
    *
@@ -252,7 +289,7 @@ public class Database {
    */
   public void close() throws SQLException {
 
-    if (!this.connection.isClosed()) {
+    if (this.connection != null && !this.connection.isClosed()) {
       this.connection.close();
     }
   }
@@ -260,6 +297,18 @@ public class Database {
   public void writeRows(Table table, List<Row> rows, Long commitlimit, String primaryKeyFieldName)
       throws Exception {
 
+    openWriteRows(table, commitlimit, primaryKeyFieldName);
+    writeRows(rows);
+    closeWriteRows();
+  }
+
+  /**
+   * Crée la table et prépare l'insertion des données par lots avec {@link
+   * #writeRows(List)}. L'écriture est terminée par {@link #closeWriteRows()}.
+   */
+  public void openWriteRows(Table table, Long commitlimit, String primaryKeyFieldName)
+      throws Exception {
+
     // Suppression de la table si elle existe
     if (getTable(table.getName()) != null) {
       for (String statement : table.getSqlDropTableStatements()) {
@@ -267,26 +316,48 @@ public class Database {
       }
     }
 
-    // Cr�ation de la table + mise � jour des informations de g�om�tries
+    // Création de la table + mise à jour des informations de géométries
     for (String statement : table.getSqlCreateTableStatements(primaryKeyFieldName)) {
       this.connection.createStatement().execute(statement);
     }
 
     if (commitlimit == null || commitlimit == 0) {
-      commitlimit = (long) 1;
+      commitlimit = DEFAULT_WRITE_COMMIT_LIMIT;
+    }
+
+    // Chargement en masse : journal en mémoire et pas de synchronisation,
+    // paramètres en cours conservés pour être rétablis en fin d'écriture
+    if (this.writeBulkLoad) {
+      this.writeSavedPragmas =
+          new String[] {
+            "PRAGMA journal_mode = " + queryPragma("journal_mode") + ";",
+            "PRAGMA synchronous = " + queryPragma("synchronous") + ";",
+            "PRAGMA cache_size = " + queryPragma("cache_size") + ";",
+            "PRAGMA temp_store = " + queryPragma("temp_store") + ";"
+          };
+      executePragmas(
+          "PRAGMA journal_mode = MEMORY;",
+          "PRAGMA synchronous = OFF;",
+          "PRAGMA cache_size = -65536;",
+          "PRAGMA temp_store = MEMORY;");
     }
 
     this.connection.setAutoCommit(false);
 
-    int featIndex = 0;
+    this.writeTable = table;
+    this.writeCommitLimit = commitlimit;
+    this.writeIndex = 0;
+    this.writeBatchIndex = 0;
+    this.writeStatement = this.connection.prepareStatement(table.getSqlInsertStatement());
+  }
+
+  public void writeRows(List<Row> rows) throws Exception {
 
-    // Insertion des donn�es
-    PreparedStatement preparedStatement =
-        this.connection.prepareStatement(table.getSqlInsertStatement());
+    // Insertion des données
     for (Row row : rows) {
 
       int i = 1;
-      for (Field field : table.getFields()) {
+      for (Field field : this.writeTable.getFields()) {
 
         Object value = row.getValue(field.getName());
 
@@ -296,104 +367,298 @@ public class Database {
 
             Geometry geometry = (Geometry) value;
             if (checkGeometry(geometry, field.getGeometryProperties())) {
-              preparedStatement.setBytes(i, geometryBlobWriter.write(geometry));
+              this.writeStatement.setBytes(i, geometryBlobEncoder.encode(geometry));
             }
 
           } else if (field.getTypeAffinity().equals(Field.TYPE_INTEGER)) {
-            preparedStatement.setLong(i, (Long) value);
+            this.writeStatement.setLong(i, (Long) value);
 
           } else if (field.getTypeAffinity().equals(Field.TYPE_NONE)) {
-            preparedStatement.setBytes(i, (byte[]) value);
+            this.writeStatement.setBytes(i, (byte[]) value);
 
           } else if (field.getTypeAffinity().equals(Field.TYPE_NUMERIC)) {
-            preparedStatement.setDouble(i, (Double) value);
+            this.writeStatement.setDouble(i, (Double) value);
 
           } else if (field.getTypeAffinity().equals(Field.TYPE_REAL)) {
-            preparedStatement.setDouble(i, (Double) value);
+            this.writeStatement.setDouble(i, (Double) value);
 
           } else if (field.getTypeAffinity().equals(Field.TYPE_TEXT)) {
-            preparedStatement.setString(i, (String) value);
+            this.writeStatement.setString(i, (String) value);
           }
 
         } else {
-          preparedStatement.setObject(i, null);
+          this.writeStatement.setObject(i, null);
         }
 
         i++;
       }
 
-      preparedStatement.executeUpdate();
-      featIndex++;
+      this.writeStatement.addBatch();
+      this.writeBatchIndex++;
+      this.writeIndex++;
+
+      if (this.writeBatchIndex == this.writeBatchSize) {
+        this.writeBatchIndex = 0;
+        this.writeStatement.executeBatch();
+      }
 
-      if (featIndex == commitlimit) {
-        featIndex = 0;
+      if (this.writeIndex == this.writeCommitLimit) {
+        this.writeIndex = 0;
+        if (this.writeBatchIndex > 0) {
+          this.writeBatchIndex = 0;
+          this.writeStatement.executeBatch();
+        }
         this.connection.commit();
       }
     }
+  }
 
-    this.connection.commit();
-    preparedStatement.close();
+  public void closeWriteRows() throws Exception {
 
-    // Cr�ation des triggers
-    for (String statement : table.getSqlCreateTriggerStatements()) {
-      this.connection.createStatement().execute(statement);
+    try {
+
+      if (this.writeBatchIndex > 0) {
+        this.writeBatchIndex = 0;
+        this.writeStatement.executeBatch();
+      }
+      this.connection.commit();
+
+      // Index spatiaux créés et remplis une fois les données chargées
+      for (String statement : this.writeTable.getSqlCreateSpatialIndexStatements()) {
+        this.connection.createStatement().execute(statement);
+      }
+      for (Field field : this.writeTable.getSpatialIndexFields()) {
+        writeSpatialIndex(this.writeTable, field);
+      }
+
+      // Création des triggers
+      for (String statement : this.writeTable.getSqlCreateTriggerStatements()) {
+        this.connection.createStatement().execute(statement);
+      }
+      this.connection.commit();
+
+    } catch (Exception e) {
+      this.connection.rollback();
+      throw e;
+
+    } finally {
+
+      this.writeStatement.close();
+      this.connection.setAutoCommit(true);
+
+      if (this.writeSavedPragmas != null) {
+        executePragmas(this.writeSavedPragmas);
+        this.writeSavedPragmas = null;
+      }
+
+      this.writeStatement = null;
+      this.writeTable = null;
     }
   }
 
-  public List<Row> getRows(Table table, Long limit) throws Exception {
+  // Remplissage de l'index spatial à partir des MBR des géométries, sans décodage
+  private void writeSpatialIndex(Table table, Field field) throws Exception {
 
-    List<Row> rows = new ArrayList<Row>();
+    List<String> fieldNames = new ArrayList<String>();
+    fieldNames.add("ROWID");
+    fieldNames.add(field.getName());
 
-    for (Field field : table.getFields()) {
-      if (field.isSpatial()) {
-        if (field.getGeometryProperties().getCoordDimension() != 2) {
-          throw new Exception("Only 2D geometries are supported");
+    Statement selectStatement = this.connection.createStatement();
+    PreparedStatement indexStatement =
+        this.connection.prepareStatement(table.getSqlInsertSpatialIndexStatement(field));
+
+    try {
+
+      int batchIndex = 0;
+      ResultSet valuesResultSet =
+          selectStatement.executeQuery(table.getSqlSelectStatement(fieldNames, (long) 0));
+      while (valuesResultSet.next()) {
+
+        byte[] bytes = valuesResultSet.getBytes(2);
+        if (bytes == null) {
+          continue;
         }
+
+        Envelope envelope = geometryBlobDecoder.decodeEnvelope(bytes);
+        indexStatement.setLong(1, valuesResultSet.getLong(1));
+        indexStatement.setDouble(2, envelope.getMinX());
+        indexStatement.setDouble(3, envelope.getMaxX());
+        indexStatement.setDouble(4, envelope.getMinY());
+        indexStatement.setDouble(5, envelope.getMaxY());
+        indexStatement.addBatch();
+        batchIndex++;
+
+        if (batchIndex == this.writeBatchSize) {
+          batchIndex = 0;
+          indexStatement.executeBatch();
+        }
+      }
+      valuesResultSet.close();
+
+      if (batchIndex > 0) {
+        indexStatement.executeBatch();
       }
+
+    } finally {
+      indexStatement.close();
+      selectStatement.close();
     }
+  }
 
-    ResultSet valuesResultSet =
-        this.connection.createStatement().executeQuery(table.getSqlSelectStatement(limit));
-    while (valuesResultSet.next()) {
+  // Valeur en cours d'un paramètre de la base
+  private String queryPragma(String pragma) throws SQLException {
 
-      Row row = new Row();
-      for (Field field : table.getFields()) {
+    Statement statement = this.connection.createStatement();
+    try {
+      ResultSet resultSet = statement.executeQuery("PRAGMA " + pragma + ";");
+      try {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      } finally {
+        resultSet.close();
+      }
+    } finally {
+      statement.close();
+    }
+  }
 
-        Object value = valuesResultSet.getObject(field.getName());
-        if (value != null) {
+  private void executePragmas(String... pragmas) throws SQLException {
 
-          // Geometry
-          if (field.isSpatial()) {
+    Statement statement = this.connection.createStatement();
+    try {
+      for (String pragma : pragmas) {
+        statement.execute(pragma);
+      }
+    } finally {
+      statement.close();
+    }
+  }
 
-            byte[] bytes = (byte[]) value;
-            Geometry geometry = geometryBlobReader.read(bytes);
-            row.addValue(field.getName(), geometry);
+  public List<Row> getRows(Table table, Long limit) throws Exception {
+    return getRows(table, null, limit);
+  }
 
-          } else if (field.getTypeAffinity().equals(Field.TYPE_INTEGER)) {
-            row.addValue(field.getName(), (Integer) value);
+  /**
+   * Lit les lignes de la table en ne sélectionnant que les colonnes demandées
+   *
+   * @param table
+   * @param fieldNames noms des colonnes ou null pour toutes les colonnes
+   * @param limit
+   * @return
+   * @throws Exception
+   */
+  public List<Row> getRows(Table table, List<String> fieldNames, Long limit) throws Exception {
+    return getRows(table, fieldNames, null, limit);
+  }
 
-          } else if (field.getTypeAffinity().equals(Field.TYPE_TEXT)) {
-            row.addValue(field.getName(), (String) value);
+  /**
+   * Lit les lignes de la table dont la première géométrie lue intersecte une emprise, en
+   * utilisant l'index spatial s'il existe puis le MBR des géométries avant leur décodage
+   *
+   * @param table
+   * @param fieldNames noms des colonnes ou null pour toutes les colonnes
+   * @param envelope emprise des lignes ou null pour toutes les lignes
+   * @param limit
+   * @return
+   * @throws Exception
+   */
+  public List<Row> getRows(Table table, List<String> fieldNames, Envelope envelope, Long limit)
+      throws Exception {
 
-          } else if (field.getTypeAffinity().equals(Field.TYPE_NONE)) {
-            row.addValue(field.getName(), (byte[]) value);
+    List<Row> rows = new ArrayList<Row>();
 
-          } else if (field.getTypeAffinity().equals(Field.TYPE_REAL)) {
-            row.addValue(field.getName(), (Float) value);
+    RowCursor rowCursor = getRowCursor(table, fieldNames, envelope, limit);
+    try {
+      while (rowCursor.next()) {
+        rows.add(rowCursor.getRow());
+      }
+    } finally {
+      rowCursor.close();
+    }
 
-          } else {
-            row.addValue(field.getName(), (Double) value);
-          }
+    return rows;
+  }
 
-        } else {
-          row.addValue(field.getName(), null);
+  /**
+   * Ouvre un curseur sur les lignes de la table dont la première géométrie lue intersecte une
+   * emprise, sans les charger en mémoire. Le curseur doit être fermé avant la base de donnée.
+   *
+   * @param table
+   * @param fieldNames noms des colonnes ou null pour toutes les colonnes
+   * @param envelope emprise des lignes ou null pour toutes les lignes
+   * @param limit
+   * @return
+   * @throws Exception
+   */
+  public RowCursor getRowCursor(
+      Table table, List<String> fieldNames, Envelope envelope, Long limit) throws Exception {
+
+    List<Field> fields = new ArrayList<Field>();
+    for (Field field : table.getFields()) {
+      if (fieldNames == null || containsIgnoreCase(fieldNames, field.getName())) {
+        fields.add(field);
+      }
+    }
+
+    List<String> selectedFieldNames = new ArrayList<String>();
+    for (Field field : fields) {
+      if (field.isSpatial()) {
+        if (field.getGeometryProperties().getCoordDimension() != 2) {
+          throw new Exception("Only 2D geometries are supported");
         }
       }
+      selectedFieldNames.add(field.getName());
+    }
 
-      rows.add(row);
+    // Géométrie filtrée
+    Field filterField = null;
+    String where = null;
+    if (envelope != null) {
+      for (Field field : fields) {
+        if (field.isSpatial()) {
+          filterField = field;
+          break;
+        }
+      }
     }
 
-    return rows;
+    if (filterField != null && filterField.getGeometryProperties().isSpatialIndexEnabled()) {
+      where =
+          "ROWID IN (SELECT pkid FROM \"idx_"
+              + table.getName()
+              + "_"
+              + filterField.getName()
+              + "\" WHERE xmin <= "
+              + envelope.getMaxX()
+              + " AND xmax >= "
+              + envelope.getMinX()
+              + " AND ymin <= "
+              + envelope.getMaxY()
+              + " AND ymax >= "
+              + envelope.getMinY()
+              + ")";
+    }
+
+    // MBR hors de l'emprise : ligne ignorée sans décodage par le curseur
+    Statement statement = this.connection.createStatement();
+    try {
+      ResultSet valuesResultSet =
+          statement.executeQuery(table.getSqlSelectStatement(selectedFieldNames, where, limit));
+      return new RowCursor(statement, valuesResultSet, fields, filterField, envelope);
+
+    } catch (SQLException e) {
+      statement.close();
+      throw e;
+    }
+  }
+
+  private static boolean containsIgnoreCase(List<String> names, String name) {
+
+    for (String candidate : names) {
+      if (candidate.equalsIgnoreCase(name)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private static boolean checkGeometry(Geometry geometry, GeometryProperties geometryProperties)
@@ -0,0 +1,175 @@
+package com.atolcd.gis.spatialite;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.sqlite.spatialite.io.GeometryBlobDecoder;
+
+/**
+ * Curseur sur les lignes d'une table : les valeurs sont lues par position dans le ResultSet et
+ * les géométries ne sont décodées qu'à la demande. Le curseur doit être fermé après lecture.
+ */
+public class RowCursor implements AutoCloseable {
+
+  private Statement statement;
+  private ResultSet resultSet;
+  private List<Field> fields;
+  private String[] typeAffinities;
+  private Envelope envelope;
+  private int filterColumn;
+  private GeometryBlobDecoder geometryBlobDecoder;
+
+  /**
+   * @param statement requête dont les colonnes sont celles de fields, dans le même ordre
+   * @param resultSet résultat de la requête
+   * @param fields colonnes lues
+   * @param filterField colonne géométrique filtrée sur son MBR ou null
+   * @param envelope emprise du filtre ou null
+   */
+  protected RowCursor(
+      Statement statement,
+      ResultSet resultSet,
+      List<Field> fields,
+      Field filterField,
+      Envelope envelope) {
+
+    this.statement = statement;
+    this.resultSet = resultSet;
+    this.fields = fields;
+    this.envelope = envelope;
+    this.filterColumn = filterField != null ? fields.indexOf(filterField) + 1 : 0;
+    this.geometryBlobDecoder = new GeometryBlobDecoder();
+
+    this.typeAffinities = new String[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      this.typeAffinities[i] = fields.get(i).getTypeAffinity();
+    }
+  }
+
+  public List<Field> getFields() {
+    return fields;
+  }
+
+  /**
+   * Position de la colonne dans le curseur (comparaison sur les noms de colonnes en minuscule)
+   *
+   * @param fieldName
+   * @return position de la colonne ou -1 si elle n'est pas lue
+   */
+  public int indexOf(String fieldName) {
+
+    for (int i = 0; i < fields.size(); i++) {
+      if (fields.get(i).getName().equalsIgnoreCase(fieldName)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Passe à la ligne suivante. Les lignes dont le MBR est hors de l'emprise sont ignorées sans
+   * décodage de leur géométrie.
+   *
+   * @return false en fin de résultat
+   * @throws Exception
+   */
+  public boolean next() throws Exception {
+
+    while (resultSet.next()) {
+
+      if (filterColumn > 0) {
+        byte[] bytes = resultSet.getBytes(filterColumn);
+        if (bytes == null || !envelope.intersects(geometryBlobDecoder.decodeEnvelope(bytes))) {
+          continue;
+        }
+      }
+
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Valeur d'une colonne de la ligne en cours : Geometry, Long, Double, String ou byte[]
+   *
+   * @param index position de la colonne dans le curseur
+   * @return
+   * @throws Exception
+   */
+  public Object getValue(int index) throws Exception {
+
+    int column = index + 1;
+    String typeAffinity = typeAffinities[index];
+    Object value;
+
+    if (typeAffinity.equals(Field.TYPE_GEOMETRY)) {
+      return getGeometry(index);
+
+    } else if (typeAffinity.equals(Field.TYPE_INTEGER)) {
+      value = resultSet.getLong(column);
+
+    } else if (typeAffinity.equals(Field.TYPE_TEXT)) {
+      value = resultSet.getString(column);
+
+    } else if (typeAffinity.equals(Field.TYPE_NONE)) {
+      value = resultSet.getBytes(column);
+
+    } else {
+      value = resultSet.getDouble(column);
+    }
+
+    return resultSet.wasNull() ? null : value;
+  }
+
+  /**
+   * Géométrie d'une colonne de la ligne en cours, décodée à l'appel
+   *
+   * @param index position de la colonne dans le curseur
+   * @return
+   * @throws Exception
+   */
+  public Geometry getGeometry(int index) throws Exception {
+
+    byte[] bytes = resultSet.getBytes(index + 1);
+    if (bytes == null) {
+      return null;
+    }
+
+    return geometryBlobDecoder.decode(bytes);
+  }
+
+  /**
+   * Copie de la ligne en cours
+   *
+   * @return
+   * @throws Exception
+   */
+  public Row getRow() throws Exception {
+
+    Row row = new Row();
+    for (int i = 0; i < fields.size(); i++) {
+      row.addValue(fields.get(i).getName(), getValue(i));
+    }
+
+    return row;
+  }
+
+  public void close() throws SQLException {
+
+    try {
+      if (resultSet != null) {
+        resultSet.close();
+      }
+    } finally {
+      resultSet = null;
+      if (statement != null) {
+        statement.close();
+        statement = null;
+      }
+    }
+  }
+}
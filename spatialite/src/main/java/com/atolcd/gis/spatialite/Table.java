@@ -77,8 +77,20 @@ public class Table {
   }
 
   protected String getSqlSelectStatement(Long limit) {
+    return getSqlSelectStatement(getFieldNames(), limit);
+  }
+
+  protected String getSqlSelectStatement(List<String> fieldNames, Long limit) {
+    return getSqlSelectStatement(fieldNames, null, limit);
+  }
 
-    String statement = "SELECT " + StringUtils.join(getFieldNames(), ", ") + " " + "FROM " + name;
+  protected String getSqlSelectStatement(List<String> fieldNames, String where, Long limit) {
+
+    String statement = "SELECT " + StringUtils.join(fieldNames, ", ") + " " + "FROM " + name;
+
+    if (where != null) {
+      statement = statement + " WHERE " + where;
+    }
 
     if (limit > 0) {
       statement = statement + " LIMIT " + limit + ";";
@@ -225,6 +237,7 @@ public class Table {
                 + "') AND Lower(f_geometry_column) = Lower('"
                 + field.getName()
                 + "');"
+                + getSqlSpatialIndexTriggerStatement(field, "NEW")
                 + "END;");
 
         // After update
@@ -243,10 +256,107 @@ public class Table {
                 + "') AND Lower(f_geometry_column) = Lower('"
                 + field.getName()
                 + "');"
+                + getSqlSpatialIndexTriggerStatement(field, "NEW")
                 + "END;");
+
+        // After delete : index spatial seulement
+        if (field.getGeometryProperties().isSpatialIndexEnabled()) {
+          statements.add(
+              "CREATE TRIGGER \"gid_"
+                  + name
+                  + "_"
+                  + field.getName()
+                  + "\" AFTER DELETE ON \""
+                  + name
+                  + "\" "
+                  + "FOR EACH ROW BEGIN "
+                  + getSqlSpatialIndexTriggerStatement(field, "OLD")
+                  + "END;");
+        }
       }
     }
 
     return statements;
   }
+
+  // Mise à jour de l'index spatial dans les triggers
+  private String getSqlSpatialIndexTriggerStatement(Field field, String row) {
+
+    if (!field.getGeometryProperties().isSpatialIndexEnabled()) {
+      return "";
+    }
+
+    String statement =
+        "DELETE FROM \"" + getSpatialIndexName(field) + "\" WHERE pkid = " + row + ".ROWID;";
+
+    if (row.equals("NEW")) {
+      statement =
+          statement
+              + "SELECT RTreeAlign('"
+              + getSpatialIndexName(field)
+              + "', NEW.ROWID, NEW.\""
+              + field.getName()
+              + "\");";
+    }
+
+    return statement;
+  }
+
+  protected String getSpatialIndexName(Field field) {
+    return "idx_" + name + "_" + field.getName();
+  }
+
+  /**
+   * Index spatiaux (R*Tree) des colonnes géométriques pour lesquelles l'index est activé, créés
+   * vides après le chargement des données
+   *
+   * @return
+   */
+  protected List<String> getSqlCreateSpatialIndexStatements() {
+
+    List<String> statements = new ArrayList<String>();
+
+    for (Field field : this.getSpatialIndexFields()) {
+
+      statements.add(
+          "CREATE VIRTUAL TABLE \""
+              + getSpatialIndexName(field)
+              + "\" USING rtree(pkid, xmin, xmax, ymin, ymax);");
+
+      statements.add(
+          "UPDATE "
+              + Database.SQL_TABLE_CG
+              + " SET "
+              + Database.SQL_META_COL_GC_INDEX
+              + " = 1 WHERE "
+              + Database.SQL_META_COL_GC_TABLENAME
+              + " = '"
+              + name.toLowerCase()
+              + "' AND "
+              + Database.SQL_META_COL_GC_COLUMN
+              + " = '"
+              + field.getName().toLowerCase()
+              + "';");
+    }
+
+    return statements;
+  }
+
+  protected String getSqlInsertSpatialIndexStatement(Field field) {
+    return "INSERT INTO \""
+        + getSpatialIndexName(field)
+        + "\" (pkid, xmin, xmax, ymin, ymax) VALUES(?, ?, ?, ?, ?);";
+  }
+
+  protected List<Field> getSpatialIndexFields() {
+
+    List<Field> indexFields = new ArrayList<Field>();
+    for (Field field : this.getFields()) {
+      if (field.isSpatial() && field.getGeometryProperties().isSpatialIndexEnabled()) {
+        indexFields.add(field);
+      }
+    }
+
+    return indexFields;
+  }
 }
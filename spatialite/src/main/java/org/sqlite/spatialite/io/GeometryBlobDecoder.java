@@ -0,0 +1,280 @@
+package org.sqlite.spatialite.io;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.io.WKBConstants;
+
+/**
+ * Decodes SpatiaLite geometry blobs with a {@link ByteBuffer}, reading the coordinates directly
+ * into {@link PackedCoordinateSequence}s.
+ *
+ * <p>Unlike {@link GeometryBlobReader}, the Z, M and ZM variants keep all their ordinates, and the
+ * compressed variants are detected on each entity of a collection.
+ */
+public class GeometryBlobDecoder {
+
+  private GeometryFactory factory;
+
+  public GeometryBlobDecoder() {
+    this(new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY));
+  }
+
+  public GeometryBlobDecoder(GeometryFactory factory) {
+    this.factory = factory;
+  }
+
+  public Geometry decode(byte[] bytes) throws IOException {
+    return decode(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Decodes the geometry blob starting at the position of the buffer. The position is moved after
+   * the blob.
+   *
+   * @param buffer the buffer holding the blob
+   * @return the geometry, with the SRID of the blob
+   * @throws IOException if the blob is invalid
+   */
+  public Geometry decode(ByteBuffer buffer) throws IOException {
+
+    try {
+
+      readHeader(buffer);
+      int srid = buffer.getInt();
+
+      // MBR non utilisé : recalculé par JTS
+      buffer.position(buffer.position() + 32);
+      checkMarker(buffer, GeometryBlobConstants.MBR_END);
+
+      Geometry geometry = readGeometry(buffer, buffer.getInt());
+      checkMarker(buffer, GeometryBlobConstants.LAST);
+
+      geometry.setSRID(srid);
+      return geometry;
+
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated geometry blob", e);
+    }
+  }
+
+  /**
+   * Reads the MBR stored in the header of a geometry blob, without decoding the geometry
+   *
+   * @param bytes the geometry blob
+   * @return the MBR of the geometry
+   * @throws IOException if the blob is invalid
+   */
+  public Envelope decodeEnvelope(byte[] bytes) throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    try {
+
+      readHeader(buffer);
+      buffer.getInt(); // srid
+
+      double minx = buffer.getDouble();
+      double miny = buffer.getDouble();
+      double maxx = buffer.getDouble();
+      double maxy = buffer.getDouble();
+
+      return new Envelope(minx, maxx, miny, maxy);
+
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated geometry blob", e);
+    }
+  }
+
+  // Marqueur de début et ordre des octets
+  private void readHeader(ByteBuffer buffer) throws IOException {
+
+    checkMarker(buffer, GeometryBlobConstants.START);
+
+    byte byteOrder = buffer.get();
+    if (byteOrder == GeometryBlobConstants.BIG_ENDIAN) {
+      buffer.order(ByteOrder.BIG_ENDIAN);
+    } else if (byteOrder == GeometryBlobConstants.LITTLE_ENDIAN) {
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+    } else {
+      throw new IOException("Unexpected byte order value at pos 0x01");
+    }
+  }
+
+  private void checkMarker(ByteBuffer buffer, byte marker) throws IOException {
+
+    int position = buffer.position();
+    if (buffer.get() != marker) {
+      throw new IOException("Unexpected marker value at pos " + position);
+    }
+  }
+
+  private Geometry readGeometry(ByteBuffer buffer, int type) throws IOException {
+
+    BlobType blobType = new BlobType(type);
+
+    switch (blobType.geometryType) {
+      case WKBConstants.wkbPoint:
+        return readPoint(buffer, blobType);
+
+      case WKBConstants.wkbLineString:
+        return factory.createLineString(readSequence(buffer, blobType));
+
+      case WKBConstants.wkbPolygon:
+        return readPolygon(buffer, blobType);
+
+      case WKBConstants.wkbMultiPoint:
+        return factory.createMultiPoint(readComponents(buffer, new Point[buffer.getInt()]));
+
+      case WKBConstants.wkbMultiLineString:
+        return factory.createMultiLineString(
+            readComponents(buffer, new LineString[buffer.getInt()]));
+
+      case WKBConstants.wkbMultiPolygon:
+        return factory.createMultiPolygon(readComponents(buffer, new Polygon[buffer.getInt()]));
+
+      case WKBConstants.wkbGeometryCollection:
+        return factory.createGeometryCollection(
+            readComponents(buffer, new Geometry[buffer.getInt()]));
+
+      default:
+        throw new IOException("Unexpected geometry type " + type);
+    }
+  }
+
+  // Entités d'une collection, chacune avec son propre type (compressé ou non)
+  @SuppressWarnings("unchecked")
+  private <T extends Geometry> T[] readComponents(ByteBuffer buffer, T[] components)
+      throws IOException {
+
+    for (int i = 0; i < components.length; i++) {
+
+      checkMarker(buffer, GeometryBlobConstants.GEOMETRY_ENTITY);
+      Geometry component = readGeometry(buffer, buffer.getInt());
+
+      if (!components.getClass().getComponentType().isInstance(component)) {
+        throw new IOException("Unexpected " + component.getGeometryType() + " entity");
+      }
+      components[i] = (T) component;
+    }
+
+    return components;
+  }
+
+  private Point readPoint(ByteBuffer buffer, BlobType blobType) throws IOException {
+
+    if (blobType.compressed) {
+      throw new IOException("Point cannot be compressed");
+    }
+
+    double[] coordinates = new double[blobType.dimension];
+    readDoubles(buffer, coordinates, 0, coordinates.length);
+
+    return factory.createPoint(
+        new PackedCoordinateSequence.Double(
+            coordinates, blobType.dimension, blobType.measures));
+  }
+
+  private Polygon readPolygon(ByteBuffer buffer, BlobType blobType) throws IOException {
+
+    int numberOfRings = buffer.getInt();
+    if (numberOfRings == 0) {
+      return factory.createPolygon();
+    }
+
+    LinearRing shell = factory.createLinearRing(readSequence(buffer, blobType));
+    LinearRing[] holes = new LinearRing[numberOfRings - 1];
+    for (int i = 0; i < holes.length; i++) {
+      holes[i] = factory.createLinearRing(readSequence(buffer, blobType));
+    }
+
+    return factory.createPolygon(shell, holes);
+  }
+
+  private CoordinateSequence readSequence(ByteBuffer buffer, BlobType blobType) {
+
+    int numberOfPoints = buffer.getInt();
+    int dimension = blobType.dimension;
+    double[] coordinates = new double[numberOfPoints * dimension];
+
+    if (blobType.compressed && numberOfPoints > 2) {
+
+      // Premier et dernier points en double, points intermédiaires en écarts
+      // float au point précédent (sauf M, en double)
+      readDoubles(buffer, coordinates, 0, dimension);
+
+      for (int i = 1; i < numberOfPoints - 1; i++) {
+
+        int offset = i * dimension;
+        coordinates[offset] = coordinates[offset - dimension] + buffer.getFloat();
+        coordinates[offset + 1] = coordinates[offset + 1 - dimension] + buffer.getFloat();
+
+        if (blobType.hasZ) {
+          coordinates[offset + 2] = coordinates[offset + 2 - dimension] + buffer.getFloat();
+        }
+        if (blobType.hasM) {
+          coordinates[offset + dimension - 1] = buffer.getDouble();
+        }
+      }
+
+      readDoubles(buffer, coordinates, (numberOfPoints - 1) * dimension, dimension);
+
+    } else {
+      readDoubles(buffer, coordinates, 0, coordinates.length);
+    }
+
+    return new PackedCoordinateSequence.Double(coordinates, dimension, blobType.measures);
+  }
+
+  // Lecture groupée des ordonnées
+  private void readDoubles(ByteBuffer buffer, double[] values, int offset, int length) {
+
+    buffer.asDoubleBuffer().get(values, offset, length);
+    buffer.position(buffer.position() + length * 8);
+  }
+
+  private static class BlobType {
+
+    int geometryType;
+    boolean compressed;
+    boolean hasZ;
+    boolean hasM;
+    int dimension;
+    int measures;
+
+    BlobType(int type) {
+
+      if (type > GeometryBlobConstants.COMPRESSED_OFFSET) {
+        compressed = true;
+        type -= GeometryBlobConstants.COMPRESSED_OFFSET;
+      }
+
+      if (type > GeometryBlobConstants.ZM_OFFSET) {
+        hasZ = true;
+        hasM = true;
+        type -= GeometryBlobConstants.ZM_OFFSET;
+      } else if (type > GeometryBlobConstants.M_OFFSET) {
+        hasM = true;
+        type -= GeometryBlobConstants.M_OFFSET;
+      } else if (type > GeometryBlobConstants.Z_OFFSET) {
+        hasZ = true;
+        type -= GeometryBlobConstants.Z_OFFSET;
+      }
+
+      geometryType = type;
+      measures = hasM ? 1 : 0;
+      dimension = 2 + (hasZ ? 1 : 0) + measures;
+    }
+  }
+}
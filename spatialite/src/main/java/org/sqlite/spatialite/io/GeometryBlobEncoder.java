@@ -0,0 +1,239 @@
+package org.sqlite.spatialite.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBConstants;
+
+/**
+ * Encodes JTS geometries as SpatiaLite geometry blobs with a {@link ByteBuffer}, reading the
+ * ordinates directly from the coordinate sequences.
+ *
+ * <p>The length of the blob is computed before encoding, so that the blob is written in a single
+ * array of its exact size. As {@link GeometryBlobWriter}, the blobs are written in native byte
+ * order and the M ordinates are not written.
+ */
+public class GeometryBlobEncoder {
+
+  // Marqueurs, SRID, MBR, type et marqueur de fin
+  private static final int BLOB_HEADER_LENGTH = 1 + 1 + 4 + 32 + 1 + 4 + 1;
+
+  public byte[] encode(Geometry geometry) {
+
+    boolean hasZ = hasZ(geometry);
+    byte[] bytes = new byte[getEncodedLength(geometry, hasZ)];
+    encode(geometry, hasZ, ByteBuffer.wrap(bytes));
+    return bytes;
+  }
+
+  /**
+   * Encodes the geometry at the position of the buffer, which must have {@link
+   * #getEncodedLength(Geometry)} bytes remaining. The position is moved after the blob.
+   *
+   * @param geometry the geometry
+   * @param buffer the target buffer, its byte order is set to the native order
+   */
+  public void encode(Geometry geometry, ByteBuffer buffer) {
+    encode(geometry, hasZ(geometry), buffer);
+  }
+
+  /**
+   * Returns the length in bytes of the blob of a geometry
+   *
+   * @param geometry the geometry
+   * @return the length of the blob
+   */
+  public int getEncodedLength(Geometry geometry) {
+    return getEncodedLength(geometry, hasZ(geometry));
+  }
+
+  private int getEncodedLength(Geometry geometry, boolean hasZ) {
+    return BLOB_HEADER_LENGTH + getGeometryLength(geometry, hasZ ? 24 : 16);
+  }
+
+  private void encode(Geometry geometry, boolean hasZ, ByteBuffer buffer) {
+
+    buffer.order(ByteOrder.nativeOrder());
+
+    // 0x00 : START MARKER
+    buffer.put(GeometryBlobConstants.START);
+
+    // 0x01 : BYTE ORDER
+    if (ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN)) {
+      buffer.put(GeometryBlobConstants.BIG_ENDIAN);
+    } else {
+      buffer.put(GeometryBlobConstants.LITTLE_ENDIAN);
+    }
+
+    // 0x02 : SRID
+    buffer.putInt(geometry.getSRID());
+
+    // 0x06 : MBR minx, miny, maxx, maxy
+    Envelope envelope = geometry.getEnvelopeInternal();
+    buffer.putDouble(envelope.getMinX());
+    buffer.putDouble(envelope.getMinY());
+    buffer.putDouble(envelope.getMaxX());
+    buffer.putDouble(envelope.getMaxY());
+
+    // 0x38 : END OF MBR MARKER
+    buffer.put(GeometryBlobConstants.MBR_END);
+
+    // 0x39 : GEOMETRY TYPE
+    buffer.putInt(getGeometryType(geometry, hasZ));
+
+    // 0x43 : geometry data
+    writeGeometry(buffer, geometry, hasZ);
+
+    // END OF RECORD MARKER
+    buffer.put(GeometryBlobConstants.LAST);
+  }
+
+  private int getGeometryLength(Geometry geometry, int coordinateLength) {
+
+    if (geometry instanceof Point) {
+      return coordinateLength;
+
+    } else if (geometry instanceof LineString) {
+      return 4 + ((LineString) geometry).getNumPoints() * coordinateLength;
+
+    } else if (geometry instanceof Polygon) {
+
+      Polygon polygon = (Polygon) geometry;
+      if (polygon.isEmpty()) {
+        return 4;
+      }
+
+      int length = 4 + getGeometryLength(polygon.getExteriorRing(), coordinateLength);
+      for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+        length += getGeometryLength(polygon.getInteriorRingN(i), coordinateLength);
+      }
+      return length;
+
+    } else {
+
+      // Collections : marqueur et type de chaque entité
+      int length = 4;
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        length += 1 + 4 + getGeometryLength(geometry.getGeometryN(i), coordinateLength);
+      }
+      return length;
+    }
+  }
+
+  private void writeGeometry(ByteBuffer buffer, Geometry geometry, boolean hasZ) {
+
+    if (geometry instanceof Point) {
+
+      CoordinateSequence sequence = ((Point) geometry).getCoordinateSequence();
+      if (sequence.size() > 0) {
+        writeCoordinate(buffer, sequence, 0, hasZ);
+      } else {
+        buffer.putDouble(Double.NaN);
+        buffer.putDouble(Double.NaN);
+        if (hasZ) {
+          buffer.putDouble(Double.NaN);
+        }
+      }
+
+    } else if (geometry instanceof LineString) {
+      writeSequence(buffer, ((LineString) geometry).getCoordinateSequence(), hasZ);
+
+    } else if (geometry instanceof Polygon) {
+
+      Polygon polygon = (Polygon) geometry;
+      if (polygon.isEmpty()) {
+        buffer.putInt(0);
+        return;
+      }
+
+      buffer.putInt(polygon.getNumInteriorRing() + 1);
+      writeSequence(buffer, polygon.getExteriorRing().getCoordinateSequence(), hasZ);
+      for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+        writeSequence(buffer, polygon.getInteriorRingN(i).getCoordinateSequence(), hasZ);
+      }
+
+    } else if (geometry instanceof GeometryCollection) {
+
+      buffer.putInt(geometry.getNumGeometries());
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+
+        Geometry component = geometry.getGeometryN(i);
+        if (component instanceof GeometryCollection) {
+          throw new IllegalArgumentException(
+              "Illegal component type : " + component.getGeometryType());
+        }
+
+        buffer.put(GeometryBlobConstants.GEOMETRY_ENTITY);
+        buffer.putInt(getGeometryType(component, hasZ));
+        writeGeometry(buffer, component, hasZ);
+      }
+
+    } else {
+      throw new IllegalArgumentException("Unknown geometry type : " + geometry.getGeometryType());
+    }
+  }
+
+  private void writeSequence(ByteBuffer buffer, CoordinateSequence sequence, boolean hasZ) {
+
+    buffer.putInt(sequence.size());
+    for (int i = 0; i < sequence.size(); i++) {
+      writeCoordinate(buffer, sequence, i, hasZ);
+    }
+  }
+
+  private void writeCoordinate(
+      ByteBuffer buffer, CoordinateSequence sequence, int index, boolean hasZ) {
+
+    buffer.putDouble(sequence.getX(index));
+    buffer.putDouble(sequence.getY(index));
+    if (hasZ) {
+      buffer.putDouble(sequence.getZ(index));
+    }
+  }
+
+  // Présence du Z sur la première coordonnée, comme GeometryBlobWriter
+  private boolean hasZ(Geometry geometry) {
+
+    Coordinate firstCoordinate = geometry.getCoordinate();
+    return firstCoordinate != null && !Double.isNaN(firstCoordinate.getZ());
+  }
+
+  private int getGeometryType(Geometry geometry, boolean hasZ) {
+
+    int geometryType;
+
+    if (geometry instanceof Point) {
+      geometryType = WKBConstants.wkbPoint;
+    } else if (geometry instanceof LineString) {
+      geometryType = WKBConstants.wkbLineString;
+    } else if (geometry instanceof Polygon) {
+      geometryType = WKBConstants.wkbPolygon;
+    } else if (geometry instanceof MultiPoint) {
+      geometryType = WKBConstants.wkbMultiPoint;
+    } else if (geometry instanceof MultiLineString) {
+      geometryType = WKBConstants.wkbMultiLineString;
+    } else if (geometry instanceof MultiPolygon) {
+      geometryType = WKBConstants.wkbMultiPolygon;
+    } else if (geometry instanceof GeometryCollection) {
+      geometryType = WKBConstants.wkbGeometryCollection;
+    } else {
+      throw new IllegalArgumentException("Unknown geometry type : " + geometry.getGeometryType());
+    }
+
+    if (hasZ) {
+      geometryType += GeometryBlobConstants.Z_OFFSET;
+    }
+
+    return geometryType;
+  }
+}
@@ -2,6 +2,7 @@ package org.sqlite.spatialite.io;
 
 import java.io.IOException;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -65,6 +66,37 @@ public class GeometryBlobReader {
     return geometry;
   }
 
+  /**
+   * Reads the MBR stored in the header of a geometry blob, without decoding the geometry
+   *
+   * @param bytes the geometry blob
+   * @return the MBR of the geometry
+   * @throws IOException
+   */
+  public Envelope readEnvelope(byte[] bytes) throws IOException {
+
+    ByteOrderDataInStream dis = new ByteOrderDataInStream(new ByteArrayInStream(bytes));
+
+    dis.readByte();
+    byte byteOrder = dis.readByte();
+
+    if (byteOrder == GeometryBlobConstants.BIG_ENDIAN) {
+      dis.setOrder(ByteOrderValues.BIG_ENDIAN);
+    } else if (byteOrder == GeometryBlobConstants.LITTLE_ENDIAN) {
+      dis.setOrder(ByteOrderValues.LITTLE_ENDIAN);
+    } else {
+      throw new IOException("Unexpected byte order value at pos 0x01");
+    }
+
+    dis.readInt();
+    double minx = dis.readDouble();
+    double miny = dis.readDouble();
+    double maxx = dis.readDouble();
+    double maxy = dis.readDouble();
+
+    return new Envelope(minx, maxx, miny, maxy);
+  }
+
   private Geometry readGeometry(
       ByteOrderDataInStream dis, int geometryType, boolean hasZ, boolean hasM, boolean compressed)
       throws IOException, ParseException {